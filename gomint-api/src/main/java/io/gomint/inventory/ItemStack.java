@@ -190,7 +190,7 @@ public class ItemStack implements Cloneable {
         ItemStack otherItemStack = (ItemStack) other;
         return this.getMaterial() == otherItemStack.getMaterial() &&
                 this.getData() == otherItemStack.getData() &&
-                ( this.nbt == otherItemStack.nbt || this.nbt.equals( otherItemStack.nbt ) );
+                ( this.nbt == otherItemStack.nbt || ( this.nbt != null && this.nbt.equals( otherItemStack.nbt ) ) );
     }
 
 }
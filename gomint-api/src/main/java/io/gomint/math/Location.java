@@ -34,30 +34,31 @@ public class Location extends Vector implements Cloneable {
     @Getter @Setter private float headYaw;
     @Getter @Setter private float pitch;
 
+    // The constructors accept null for locations which are not placed in a world, e.g. the ones of block templates
     public Location( World world ) {
-        this.setWorld( world );
+        this.world = world;
     }
 
     public Location( World world, float x, float y, float z ) {
         super( x, y, z );
-        this.setWorld( world );
+        this.world = world;
     }
 
     public Location( World world, Vector vector ) {
         super( vector.getX(), vector.getY(), vector.getZ() );
-        this.setWorld( world );
+        this.world = world;
     }
 
     public Location( World world, float x, float y, float z, float yaw, float pitch ) {
         super( x, y, z );
-        this.setWorld( world );
+        this.world = world;
         this.yaw = yaw;
         this.pitch = pitch;
     }
 
     public Location( World world, Vector vector, float yaw, float pitch ) {
         super( vector.getX(), vector.getY(), vector.getZ() );
-        this.setWorld( world );
+        this.world = world;
         this.yaw = yaw;
         this.pitch = pitch;
     }
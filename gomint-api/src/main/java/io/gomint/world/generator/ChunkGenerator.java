@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.world.generator;
+
+/**
+ * Creates the chunks of a world which don't exist yet. A chunk is generated in stages which may run on
+ * different threads in parallel for different chunks, so implementations must not keep state between calls
+ * other than read only data like noise tables.
+ * <p>
+ * The noise and surface stage only see the chunk they generate. Decoration of a chunk only starts once the
+ * surface of all its eight neighbours is done and may place blocks into them, so features like trees can
+ * cross chunk borders. Decorations of chunks which share a neighbour never run at the same time. All stages
+ * have to be deterministic for a given seed and chunk.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public interface ChunkGenerator {
+
+    /**
+     * Generate the base shape of the terrain, for example stone and water
+     *
+     * @param chunk The chunk which should be filled
+     */
+    void generateNoise( GeneratorChunk chunk );
+
+    /**
+     * Replace the top layers of the terrain and set the biomes
+     *
+     * @param chunk The chunk whose surface should be generated
+     */
+    void generateSurface( GeneratorChunk chunk );
+
+    /**
+     * Place features like trees and plants into a chunk. Blocks may be placed into the neighbours of the chunk
+     * as well, writes into neighbours which already existed before generation started are dropped.
+     *
+     * @param region The chunk and its neighbours
+     * @param chunkX The x coordinate of the chunk which should be decorated
+     * @param chunkZ The z coordinate of the chunk which should be decorated
+     */
+    void decorate( GeneratorRegion region, int chunkX, int chunkZ );
+
+}
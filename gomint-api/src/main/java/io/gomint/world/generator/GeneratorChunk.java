@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.world.generator;
+
+import io.gomint.world.Biome;
+
+/**
+ * A chunk which is being generated. All coordinates are relative to the chunk.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public interface GeneratorChunk {
+
+    /**
+     * X coordinate of the chunk
+     *
+     * @return x coordinate of the chunk
+     */
+    int getX();
+
+    /**
+     * Z coordinate of the chunk
+     *
+     * @return z coordinate of the chunk
+     */
+    int getZ();
+
+    /**
+     * Set the block at the given position
+     *
+     * @param x       The x coordinate inside of the chunk (0 - 15)
+     * @param y       The y coordinate (0 - 255)
+     * @param z       The z coordinate inside of the chunk (0 - 15)
+     * @param blockId The id of the block
+     * @param data    The data value of the block (0 - 15)
+     */
+    void setBlock( int x, int y, int z, int blockId, byte data );
+
+    /**
+     * Get the id of the block at the given position
+     *
+     * @param x The x coordinate inside of the chunk (0 - 15)
+     * @param y The y coordinate (0 - 255)
+     * @param z The z coordinate inside of the chunk (0 - 15)
+     * @return id of the block
+     */
+    int getBlockId( int x, int y, int z );
+
+    /**
+     * Set the biome of a column
+     *
+     * @param x     The x coordinate inside of the chunk (0 - 15)
+     * @param z     The z coordinate inside of the chunk (0 - 15)
+     * @param biome The biome of the column
+     */
+    void setBiome( int x, int z, Biome biome );
+
+    /**
+     * Get the biome of a column
+     *
+     * @param x The x coordinate inside of the chunk (0 - 15)
+     * @param z The z coordinate inside of the chunk (0 - 15)
+     * @return biome of the column
+     */
+    Biome getBiome( int x, int z );
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.world.generator;
+
+/**
+ * A chunk which is being decorated together with its eight neighbours. All coordinates are world coordinates
+ * and must lie inside of one of the nine chunks.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public interface GeneratorRegion {
+
+    /**
+     * Set the block at the given position. Writes into chunks which existed before generation started are
+     * dropped.
+     *
+     * @param x       The x coordinate of the block
+     * @param y       The y coordinate of the block (0 - 255)
+     * @param z       The z coordinate of the block
+     * @param blockId The id of the block
+     * @param data    The data value of the block (0 - 15)
+     */
+    void setBlock( int x, int y, int z, int blockId, byte data );
+
+    /**
+     * Get the id of the block at the given position
+     *
+     * @param x The x coordinate of the block
+     * @param y The y coordinate of the block (0 - 255)
+     * @param z The z coordinate of the block
+     * @return id of the block, 0 for chunks which existed before generation started
+     */
+    int getBlockId( int x, int y, int z );
+
+    /**
+     * Get the y coordinate of the highest block in a column which is not air
+     *
+     * @param x The x coordinate of the column
+     * @param z The z coordinate of the column
+     * @return y coordinate of the highest block or -1 when the column is empty
+     */
+    int getHighestBlockY( int x, int z );
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Runs the benchmarks and compares them against a baseline of an earlier run. All JMH command line options are
+ * supported, additionally there are:
+ * <ul>
+ * <li><code>-save &lt;file&gt;</code> writes the scores of this run so it can be used as baseline later</li>
+ * <li><code>-baseline &lt;file&gt;</code> compares the scores against the given baseline</li>
+ * <li><code>-threshold &lt;percent&gt;</code> how much worse than the baseline a score may get, defaults to 10</li>
+ * </ul>
+ * When a baseline is given and a benchmark got worse than the threshold the process exits with status 1, so the
+ * run can be used to fail a build.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public final class BenchmarkRunner {
+
+    private static final double DEFAULT_THRESHOLD = 10;
+
+    private BenchmarkRunner() {
+        throw new AssertionError( "Cannot instantiate BenchmarkRunner!" );
+    }
+
+    public static void main( String[] args ) throws RunnerException, IOException {
+        File save = null;
+        File baseline = null;
+        double threshold = DEFAULT_THRESHOLD;
+
+        List<String> jmhArgs = new ArrayList<>();
+        for ( int i = 0; i < args.length; i++ ) {
+            String arg = args[i];
+            if ( ( "-save".equals( arg ) || "-baseline".equals( arg ) || "-threshold".equals( arg ) ) && i + 1 == args.length ) {
+                System.err.println( "Missing value for " + arg );
+                System.exit( 2 );
+            }
+
+            switch ( arg ) {
+                case "-save":
+                    save = new File( args[++i] );
+                    break;
+                case "-baseline":
+                    baseline = new File( args[++i] );
+                    break;
+                case "-threshold":
+                    threshold = Double.parseDouble( args[++i] );
+                    break;
+                default:
+                    jmhArgs.add( arg );
+                    break;
+            }
+        }
+
+        CommandLineOptions options;
+        try {
+            options = new CommandLineOptions( jmhArgs.toArray( new String[jmhArgs.size()] ) );
+        } catch ( CommandLineOptionException e ) {
+            System.err.println( "Invalid JMH options: " + e.getMessage() );
+            System.exit( 2 );
+            return;
+        }
+
+        Collection<RunResult> results = new Runner( new OptionsBuilder().parent( options ).build() ).run();
+
+        Map<String, RunResult> scores = new TreeMap<>();
+        for ( RunResult result : results ) {
+            scores.put( getKey( result.getParams() ), result );
+        }
+
+        if ( save != null ) {
+            writeScores( save, scores );
+        }
+
+        if ( baseline != null && !compare( loadBaseline( baseline ), scores, threshold ) ) {
+            System.exit( 1 );
+        }
+    }
+
+    private static boolean compare( Properties baseline, Map<String, RunResult> scores, double threshold ) {
+        boolean passed = true;
+
+        System.out.println();
+        System.out.println( String.format( Locale.ROOT, "Comparison against baseline, threshold %.1f%%", threshold ) );
+        for ( Map.Entry<String, RunResult> entry : scores.entrySet() ) {
+            String value = baseline.getProperty( entry.getKey() );
+            if ( value == null ) {
+                System.out.println( "  NEW        " + entry.getKey() );
+                continue;
+            }
+
+            double before = Double.parseDouble( value );
+            double now = entry.getValue().getPrimaryResult().getScore();
+
+            // Throughput gets worse when it goes down, all other modes measure time which gets worse when it goes up
+            double change = ( now - before ) / before * 100;
+            double regression = entry.getValue().getParams().getMode() == Mode.Throughput ? -change : change;
+
+            boolean regressed = regression > threshold;
+            if ( regressed ) {
+                passed = false;
+            }
+
+            System.out.println( String.format( Locale.ROOT, "  %-10s %s: %.3f -> %.3f %s (%+.1f%%)",
+                    regressed ? "REGRESSION" : "OK", entry.getKey(), before, now,
+                    entry.getValue().getPrimaryResult().getScoreUnit(), change ) );
+        }
+
+        for ( String key : baseline.stringPropertyNames() ) {
+            if ( !scores.containsKey( key ) ) {
+                System.out.println( "  MISSING    " + key );
+            }
+        }
+
+        return passed;
+    }
+
+    private static Properties loadBaseline( File file ) throws IOException {
+        Properties properties = new Properties();
+        try ( InputStream input = new FileInputStream( file ) ) {
+            properties.load( input );
+        }
+
+        return properties;
+    }
+
+    private static void writeScores( File file, Map<String, RunResult> scores ) throws IOException {
+        try ( PrintWriter writer = new PrintWriter( file, "UTF-8" ) ) {
+            writer.println( "# GoMint benchmark baseline, " + System.getProperty( "java.version" ) + " on " + System.getProperty( "os.name" ) );
+            for ( Map.Entry<String, RunResult> entry : scores.entrySet() ) {
+                writer.println( "# " + entry.getValue().getPrimaryResult().getScoreUnit() );
+                writer.println( escape( entry.getKey() ) + "=" + String.format( Locale.ROOT, "%.6f", entry.getValue().getPrimaryResult().getScore() ) );
+            }
+        }
+    }
+
+    private static String getKey( BenchmarkParams params ) {
+        StringBuilder key = new StringBuilder( params.getBenchmark() );
+        for ( String param : params.getParamsKeys() ) {
+            key.append( ',' ).append( param ).append( '=' ).append( params.getParam( param ) );
+        }
+
+        return key.toString();
+    }
+
+    private static String escape( String key ) {
+        return key.replace( "=", "\\=" ).replace( ":", "\\:" );
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.entity.pathfinding;
+
+import io.gomint.math.Location;
+import io.gomint.server.entity.component.TransformComponent;
+import io.gomint.server.util.IntTriple;
+import io.gomint.server.world.BenchmarkWorld;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures searching a path over flat land which is scattered with pillars the path has to walk around, capturing
+ * the snapshot such a search needs on the entity tick and asking an engine for a path it has cached.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class PathfindingBenchmark {
+
+    @Param( { "16", "48" } )
+    private int distance;
+
+    private BenchmarkWorld world;
+    private PathfindingSnapshot snapshot;
+    private PathSearch search;
+    private PathfindingEngine engine;
+    private Location goal;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        this.world = new BenchmarkWorld( 1, 24 );
+        this.world.prepareArea( ( this.distance >> 4 ) + 2 );
+
+        this.snapshot = this.captureSnapshot();
+        this.search = new PathSearch();
+
+        TransformComponent transform = new TransformComponent();
+        transform.setPosition( 0.5f, BenchmarkWorld.GROUND, 0.5f );
+
+        this.engine = new PathfindingEngine( transform );
+        this.goal = new Location( this.world, this.distance + 0.5f, BenchmarkWorld.GROUND, ( this.distance >> 1 ) + 0.5f );
+        this.engine.setGoal( this.goal );
+        this.engine.getPath();
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() {
+        this.world.getPathfindingScheduler().close();
+    }
+
+    @Benchmark
+    public List<IntTriple> findPath() {
+        return this.search.search( this.snapshot, 0, BenchmarkWorld.GROUND, 0, this.distance, BenchmarkWorld.GROUND,
+                this.distance >> 1, PathRequest.MAXIMUM_NODES_TO_EXPLORE );
+    }
+
+    @Benchmark
+    public PathfindingSnapshot captureSnapshot() {
+        return PathfindingSnapshot.capture( this.world, 0, BenchmarkWorld.GROUND, 0, this.distance, BenchmarkWorld.GROUND,
+                this.distance >> 1, 16 );
+    }
+
+    @Benchmark
+    public List<IntTriple> cachedPath() {
+        // The snapshot of the last search is still current, so the engine only has to verify it
+        this.engine.setGoal( this.goal );
+        return this.engine.getPath();
+    }
+
+}
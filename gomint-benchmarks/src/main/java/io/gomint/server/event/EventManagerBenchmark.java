@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.event;
+
+import io.gomint.event.CancellableEvent;
+import io.gomint.event.Event;
+import io.gomint.event.EventHandler;
+import io.gomint.event.EventListener;
+import io.gomint.event.EventPriority;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures calling an event which has either a single handler or eight handlers of different priorities,
+ * including one for a super class of the event.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class EventManagerBenchmark {
+
+    @Param( { "1", "8" } )
+    private int handlers;
+
+    private EventManager eventManager;
+    private BenchmarkEvent event;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        this.eventManager = new EventManager();
+        this.eventManager.registerListener( this.handlers == 1 ? new SingleListener() : new ManyListener() );
+        this.event = new BenchmarkEvent();
+    }
+
+    @Benchmark
+    public boolean triggerEvent() {
+        this.event.setCancelled( false );
+        this.eventManager.triggerEvent( this.event );
+        return this.event.isCancelled();
+    }
+
+    public static class BenchmarkEvent extends CancellableEvent {
+
+        private int calls;
+
+    }
+
+    public static class SingleListener implements EventListener {
+
+        @EventHandler
+        public void onEvent( BenchmarkEvent event ) {
+            event.calls++;
+        }
+
+    }
+
+    public static class ManyListener implements EventListener {
+
+        @EventHandler( priority = EventPriority.LOWEST )
+        public void onLowest( BenchmarkEvent event ) {
+            event.calls++;
+        }
+
+        @EventHandler( priority = EventPriority.LOW )
+        public void onLow( BenchmarkEvent event ) {
+            event.calls++;
+        }
+
+        @EventHandler
+        public void onNormal( BenchmarkEvent event ) {
+            event.calls++;
+        }
+
+        @EventHandler
+        public void onAnyEvent( Event event ) {
+            if ( event instanceof BenchmarkEvent ) {
+                ( (BenchmarkEvent) event ).calls++;
+            }
+        }
+
+        @EventHandler
+        public void onNormalAgain( BenchmarkEvent event ) {
+            event.calls++;
+        }
+
+        @EventHandler( priority = EventPriority.HIGH )
+        public void onHigh( BenchmarkEvent event ) {
+            event.setCancelled( true );
+        }
+
+        @EventHandler( priority = EventPriority.HIGHEST )
+        public void onHighest( BenchmarkEvent event ) {
+            event.calls++;
+        }
+
+        @EventHandler( priority = EventPriority.HIGHEST, ignoreCancelled = true )
+        public void onHighestIgnoreCancelled( BenchmarkEvent event ) {
+            event.calls++;
+        }
+
+    }
+
+}
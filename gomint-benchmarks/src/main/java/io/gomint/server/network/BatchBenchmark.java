@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.jraknet.PacketBuffer;
+import io.gomint.server.config.ConnectionConfig;
+import io.gomint.server.network.packet.Packet;
+import io.gomint.server.network.packet.PacketBatch;
+import io.gomint.server.network.packet.PacketEntityMovement;
+import io.gomint.server.util.BatchUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures batching movement packets like the entity tick does and decoding such a batch again like the
+ * connection does for incoming batches. The batch is compressed with the given level, small batches stay
+ * below the default compression threshold and get stored.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class BatchBenchmark {
+
+    @Param( { "1", "16", "256" } )
+    private int packets;
+
+    @Param( { "1", "6", "9" } )
+    private int compressionLevel;
+
+    private List<Packet> packetList;
+    private byte[] payload;
+    private BatchDecoder decoder;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        BatchUtil.configure( new ConnectionConfig() );
+        BatchUtil.setCompressionLevel( PacketEntityMovement.class, this.compressionLevel );
+
+        Random random = new Random( 1 );
+        this.packetList = new ArrayList<>( this.packets );
+        for ( int i = 0; i < this.packets; i++ ) {
+            PacketEntityMovement movement = new PacketEntityMovement();
+            movement.setEntityId( i + 1 );
+            movement.setX( random.nextFloat() * 256 );
+            movement.setY( 4 + random.nextFloat() );
+            movement.setZ( random.nextFloat() * 256 );
+            movement.setYaw( random.nextFloat() * 360 );
+            movement.setHeadYaw( random.nextFloat() * 360 );
+            movement.setPitch( random.nextFloat() * 180 - 90 );
+            this.packetList.add( movement );
+        }
+
+        this.payload = BatchUtil.batch( null, this.packetList ).getPayload();
+        this.decoder = new BatchDecoder();
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() {
+        this.decoder.close();
+    }
+
+    @Benchmark
+    public PacketBatch batch() {
+        return BatchUtil.batch( null, this.packetList );
+    }
+
+    @Benchmark
+    public void decode( Blackhole blackhole ) {
+        if ( !this.decoder.decode( this.payload, 0, this.payload.length ) ) {
+            throw new IllegalStateException( "Fixture batch could not be decoded" );
+        }
+
+        PacketBuffer payloadBuffer = this.decoder.getPayload();
+        while ( payloadBuffer.getRemaining() > 0 ) {
+            int packetLength = payloadBuffer.readUnsignedVarInt();
+            PacketBuffer packetBuffer = this.decoder.slicePacket( payloadBuffer, packetLength );
+            blackhole.consume( packetBuffer.readByte() );
+        }
+    }
+
+}
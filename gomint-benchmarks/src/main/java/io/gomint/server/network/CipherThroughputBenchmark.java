@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.server.network.cipher.CipherBackend;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many megabytes one thread can encrypt or decrypt per second with each cipher backend, including
+ * the checksums. Every operation processes 1 MiB in batches of the given size, so the score in ops/s is MiB/s
+ * per core.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class CipherThroughputBenchmark {
+
+    private static final int MEBIBYTE = 1 << 20;
+
+    @Param( { "JDK", "BOUNCY_CASTLE" } )
+    private CipherBackend backend;
+
+    @Param( { "256", "4096", "65536" } )
+    private int size;
+
+    private EncryptionHandler encryptionHandler;
+    private byte[] input;
+    private byte[] output;
+    private byte[] incoming;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        Random random = new Random( 1 );
+        byte[] key = new byte[32];
+        random.nextBytes( key );
+
+        this.encryptionHandler = new EncryptionHandler( null, this.backend );
+        if ( !this.encryptionHandler.initializeCiphers( key ) ) {
+            throw new IllegalStateException( this.backend + " can not be used on this JVM" );
+        }
+
+        this.input = new byte[this.size];
+        random.nextBytes( this.input );
+        this.output = new byte[this.encryptionHandler.getEncryptedLength( this.size )];
+        this.incoming = new byte[this.encryptionHandler.getEncryptedLength( this.size )];
+        random.nextBytes( this.incoming );
+    }
+
+    @Benchmark
+    public int encrypt() {
+        int written = 0;
+        for ( int i = 0; i < MEBIBYTE / this.size; i++ ) {
+            written += this.encryptionHandler.encryptInputForClient( this.input, 0, this.input.length, this.output, 0 );
+        }
+
+        return written;
+    }
+
+    @Benchmark
+    public int decrypt() {
+        // The checksum never matches random data, it is computed completely nevertheless
+        int read = 0;
+        for ( int i = 0; i < MEBIBYTE / this.size; i++ ) {
+            read += this.encryptionHandler.decryptInputFromClient( this.incoming, 0, this.incoming.length );
+        }
+
+        return read;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encryption of outgoing and the decryption of incoming batches. The client key pair is generated
+ * locally. Decryption runs over random data so its checksum never matches, which costs the same as a valid
+ * packet since the checksum is always computed completely.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class EncryptionBenchmark {
+
+    @Param( { "256", "4096", "65536" } )
+    private int size;
+
+    private EncryptionHandler encryptionHandler;
+    private byte[] input;
+    private byte[] output;
+    private byte[] incoming;
+
+    @Setup( Level.Trial )
+    public void setup() throws Exception {
+        // The key factory registers BouncyCastle, so it needs to exist before the client key gets generated
+        EncryptionKeyFactory keyFactory = new EncryptionKeyFactory( true );
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance( "EC", "BC" );
+        generator.initialize( 384 );
+        KeyPair clientKeyPair = generator.generateKeyPair();
+
+        this.encryptionHandler = new EncryptionHandler( keyFactory );
+        this.encryptionHandler.supplyClientKey( (ECPublicKey) clientKeyPair.getPublic() );
+        if ( !this.encryptionHandler.beginClientsideEncryption() ) {
+            throw new IllegalStateException( "Could not setup encryption" );
+        }
+
+        Random random = new Random( 1 );
+        this.input = new byte[this.size];
+        random.nextBytes( this.input );
+        this.output = new byte[this.encryptionHandler.getEncryptedLength( this.size )];
+        this.incoming = new byte[this.encryptionHandler.getEncryptedLength( this.size )];
+        random.nextBytes( this.incoming );
+    }
+
+    @Benchmark
+    public int encrypt() {
+        return this.encryptionHandler.encryptInputForClient( this.input, 0, this.input.length, this.output, 0 );
+    }
+
+    @Benchmark
+    public int decrypt() {
+        // Decrypting in place turns the data into other random data, so the array can be reused
+        return this.encryptionHandler.decryptInputFromClient( this.incoming, 0, this.incoming.length );
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.server.world.BenchmarkWorld;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets a storm of headless players join at the spawn of a world and ticks them until all of them have been spawned.
+ * Chunks are loaded and packaged by the I/O workers of the world, players who have been spawned keep streaming the
+ * rest of their view distance and compete with the ones who still wait. The score is the time until the last
+ * player has been spawned, the time to spawn of every single player is printed as p50 and p99 after each
+ * iteration.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class JoinStormBenchmark {
+
+    private static final int JOINS_PER_TICK = 20;
+
+    @Param( { "50", "200" } )
+    private int players;
+
+    private BenchmarkWorld world;
+    private List<SyntheticPlayer> joined;
+    private long[] timesToSpawn;
+    private int spawned;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        this.world = new BenchmarkWorld( 1, 8 );
+        this.world.prepareArea( this.world.getServer().getServerConfig().getViewDistance() + 2 );
+    }
+
+    @Setup( Level.Iteration )
+    public void startStorm() {
+        this.joined = new ArrayList<>( this.players );
+        this.timesToSpawn = new long[this.players];
+        this.spawned = 0;
+    }
+
+    @TearDown( Level.Iteration )
+    public void endStorm() {
+        for ( SyntheticPlayer player : this.joined ) {
+            this.world.removePlayer( player );
+            player.despawn();
+        }
+
+        Arrays.sort( this.timesToSpawn, 0, this.spawned );
+        System.out.println( String.format( Locale.ROOT, "time to spawn of %d players: p50 %.3f ms, p99 %.3f ms",
+                this.spawned, this.percentile( 0.5 ), this.percentile( 0.99 ) ) );
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() {
+        this.world.getPathfindingScheduler().close();
+    }
+
+    @Benchmark
+    public int joinStorm() {
+        while ( this.spawned < this.players ) {
+            // Players arrive like they do after their logins have been verified
+            int end = Math.min( this.players, this.joined.size() + JOINS_PER_TICK );
+            while ( this.joined.size() < end ) {
+                SyntheticPlayer player = new SyntheticPlayer( this.world, "Join" + this.joined.size(), PlayerConnectionState.LOGIN );
+                player.getConnection().sendWorldInitialization();
+                this.world.addPlayer( player );
+                this.joined.add( player );
+            }
+
+            // World tick, then the network tick of every player
+            this.world.resolveChunkRequests();
+            for ( SyntheticPlayer player : this.joined ) {
+                PlayerConnection connection = player.getConnection();
+                boolean waiting = connection.getState() == PlayerConnectionState.LOGIN;
+
+                connection.getChunkTracker().tick( player, 0 );
+                player.discardQueuedPackets();
+
+                if ( waiting && connection.getState() == PlayerConnectionState.PLAYING ) {
+                    this.timesToSpawn[this.spawned++] = connection.getChunkTracker().getTimeToSpawn();
+                }
+            }
+        }
+
+        return this.spawned;
+    }
+
+    private double percentile( double percentile ) {
+        if ( this.spawned == 0 ) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil( percentile * this.spawned ) - 1;
+        return this.timesToSpawn[Math.max( 0, index )] / 1e6;
+    }
+
+}
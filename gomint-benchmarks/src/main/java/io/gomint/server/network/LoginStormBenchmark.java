@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.server.async.Delegate;
+import io.gomint.server.jwt.JwtAlgorithm;
+import io.gomint.server.jwt.JwtSignatureException;
+import io.gomint.server.player.PlayerSkin;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the main thread ticks while 200 players log in within half a second. The logins carry a complete
+ * signed chain, a signed skin and the server has encryption enabled, so verifying one costs as much as a real
+ * one. With <code>main-thread</code> every login is verified inside of the tick like it used to be, with
+ * <code>workers</code> the tick only hands the logins to a {@link LoginVerifier} and picks up the results. Each
+ * measured operation is one tick, the interesting value is the longest tick (p1.00) of both runs.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class LoginStormBenchmark {
+
+    private static final int LOGINS = 200;
+    private static final int LOGINS_PER_TICK = 20;
+
+    @Param( { "main-thread", "workers" } )
+    private String verification;
+
+    @Param( { "2" } )
+    private int threads;
+
+    private BenchmarkKeyFactory keyFactory;
+    private byte[][] payloads;
+    private ExecutorService executorService;
+    private LoginVerifier verifier;
+
+    private int arrived;
+    private int completed;
+    private final Delegate<LoginVerification> callback = new Delegate<LoginVerification>() {
+        @Override
+        public void invoke( LoginVerification arg ) {
+            if ( !arg.isValidChain() || !arg.isValidSkin() || arg.getEncryptionHandler() == null ) {
+                throw new IllegalStateException( "Benchmark login did not verify" );
+            }
+
+            completed++;
+        }
+    };
+
+    @Setup( Level.Trial )
+    public void setup() throws GeneralSecurityException, JwtSignatureException {
+        this.keyFactory = new BenchmarkKeyFactory();
+
+        KeyPair intermediate = generateKeyPair();
+        this.payloads = new byte[LOGINS][];
+        for ( int i = 0; i < LOGINS; i++ ) {
+            this.payloads[i] = createPayload( this.keyFactory.root, intermediate, "Player" + i );
+        }
+
+        if ( "workers".equals( this.verification ) ) {
+            this.executorService = Executors.newCachedThreadPool();
+            this.verifier = new LoginVerifier( this.keyFactory, this.executorService, this.threads, LOGINS );
+        }
+    }
+
+    @Setup( Level.Iteration )
+    public void startStorm() {
+        this.arrived = 0;
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() {
+        if ( this.verifier != null ) {
+            this.verifier.close();
+            this.executorService.shutdown();
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        int end = Math.min( LOGINS, this.arrived + LOGINS_PER_TICK );
+        for ( ; this.arrived < end; this.arrived++ ) {
+            if ( this.verifier != null ) {
+                this.verifier.verify( this.payloads[this.arrived], this.callback );
+            } else {
+                LoginVerification login = new LoginVerification( this.keyFactory, this.payloads[this.arrived], this.callback );
+                login.run();
+                this.callback.invoke( login );
+            }
+        }
+
+        if ( this.verifier != null ) {
+            this.verifier.resolveCompleted();
+        }
+
+        return this.completed;
+    }
+
+    private static byte[] createPayload( KeyPair root, KeyPair intermediate, String name ) throws GeneralSecurityException, JwtSignatureException {
+        KeyPair client = generateKeyPair();
+
+        // Same layout Mojang uses: the client introduces the root key, the root trusts an intermediate key which
+        // vouches for the identity of the client
+        JSONObject selfSigned = new JSONObject();
+        selfSigned.put( "certificateAuthority", true );
+        selfSigned.put( "identityPublicKey", encodeKey( root.getPublic() ) );
+
+        JSONObject rootSigned = new JSONObject();
+        rootSigned.put( "certificateAuthority", true );
+        rootSigned.put( "identityPublicKey", encodeKey( intermediate.getPublic() ) );
+
+        JSONObject extraData = new JSONObject();
+        extraData.put( "displayName", name );
+        extraData.put( "identity", UUID.nameUUIDFromBytes( name.getBytes( StandardCharsets.UTF_8 ) ).toString() );
+        extraData.put( "XUID", "0" );
+
+        JSONObject identity = new JSONObject();
+        identity.put( "identityPublicKey", encodeKey( client.getPublic() ) );
+        identity.put( "extraData", extraData );
+
+        JSONArray chain = new JSONArray();
+        chain.add( createToken( client, selfSigned ) );
+        chain.add( createToken( root, rootSigned ) );
+        chain.add( createToken( intermediate, identity ) );
+
+        JSONObject chainJson = new JSONObject();
+        chainJson.put( "chain", chain );
+
+        JSONObject skin = new JSONObject();
+        skin.put( "SkinId", "Standard_Custom" );
+        skin.put( "SkinData", Base64.getEncoder().encodeToString( new byte[PlayerSkin.SKIN_DATA_SIZE_STEVE] ) );
+
+        byte[] chainBytes = chainJson.toJSONString().getBytes( StandardCharsets.UTF_8 );
+        byte[] skinBytes = createToken( client, skin ).getBytes( StandardCharsets.UTF_8 );
+
+        ByteBuffer payload = ByteBuffer.allocate( 8 + chainBytes.length + skinBytes.length ).order( ByteOrder.LITTLE_ENDIAN );
+        payload.putInt( chainBytes.length ).put( chainBytes );
+        payload.putInt( skinBytes.length ).put( skinBytes );
+        return payload.array();
+    }
+
+    private static String createToken( KeyPair signer, JSONObject claims ) throws JwtSignatureException {
+        JSONObject header = new JSONObject();
+        header.put( "alg", JwtAlgorithm.ES384.getJwtName() );
+        header.put( "x5u", encodeKey( signer.getPublic() ) );
+
+        Base64.Encoder encoder = Base64.getEncoder();
+        String content = encoder.encodeToString( header.toJSONString().getBytes( StandardCharsets.UTF_8 ) ) + '.' +
+                encoder.encodeToString( claims.toJSONString().getBytes( StandardCharsets.UTF_8 ) );
+
+        byte[] signature = JwtAlgorithm.ES384.getSignature().sign( signer.getPrivate(), content.getBytes( StandardCharsets.US_ASCII ) );
+        return content + '.' + Base64.getUrlEncoder().withoutPadding().encodeToString( signature );
+    }
+
+    private static String encodeKey( PublicKey key ) {
+        return Base64.getEncoder().encodeToString( key.getEncoded() );
+    }
+
+    private static KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance( "EC", "BC" );
+        generator.initialize( 384 );
+        return generator.generateKeyPair();
+    }
+
+    /**
+     * Trusts a root key of the benchmark instead of the one of Mojang, so the chains can be signed
+     */
+    private static final class BenchmarkKeyFactory extends EncryptionKeyFactory {
+
+        private final KeyPair root;
+        private final String rootBase64;
+
+        private BenchmarkKeyFactory() throws GeneralSecurityException {
+            super( true );
+            this.root = generateKeyPair();
+            this.rootBase64 = encodeKey( this.root.getPublic() );
+        }
+
+        @Override
+        public String getMojangRootKeyBase64() {
+            return this.rootBase64;
+        }
+
+        @Override
+        public PublicKey getMojangRootKey() {
+            return this.root.getPublic();
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.jraknet.PacketReliability;
+import io.gomint.server.entity.AttributeInstance;
+import io.gomint.server.entity.EntityPlayer;
+import io.gomint.server.network.packet.Packet;
+import io.gomint.server.network.packet.PacketBatch;
+import io.gomint.server.world.WorldAdapter;
+
+import java.util.UUID;
+
+/**
+ * A player without a client. Its connection has no RakNet connection behind it: packets which are sent directly
+ * are dropped, the network tick never runs so queued packets have to be discarded by the benchmark and attribute
+ * updates are dropped. Chunks are only sent when the benchmark ticks the chunk tracker of the connection.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class SyntheticPlayer extends EntityPlayer {
+
+    /**
+     * Create a new player which can be spawned into the given world
+     *
+     * @param world The world of the player
+     * @param name  The name of the player
+     */
+    public SyntheticPlayer( WorldAdapter world, String name ) {
+        this( world, name, PlayerConnectionState.PLAYING );
+    }
+
+    /**
+     * Create a new player whose connection is in the given state
+     *
+     * @param world The world of the player
+     * @param name  The name of the player
+     * @param state The state of the connection, use {@link PlayerConnectionState#LOGIN} for players which still
+     *              need to be spawned
+     */
+    public SyntheticPlayer( WorldAdapter world, String name, PlayerConnectionState state ) {
+        super( world, new HeadlessConnection( new NetworkManager( world.getServer() ), state ), name, UUID.nameUUIDFromBytes( name.getBytes() ) );
+        this.getConnection().setEntity( this );
+
+        // Players get their inventory before they are added to a world
+        this.fullyInit();
+    }
+
+    /**
+     * Drop everything which has been queued for this player since the last call
+     *
+     * @return amount of packets which would have been sent
+     */
+    public int discardQueuedPackets() {
+        return this.getConnection().discardSendQueue();
+    }
+
+    @Override
+    public void updateAttributes() {
+        for ( AttributeInstance instance : this.attributes.values() ) {
+            instance.isDirty();
+        }
+    }
+
+    /**
+     * Connection which drops everything that would go over the wire
+     */
+    private static final class HeadlessConnection extends PlayerConnection {
+
+        private HeadlessConnection( NetworkManager networkManager, PlayerConnectionState state ) {
+            super( networkManager, null, state );
+        }
+
+        @Override
+        public void send( Packet packet ) {
+            // There is no client
+        }
+
+        @Override
+        public void send( PacketReliability reliability, int orderingChannel, Packet packet ) {
+            // There is no client
+        }
+
+        @Override
+        public void sendSharedBatch( PacketBatch batch ) {
+            // There is no client
+        }
+
+    }
+
+}
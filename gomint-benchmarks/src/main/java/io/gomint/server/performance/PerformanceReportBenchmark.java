@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.performance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a simulated tick with the report enabled and disabled. The tick has the spans of one world with 64
+ * shards: network and sync tasks, the chunk cache, light and three sections per shard, 200 spans in total.
+ * The difference between both runs is the overhead of the profiler, the sample interval of the server config
+ * keeps it below 1% while timing every tick shows the cost of a single timed tick.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class PerformanceReportBenchmark {
+
+    private static final int SHARDS = 64;
+    private static final Section[] SHARD_SECTIONS = { Section.RANDOM_TICKS, Section.BLOCK_UPDATES, Section.ENTITIES };
+
+    @Param( { "false", "true" } )
+    private boolean enabled;
+
+    @Param( { "1", "10" } )
+    private int sampleInterval;
+
+    /**
+     * Work done inside of each span, 1000 tokens are roughly 2 microseconds
+     */
+    @Param( { "1000" } )
+    private long tokensPerSpan;
+
+    private PeformanceReport report;
+    private int worldSlot;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        this.report = new PeformanceReport( this.enabled, PeformanceReport.DEFAULT_CAPACITY, this.sampleInterval );
+        this.worldSlot = this.report.registerWorld( "benchmark" );
+    }
+
+    @Benchmark
+    public void tick() {
+        this.report.startTick( 0 );
+
+        long start = this.report.begin();
+        start = this.span( Section.NETWORK, start );
+        this.span( Section.SYNC_TASKS, start );
+
+        // Spans which follow each other are chained like the world and the shards do it
+        long worldStart = this.report.begin();
+        this.span( Section.CHUNK_CACHE, worldStart );
+        for ( int i = 0; i < SHARDS; i++ ) {
+            start = this.report.begin();
+            for ( Section section : SHARD_SECTIONS ) {
+                start = this.span( section, start );
+            }
+        }
+
+        start = this.report.begin();
+        start = this.span( Section.LIGHT, start );
+        this.span( Section.CHUNK_CACHE, start );
+        this.report.endWorld( this.worldSlot, worldStart );
+
+        this.report.endTick();
+    }
+
+    private long span( Section section, long start ) {
+        Blackhole.consumeCPU( this.tokensPerSpan );
+        return this.report.end( section, start );
+    }
+
+}
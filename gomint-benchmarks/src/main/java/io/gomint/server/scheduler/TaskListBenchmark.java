@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.scheduler;
+
+import io.gomint.server.util.LongList;
+import io.gomint.server.util.TimingWheel;
+import io.gomint.server.world.TickList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the timing wheel backed {@link TaskList} and {@link TickList} against the sorted linked lists which
+ * have been used before. Every invocation schedules the given amount of elements spread over the delays,
+ * cancels a tenth of the tasks and drains everything tick by tick like the server does.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class TaskListBenchmark {
+
+    @Param( { "100", "1000", "10000" } )
+    private int elements;
+
+    @Param( { "20", "6000" } )
+    private int maxDelay;
+
+    private long[] keys;
+    private Object[] tasks;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        Random random = new Random( 1 );
+        this.keys = new long[this.elements];
+        this.tasks = new Object[this.elements];
+        for ( int i = 0; i < this.elements; i++ ) {
+            this.keys[i] = 1 + random.nextInt( this.maxDelay );
+            this.tasks[i] = new Object();
+        }
+    }
+
+    @Benchmark
+    public void taskListWheel( Blackhole blackhole ) {
+        TaskList<Object> taskList = new TaskList<>();
+        List<TimingWheel.Node<Object>> nodes = new ArrayList<>( this.elements / 10 );
+        for ( int i = 0; i < this.elements; i++ ) {
+            TimingWheel.Node<Object> node = taskList.add( this.keys[i], this.tasks[i] );
+            if ( i % 10 == 0 ) {
+                nodes.add( node );
+            }
+        }
+
+        for ( TimingWheel.Node<Object> node : nodes ) {
+            node.cancel();
+        }
+
+        List<Object> due = new ArrayList<>();
+        for ( long tick = 1; tick <= this.maxDelay + 1; tick++ ) {
+            taskList.drainUntil( tick, due );
+            for ( Object task : due ) {
+                blackhole.consume( task );
+            }
+
+            due.clear();
+        }
+    }
+
+    @Benchmark
+    public void taskListSorted( Blackhole blackhole ) {
+        SortedTaskList<Object> taskList = new SortedTaskList<>();
+        for ( int i = 0; i < this.elements; i++ ) {
+            taskList.add( this.keys[i], this.tasks[i] );
+        }
+
+        for ( int i = 0; i < this.elements; i += 10 ) {
+            taskList.remove( this.tasks[i] );
+        }
+
+        for ( long tick = 1; tick <= this.maxDelay + 1; tick++ ) {
+            while ( taskList.getNextTaskTime() < tick ) {
+                blackhole.consume( taskList.getNextElement() );
+            }
+        }
+    }
+
+    @Benchmark
+    public void tickListWheel( Blackhole blackhole ) {
+        TickList tickList = new TickList();
+        for ( int i = 0; i < this.elements; i++ ) {
+            tickList.add( this.keys[i], i );
+        }
+
+        LongList due = new LongList();
+        for ( long tick = 1; tick <= this.maxDelay + 1; tick++ ) {
+            tickList.drainUntil( tick, due );
+            for ( int i = 0; i < due.size(); i++ ) {
+                blackhole.consume( due.get( i ) );
+            }
+
+            due.clear();
+        }
+    }
+
+    @Benchmark
+    public void tickListSorted( Blackhole blackhole ) {
+        SortedTaskList<Long> tickList = new SortedTaskList<>();
+        for ( int i = 0; i < this.elements; i++ ) {
+            tickList.add( this.keys[i], (long) i );
+        }
+
+        for ( long tick = 1; tick <= this.maxDelay + 1; tick++ ) {
+            while ( tickList.getNextTaskTime() < tick ) {
+                blackhole.consume( tickList.getNextElement() );
+            }
+        }
+    }
+
+    /**
+     * The sorted singly linked list which backed both lists before, one bucket per key
+     */
+    private static final class SortedTaskList<T> {
+
+        private Bucket<T> head;
+
+        synchronized void add( long key, T element ) {
+            Element<T> node = new Element<>( element );
+
+            Bucket<T> bucket = this.head;
+            Bucket<T> previous = null;
+            while ( bucket != null && bucket.key < key ) {
+                previous = bucket;
+                bucket = bucket.next;
+            }
+
+            if ( bucket != null && bucket.key == key ) {
+                bucket.tail.next = node;
+                bucket.tail = node;
+                return;
+            }
+
+            Bucket<T> newBucket = new Bucket<>( key, node );
+            newBucket.next = bucket;
+            if ( previous != null ) {
+                previous.next = newBucket;
+            } else {
+                this.head = newBucket;
+            }
+        }
+
+        synchronized long getNextTaskTime() {
+            return this.head != null ? this.head.key : Long.MAX_VALUE;
+        }
+
+        synchronized T getNextElement() {
+            if ( this.head == null ) {
+                return null;
+            }
+
+            Element<T> node = this.head.head;
+            this.head.head = node.next;
+            if ( this.head.head == null ) {
+                this.head = this.head.next;
+            }
+
+            return node.element;
+        }
+
+        synchronized void remove( T element ) {
+            Bucket<T> previousBucket = null;
+            for ( Bucket<T> bucket = this.head; bucket != null; bucket = bucket.next ) {
+                Element<T> previous = null;
+                for ( Element<T> node = bucket.head; node != null; node = node.next ) {
+                    if ( node.element.equals( element ) ) {
+                        if ( previous != null ) {
+                            previous.next = node.next;
+                        } else {
+                            bucket.head = node.next;
+                        }
+
+                        if ( bucket.tail == node ) {
+                            bucket.tail = previous;
+                        }
+                    } else {
+                        previous = node;
+                    }
+                }
+
+                if ( bucket.head == null ) {
+                    if ( previousBucket != null ) {
+                        previousBucket.next = bucket.next;
+                    } else {
+                        this.head = bucket.next;
+                    }
+                } else {
+                    previousBucket = bucket;
+                }
+            }
+        }
+
+        private static final class Bucket<T> {
+            private final long key;
+            private Bucket<T> next;
+            private Element<T> head;
+            private Element<T> tail;
+
+            private Bucket( long key, Element<T> node ) {
+                this.key = key;
+                this.head = node;
+                this.tail = node;
+            }
+        }
+
+        private static final class Element<T> {
+            private final T element;
+            private Element<T> next;
+
+            private Element( T element ) {
+                this.element = element;
+            }
+        }
+
+    }
+
+}
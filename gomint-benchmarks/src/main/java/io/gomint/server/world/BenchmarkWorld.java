@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.math.Location;
+import io.gomint.server.GoMintServer;
+import io.gomint.server.config.ServerConfig;
+import io.gomint.server.world.block.Blocks;
+import io.gomint.server.world.generator.FlatGenerator;
+import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * A world which only lives in memory. Chunks are flat grass land with a seeded scattering of two block high
+ * stone pillars, so benchmarks which walk through the world always see the same terrain. Nothing gets saved.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class BenchmarkWorld extends WorldAdapter {
+
+    /**
+     * The y coordinate of the first air block above the ground
+     */
+    public static final int GROUND = 4;
+
+    private static final FlatGenerator GENERATOR = new FlatGenerator();
+
+    private final long seed;
+    private final int obstaclesPerChunk;
+
+    /**
+     * Create a new world for a server which has not been started
+     *
+     * @param seed              The seed which decides where the obstacles are
+     * @param obstaclesPerChunk The amount of pillars placed into every chunk
+     */
+    public BenchmarkWorld( long seed, int obstaclesPerChunk ) {
+        this( new GoMintServer( new ServerConfig() ), seed, obstaclesPerChunk );
+    }
+
+    /**
+     * Create a new world
+     *
+     * @param server            The server this world belongs to
+     * @param seed              The seed which decides where the obstacles are
+     * @param obstaclesPerChunk The amount of pillars placed into every chunk
+     */
+    public BenchmarkWorld( GoMintServer server, long seed, int obstaclesPerChunk ) {
+        super( server, new File( "benchmark" ) );
+        this.seed = seed;
+        this.obstaclesPerChunk = obstaclesPerChunk;
+        this.chunkCache = new ChunkCache( this );
+        this.levelName = "benchmark";
+        this.spawn = new Location( this, 0, GROUND, 0 );
+    }
+
+    /**
+     * Create all chunks in the given radius around the spawn chunk
+     *
+     * @param radius The radius in chunks
+     */
+    public void prepareArea( int radius ) {
+        for ( int x = -radius; x <= radius; x++ ) {
+            for ( int z = -radius; z <= radius; z++ ) {
+                this.loadChunk( x, z, true );
+            }
+        }
+    }
+
+    /**
+     * Hand out the chunks which have been loaded and packaged by the I/O workers, like the tick of the world does
+     */
+    public void resolveChunkRequests() {
+        this.getChunkIO().resolveCompletedRequests();
+    }
+
+    /**
+     * Create a chunk which is not part of this world. Its content is the same as the chunk at this position would
+     * have.
+     *
+     * @param x The x coordinate of the chunk
+     * @param z The z coordinate of the chunk
+     * @return a new filled chunk
+     */
+    public ChunkAdapter createDetachedChunk( int x, int z ) {
+        ChunkAdapter chunk = this.createChunk( x, z );
+        fill( chunk, this.seed, this.obstaclesPerChunk );
+        return chunk;
+    }
+
+    @Override
+    protected ChunkAdapter loadChunk( int x, int z, boolean generate ) {
+        ChunkAdapter chunk = this.getCachedChunk( x, z );
+        if ( chunk == null && generate ) {
+            chunk = this.createDetachedChunk( x, z );
+            this.chunkCache.putChunk( chunk );
+        }
+
+        return chunk;
+    }
+
+    @Override
+    protected void saveChunk( ChunkAdapter chunk ) {
+        // Nothing gets saved
+    }
+
+    @Override
+    protected boolean isChunkStored( int x, int z ) {
+        return false;
+    }
+
+    @Override
+    protected ChunkAdapter createChunk( int x, int z ) {
+        // The fields of the chunk would shadow the parameters inside of the initializer
+        final int chunkX = x;
+        final int chunkZ = z;
+        return new ChunkAdapter() {
+            {
+                this.world = BenchmarkWorld.this;
+                this.x = chunkX;
+                this.z = chunkZ;
+                this.entities = HashLongObjMaps.newMutableMap();
+                this.loadedTime = System.currentTimeMillis();
+            }
+        };
+    }
+
+    /**
+     * Fill the given chunk with the content a benchmark world with the given seed would have. The chunk does not
+     * need to belong to a world.
+     *
+     * @param chunk             The chunk which should be filled
+     * @param seed              The seed which decides where the obstacles are
+     * @param obstaclesPerChunk The amount of pillars placed into the chunk
+     */
+    public static void fill( ChunkAdapter chunk, long seed, int obstaclesPerChunk ) {
+        GeneratedChunk generatedChunk = new GeneratedChunk( chunk );
+        GENERATOR.generateNoise( generatedChunk );
+        GENERATOR.generateSurface( generatedChunk );
+
+        Random random = new Random( seed ^ CoordinateUtils.toLong( chunk.getX(), chunk.getZ() ) );
+        for ( int i = 0; i < obstaclesPerChunk; i++ ) {
+            int x = random.nextInt( 16 );
+            int z = random.nextInt( 16 );
+            chunk.setBlock( x, GROUND, z, Blocks.STONE.getBlockId() );
+            chunk.setBlock( x, GROUND + 1, z, Blocks.STONE.getBlockId() );
+        }
+
+        chunk.calculateHeightmap();
+        LightEngine.relightChunk( chunk );
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.async.Future;
+import io.gomint.server.world.generator.NormalGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Generates a spawn area with a radius of 16 chunks. The score is the time until the whole area has been generated,
+ * the heap the chunks retain once the generation is done is printed after each iteration.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ChunkMemoryBenchmark {
+
+    private static final int RADIUS = 16;
+
+    private ExecutorService executorService;
+    private ChunkGenerationScheduler scheduler;
+    private List<ChunkAdapter> chunks;
+    private long baseline;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        this.executorService = Executors.newCachedThreadPool();
+    }
+
+    @TearDown( Level.Trial )
+    public void teardown() {
+        this.executorService.shutdown();
+    }
+
+    @Setup( Level.Iteration )
+    public void startGeneration() throws InterruptedException {
+        this.chunks = null;
+        this.baseline = usedHeap();
+
+        ChunkGenerationScheduler.Backend backend = new ChunkGenerationScheduler.Backend() {
+            @Override
+            public boolean chunkExists( int x, int z ) {
+                return false;
+            }
+
+            @Override
+            public boolean isChunkLoaded( int x, int z ) {
+                return false;
+            }
+
+            @Override
+            public ChunkAdapter createChunk( int x, int z ) {
+                // The fields of the chunk would shadow the parameters inside of the initializer
+                final int chunkX = x;
+                final int chunkZ = z;
+                return new ChunkAdapter() {
+                    {
+                        this.x = chunkX;
+                        this.z = chunkZ;
+                    }
+                };
+            }
+
+            @Override
+            public void chunkGenerated( ChunkAdapter chunk ) {
+
+            }
+        };
+
+        this.scheduler = new ChunkGenerationScheduler( "benchmark", backend, new NormalGenerator( 1337 ),
+                this.executorService, Runtime.getRuntime().availableProcessors() );
+    }
+
+    @TearDown( Level.Iteration )
+    public void endGeneration() throws InterruptedException {
+        // Chunks around the area which have only been generated half way are not part of it
+        this.scheduler.close();
+        this.scheduler = null;
+
+        long retained = usedHeap() - this.baseline;
+
+        int slices = 0;
+        for ( ChunkAdapter chunk : this.chunks ) {
+            for ( ChunkSlice slice : chunk.getChunkSlices() ) {
+                if ( slice != null ) {
+                    slices++;
+                }
+            }
+        }
+
+        System.out.println( String.format( Locale.ROOT, "%d chunks with %d slices retain %.1f MB, %.1f KB per chunk",
+                this.chunks.size(), slices, retained / 1048576D, retained / 1024D / this.chunks.size() ) );
+    }
+
+    @Benchmark
+    public List<ChunkAdapter> generateSpawnArea() throws InterruptedException, ExecutionException, TimeoutException {
+        List<Future<ChunkAdapter>> futures = new ArrayList<>();
+        for ( int x = -RADIUS; x <= RADIUS; x++ ) {
+            for ( int z = -RADIUS; z <= RADIUS; z++ ) {
+                futures.add( this.scheduler.generate( x, z, Math.max( Math.abs( x ), Math.abs( z ) ) ) );
+            }
+        }
+
+        List<ChunkAdapter> generated = new ArrayList<>( futures.size() );
+        for ( Future<ChunkAdapter> future : futures ) {
+            generated.add( future.get( 5, TimeUnit.MINUTES ) );
+        }
+
+        this.chunks = generated;
+        return generated;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for ( int i = 0; i < 5; i++ ) {
+            System.gc();
+            Thread.sleep( 100 );
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.inventory.ItemStack;
+import io.gomint.inventory.Material;
+import io.gomint.server.entity.Entity;
+import io.gomint.server.entity.passive.EntityItem;
+import io.gomint.server.network.SyntheticPlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one entity tick of a world with synthetic players walking in circles between dropped items. Every
+ * tick moves the players, updates all entities and broadcasts the movements into the send queues of the players,
+ * which get discarded afterwards.
+ * <p>
+ * The players do not see each other and the items are spawned before the players, so the measured ticks only
+ * broadcast movements.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class EntityManagerBenchmark {
+
+    private static final int ITEMS_PER_PLAYER = 8;
+    private static final int AREA_RADIUS = 4;
+    private static final float DELTA = 0.05f;
+
+    @Param( { "10", "100" } )
+    private int players;
+
+    private EntityManager entityManager;
+    private List<SyntheticPlayer> playerList;
+    private float[] centers;
+    private long tick;
+
+    private final List<Entity> movedEntities = new ArrayList<>();
+    private final List<Entity> deadEntities = new ArrayList<>();
+
+    @Setup( Level.Trial )
+    public void setup() {
+        BenchmarkWorld world = new BenchmarkWorld( 1, 0 );
+        world.prepareArea( AREA_RADIUS );
+        this.entityManager = world.getEntityManager();
+
+        Random random = new Random( 1 );
+        int spread = AREA_RADIUS * 16 - 8;
+
+        for ( int i = 0; i < this.players * ITEMS_PER_PLAYER; i++ ) {
+            EntityItem item = new EntityItem( new ItemStack( Material.BRICK ), world );
+            item.lock();
+            world.spawnEntityAt( item, random.nextInt( spread * 2 ) - spread + 0.5f, BenchmarkWorld.GROUND, random.nextInt( spread * 2 ) - spread + 0.5f );
+        }
+
+        this.playerList = new ArrayList<>( this.players );
+        for ( int i = 0; i < this.players; i++ ) {
+            this.playerList.add( new SyntheticPlayer( world, "Benchmark" + i ) );
+        }
+
+        for ( SyntheticPlayer player : this.playerList ) {
+            for ( SyntheticPlayer other : this.playerList ) {
+                if ( player != other ) {
+                    player.hidePlayer( other );
+                }
+            }
+        }
+
+        this.centers = new float[this.players * 2];
+        for ( int i = 0; i < this.players; i++ ) {
+            this.centers[i * 2] = random.nextInt( spread * 2 ) - spread;
+            this.centers[i * 2 + 1] = random.nextInt( spread * 2 ) - spread;
+            world.spawnEntityAt( this.playerList.get( i ), this.centers[i * 2], BenchmarkWorld.GROUND, this.centers[i * 2 + 1] );
+        }
+    }
+
+    @Benchmark
+    public int tick() {
+        long currentTimeMS = ++this.tick * 50;
+
+        // Let every player walk a circle with a radius of four blocks
+        for ( int i = 0; i < this.players; i++ ) {
+            double angle = ( this.tick + i ) * 0.1;
+            this.playerList.get( i ).setPosition(
+                    this.centers[i * 2] + (float) Math.cos( angle ) * 4,
+                    BenchmarkWorld.GROUND,
+                    this.centers[i * 2 + 1] + (float) Math.sin( angle ) * 4 );
+        }
+
+        this.movedEntities.clear();
+        this.deadEntities.clear();
+
+        this.entityManager.startTick();
+        for ( Entity entity : this.entityManager.getEntities() ) {
+            this.entityManager.updateEntity( entity, currentTimeMS, DELTA, this.movedEntities, this.deadEntities );
+        }
+        this.entityManager.finishTick( this.movedEntities, this.deadEntities );
+
+        int packets = 0;
+        for ( SyntheticPlayer player : this.playerList ) {
+            packets += player.discardQueuedPackets();
+        }
+
+        return packets;
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.world.block.Blocks;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the light engine on flat chunks: placing and removing a torch on the border of two chunks and lighting a
+ * whole chunk from scratch.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class LightEngineBenchmark {
+
+    private static final int TORCH_X = 15;
+    private static final int TORCH_Y = BenchmarkWorld.GROUND;
+    private static final int TORCH_Z = 8;
+
+    private LightEngine engine;
+    private ChunkAdapter chunk;
+    private int torch;
+
+    @Setup( Level.Trial )
+    public void setup() {
+        BenchmarkWorld world = new BenchmarkWorld( 1, 0 );
+
+        final Map<Long, ChunkAdapter> chunks = new HashMap<>();
+        for ( int x = -1; x <= 1; x++ ) {
+            for ( int z = -1; z <= 1; z++ ) {
+                chunks.put( CoordinateUtils.toLong( x, z ), world.createDetachedChunk( x, z ) );
+            }
+        }
+
+        this.engine = new LightEngine( new LightEngine.ChunkSource() {
+            @Override
+            public ChunkAdapter getChunk( int x, int z ) {
+                return chunks.get( CoordinateUtils.toLong( x, z ) );
+            }
+        } );
+
+        this.chunk = chunks.get( CoordinateUtils.toLong( 0, 0 ) );
+        this.torch = Blocks.TORCH.getBlockId();
+    }
+
+    @Benchmark
+    public void placeAndRemoveTorch() {
+        this.chunk.setBlock( TORCH_X, TORCH_Y, TORCH_Z, this.torch );
+        this.engine.blockChanged( TORCH_X, TORCH_Y, TORCH_Z );
+        this.engine.processUpdates();
+
+        this.chunk.setBlock( TORCH_X, TORCH_Y, TORCH_Z, 0 );
+        this.engine.blockChanged( TORCH_X, TORCH_Y, TORCH_Z );
+        this.engine.processUpdates();
+    }
+
+    @Benchmark
+    public void relightChunk() {
+        LightEngine.relightChunk( this.chunk );
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.anvil;
+
+import io.gomint.server.world.BenchmarkWorld;
+import io.gomint.taglib.NBTStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Measures loading a chunk from the compressed NBT data a region file stores, like the region file does
+ * once it read the data from disk.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class AnvilChunkBenchmark {
+
+    private byte[] data;
+
+    @Setup( Level.Trial )
+    public void setup() throws IOException {
+        AnvilChunk chunk = new AnvilChunk( null, 0, 0 );
+        BenchmarkWorld.fill( chunk, 1, 8 );
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream( 8192 );
+        try ( DeflaterOutputStream dout = new DeflaterOutputStream( bout ) ) {
+            chunk.saveToNBT( dout );
+        }
+
+        this.data = bout.toByteArray();
+    }
+
+    @Benchmark
+    public AnvilChunk load() {
+        InflaterInputStream input = new InflaterInputStream( new ByteArrayInputStream( this.data ) );
+        return new AnvilChunk( null, new NBTStream( new BufferedInputStream( input ), ByteOrder.BIG_ENDIAN ) );
+    }
+
+}
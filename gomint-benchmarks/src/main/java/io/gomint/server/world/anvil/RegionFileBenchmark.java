@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.anvil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading and rewriting chunk data of a region file in the temp directory. Every slot of the region
+ * holds random data of the given amount of sectors, so rewriting a chunk never needs to move it.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 10 )
+@Fork( 1 )
+public class RegionFileBenchmark {
+
+    private static final int CHUNKS = 1024;
+
+    @Param( { "1", "4" } )
+    private int sectors;
+
+    private File file;
+    private RegionFile regionFile;
+    private byte[] data;
+    private int[] order;
+    private int position;
+
+    @Setup( Level.Trial )
+    public void setup() throws IOException {
+        Random random = new Random( 1 );
+
+        // Leave space for the length in the first sector
+        this.data = new byte[this.sectors * 4096 - 4];
+        random.nextBytes( this.data );
+        this.data[0] = 2;
+
+        this.file = File.createTempFile( "gomint-benchmark", ".mca" );
+        this.file.deleteOnExit();
+        this.regionFile = new RegionFile( null, this.file );
+        for ( int i = 0; i < CHUNKS; i++ ) {
+            this.regionFile.writeChunkData( i, this.data, this.data.length, 0 );
+        }
+
+        this.order = new int[CHUNKS];
+        for ( int i = 0; i < CHUNKS; i++ ) {
+            this.order[i] = random.nextInt( CHUNKS );
+        }
+    }
+
+    @TearDown( Level.Trial )
+    public void tearDown() throws IOException {
+        this.regionFile.close();
+        this.file.delete();
+    }
+
+    @Benchmark
+    public byte[] read() throws IOException {
+        return this.regionFile.readChunkData( this.nextIndex() );
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        this.regionFile.writeChunkData( this.nextIndex(), this.data, this.data.length, 0 );
+    }
+
+    private int nextIndex() {
+        int index = this.order[this.position];
+        this.position = ( this.position + 1 ) & ( CHUNKS - 1 );
+        return index;
+    }
+
+}
@@ -0,0 +1,201 @@
+package io.gomint.performanceviewer;
+
+import io.gomint.server.performance.protocol.HandshakePacket;
+import io.gomint.server.performance.protocol.TickPacket;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the last ticks which have been streamed and calculates what the viewer shows. Ticks are added by the
+ * stream thread, snapshots are taken by the UI thread.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class TickStatistics {
+
+    /**
+     * Amount of ticks which are kept, one minute at 20 TPS
+     */
+    public static final int WINDOW = 1200;
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos( 1 );
+
+    private long tickNanos;
+    private String[] sectionNames = new String[0];
+    private byte[] sectionPlacements = new byte[0];
+    private String[] worldNames = new String[0];
+
+    private final long[] starts = new long[WINDOW];
+    private final long[] durations = new long[WINDOW];
+    private final long[] overheads = new long[WINDOW];
+    private final boolean[] sampled = new boolean[WINDOW];
+    private long[][] sectionNanos = new long[WINDOW][];
+    private int[][] sectionCalls = new int[WINDOW][];
+    private long[][] worldNanos = new long[WINDOW][];
+    private long count;
+
+    /**
+     * Forget all ticks and start a new stream
+     *
+     * @param handshake The handshake of the new stream
+     */
+    public synchronized void reset( HandshakePacket handshake ) {
+        this.tickNanos = handshake.getTickNanos();
+        this.sectionNames = handshake.getSectionNames();
+        this.sectionPlacements = handshake.getSectionPlacements();
+        this.worldNames = new String[0];
+        this.count = 0;
+    }
+
+    /**
+     * Set the names of the worlds which are referenced by the ticks
+     *
+     * @param worldNames The names of the worlds
+     */
+    public synchronized void setWorldNames( String[] worldNames ) {
+        this.worldNames = worldNames;
+    }
+
+    /**
+     * Add the next tick
+     *
+     * @param packet The tick which has been received
+     */
+    public synchronized void add( TickPacket packet ) {
+        int index = (int) ( this.count++ % WINDOW );
+        this.starts[index] = packet.getStartNanos();
+        this.durations[index] = packet.getDurationNanos();
+        this.overheads[index] = packet.getOverheadNanos();
+        this.sampled[index] = packet.isSampled();
+        this.sectionNanos[index] = packet.getSectionNanos().clone();
+        this.sectionCalls[index] = packet.getSectionCalls().clone();
+        this.worldNanos[index] = packet.getWorldNanos().clone();
+    }
+
+    /**
+     * Calculate what should be displayed right now
+     *
+     * @return snapshot of the current statistics or null when no tick has been received yet
+     */
+    public synchronized Snapshot snapshot() {
+        int size = (int) Math.min( this.count, WINDOW );
+        if ( size == 0 ) {
+            return null;
+        }
+
+        Snapshot snapshot = new Snapshot();
+        snapshot.tickNanos = this.tickNanos;
+        snapshot.sectionNames = this.sectionNames;
+        snapshot.sectionPlacements = this.sectionPlacements;
+        snapshot.worldNames = this.worldNames;
+        snapshot.durations = new long[size];
+
+        // Oldest tick first
+        long first = this.count - size;
+        long overhead = 0;
+        long total = 0;
+        for ( int i = 0; i < size; i++ ) {
+            int index = (int) ( ( first + i ) % WINDOW );
+            snapshot.durations[i] = this.durations[index];
+            overhead += this.overheads[index];
+            total += this.durations[index];
+        }
+
+        snapshot.overheadPercent = total == 0 ? 0 : overhead * 100D / total;
+
+        long[] sorted = snapshot.durations.clone();
+        Arrays.sort( sorted );
+        snapshot.p50 = percentile( sorted, 0.5 );
+        snapshot.p95 = percentile( sorted, 0.95 );
+        snapshot.p99 = percentile( sorted, 0.99 );
+        snapshot.max = sorted[sorted.length - 1];
+
+        // TPS and the sections are taken from the last second
+        int latest = (int) ( ( this.count - 1 ) % WINDOW );
+        long latestStart = this.starts[latest];
+        long earliestStart = latestStart;
+        int ticks = 0;
+        int sampledTicks = 0;
+
+        snapshot.sectionNanos = new double[this.sectionNames.length];
+        snapshot.sectionCalls = new double[this.sectionNames.length];
+        snapshot.worldNanos = new double[this.worldNames.length];
+        double duration = 0;
+
+        for ( int i = 0; i < size; i++ ) {
+            int index = (int) ( ( this.count - 1 - i ) % WINDOW );
+            if ( latestStart - this.starts[index] > SECOND ) {
+                break;
+            }
+
+            earliestStart = this.starts[index];
+            duration += this.durations[index];
+            ticks++;
+
+            // Sections and worlds are only timed on sampled ticks
+            if ( !this.sampled[index] ) {
+                continue;
+            }
+
+            for ( int s = 0; s < snapshot.sectionNanos.length && s < this.sectionNanos[index].length; s++ ) {
+                snapshot.sectionNanos[s] += this.sectionNanos[index][s];
+                snapshot.sectionCalls[s] += this.sectionCalls[index][s];
+            }
+
+            for ( int w = 0; w < snapshot.worldNanos.length && w < this.worldNanos[index].length; w++ ) {
+                snapshot.worldNanos[w] += this.worldNanos[index][w];
+            }
+
+            sampledTicks++;
+        }
+
+        for ( int s = 0; s < snapshot.sectionNanos.length && sampledTicks > 0; s++ ) {
+            snapshot.sectionNanos[s] /= sampledTicks;
+            snapshot.sectionCalls[s] /= sampledTicks;
+        }
+
+        for ( int w = 0; w < snapshot.worldNanos.length && sampledTicks > 0; w++ ) {
+            snapshot.worldNanos[w] /= sampledTicks;
+        }
+
+        snapshot.averageNanos = duration / ticks;
+        snapshot.tps = ticks > 1 ? ( ticks - 1 ) * (double) SECOND / ( latestStart - earliestStart ) : 0;
+        return snapshot;
+    }
+
+    private static long percentile( long[] sorted, double percentile ) {
+        int index = (int) Math.ceil( percentile * sorted.length ) - 1;
+        return sorted[Math.max( 0, Math.min( sorted.length - 1, index ) )];
+    }
+
+    /**
+     * Everything the viewer displays at one point in time. All times are in nanoseconds, section and world times
+     * are averages per sampled tick over the last second.
+     */
+    @Getter
+    public static class Snapshot {
+
+        private long tickNanos;
+        private String[] sectionNames;
+        private byte[] sectionPlacements;
+        private String[] worldNames;
+
+        private long[] durations;
+        private long p50;
+        private long p95;
+        private long p99;
+        private long max;
+        private double overheadPercent;
+
+        private double tps;
+        private double averageNanos;
+        private double[] sectionNanos;
+        private double[] sectionCalls;
+        private double[] worldNanos;
+
+    }
+
+}
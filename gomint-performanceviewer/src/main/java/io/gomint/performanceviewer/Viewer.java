@@ -1,121 +1,146 @@
 package io.gomint.performanceviewer;
 
+import io.gomint.performanceviewer.net.StreamClient;
+import io.gomint.performanceviewer.ui.SectionBars;
+import io.gomint.performanceviewer.ui.StatsElement;
 import io.gomint.performanceviewer.ui.TPSChart;
 import io.gomint.performanceviewer.ui.ToolbarElement;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Application;
-import javafx.application.Platform;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Label;
-import javafx.scene.control.ProgressBar;
 import javafx.scene.image.Image;
-import javafx.scene.layout.GridPane;
-import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+import javafx.util.Duration;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Connects to the performance stream of a server and shows its ticks live. The address of the server can be given
+ * as first argument, it defaults to localhost:19140.
+ *
  * @author geNAZt
  * @version 1.0
  */
 public class Viewer extends Application {
 
+    private static final String DEFAULT_ADDRESS = "localhost:19140";
+    private static final Duration REFRESH_INTERVAL = Duration.millis( 250 );
+
+    private final TickStatistics statistics = new TickStatistics();
+    private StreamClient client;
+
     public static void main( String[] args ) {
         launch( args );
     }
 
     @Override
     public void start( Stage primaryStage ) {
-        Platform.setImplicitExit( false );
+        List<String> args = this.getParameters().getUnnamed();
+        final ToolbarElement toolbarElement = new ToolbarElement( args.isEmpty() ? DEFAULT_ADDRESS : args.get( 0 ) );
+        final StatsElement statsElement = new StatsElement();
+        final TPSChart chart = new TPSChart();
+        final SectionBars sectionBars = new SectionBars();
 
-        ToolbarElement toolbarElement = new ToolbarElement();
-        TPSChart chart = new TPSChart();
-
-        VBox layout = new VBox();
+        VBox layout = new VBox( 5 );
         layout.setAlignment( Pos.TOP_LEFT );
-        Label tpsChartLabel = new Label( "TPS Chart:" );
-        // VBox.setMargin( tpsChartLabel, new Insets( 0, 10, 0, 0 ) );
-        layout.getChildren().addAll( toolbarElement.getNode(), tpsChartLabel );
-
-        new Thread( new Runnable() {
-            BlockingQueue<Long> queue = new LinkedBlockingQueue<>();
-            AtomicBoolean chartDone = new AtomicBoolean( false );
-            AtomicInteger added = new AtomicInteger( 0 );
-
-            AtomicBoolean attachedProgressbar = new AtomicBoolean( false );
-            ProgressBar progressBar = new ProgressBar( 0 );
-
+        Label tpsChartLabel = new Label( "Tick times:" );
+        Label sectionsLabel = new Label( "Average tick of the last second (hover for details):" );
+        VBox.setMargin( tpsChartLabel, new Insets( 0, 0, 0, 10 ) );
+        VBox.setMargin( sectionsLabel, new Insets( 0, 0, 0, 10 ) );
+        layout.getChildren().addAll( toolbarElement.getNode(), statsElement.getNode(), tpsChartLabel, chart.getNode(),
+                sectionsLabel, sectionBars.getNode() );
+
+        toolbarElement.getConnectButton().setOnAction( new EventHandler<ActionEvent>() {
             @Override
-            public void run() {
-                Thread.currentThread().setName( "Chart calculator" );
-
-                startFXChecking();
-
-                for ( int i = 0; i < 3 * 60 * 60 * 128; i++ ) {
-                    queue.add( ThreadLocalRandom.current().nextLong( (long) ( 7812500 * 1.2 ) ) );
+            public void handle( ActionEvent event ) {
+                if ( client != null ) {
+                    disconnect();
+                    toolbarElement.getConnectButton().setText( "Connect" );
+                    toolbarElement.setStatus( "Not connected" );
+                } else {
+                    connect( toolbarElement.getAddress() );
+                    toolbarElement.getConnectButton().setText( "Disconnect" );
                 }
-
-                chartDone.set( true );
             }
+        } );
 
-            private void startFXChecking() {
-                Platform.runLater( new Runnable() {
-                    @Override
-                    public void run() {
-                        if ( !attachedProgressbar.get() ) {
-                            attachedProgressbar.set( true );
-
-                            VBox.setMargin( progressBar, new Insets( 50, 0, 0, 200 ) );
-                            layout.getChildren().add( progressBar );
-                        }
-
-                        progressBar.setPrefWidth( layout.getWidth() - 400 );
-
-                        int renderedInThisRun = 0;
-                        List<Long> toAdd = new ArrayList<>();
-
-                        while ( queue.size() > 0 && renderedInThisRun++ < 500 ) {
-                            toAdd.add( queue.poll() );
-                        }
-
-                        chart.addData( toAdd );
-
-                        double needed = 3 * 60 * 512;
-                        double progress = (double) added.addAndGet( renderedInThisRun ) / needed;
-                        progressBar.setProgress( progress );
-
-                        if ( !chartDone.get() || queue.size() > 0 ) {
-                            startFXChecking();
-                        } else {
-                            layout.getChildren().remove( progressBar );
-                            layout.getChildren().add( chart.getNode() );
-                            layout.getChildren().add( chart.getScroller() );
-                        }
-                    }
-                } );
-            }
-        } ).start();
+        Timeline refresh = new Timeline( new KeyFrame( REFRESH_INTERVAL, new EventHandler<ActionEvent>() {
+            @Override
+            public void handle( ActionEvent event ) {
+                if ( client != null ) {
+                    toolbarElement.setStatus( client.getStatus() );
+                }
 
+                TickStatistics.Snapshot snapshot = statistics.snapshot();
+                if ( snapshot != null ) {
+                    statsElement.update( snapshot );
+                    chart.update( snapshot );
+                    sectionBars.update( snapshot );
+                }
+            }
+        } ) );
+        refresh.setCycleCount( Animation.INDEFINITE );
+        refresh.play();
 
         Scene stage = new Scene( layout, 300, 250 );
 
         layout.prefWidthProperty().bind( stage.widthProperty() );
         layout.prefHeightProperty().bind( stage.heightProperty() );
 
+        primaryStage.setOnCloseRequest( new EventHandler<WindowEvent>() {
+            @Override
+            public void handle( WindowEvent event ) {
+                disconnect();
+            }
+        } );
+
         primaryStage.getIcons().addAll( new Image( "/gomint.png" ) );
         primaryStage.setTitle( "GoMint Performance Viewer" );
         primaryStage.setMaximized( true );
         primaryStage.setScene( stage );
         primaryStage.show();
+
+        if ( !args.isEmpty() ) {
+            this.connect( toolbarElement.getAddress() );
+            toolbarElement.getConnectButton().setText( "Disconnect" );
+        }
+    }
+
+    private void connect( String address ) {
+        String host = address;
+        int port = 19140;
+
+        int colon = address.lastIndexOf( ':' );
+        if ( colon != -1 ) {
+            host = address.substring( 0, colon );
+            try {
+                port = Integer.parseInt( address.substring( colon + 1 ) );
+            } catch ( NumberFormatException e ) {
+                // Keep the default port
+            }
+        }
+
+        this.client = new StreamClient( host, port, this.statistics );
+
+        Thread thread = new Thread( this.client, "Performance stream" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    private void disconnect() {
+        if ( this.client != null ) {
+            this.client.close();
+            this.client = null;
+        }
     }
 
 }
@@ -0,0 +1,103 @@
+package io.gomint.performanceviewer.net;
+
+import io.gomint.performanceviewer.TickStatistics;
+import io.gomint.server.performance.protocol.HandshakePacket;
+import io.gomint.server.performance.protocol.Packet;
+import io.gomint.server.performance.protocol.PerformanceProtocol;
+import io.gomint.server.performance.protocol.TickPacket;
+import io.gomint.server.performance.protocol.WorldListPacket;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Reads the performance stream of a server and feeds it into the statistics
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class StreamClient implements Runnable {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final String host;
+    private final int port;
+    private final TickStatistics statistics;
+    private final Socket socket = new Socket();
+
+    private volatile String status = "Connecting";
+    private volatile boolean closed;
+
+    /**
+     * Create a new client, it connects once it gets run
+     *
+     * @param host       The host of the server
+     * @param port       The port the server streams on
+     * @param statistics The statistics which should receive the ticks
+     */
+    public StreamClient( String host, int port, TickStatistics statistics ) {
+        this.host = host;
+        this.port = port;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public void run() {
+        try {
+            this.socket.connect( new InetSocketAddress( this.host, this.port ), CONNECT_TIMEOUT_MILLIS );
+            this.status = "Connected to " + this.host + ":" + this.port;
+
+            DataInputStream in = new DataInputStream( new BufferedInputStream( this.socket.getInputStream() ) );
+            while ( !this.closed ) {
+                Packet packet = PerformanceProtocol.readPacket( in );
+                if ( packet instanceof TickPacket ) {
+                    this.statistics.add( (TickPacket) packet );
+                } else if ( packet instanceof WorldListPacket ) {
+                    this.statistics.setWorldNames( ( (WorldListPacket) packet ).getWorldNames() );
+                } else if ( packet instanceof HandshakePacket ) {
+                    this.statistics.reset( (HandshakePacket) packet );
+                }
+            }
+        } catch ( IOException e ) {
+            if ( !this.closed ) {
+                this.closed = true;
+                this.status = "Disconnected: " + e.getMessage();
+            }
+        } finally {
+            this.closeSocket();
+        }
+    }
+
+    /**
+     * Get a human readable state of the connection
+     *
+     * @return state of the connection
+     */
+    public String getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Close the connection
+     */
+    public void close() {
+        if ( !this.closed ) {
+            this.closed = true;
+            this.status = "Disconnected";
+        }
+
+        this.closeSocket();
+    }
+
+    private void closeSocket() {
+        try {
+            this.socket.close();
+        } catch ( IOException e ) {
+            // Ignored, we are done with the socket anyway
+        }
+    }
+
+}
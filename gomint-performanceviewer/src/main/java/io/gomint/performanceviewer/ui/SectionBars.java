@@ -0,0 +1,131 @@
+package io.gomint.performanceviewer.ui;
+
+import io.gomint.performanceviewer.TickStatistics;
+import io.gomint.server.performance.protocol.PerformanceProtocol;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tooltip;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Flame bars of the average tick of the last second. The first row is the whole tick against the time a tick
+ * may take, the second row splits it into the main thread sections and the worlds and the third row splits the
+ * worlds into their sections. Sections which run outside of the tick get their own row.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class SectionBars {
+
+    private static final double LABEL_WIDTH = 90;
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos( 1 );
+    private static final String[] COLORS = {
+            "#f39502", "#45df02", "#02a3f3", "#9b6af3", "#f3027e", "#d4c400", "#02d6b0", "#f34602"
+    };
+    private static final String IDLE_COLOR = "#d0d0d0";
+
+    private final VBox box = new VBox( 4 );
+
+    public SectionBars() {
+        this.box.setPadding( new Insets( 0, 10, 0, 10 ) );
+    }
+
+    public Node getNode() {
+        return this.box;
+    }
+
+    /**
+     * Show the sections of the given snapshot
+     *
+     * @param snapshot The snapshot which should be shown
+     */
+    public void update( TickStatistics.Snapshot snapshot ) {
+        this.box.getChildren().clear();
+
+        double width = Math.max( 100, this.box.getWidth() - LABEL_WIDTH - 30 );
+        double scale = width / Math.max( snapshot.getTickNanos(), snapshot.getAverageNanos() );
+        String[] sectionNames = snapshot.getSectionNames();
+        byte[] placements = snapshot.getSectionPlacements();
+        double[] sectionNanos = snapshot.getSectionNanos();
+        double[] sectionCalls = snapshot.getSectionCalls();
+
+        // The whole tick
+        HBox tickRow = this.createRow( "Tick" );
+        this.addSegment( tickRow, "Tick", snapshot.getAverageNanos(), -1, scale, COLORS[COLORS.length - 1] );
+        this.addSegment( tickRow, "Idle", snapshot.getTickNanos() - snapshot.getAverageNanos(), -1, scale, IDLE_COLOR );
+
+        // Main thread sections and worlds
+        HBox mainRow = this.createRow( "Main thread" );
+        double mainNanos = 0;
+        int color = 0;
+        for ( int i = 0; i < sectionNames.length; i++ ) {
+            if ( placements[i] == PerformanceProtocol.SECTION_TICK ) {
+                this.addSegment( mainRow, sectionNames[i], sectionNanos[i], sectionCalls[i], scale, COLORS[color++ % COLORS.length] );
+                mainNanos += sectionNanos[i];
+            }
+        }
+
+        String[] worldNames = snapshot.getWorldNames();
+        double[] worldNanos = snapshot.getWorldNanos();
+        for ( int i = 0; i < worldNames.length; i++ ) {
+            this.addSegment( mainRow, "World " + worldNames[i], worldNanos[i], -1, scale, COLORS[color++ % COLORS.length] );
+        }
+
+        // Sections of the worlds, placed below the worlds
+        HBox worldRow = this.createRow( "Worlds" );
+        Region indent = new Region();
+        indent.setMinWidth( mainNanos * scale );
+        worldRow.getChildren().add( indent );
+        for ( int i = 0; i < sectionNames.length; i++ ) {
+            if ( placements[i] == PerformanceProtocol.SECTION_WORLD ) {
+                this.addSegment( worldRow, sectionNames[i], sectionNanos[i], sectionCalls[i], scale, COLORS[color++ % COLORS.length] );
+            }
+        }
+
+        // Work which does not block the tick
+        HBox offTickRow = this.createRow( "Other threads" );
+        for ( int i = 0; i < sectionNames.length; i++ ) {
+            if ( placements[i] == PerformanceProtocol.SECTION_OFF_TICK ) {
+                this.addSegment( offTickRow, sectionNames[i], sectionNanos[i], sectionCalls[i], scale, COLORS[color++ % COLORS.length] );
+            }
+        }
+
+        this.box.getChildren().addAll( tickRow, mainRow, worldRow, offTickRow );
+    }
+
+    private HBox createRow( String name ) {
+        Label label = new Label( name );
+        label.setMinWidth( LABEL_WIDTH );
+        label.setPrefWidth( LABEL_WIDTH );
+
+        HBox row = new HBox();
+        row.getChildren().add( label );
+        return row;
+    }
+
+    private void addSegment( HBox row, String name, double nanos, double calls, double scale, String color ) {
+        if ( nanos <= 0 ) {
+            return;
+        }
+
+        String text = String.format( Locale.ROOT, "%s: %.3f ms", name, nanos / NANOS_PER_MILLI );
+        if ( calls >= 0 ) {
+            text += String.format( Locale.ROOT, " (%.1f spans per tick)", calls );
+        }
+
+        Label segment = new Label( name );
+        segment.setTooltip( new Tooltip( text ) );
+        segment.setMinWidth( 0 );
+        segment.setPrefWidth( nanos * scale );
+        segment.setMaxWidth( nanos * scale );
+        segment.setStyle( "-fx-background-color: " + color + "; -fx-border-color: white; -fx-border-width: 0 1 0 0; -fx-padding: 2 4 2 4;" );
+        row.getChildren().add( segment );
+    }
+
+}
@@ -0,0 +1,53 @@
+package io.gomint.performanceviewer.ui;
+
+import io.gomint.performanceviewer.TickStatistics;
+import javafx.geometry.Insets;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.layout.HBox;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shows the TPS of the last second, the MSPT percentiles of the last minute and how much of the ticks the
+ * profiler took
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class StatsElement {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos( 1 );
+    private static final double MAX_OVERHEAD_PERCENT = 1;
+
+    private final HBox box = new HBox( 25 );
+    private final Label tps = new Label( "TPS: -" );
+    private final Label mspt = new Label( "MSPT: -" );
+    private final Label overhead = new Label( "Profiler overhead: -" );
+
+    public StatsElement() {
+        this.box.setPadding( new Insets( 5, 10, 5, 10 ) );
+        this.box.getChildren().addAll( this.tps, this.mspt, this.overhead );
+    }
+
+    public Node getNode() {
+        return this.box;
+    }
+
+    /**
+     * Show the values of the given snapshot
+     *
+     * @param snapshot The snapshot which should be shown
+     */
+    public void update( TickStatistics.Snapshot snapshot ) {
+        double targetTps = TimeUnit.SECONDS.toNanos( 1 ) / (double) snapshot.getTickNanos();
+        this.tps.setText( String.format( Locale.ROOT, "TPS: %.2f / %.0f", snapshot.getTps(), targetTps ) );
+        this.mspt.setText( String.format( Locale.ROOT, "MSPT: p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms",
+                snapshot.getP50() / NANOS_PER_MILLI, snapshot.getP95() / NANOS_PER_MILLI,
+                snapshot.getP99() / NANOS_PER_MILLI, snapshot.getMax() / NANOS_PER_MILLI ) );
+        this.overhead.setText( String.format( Locale.ROOT, "Profiler overhead: %.3f %%", snapshot.getOverheadPercent() ) );
+        this.overhead.setStyle( snapshot.getOverheadPercent() < MAX_OVERHEAD_PERCENT ? "" : "-fx-text-fill: #f34602;" );
+    }
+
+}
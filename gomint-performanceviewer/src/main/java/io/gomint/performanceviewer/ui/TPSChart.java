@@ -1,44 +1,41 @@
 package io.gomint.performanceviewer.ui;
 
-import javafx.beans.value.ChangeListener;
-import javafx.beans.value.ObservableValue;
-import javafx.geometry.Insets;
+import io.gomint.performanceviewer.TickStatistics;
 import javafx.scene.Node;
-import javafx.scene.chart.AreaChart;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
-import javafx.scene.control.ScrollBar;
-import javafx.scene.layout.VBox;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * Shows how long the ticks of the last minute took, the time a tick may take and the average of each second
+ *
  * @author geNAZt
  * @version 1.0
  */
 public class TPSChart {
 
+    private static final int MAX_POINTS = 600;
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos( 1 );
+
     private final LineChart<Number, Number> chart;
-    private final List<Long> data = new ArrayList<>();
+    private final NumberAxis xAxis;
     private final XYChart.Series<Number, Number> fullTimeSeries;
     private final XYChart.Series<Number, Number> actualTimeSeries;
     private final XYChart.Series<Number, Number> averageTimeSeries;
-    private final ScrollBar scrollBar;
-    private int currentDataStart;
-    private final NumberAxis xAxis;
-
-    private long tickNanos = 7812500;
 
     public TPSChart() {
         final NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel( "ms" );
 
-        this.xAxis = new NumberAxis( 0, 512, 1000 );
+        this.xAxis = new NumberAxis( 0, TickStatistics.WINDOW, 100 );
         this.xAxis.setAutoRanging( false );
+        this.xAxis.setLabel( "Tick" );
 
-        this.chart = new LineChart<>( xAxis, yAxis );
+        this.chart = new LineChart<>( this.xAxis, yAxis );
         this.chart.setAnimated( false );
         this.chart.setCreateSymbols( false );
         this.chart.setLegendVisible( false );
@@ -46,91 +43,61 @@ public class TPSChart {
         this.fullTimeSeries = new XYChart.Series<>();
         this.actualTimeSeries = new XYChart.Series<>();
         this.averageTimeSeries = new XYChart.Series<>();
-
-        this.scrollBar = new ScrollBar();
-        this.scrollBar.valueProperty().addListener( new ChangeListener<Number>() {
-            @Override
-            public void changed( ObservableValue<? extends Number> observable, Number oldValue, Number newValue ) {
-                currentDataStart = (int) ( newValue.floatValue() * ( TimeUnit.SECONDS.toNanos( 1 ) / tickNanos ) * 60 );
-                updateChart();
-            }
-        } );
-    }
-
-    public void addData( List<Long> time ) {
-        this.data.addAll( time );
     }
 
     public Node getNode() {
         this.chart.getData().addAll( this.actualTimeSeries, this.fullTimeSeries, this.averageTimeSeries );
-        this.chart.setPrefHeight( 200 );
+        this.chart.setPrefHeight( 250 );
 
         this.fullTimeSeries.getNode().setStyle( "-fx-stroke-width: 2px; -fx-stroke: #f34602;" );
         this.actualTimeSeries.getNode().setStyle( "-fx-stroke-width: 2px; -fx-stroke: #f39502;" );
         this.averageTimeSeries.getNode().setStyle( "-fx-stroke-width: 2px; -fx-stroke: #45df02;" );
 
-        updateChart();
-
         return this.chart;
     }
 
-    private void updateChart() {
-        this.fullTimeSeries.getData().clear();
-        this.actualTimeSeries.getData().clear();
-        this.averageTimeSeries.getData().clear();
-
-        this.xAxis.setLowerBound( this.currentDataStart );
-        this.xAxis.setUpperBound( this.currentDataStart + 60 * ( TimeUnit.SECONDS.toNanos( 1 ) / this.tickNanos ) );
+    /**
+     * Show the ticks of the given snapshot
+     *
+     * @param snapshot The snapshot which should be shown
+     */
+    public void update( TickStatistics.Snapshot snapshot ) {
+        long[] durations = snapshot.getDurations();
+        double tickMillis = snapshot.getTickNanos() / NANOS_PER_MILLI;
+        int tps = (int) Math.max( 1, TimeUnit.SECONDS.toNanos( 1 ) / snapshot.getTickNanos() );
 
         List<XYChart.Data<Number, Number>> fullTimeData = new ArrayList<>();
-        List<XYChart.Data<Number, Number>> actualTimeData = new ArrayList<>();
-        List<XYChart.Data<Number, Number>> averageTimeData = new ArrayList<>();
+        fullTimeData.add( new XYChart.Data<Number, Number>( 0, tickMillis ) );
+        fullTimeData.add( new XYChart.Data<Number, Number>( TickStatistics.WINDOW, tickMillis ) );
 
-        int tps = (int) (TimeUnit.SECONDS.toNanos( 1 ) / this.tickNanos);
-        for ( int i = (int) this.xAxis.getLowerBound(); i < this.xAxis.getUpperBound(); i++ ) {
-            if ( this.data.size() > i ) {
-                fullTimeData.add( new XYChart.Data<>( i, this.tickNanos ) );
-                actualTimeData.add( new XYChart.Data<>( i, this.data.get( i ) ) );
-            }
-
-            if ( i > 0 && i % tps == 0 ) {
-                // Calc the average
-                double average = 0;
-
-                for ( int x = i - tps; x < i; x++ ) {
-                    average += this.data.get( x );
-                }
-
-                average = average / tps;
-
-                for ( int x = i - tps; x < i; x++ ) {
-                    averageTimeData.add( new XYChart.Data<>( x, average ) );
-                }
+        // Show the slowest tick of each group so spikes don't get lost
+        List<XYChart.Data<Number, Number>> actualTimeData = new ArrayList<>();
+        int step = Math.max( 1, ( durations.length + MAX_POINTS - 1 ) / MAX_POINTS );
+        for ( int i = 0; i < durations.length; i += step ) {
+            long slowest = 0;
+            for ( int x = i; x < i + step && x < durations.length; x++ ) {
+                slowest = Math.max( slowest, durations[x] );
             }
-        }
-
-        // Calc the average
-        double average = 0;
 
-        for ( int x = (int) (this.xAxis.getUpperBound() - tps); x < this.xAxis.getUpperBound(); x++ ) {
-            average += this.data.get( x );
+            actualTimeData.add( new XYChart.Data<Number, Number>( i, slowest / NANOS_PER_MILLI ) );
         }
 
-        average = average / tps;
+        // The average of every full second
+        List<XYChart.Data<Number, Number>> averageTimeData = new ArrayList<>();
+        for ( int i = 0; i + tps <= durations.length; i += tps ) {
+            double average = 0;
+            for ( int x = i; x < i + tps; x++ ) {
+                average += durations[x];
+            }
 
-        for ( int x = (int) (this.xAxis.getUpperBound() - tps); x < this.xAxis.getUpperBound(); x++ ) {
-            averageTimeData.add( new XYChart.Data<>( x, average ) );
+            average = average / tps / NANOS_PER_MILLI;
+            averageTimeData.add( new XYChart.Data<Number, Number>( i, average ) );
+            averageTimeData.add( new XYChart.Data<Number, Number>( i + tps - 1, average ) );
         }
 
-        this.fullTimeSeries.getData().addAll( fullTimeData );
-        this.actualTimeSeries.getData().addAll( actualTimeData );
-        this.averageTimeSeries.getData().addAll( averageTimeData );
-    }
-
-    public Node getScroller() {
-        VBox.setMargin( this.scrollBar, new Insets( 0, 20, 0, 20 ) );
-        this.scrollBar.setMax( ( ( this.data.size() / ( TimeUnit.SECONDS.toNanos( 1 ) / this.tickNanos ) ) / 60 ) - 1 );
-        return this.scrollBar;
+        this.fullTimeSeries.getData().setAll( fullTimeData );
+        this.actualTimeSeries.getData().setAll( actualTimeData );
+        this.averageTimeSeries.getData().setAll( averageTimeData );
     }
 
 }
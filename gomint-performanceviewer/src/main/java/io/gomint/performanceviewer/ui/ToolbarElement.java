@@ -4,6 +4,7 @@ import javafx.scene.Node;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.Separator;
+import javafx.scene.control.TextField;
 import javafx.scene.control.ToolBar;
 
 /**
@@ -13,14 +14,17 @@ import javafx.scene.control.ToolBar;
 public class ToolbarElement {
 
     private final ToolBar toolBar;
-    private Label reportName;
+    private final TextField address;
+    private final Button connect;
+    private final Label status;
 
-    public ToolbarElement() {
+    public ToolbarElement( String defaultAddress ) {
         this.toolBar = new ToolBar(
-                new Button( "Open" ),
-                new Separator(  ),
-                new Label( "Currently open performance report: " ),
-                this.reportName = new Label( "None" )
+                new Label( "Server: " ),
+                this.address = new TextField( defaultAddress ),
+                this.connect = new Button( "Connect" ),
+                new Separator(),
+                this.status = new Label( "Not connected" )
         );
     }
 
@@ -28,4 +32,16 @@ public class ToolbarElement {
         return this.toolBar;
     }
 
+    public Button getConnectButton() {
+        return this.connect;
+    }
+
+    public String getAddress() {
+        return this.address.getText().trim();
+    }
+
+    public void setStatus( String status ) {
+        this.status.setText( status );
+    }
+
 }
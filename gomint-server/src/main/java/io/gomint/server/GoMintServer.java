@@ -18,8 +18,14 @@ import io.gomint.server.entity.EntityCow;
 import io.gomint.server.network.EncryptionKeyFactory;
 import io.gomint.server.network.NetworkManager;
 import io.gomint.server.network.Protocol;
+import io.gomint.server.performance.PeformanceReport;
+import io.gomint.server.performance.PerformanceStreamServer;
+import io.gomint.server.performance.Section;
 import io.gomint.server.plugin.SimplePluginManager;
 import io.gomint.server.scheduler.SyncTaskManager;
+import io.gomint.server.util.BatchUtil;
+import io.gomint.server.world.ChunkPregenerator;
+import io.gomint.server.world.CoordinateUtils;
 import io.gomint.server.world.WorldAdapter;
 import io.gomint.server.world.WorldManager;
 import io.gomint.world.World;
@@ -31,15 +37,12 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.net.SocketException;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Consumer;
 
 /**
  * @author BlackyPaw
@@ -60,6 +63,7 @@ public class GoMintServer implements GoMint {
     private NetworkManager networkManager;
 
     // World Management
+    @Getter
     private WorldManager worldManager;
 
     // Game Information
@@ -78,6 +82,11 @@ public class GoMintServer implements GoMint {
     @Getter
     private ThreadFactory threadFactory;
 
+    // Performance
+    @Getter
+    private PeformanceReport performanceReport;
+    private PerformanceStreamServer performanceStreamServer;
+
     /**
      * Starts the GoMint server
      *
@@ -90,28 +99,25 @@ public class GoMintServer implements GoMint {
         // ------------------------------------ //
         // Executor Initialization
         // ------------------------------------ //
-        this.threadFactory = new ThreadFactory() {
-            private AtomicLong counter = new AtomicLong( 0 );
-
-            @Override
-            public Thread newThread( Runnable r ) {
-                Thread thread = Executors.defaultThreadFactory().newThread( r );
-                thread.setName( "GoMint Thread #" + counter.getAndIncrement() );
-                return thread;
-            }
-        };
-
-        this.executorService = new ThreadPoolExecutor( 0, 512, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), this.threadFactory );
+        this.initExecutors();
 
         // ------------------------------------ //
         // Configuration Initialization
         // ------------------------------------ //
         this.loadConfig();
+        BatchUtil.configure( this.serverConfig.getConnection() );
 
         // Calculate the nanoseconds we need for the tick loop
         long skipNanos = TimeUnit.SECONDS.toNanos( 1 ) / this.getServerConfig().getTargetTPS();
         logger.debug( "Setting skipNanos to: " + skipNanos );
 
+        this.performanceReport = new PeformanceReport( this.serverConfig.isEnablePerformanceReport(),
+                PeformanceReport.DEFAULT_CAPACITY, this.serverConfig.getPerformanceReportSampleInterval() );
+        if ( this.performanceReport.isEnabled() ) {
+            logger.info( "Performance report enabled, measuring costs " + this.performanceReport.getSpanCostNanos() + " ns per section, sections are timed every " +
+                    this.serverConfig.getPerformanceReportSampleInterval() + " ticks" );
+        }
+
         // ------------------------------------ //
         // Start of encryption helpers
         // ------------------------------------ //
@@ -159,6 +165,8 @@ public class GoMintServer implements GoMint {
         }
         // CHECKSTYLE:ON
 
+        this.startPregeneration( args );
+
         // ------------------------------------ //
         // Load plugins with StartupPriority LOAD
         // ------------------------------------ //
@@ -171,6 +179,7 @@ public class GoMintServer implements GoMint {
         this.networkManager = new NetworkManager( this );
         if ( !this.initNetworking() ) return;
         setMotd( this.getServerConfig().getMotd() );
+        this.startPerformanceStream( skipNanos );
 
         // ------------------------------------ //
         // Main Loop
@@ -192,12 +201,18 @@ public class GoMintServer implements GoMint {
 
                 // Tick all major subsystems:
                 long currentMillis = System.currentTimeMillis();
+                this.performanceReport.startTick( currentMillis );
 
                 // Tick networking at every tick
+                long sectionStart = this.performanceReport.begin();
                 this.networkManager.update( currentMillis, lastTickTime );
+                sectionStart = this.performanceReport.end( Section.NETWORK, sectionStart );
 
                 this.syncTaskManager.update( currentMillis, lastTickTime );
+                this.performanceReport.end( Section.SYNC_TASKS, sectionStart );
+
                 this.worldManager.update( currentMillis, lastTickTime );
+                this.performanceReport.endTick();
 
                 long diff = System.nanoTime() - start;
                 if ( diff < skipNanos ) {
@@ -213,6 +228,43 @@ public class GoMintServer implements GoMint {
                 tickLock.unlock();
             }
         }
+
+        if ( this.performanceStreamServer != null ) {
+            this.performanceStreamServer.close();
+        }
+
+        this.networkManager.close();
+        this.worldManager.close();
+
+        this.logger.info( "Compressed " + BatchUtil.getStatistics() );
+    }
+
+    /**
+     * Create a server which only has its executors, an empty world manager, no recipes and the given config. Nothing
+     * gets loaded or started, this is used by benchmarks and tests which need worlds and entities without networking.
+     *
+     * @param serverConfig The config which should be used
+     */
+    public GoMintServer( ServerConfig serverConfig ) {
+        this.serverConfig = serverConfig;
+        this.performanceReport = new PeformanceReport( false );
+        this.initExecutors();
+        this.worldManager = new WorldManager( this );
+        this.recipeManager = new RecipeManager( this );
+    }
+
+    private void startPerformanceStream( long skipNanos ) {
+        if ( !this.performanceReport.isEnabled() || this.serverConfig.getPerformanceReportPort() <= 0 ) {
+            return;
+        }
+
+        try {
+            this.performanceStreamServer = new PerformanceStreamServer( this.performanceReport, skipNanos,
+                    this.serverConfig.getPerformanceReportPort(), this.executorService );
+            this.logger.info( "Streaming performance report on localhost:" + this.serverConfig.getPerformanceReportPort() );
+        } catch ( IOException e ) {
+            this.logger.warn( "Could not start performance report stream", e );
+        }
     }
 
     private boolean initNetworking() {
@@ -242,6 +294,32 @@ public class GoMintServer implements GoMint {
         return true;
     }
 
+    private void startPregeneration( String[] args ) {
+        // --pregenerate <radius> generates the given radius of chunks around the spawn of the default world
+        for ( int i = 0; i < args.length - 1; i++ ) {
+            if ( !"--pregenerate".equals( args[i] ) ) {
+                continue;
+            }
+
+            WorldAdapter world = this.getDefaultWorld();
+            if ( world == null ) {
+                this.logger.warn( "Can't pregenerate without a default world" );
+                return;
+            }
+
+            try {
+                int radius = Integer.parseInt( args[i + 1] );
+                int chunkX = CoordinateUtils.fromBlockToChunk( (int) world.getSpawnLocation().getX() );
+                int chunkZ = CoordinateUtils.fromBlockToChunk( (int) world.getSpawnLocation().getZ() );
+                this.executorService.execute( new ChunkPregenerator( world, chunkX, chunkZ, radius ) );
+            } catch ( NumberFormatException e ) {
+                this.logger.warn( "Invalid pregeneration radius: " + args[i + 1] );
+            }
+
+            return;
+        }
+    }
+
     public WorldAdapter getDefaultWorld() {
         return this.worldManager.getWorld( this.serverConfig.getWorld() );
     }
@@ -250,6 +328,21 @@ public class GoMintServer implements GoMint {
         return this.recipeManager;
     }
 
+    private void initExecutors() {
+        this.threadFactory = new ThreadFactory() {
+            private AtomicLong counter = new AtomicLong( 0 );
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread thread = Executors.defaultThreadFactory().newThread( r );
+                thread.setName( "GoMint Thread #" + counter.getAndIncrement() );
+                return thread;
+            }
+        };
+
+        this.executorService = new ThreadPoolExecutor( 0, 512, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), this.threadFactory );
+    }
+
     private void loadConfig() {
         this.serverConfig = new ServerConfig();
 
@@ -318,16 +411,7 @@ public class GoMintServer implements GoMint {
      * @return all online players
      */
     public Collection<Player> getPlayers() {
-        List<Player> playerList = new ArrayList<>();
-
-        worldManager.getWorlds().forEach( new Consumer<WorldAdapter>() {
-            @Override
-            public void accept( WorldAdapter worldAdapter ) {
-                playerList.addAll( worldAdapter.getPlayers() );
-            }
-        } );
-
-        return playerList;
+        return this.worldManager.getPlayers();
     }
 
     /**
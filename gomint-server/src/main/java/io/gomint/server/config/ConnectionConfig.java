@@ -21,4 +21,38 @@ public class ConnectionConfig extends SimpleConfig {
     @Comment("Level of compression used for packets. Lower = less CPU / higher traffic; Higher = more CPU / lower traffic")
     private int compressionLevel = 7;
 
+    @Comment("Level of compression used for batches of movement packets. They are sent every tick and hardly compress\n" +
+            "so they should be compressed as fast as possible")
+    private int movementCompressionLevel = 1;
+
+    @Comment("Level of compression used for chunks and recipes. Those are compressed once and sent to many players so\n" +
+            "spending more CPU on them saves a lot of traffic")
+    private int cachedPacketCompressionLevel = 9;
+
+    @Comment("Batches which are smaller than this amount of bytes are sent without compressing them")
+    private int compressionThreshold = 256;
+
+    @Comment("Amount of threads which verify logins. Checking the login chain, the skin and setting up encryption is done\n" +
+            "by those threads so joining players don't slow down the tick")
+    private int loginVerificationThreads = 2;
+
+    @Comment("Amount of logins which may wait for verification at the same time. Players who join while this many logins\n" +
+            "are waiting get disconnected and have to try again")
+    private int maxPendingLogins = 64;
+
+    @Comment("Amount of chunks which may be requested for and sent to a player per network tick. The nearest chunks and\n" +
+            "the ones in front of the player are sent first")
+    private int chunksPerTick = 8;
+
+    @Comment("Amount of bytes per network tick up to which chunks are sent to a player. Other packets sent to the player\n" +
+            "in the same tick count towards this, at least one chunk is sent per tick")
+    private int chunkBytesPerTick = 262144;
+
+    @Comment("Amount of chunks per player which may be loaded by the world but not sent yet")
+    private int maxPendingChunks = 32;
+
+    @Comment("Radius in chunks around the spawn point which a player needs before he gets spawned. Those chunks are loaded\n" +
+            "before everything else, the rest of the view distance is sent after the spawn")
+    private int spawnChunkRadius = 2;
+
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.config;
+
+import com.blackypaw.simpleconfig.SimpleConfig;
+import com.blackypaw.simpleconfig.annotation.Comment;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Configuration of the ranges around players in which entities are ticked every tick.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class EntityActivationConfig extends SimpleConfig {
+
+    @Comment("Distance in blocks to the nearest player up to which dropped items are ticked every tick")
+    private int itemRange = 16;
+
+    @Comment("Distance in blocks to the nearest player up to which animals are ticked every tick")
+    private int animalRange = 32;
+
+    @Comment("Distance in blocks to the nearest player up to which monsters are ticked every tick")
+    private int monsterRange = 32;
+
+    @Comment("Distance in blocks to the nearest player up to which all other entities are ticked every tick")
+    private int miscRange = 16;
+
+    @Comment("Entities outside of their activation range are ticked once every this many ticks. Set this to 1 to tick\n" +
+            "all entities every tick")
+    private int inactiveTickInterval = 20;
+
+}
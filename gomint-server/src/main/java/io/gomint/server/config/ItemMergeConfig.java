@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.config;
+
+import com.blackypaw.simpleconfig.SimpleConfig;
+import com.blackypaw.simpleconfig.annotation.Comment;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Configuration of how dropped items are merged into bigger stacks.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class ItemMergeConfig extends SimpleConfig {
+
+    @Comment("Distance in blocks in which dropped items of the same kind get merged into one stack")
+    private double mergeRadius = 2.5;
+
+    @Comment("Dropped items are merged once every this many ticks. Set this to 0 to never merge items")
+    private int mergeInterval = 20;
+
+    @Comment("Maximum amount of dropped items in one chunk. When more items get dropped the oldest one gets removed.\n" +
+            "Set this to 0 to allow any amount of items")
+    private int maxItemsPerChunk = 128;
+
+}
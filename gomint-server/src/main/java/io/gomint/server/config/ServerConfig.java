@@ -79,4 +79,56 @@ public class ServerConfig extends SimpleConfig {
     @Comment( "Control whether we want to load chunks when entities step over borders or not." )
     private boolean loadChunksForEntities = true;
 
+    @Comment( "Amount of threads used to tick worlds in parallel. Each world is ticked by one of those threads so the tick\n" +
+            "only takes as long as the slowest world. 1 ticks all worlds on the main thread, set this to 0 to use one\n" +
+            "thread per CPU core." )
+    private int worldTickThreads = 1;
+
+    @Comment( "Amount of threads used to tick the shards (8x8 chunk regions) of one world in parallel. Set this to 1 to\n" +
+            "tick all shards of a world on the thread which ticks the world." )
+    private int regionShardThreads = 1;
+
+    @Comment( "Amount of threads per world which load and save chunks. Each region file is only touched by one of\n" +
+            "those threads. Chunk loads for players are always done before saves." )
+    private int chunkIOThreads = 2;
+
+    @Comment( "Amount of threads per world which generate chunks that don't exist yet." )
+    private int chunkGenerationThreads = 2;
+
+    @Comment( "Amount of region files per world which are kept open. When more regions are used the least recently\n" +
+            "used file gets closed." )
+    private int maxOpenRegionFiles = 64;
+
+    @Comment( "Amount of saved chunks which are collected before they get written to a LevelDB world together.\n" +
+            "Collected chunks are also written as soon as there is nothing else to load or save." )
+    private int levelDBChunksPerBatch = 64;
+
+    @Comment( "Wait until the disk confirmed each batch of chunks written to a LevelDB world. Turning this off is faster\n" +
+            "but the last written chunks may be lost when the machine crashes." )
+    private boolean levelDBSyncWrites = true;
+
+    @Comment( "Amount of threads per world which search the paths of moving entities. Entities keep following their old\n" +
+            "path until the search is done." )
+    private int pathfindingThreads = 1;
+
+    @Comment( "Ranges around players in which entities are ticked every tick. Entities further away are ticked less often,\n" +
+            "entities which have come to rest are not moved until something wakes them up." )
+    private EntityActivationConfig entityActivation = new EntityActivationConfig();
+
+    @Comment( "Merging of dropped items which lie next to each other and the limit of dropped items per chunk" )
+    private ItemMergeConfig itemMerge = new ItemMergeConfig();
+
+    // ------------------------ Performance Report
+    @Comment( "Record how long the network, the worlds, entities and the other parts of every tick take. The time spent\n" +
+            "on measuring is recorded too and shown in the performance viewer, the cost per section is logged on startup." )
+    private boolean enablePerformanceReport = false;
+
+    @Comment( "Port on localhost to which the performance viewer can connect to get a live view of the report. Set this to 0\n" +
+            "to only record ticks without streaming them." )
+    private int performanceReportPort = 19140;
+
+    @Comment( "The duration of every tick is recorded, its sections only on every n-th tick. Timing every tick can cost up\n" +
+            "to 4% of the tick time, every tenth tick keeps it below 1%. Set this to 1 to time the sections of every tick." )
+    private int performanceReportSampleInterval = 10;
+
 }
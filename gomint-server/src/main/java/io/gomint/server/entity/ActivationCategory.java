@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.entity;
+
+/**
+ * Categories of entities which share an activation range. Entities further away from every player than the range
+ * of their category are only ticked every few ticks. Players are always ticked.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public enum ActivationCategory {
+
+    /**
+     * Players, they are always active
+     */
+    PLAYER,
+
+    /**
+     * Dropped items
+     */
+    ITEM,
+
+    /**
+     * Passive mobs and golems
+     */
+    ANIMAL,
+
+    /**
+     * Hostile mobs
+     */
+    MONSTER,
+
+    /**
+     * Projectiles, vehicles and everything else
+     */
+    MISC;
+
+    /**
+     * Get the category of the given type of entity
+     *
+     * @param type The type of the entity
+     * @return the category of the entity type
+     */
+    public static ActivationCategory of( EntityType type ) {
+        switch ( type ) {
+            case PLAYER:
+                return PLAYER;
+
+            case ITEM_DROP:
+                return ITEM;
+
+            case CHICKEN:
+            case COW:
+            case PIG:
+            case SHEEP:
+            case WOLF:
+            case VILLAGER:
+            case MUSHROOM_COW:
+            case SQUID:
+            case RABBIT:
+            case BAT:
+            case IRON_GOLEM:
+            case SNOW_GOLEM:
+                return ANIMAL;
+
+            case ZOMBIE:
+            case CREEPER:
+            case SKELETON:
+            case SPIDER:
+            case PIG_ZOMBIE:
+            case SLIME:
+            case ENDERMAN:
+            case SILVERFISH:
+            case CAVESPIDER:
+            case GHAST:
+            case LAVA_SLIME:
+            case BLAZE:
+            case ZOMBIE_VILLAGER:
+            case WITCH:
+                return MONSTER;
+
+            default:
+                return MISC;
+        }
+    }
+
+}
@@ -16,7 +16,7 @@ import io.gomint.server.network.packet.Packet;
 import io.gomint.server.network.packet.PacketSpawnEntity;
 import io.gomint.server.world.CoordinateUtils;
 import io.gomint.server.world.WorldAdapter;
-import io.gomint.server.world.block.Block;
+import io.gomint.server.world.block.BlockState;
 import io.gomint.util.Numbers;
 import io.gomint.world.Chunk;
 import lombok.Getter;
@@ -46,6 +46,7 @@ public abstract class Entity implements io.gomint.entity.Entity {
     // Useful stuff for movement. Those are values for per client tick
     protected static final float GRAVITY = 0.04f;
     protected static final float DRAG = 0.02f;
+    private static final float REST_MOTION = 0.003f;
 
     private static final AtomicLong ENTITY_ID = new AtomicLong( 0 );
 
@@ -108,6 +109,15 @@ public abstract class Entity implements io.gomint.entity.Entity {
     private TransformComponent transform;
     private float lastUpdateDt;
 
+    /**
+     * Resting state, sleeping entities don't calculate physics until something wakes them up
+     */
+    @Getter
+    private boolean sleeping;
+    private float sleepX;
+    private float sleepY;
+    private float sleepZ;
+
     /**
      * Construct a new Entity
      *
@@ -172,9 +182,18 @@ public abstract class Entity implements io.gomint.entity.Entity {
     public void update( long currentTimeMS, float dT ) {
         this.transform.update( currentTimeMS, dT );
 
+        // Entities which have been moved or pushed since they fell asleep need physics again
+        if ( this.sleeping && ( this.getPositionX() != this.sleepX || this.getPositionY() != this.sleepY ||
+                this.getPositionZ() != this.sleepZ || this.transform.getMotionX() != 0 ||
+                this.transform.getMotionY() != 0 || this.transform.getMotionZ() != 0 ) ) {
+            this.wakeUp();
+        }
+
         // Check if we need to calc motion
         this.lastUpdateDt += dT;
-        if ( this.lastUpdateDt >= CLIENT_TICK_RATE ) {
+        if ( this.sleeping ) {
+            this.lastUpdateDt = 0;
+        } else if ( this.lastUpdateDt >= CLIENT_TICK_RATE ) {
             // Calc motion
             this.transform.manipulateMotion( 0, -Entity.GRAVITY, 0 );
 
@@ -303,6 +322,15 @@ public abstract class Entity implements io.gomint.entity.Entity {
                 this.transform.setMotionZ( 0 );
             }
 
+            // Entities which lie on the ground and don't slide anymore can stop calculating physics
+            if ( this.onGround && dY == 0 && Math.abs( movX ) < REST_MOTION && Math.abs( movZ ) < REST_MOTION && this.canSleep() ) {
+                this.transform.setMotion( 0, 0, 0 );
+                this.sleeping = true;
+                this.sleepX = this.getPositionX();
+                this.sleepY = this.getPositionY();
+                this.sleepZ = this.getPositionZ();
+            }
+
             // Reset last update
             this.lastUpdateDt = 0;
         }
@@ -322,6 +350,26 @@ public abstract class Entity implements io.gomint.entity.Entity {
         }
     }
 
+    /**
+     * Let this entity calculate physics again. This needs to be called when the blocks around a resting entity change
+     * or something pushes it.
+     */
+    public void wakeUp() {
+        if ( this.sleeping ) {
+            this.sleeping = false;
+            this.lastUpdateDt = 0;
+        }
+    }
+
+    /**
+     * Check if this entity may stop calculating physics while it is resting on the ground
+     *
+     * @return true when the entity may sleep, false if not
+     */
+    protected boolean canSleep() {
+        return true;
+    }
+
     private void updateFallState( float dY ) {
         // When we are onground again we need to deal damage
         if ( this.onGround ) {
@@ -355,9 +403,8 @@ public abstract class Entity implements io.gomint.entity.Entity {
         int fullBlockZ = Numbers.fastFloor( this.transform.getPositionZ() );
 
         // Are we stuck inside a block?
-        Block block;
-        if ( ( block = this.world.getBlockAt( fullBlockX, fullBlockY, fullBlockZ ) ).isSolid() &&
-                block.getBoundingBox().intersectsWith( this.boundingBox ) ) {
+        BlockState state = this.world.getBlockState( fullBlockX, fullBlockY, fullBlockZ );
+        if ( state != null && state.isSolid() && state.intersects( fullBlockX, fullBlockY, fullBlockZ, this.boundingBox ) ) {
             LOGGER.debug( "Entity " + this.getClass().getSimpleName() + "@" + getEntityId() + " is stuck in a block" );
 
             // Calc with how much force we can get out of here, this depends on how far we are in
@@ -369,12 +416,12 @@ public abstract class Entity implements io.gomint.entity.Entity {
             double force = Math.random() * 0.2 + 0.1;
 
             // Check for free blocks
-            boolean freeMinusX = !this.world.getBlockAt( fullBlockX - 1, fullBlockY, fullBlockZ ).isSolid();
-            boolean freePlusX = !this.world.getBlockAt( fullBlockX + 1, fullBlockY, fullBlockZ ).isSolid();
-            boolean freeMinusY = !this.world.getBlockAt( fullBlockX, fullBlockY - 1, fullBlockZ ).isSolid();
-            boolean freePlusY = !this.world.getBlockAt( fullBlockX, fullBlockY + 1, fullBlockZ ).isSolid();
-            boolean freeMinusZ = !this.world.getBlockAt( fullBlockX, fullBlockY, fullBlockZ - 1 ).isSolid();
-            boolean freePlusZ = !this.world.getBlockAt( fullBlockX, fullBlockY, fullBlockZ + 1 ).isSolid();
+            boolean freeMinusX = this.isFree( fullBlockX - 1, fullBlockY, fullBlockZ );
+            boolean freePlusX = this.isFree( fullBlockX + 1, fullBlockY, fullBlockZ );
+            boolean freeMinusY = this.isFree( fullBlockX, fullBlockY - 1, fullBlockZ );
+            boolean freePlusY = this.isFree( fullBlockX, fullBlockY + 1, fullBlockZ );
+            boolean freeMinusZ = this.isFree( fullBlockX, fullBlockY, fullBlockZ - 1 );
+            boolean freePlusZ = this.isFree( fullBlockX, fullBlockY, fullBlockZ + 1 );
 
             // Since we want the lowest amount of push we have to select the smallest side
             byte direction = -1;
@@ -447,6 +494,12 @@ public abstract class Entity implements io.gomint.entity.Entity {
         }
     }
 
+    private boolean isFree( int x, int y, int z ) {
+        // Unloaded blocks are not free, entities should not get pushed out of the loaded area
+        BlockState state = this.world.getBlockState( x, y, z );
+        return state != null && !state.isSolid();
+    }
+
     // ==================================== TRANSFORMATION ==================================== //
 
     /**
@@ -466,6 +519,7 @@ public abstract class Entity implements io.gomint.entity.Entity {
     @Override
     public void setVelocity( Vector velocity ) {
         this.transform.setMotion( velocity.getX(), velocity.getY(), velocity.getZ() );
+        this.wakeUp();
     }
 
     /**
@@ -688,8 +742,8 @@ public abstract class Entity implements io.gomint.entity.Entity {
      * @return the chunk in which the entity is
      */
     public Chunk getChunk() {
-        int chunkX = CoordinateUtils.fromBlockToChunk( (int) this.getPositionX() );
-        int chunkZ = CoordinateUtils.fromBlockToChunk( (int) this.getPositionZ() );
+        int chunkX = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( this.getPositionX() ) );
+        int chunkZ = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( this.getPositionZ() ) );
 
         return this.world.getChunk( chunkX, chunkZ );
     }
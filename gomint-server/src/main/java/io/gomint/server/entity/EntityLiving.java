@@ -72,6 +72,9 @@ public abstract class EntityLiving extends Entity implements InventoryHolder {
     }
 
     public void attack( double damage, DamageCause cause ) {
+        // Knockback and dying need physics
+        this.wakeUp();
+
         // TODO: Implement damage handling
     }
 
@@ -141,6 +141,7 @@ public class EntityPlayer extends EntityLiving implements Player, InventoryHolde
         int tempViewDistance = Math.min( viewDistance, this.getWorld().getServer().getServerConfig().getViewDistance() );
         if ( this.viewDistance != tempViewDistance ) {
             this.viewDistance = tempViewDistance;
+            this.world.getEntityManager().getSpatialIndex().updateInterest( this );
             this.connection.onViewDistanceChanged();
         }
     }
@@ -238,6 +239,18 @@ public class EntityPlayer extends EntityLiving implements Player, InventoryHolde
     public void teleport( Location to ) {
         // Check if we need to change worlds
         if ( !to.getWorld().equals( getWorld() ) ) {
+            // Changing worlds touches two worlds at once so this needs to wait until no world is ticking
+            if ( this.world.getServer().getWorldManager().isTickingParallel() ) {
+                this.world.getServer().getWorldManager().handoff( new Runnable() {
+                    @Override
+                    public void run() {
+                        teleport( to );
+                    }
+                } );
+
+                return;
+            }
+
             // Change worlds first
             this.connection.sendMovePlayer( new Location( to.getWorld(), getPositionX() + 1000000, 4000, getPositionZ() + 1000000 ) );
             getWorld().removePlayer( this );
@@ -258,6 +271,12 @@ public class EntityPlayer extends EntityLiving implements Player, InventoryHolde
 
     // ==================================== UPDATING ==================================== //
 
+    @Override
+    protected boolean canSleep() {
+        // Players are moved by their client
+        return false;
+    }
+
     @Override
     public void update( long currentTimeMS, float dT ) {
         super.update( currentTimeMS, dT );
@@ -270,7 +289,7 @@ public class EntityPlayer extends EntityLiving implements Player, InventoryHolde
                     EntityItem entityItem = (EntityItem) nearbyEntity;
 
                     // Check if we can pick it up
-                    if ( entityItem.isUnlocked() && currentTimeMS > entityItem.getPickupTime() ) {
+                    if ( !entityItem.isDead() && entityItem.isUnlocked() && currentTimeMS > entityItem.getPickupTime() ) {
                         // Check if we have place in out inventory to store this item
                         if ( !this.inventory.hasPlaceFor( entityItem.getItemStack() ) ) {
                             continue;
@@ -281,9 +300,10 @@ public class EntityPlayer extends EntityLiving implements Player, InventoryHolde
                         packet.setItemEntityId( entityItem.getEntityId() );
                         packet.setPlayerEntityId( this.getEntityId() );
 
-                        for ( Player player : this.world.getPlayers() ) {
-                            if ( player instanceof EntityPlayer ) {
-                                ( (EntityPlayer) player ).getConnection().addToSendQueue( packet );
+                        List<EntityPlayer> subscribers = this.world.getEntityManager().getSpatialIndex().getSubscribers( entityItem );
+                        if ( subscribers != null ) {
+                            for ( int i = 0; i < subscribers.size(); i++ ) {
+                                subscribers.get( i ).getConnection().addToSendQueue( packet );
                             }
                         }
 
@@ -347,10 +367,7 @@ public class EntityPlayer extends EntityLiving implements Player, InventoryHolde
         this.inventory.setItem( 2, new ItemStack( Material.DIAMOND_CHESTPLATE ) );
 
         // Send crafting recipes
-        PacketBatch batch = new PacketBatch();
-        batch.setPayload( this.connection.getEncryptionHandler().encryptInputForClient(
-                this.world.getServer().getRecipeManager().getCraftingRecipesBatch().getPayload() ) );
-        this.connection.send( batch );
+        this.connection.sendSharedBatch( this.world.getServer().getRecipeManager().getCraftingRecipesBatch() );
     }
 
     @Override
@@ -1,10 +1,8 @@
 package io.gomint.server.entity.ai;
 
-import io.gomint.inventory.ItemStack;
-import io.gomint.inventory.Material;
 import io.gomint.math.Vector;
+import io.gomint.server.async.Future;
 import io.gomint.server.entity.Entity;
-import io.gomint.server.entity.passive.EntityItem;
 import io.gomint.server.entity.pathfinding.PathfindingEngine;
 import io.gomint.server.util.IntTriple;
 import io.gomint.server.world.WorldAdapter;
@@ -13,7 +11,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 /**
  * @author geNAZt
@@ -23,11 +20,16 @@ public class AIFollowEntity extends AIState {
 
     private static final Logger LOGGER = LoggerFactory.getLogger( AIFollowEntity.class );
 
+    // Minimum time between two path requests while a path is followed
+    private static final long REPATH_INTERVAL = 500;
+
     private final WorldAdapter world;
     private final PathfindingEngine pathfinding;
 
     private int currentPathNode;
     private List<IntTriple> path;
+    private Future<List<IntTriple>> pendingPath;
+    private long lastPathRequest;
 
     private Entity followEntity;
 
@@ -60,6 +62,13 @@ public class AIFollowEntity extends AIState {
             return;
         }
 
+        // Take over the path once the pathfinding workers are done with it
+        if ( this.pendingPath != null && this.pendingPath.isDone() ) {
+            this.path = this.pendingPath.tryGet();
+            this.currentPathNode = 0;
+            this.pendingPath = null;
+        }
+
         if ( this.path != null && this.currentPathNode < this.path.size() ) {
             Vector position = this.pathfinding.getTransform().getPosition();
 
@@ -86,21 +95,31 @@ public class AIFollowEntity extends AIState {
             if ( blockPosition.equals( node ) ) {
                 this.currentPathNode++;
             }
-        } else if ( this.followEntity.isOnGround() ){
-            LOGGER.debug( "Current follow position: " + this.followEntity.getLocation() );
-
-            this.pathfinding.setGoal( this.followEntity.getLocation() );
-            this.path = this.pathfinding.getPath();
-            this.currentPathNode = 0;
-
-            LOGGER.debug( "Path to follow entity " + this.followEntity );
-            for ( IntTriple intTriple : this.path ) {
-                EntityItem item = new EntityItem( new ItemStack( Material.BRICK ), this.world );
-                this.world.spawnEntityAt( item, intTriple.toVector() );
 
-                LOGGER.debug( intTriple.toString() );
+            // Extend the path while walking it when the target moved away from its end
+            if ( this.pendingPath == null && this.followEntity.isOnGround() &&
+                    currentTimeMS - this.lastPathRequest > REPATH_INTERVAL && this.hasTargetMoved() ) {
+                this.requestPath( currentTimeMS );
             }
+        } else if ( this.pendingPath == null && this.followEntity.isOnGround() ) {
+            this.requestPath( currentTimeMS );
         }
     }
 
+    private void requestPath( long currentTimeMS ) {
+        LOGGER.debug( "Current follow position: " + this.followEntity.getLocation() );
+
+        this.pathfinding.setGoal( this.followEntity.getLocation() );
+        this.pendingPath = this.pathfinding.requestPath();
+        this.lastPathRequest = currentTimeMS;
+    }
+
+    private boolean hasTargetMoved() {
+        IntTriple end = this.path.get( this.path.size() - 1 );
+        Vector target = this.followEntity.getPosition();
+
+        return Math.abs( Numbers.fastFloor( target.getX() ) - end.getX() ) + Math.abs( Numbers.fastFloor( target.getY() ) - end.getY() ) +
+                Math.abs( Numbers.fastFloor( target.getZ() ) - end.getZ() ) > 1;
+    }
+
 }
@@ -2,6 +2,7 @@ package io.gomint.server.entity.ai;
 
 import io.gomint.math.Location;
 import io.gomint.math.Vector;
+import io.gomint.server.async.Future;
 import io.gomint.server.entity.pathfinding.PathfindingEngine;
 import io.gomint.server.util.IntTriple;
 import io.gomint.server.world.WorldAdapter;
@@ -30,6 +31,7 @@ public class AIPassiveIdleMovement extends AIState {
 
     private int currentPathNode;
     private List<IntTriple> path;
+    private Future<List<IntTriple>> pendingPath;
 
     private long lastPointReachedTime;
 
@@ -48,6 +50,18 @@ public class AIPassiveIdleMovement extends AIState {
 
     @Override
     public void update( long currentTimeMS, float dT ) {
+        // Take over the path once the pathfinding workers are done with it
+        if ( this.pendingPath != null ) {
+            if ( !this.pendingPath.isDone() ) {
+                return;
+            }
+
+            this.path = this.pendingPath.tryGet();
+            this.currentPathNode = 0;
+            this.lastPointReachedTime = currentTimeMS;
+            this.pendingPath = null;
+        }
+
         if ( this.path != null && this.currentPathNode < this.path.size() ) {
             Vector position = this.pathfinding.getTransform().getPosition();
 
@@ -67,18 +81,18 @@ public class AIPassiveIdleMovement extends AIState {
                 this.currentPathNode++;
             } else if ( currentTimeMS - this.lastPointReachedTime > TimeUnit.SECONDS.toMillis( 5 ) ) {
                 // Generating new goal due to entity being stuck in movement loop
-                this.pathfinding.setGoal( this.generateRandomGoal() );
-                this.path = this.pathfinding.getPath();
-                this.currentPathNode = 0;
+                this.requestRandomPath();
             }
         } else {
-            this.pathfinding.setGoal( this.generateRandomGoal() );
-            this.path = this.pathfinding.getPath();
-            this.currentPathNode = 0;
-            this.lastPointReachedTime = currentTimeMS;
+            this.requestRandomPath();
         }
     }
 
+    private void requestRandomPath() {
+        this.pathfinding.setGoal( this.generateRandomGoal() );
+        this.pendingPath = this.pathfinding.requestPath();
+    }
+
     /**
      * Generates a new random goal within a reasonable distance from the object's
      * current position.
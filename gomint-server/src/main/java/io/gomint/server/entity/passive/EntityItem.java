@@ -7,6 +7,7 @@ import io.gomint.server.entity.EntityType;
 import io.gomint.server.network.packet.Packet;
 import io.gomint.server.network.packet.PacketAddItemEntity;
 import io.gomint.server.world.WorldAdapter;
+import io.gomint.server.world.block.BlockState;
 import lombok.Getter;
 import lombok.ToString;
 
@@ -68,6 +69,39 @@ public class EntityItem extends Entity implements ItemDrop {
         this.unlocked = false;
     }
 
+    /**
+     * Check if the given item drop can be merged into this one. Both drops need to be unlocked and hold the same kind
+     * of item, and the merged stack may not be bigger than the maximum stack size.
+     *
+     * @param other The item drop which should be merged into this one
+     * @return true when the drops can be merged, false if not
+     */
+    public boolean canMergeWith( EntityItem other ) {
+        return this != other && this.unlocked && other.unlocked && !this.isDead() && !other.isDead() &&
+                this.itemStack.equals( other.itemStack ) &&
+                this.itemStack.getAmount() + other.itemStack.getAmount() <= this.itemStack.getMaximumAmount();
+    }
+
+    /**
+     * Move all items of the given drop into this one. The other drop is despawned afterwards.
+     *
+     * @param other The item drop which should be merged into this one
+     */
+    public void mergeWith( EntityItem other ) {
+        this.itemStack.setAmount( this.itemStack.getAmount() + other.itemStack.getAmount() );
+        this.pickupTime = Math.max( this.pickupTime, other.pickupTime );
+        other.despawn();
+    }
+
+    /**
+     * Get the amount of items in this drop
+     *
+     * @return amount of items
+     */
+    public int getAmount() {
+        return this.itemStack.getAmount();
+    }
+
     @Override
     public void update( long currentTimeMS, float dT ) {
         // Entity base tick (movement)
@@ -75,13 +109,18 @@ public class EntityItem extends Entity implements ItemDrop {
 
         // Check if we need to calc friction
         this.lastUpdateDt += dT;
-        if ( this.lastUpdateDt >= CLIENT_TICK_RATE ) {
+        if ( this.isSleeping() ) {
+            this.lastUpdateDt = 0;
+        } else if ( this.lastUpdateDt >= CLIENT_TICK_RATE ) {
             // Calculate friction
             float friction = 1 - DRAG;
             if ( this.onGround && ( Math.abs( this.getMotionX() ) > 0.00001 || Math.abs( this.getMotionZ() ) > 0.00001 ) ) {
-                friction = this.world.getBlockAt( (int) this.getPositionX(),
+                BlockState ground = this.world.getBlockState( (int) this.getPositionX(),
                         (int) ( this.getPositionY() - 1 ),
-                        (int) this.getPositionZ() ).getFrictionFactor() * friction;
+                        (int) this.getPositionZ() );
+                if ( ground != null ) {
+                    friction = ground.getFrictionFactor() * friction;
+                }
             }
 
             // Calculate new motion
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.entity.pathfinding;
+
+import io.gomint.server.world.block.BlockState;
+
+/**
+ * How a walking entity can pass through a block. Chunks keep one of these values per block for pathfinding, so
+ * searches never need to look at block states.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public final class Passability {
+
+    /**
+     * Nothing is known about the block, its chunk is not loaded
+     */
+    public static final byte UNKNOWN = 0;
+
+    /**
+     * The block can be walked through
+     */
+    public static final byte PASSABLE = 1;
+
+    /**
+     * The block is solid but low enough to be stepped onto
+     */
+    public static final byte STEP = 2;
+
+    /**
+     * The block is solid and can't be walked onto
+     */
+    public static final byte SOLID = 3;
+
+    private Passability() {
+        throw new AssertionError( "Cannot instantiate Passability!" );
+    }
+
+    /**
+     * Get how the given block can be passed
+     *
+     * @param state The state of the block
+     * @return one of the constants of this class
+     */
+    public static byte of( BlockState state ) {
+        if ( state.isPassThrough() ) {
+            return PASSABLE;
+        }
+
+        // The bounding box of a state starts at the bottom of the block
+        float height = state.getMaxY();
+        return height > 0 && height <= 0.5F ? STEP : SOLID;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.entity.pathfinding;
+
+import io.gomint.server.async.Future;
+import io.gomint.server.util.IntTriple;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A path which should be searched. When the request has the beginning of an older path only the way from the
+ * end of that path to the new goal is searched, the full search is only done when that way can't be found
+ * within a few nodes.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@Getter
+class PathRequest {
+
+    /**
+     * Amount of nodes after which a full search gives up
+     */
+    static final int MAXIMUM_NODES_TO_EXPLORE = 5000;
+
+    /**
+     * Amount of nodes after which extending an older path gives up
+     */
+    static final int MAXIMUM_NODES_TO_EXTEND = 256;
+
+    private final PathfindingSnapshot snapshot;
+    private final int startX;
+    private final int startY;
+    private final int startZ;
+    private final int goalX;
+    private final int goalY;
+    private final int goalZ;
+    private final List<IntTriple> prefix;
+    private final Future<List<IntTriple>> future = new Future<>();
+
+    /**
+     * Create a new request
+     *
+     * @param snapshot The blocks in which should be searched, it has to contain the start and the goal
+     * @param startX   The x coordinate of the block to start from
+     * @param startY   The y coordinate of the block to start from
+     * @param startZ   The z coordinate of the block to start from
+     * @param goalX    The x coordinate of the block which should be reached
+     * @param goalY    The y coordinate of the block which should be reached
+     * @param goalZ    The z coordinate of the block which should be reached
+     * @param prefix   The part of an older path which starts at the start block and may be extended, may be null
+     */
+    PathRequest( PathfindingSnapshot snapshot, int startX, int startY, int startZ, int goalX, int goalY, int goalZ, List<IntTriple> prefix ) {
+        this.snapshot = snapshot;
+        this.startX = startX;
+        this.startY = startY;
+        this.startZ = startZ;
+        this.goalX = goalX;
+        this.goalY = goalY;
+        this.goalZ = goalZ;
+        this.prefix = prefix;
+    }
+
+    /**
+     * Search the path and resolve the future of this request with it
+     *
+     * @param search The search which should be used
+     */
+    void run( PathSearch search ) {
+        try {
+            this.future.resolve( this.search( search ) );
+        } catch ( Throwable t ) {
+            this.future.fail( t );
+        }
+    }
+
+    private List<IntTriple> search( PathSearch search ) {
+        if ( this.prefix != null ) {
+            IntTriple end = this.prefix.get( this.prefix.size() - 1 );
+            List<IntTriple> extension = search.search( this.snapshot, end.getX(), end.getY(), end.getZ(),
+                    this.goalX, this.goalY, this.goalZ, MAXIMUM_NODES_TO_EXTEND );
+
+            if ( extension != null ) {
+                // The extension starts with the last block of the prefix
+                List<IntTriple> path = new ArrayList<>( this.prefix.size() + extension.size() - 1 );
+                path.addAll( this.prefix );
+                path.addAll( extension.subList( 1, extension.size() ) );
+                return path;
+            }
+        }
+
+        return search.search( this.snapshot, this.startX, this.startY, this.startZ, this.goalX, this.goalY, this.goalZ, MAXIMUM_NODES_TO_EXPLORE );
+    }
+
+}
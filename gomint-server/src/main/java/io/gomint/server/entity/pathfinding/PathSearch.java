@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.entity.pathfinding;
+
+import io.gomint.server.util.IntTriple;
+import io.gomint.server.world.CoordinateUtils;
+import lombok.Getter;
+import net.openhft.koloboke.collect.map.LongIntMap;
+import net.openhft.koloboke.collect.map.hash.HashLongIntMaps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A* search over a {@link PathfindingSnapshot}. Nodes live in parallel primitive arrays and are found by their
+ * packed block position, the open set is a binary heap of node indices which knows where each node sits so a
+ * shorter way to a node can move it up in place. All arrays are kept between searches, so a search only
+ * allocates the path it returns once the arrays have grown large enough.
+ * <p>
+ * A search must only be used by one thread at a time, {@link #forThread()} gives every thread its own.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+final class PathSearch {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int CLOSED = -1;
+
+    private static final ThreadLocal<PathSearch> SEARCHES = new ThreadLocal<PathSearch>() {
+        @Override
+        protected PathSearch initialValue() {
+            return new PathSearch();
+        }
+    };
+
+    // Node index by packed block position
+    private final LongIntMap nodes = HashLongIntMaps.newMutableMap( INITIAL_CAPACITY );
+    private int nodeCount;
+
+    // Nodes
+    private int[] x = new int[INITIAL_CAPACITY];
+    private int[] y = new int[INITIAL_CAPACITY];
+    private int[] z = new int[INITIAL_CAPACITY];
+    private int[] g = new int[INITIAL_CAPACITY];
+    private int[] f = new int[INITIAL_CAPACITY];
+    private int[] predecessor = new int[INITIAL_CAPACITY];
+    private int[] heapSlot = new int[INITIAL_CAPACITY];
+
+    // Open set
+    private int[] heap = new int[INITIAL_CAPACITY];
+    private int heapSize;
+
+    /**
+     * Amount of nodes which have been explored by the last search
+     */
+    @Getter
+    private int exploredNodes;
+
+    /**
+     * Get the search of the current thread
+     *
+     * @return search which may be used by the current thread
+     */
+    static PathSearch forThread() {
+        return SEARCHES.get();
+    }
+
+    /**
+     * Find the shortest path between two blocks. Entities walk from block to block including diagonals, they
+     * may step onto low blocks and fall down by one block. Unknown blocks are never entered.
+     *
+     * @param snapshot The blocks which can be walked through
+     * @param startX   The x coordinate of the block to start from
+     * @param startY   The y coordinate of the block to start from
+     * @param startZ   The z coordinate of the block to start from
+     * @param goalX    The x coordinate of the block which should be reached
+     * @param goalY    The y coordinate of the block which should be reached
+     * @param goalZ    The z coordinate of the block which should be reached
+     * @param maxNodes The amount of nodes after which the search gives up
+     * @return the blocks from the start to the goal or null when no path has been found
+     */
+    List<IntTriple> search( PathfindingSnapshot snapshot, int startX, int startY, int startZ, int goalX, int goalY, int goalZ, int maxNodes ) {
+        this.nodes.clear();
+        this.nodeCount = 0;
+        this.heapSize = 0;
+        this.exploredNodes = 0;
+
+        int start = this.addNode( startX, startY, startZ, 0, estimateDistance( startX, startY, startZ, goalX, goalY, goalZ ), -1 );
+        this.push( start );
+
+        while ( this.heapSize > 0 && this.exploredNodes < maxNodes ) {
+            int node = this.pop();
+            int nodeX = this.x[node];
+            int nodeY = this.y[node];
+            int nodeZ = this.z[node];
+
+            if ( nodeX == goalX && nodeY == goalY && nodeZ == goalZ ) {
+                return this.buildPath( node );
+            }
+
+            for ( int neighbourX = nodeX - 1; neighbourX <= nodeX + 1; neighbourX++ ) {
+                for ( int neighbourZ = nodeZ - 1; neighbourZ <= nodeZ + 1; neighbourZ++ ) {
+                    if ( neighbourX == nodeX && neighbourZ == nodeZ ) {
+                        continue;
+                    }
+
+                    // Check if the block is walkable or can be stepped onto
+                    int neighbourY = nodeY;
+                    byte passability = snapshot.get( neighbourX, neighbourY, neighbourZ );
+                    if ( passability == Passability.STEP ) {
+                        neighbourY++;
+                    } else if ( passability != Passability.PASSABLE ) {
+                        continue;
+                    }
+
+                    // We need to account for gravity here
+                    if ( snapshot.get( neighbourX, neighbourY - 1, neighbourZ ) == Passability.PASSABLE ) {
+                        neighbourY--;
+                    }
+
+                    int g = this.g[node] + Math.abs( neighbourX - nodeX ) + Math.abs( neighbourZ - nodeZ );
+                    long key = CoordinateUtils.toLong( neighbourX, neighbourY, neighbourZ );
+                    int neighbour = this.nodes.getOrDefault( key, -1 );
+
+                    if ( neighbour == -1 ) {
+                        int f = g + estimateDistance( neighbourX, neighbourY, neighbourZ, goalX, goalY, goalZ );
+                        this.push( this.addNode( neighbourX, neighbourY, neighbourZ, g, f, node ) );
+                    } else if ( this.heapSlot[neighbour] != CLOSED && g < this.g[neighbour] ) {
+                        this.f[neighbour] -= this.g[neighbour] - g;
+                        this.g[neighbour] = g;
+                        this.predecessor[neighbour] = node;
+                        this.siftUp( this.heapSlot[neighbour] );
+                    }
+                }
+            }
+
+            this.exploredNodes++;
+        }
+
+        // Either has the threshold been exceeded or there is no solution to the problem
+        return null;
+    }
+
+    private List<IntTriple> buildPath( int node ) {
+        int length = 0;
+        for ( int current = node; current != -1; current = this.predecessor[current] ) {
+            length++;
+        }
+
+        List<IntTriple> path = new ArrayList<>( length );
+        for ( int current = node; current != -1; current = this.predecessor[current] ) {
+            path.add( new IntTriple( this.x[current], this.y[current], this.z[current] ) );
+        }
+
+        Collections.reverse( path );
+        return path;
+    }
+
+    private int addNode( int x, int y, int z, int g, int f, int predecessor ) {
+        int node = this.nodeCount++;
+        if ( node == this.x.length ) {
+            int capacity = node << 1;
+            this.x = Arrays.copyOf( this.x, capacity );
+            this.y = Arrays.copyOf( this.y, capacity );
+            this.z = Arrays.copyOf( this.z, capacity );
+            this.g = Arrays.copyOf( this.g, capacity );
+            this.f = Arrays.copyOf( this.f, capacity );
+            this.predecessor = Arrays.copyOf( this.predecessor, capacity );
+            this.heapSlot = Arrays.copyOf( this.heapSlot, capacity );
+        }
+
+        this.x[node] = x;
+        this.y[node] = y;
+        this.z[node] = z;
+        this.g[node] = g;
+        this.f[node] = f;
+        this.predecessor[node] = predecessor;
+        this.nodes.put( CoordinateUtils.toLong( x, y, z ), node );
+        return node;
+    }
+
+    // ==================================== OPEN SET ==================================== //
+
+    private void push( int node ) {
+        if ( this.heapSize == this.heap.length ) {
+            this.heap = Arrays.copyOf( this.heap, this.heapSize << 1 );
+        }
+
+        this.heap[this.heapSize] = node;
+        this.heapSlot[node] = this.heapSize;
+        this.siftUp( this.heapSize++ );
+    }
+
+    private int pop() {
+        int node = this.heap[0];
+        this.heapSlot[node] = CLOSED;
+
+        int last = this.heap[--this.heapSize];
+        if ( this.heapSize > 0 ) {
+            this.heap[0] = last;
+            this.heapSlot[last] = 0;
+            this.siftDown( 0 );
+        }
+
+        return node;
+    }
+
+    private void siftUp( int slot ) {
+        int node = this.heap[slot];
+        while ( slot > 0 ) {
+            int parentSlot = ( slot - 1 ) >> 1;
+            int parent = this.heap[parentSlot];
+            if ( this.f[parent] <= this.f[node] ) {
+                break;
+            }
+
+            this.heap[slot] = parent;
+            this.heapSlot[parent] = slot;
+            slot = parentSlot;
+        }
+
+        this.heap[slot] = node;
+        this.heapSlot[node] = slot;
+    }
+
+    private void siftDown( int slot ) {
+        int node = this.heap[slot];
+        while ( true ) {
+            int childSlot = ( slot << 1 ) + 1;
+            if ( childSlot >= this.heapSize ) {
+                break;
+            }
+
+            // Take the smaller one of both children
+            if ( childSlot + 1 < this.heapSize && this.f[this.heap[childSlot + 1]] < this.f[this.heap[childSlot]] ) {
+                childSlot++;
+            }
+
+            int child = this.heap[childSlot];
+            if ( this.f[node] <= this.f[child] ) {
+                break;
+            }
+
+            this.heap[slot] = child;
+            this.heapSlot[child] = slot;
+            slot = childSlot;
+        }
+
+        this.heap[slot] = node;
+        this.heapSlot[node] = slot;
+    }
+
+    private static int estimateDistance( int x, int y, int z, int goalX, int goalY, int goalZ ) {
+        return Math.abs( goalX - x ) + Math.abs( goalY - y ) + Math.abs( goalZ - z );
+    }
+
+}
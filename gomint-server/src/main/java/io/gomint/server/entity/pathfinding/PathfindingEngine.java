@@ -1,27 +1,33 @@
 package io.gomint.server.entity.pathfinding;
 
-import io.gomint.math.AxisAlignedBB;
 import io.gomint.math.Location;
-import io.gomint.math.Vector;
+import io.gomint.server.async.Future;
 import io.gomint.server.entity.Transformable;
 import io.gomint.server.util.IntTriple;
 import io.gomint.server.world.WorldAdapter;
-import io.gomint.server.world.block.Block;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.gomint.util.Numbers;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * A pathfinding engine instance may be used to navigate an object through the game world.
  * It may be given the location to navigate to and it will try to find the best route available.
+ * <p>
+ * Paths are searched on the pathfinding workers of the world in a snapshot of the blocks between the
+ * object and its goal. The last path is kept as long as no block of its snapshot changes: asking for the
+ * same goal again gives the rest of that path and a goal which only moved a few blocks extends it.
  *
  * @author BlackyPaw
  * @version 1.0
  */
 public class PathfindingEngine {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger( PathfindingEngine.class );
+    // Amount of blocks around the start and the goal which are captured for a search
+    private static final int SNAPSHOT_MARGIN = 16;
+
+    // Amount of blocks a goal may move until the old path gets thrown away
+    private static final int EXTEND_DISTANCE = 4;
 
     // The transform that holds the current position the object is located at:
     private final Transformable transform;
@@ -31,6 +37,13 @@ public class PathfindingEngine {
     // The path to the goal if cached:
     private List<IntTriple> cachedPath;
 
+    // The last search and the snapshot it has been searched in
+    private PathRequest lastRequest;
+    private List<IntTriple> lastPath;
+
+    // The search which runs on the workers
+    private PathRequest pendingRequest;
+
     /**
      * Constructs a new pathfinding engine that will make changes to the given transform
      * when moving.
@@ -80,163 +93,130 @@ public class PathfindingEngine {
      * <p>
      * The path may be read as an instruction set of block-to-block movements which should
      * be followed the exact order they appear inside the returned list.
+     * <p>
+     * When the path needs to be searched the search runs on the calling thread, {@link #requestPath()}
+     * should be preferred inside of the entity tick.
      *
      * @return The current path proposed by the pathfinding engine
      */
     public List<IntTriple> getPath() {
         if ( this.dirty ) {
-            this.cachedPath = this.calculateShortestPath();
+            PathRequest request = this.createRequest();
+            if ( request != null ) {
+                request.run( PathSearch.forThread() );
+                this.pendingRequest = request;
+                this.collectPendingPath();
+            }
         }
+
         return this.cachedPath;
     }
 
     /**
-     * Calculates the shortest path from the pathfinding engine's transform to its goal. May
-     * return null if there is no solution to the problem or a certain threshold has been
-     * exceeded.
+     * Request the path to the current goal. The path is searched on the pathfinding workers of the world,
+     * the returned future gets resolved by them. Only one search per engine runs at a time, requests while a
+     * search runs get the future of that search.
+     * <p>
+     * The path starts at the block the transform is in and may be followed like the one of {@link #getPath()}.
      *
-     * @return The shortest path available or null if no solution was found
+     * @return future which resolves with the path or null when there is no path to the goal
      */
-    private List<IntTriple> calculateShortestPath() {
-        // Preamble:
-        // Very simple implementation of A* pathfinding. May be optimized in the future.
-        // Concrete implementation classes of collection types are used to aggressively
-        // remind of the data structure actually chosen.
-
-        if ( this.goal == null ) {
-            return null;
+    public Future<List<IntTriple>> requestPath() {
+        this.collectPendingPath();
+        if ( this.pendingRequest != null ) {
+            return this.pendingRequest.getFuture();
         }
 
-        final int MAXIMUM_NODES_TO_EXPLORE = 5000;
-        final IntTriple goalTriple = new IntTriple( (int) this.goal.getX(), (int) this.goal.getY(), (int) this.goal.getZ() );
-
-        Map<IntTriple, AStarNode> closedMap = new HashMap<>();
-        Map<IntTriple, AStarNode> discoveredMap = new HashMap<>();
-        PriorityQueue<AStarNode> discoveredNodes = new PriorityQueue<>();
-
-        AStarNode startNode = new AStarNode( new IntTriple( (int) this.transform.getPositionX(), (int) this.transform.getPositionY(), (int) this.transform.getPositionZ() ) );
-        startNode.setG( 0.0F );
-        startNode.setF( this.estimateDistance( startNode.getBlockPosition(), this.goal ) );
-        startNode.setK( 1 );
-        startNode.setPredecessor( startNode );
+        PathRequest request = this.createRequest();
+        if ( request == null ) {
+            Future<List<IntTriple>> future = new Future<>();
+            future.resolve( this.cachedPath );
+            return future;
+        }
 
-        discoveredNodes.add( startNode );
-        discoveredMap.put( startNode.getBlockPosition(), startNode );
+        WorldAdapter world = (WorldAdapter) this.goal.getWorld();
+        this.pendingRequest = request;
+        return world.getPathfindingScheduler().submit( request );
+    }
 
-        int exploredNodesCount = 0;
+    /**
+     * Take the result of the search which has been running on the workers
+     */
+    private void collectPendingPath() {
+        if ( this.pendingRequest != null && this.pendingRequest.getFuture().isDone() ) {
+            this.lastRequest = this.pendingRequest;
+            this.lastPath = this.pendingRequest.getFuture().tryGet();
+            this.cachedPath = this.lastPath;
+            this.pendingRequest = null;
+        }
+    }
 
+    /**
+     * Create the search for the current goal. When the last path can be used for it the cached path is updated
+     * instead.
+     *
+     * @return the search which needs to be run or null when the cached path is the path to the goal
+     */
+    private PathRequest createRequest() {
         this.dirty = false;
 
-        while ( discoveredNodes.size() > 0 && exploredNodesCount < MAXIMUM_NODES_TO_EXPLORE ) {
-            AStarNode node = discoveredNodes.poll();
-            if ( node.getBlockPosition().equals( goalTriple ) ) {
-                // Goal was reached -> reconstruct path and return:
-                ArrayList<IntTriple> path = new ArrayList<>( node.getK() );
-                while ( true ) {
-                    path.add( node.getBlockPosition() );
-
-                    if ( node.isStart() ) {
-                        break;
-                    }
-
-                    node = node.getPredecessor();
-                }
+        if ( this.goal == null ) {
+            this.cachedPath = null;
+            return null;
+        }
 
-                Collections.reverse( path );
-                return path;
+        int startX = Numbers.fastFloor( this.transform.getPositionX() );
+        int startY = Numbers.fastFloor( this.transform.getPositionY() );
+        int startZ = Numbers.fastFloor( this.transform.getPositionZ() );
+        int goalX = Numbers.fastFloor( this.goal.getX() );
+        int goalY = Numbers.fastFloor( this.goal.getY() );
+        int goalZ = Numbers.fastFloor( this.goal.getZ() );
+
+        List<IntTriple> prefix = null;
+        if ( this.lastRequest != null && this.lastRequest.getSnapshot().isCurrent() ) {
+            int goalDistance = Math.abs( goalX - this.lastRequest.getGoalX() ) + Math.abs( goalY - this.lastRequest.getGoalY() ) + Math.abs( goalZ - this.lastRequest.getGoalZ() );
+
+            if ( goalDistance == 0 && this.lastPath == null && startX == this.lastRequest.getStartX() &&
+                    startY == this.lastRequest.getStartY() && startZ == this.lastRequest.getStartZ() ) {
+                // Nothing changed since we found out that there is no way to the goal
+                this.cachedPath = null;
+                return null;
             }
 
-            // This node will not be examined any further:
-            discoveredMap.remove( node.getBlockPosition() );
-            closedMap.put( node.getBlockPosition(), node );
-
-            // Examine neighbour nodes:
-            for ( int i = node.getBlockPosition().getX() - 1; i <= node.getBlockPosition().getX() + 1; ++i ) {
-                for ( int k = node.getBlockPosition().getZ() - 1; k <= node.getBlockPosition().getZ() + 1; ++k ) {
-                    IntTriple neighbourTriple = new IntTriple( i, node.getBlockPosition().getY(), k );
-                    if ( closedMap.containsKey( neighbourTriple ) ) {
-                        continue;
-                    }
-
-                    // Got to make sure this neighbour is even in reach from this block
-                    // Check if the block is walkable or jumpable
-                    Block block = this.getGoal().getWorld().getBlockAt( neighbourTriple.getX(), neighbourTriple.getY(), neighbourTriple.getZ() );
-                    if ( !block.canPassThrough() ) {
-                        AxisAlignedBB bb = block.getBoundingBox();
-                        double diff = bb.getMaxY() - neighbourTriple.getY();
-                        if ( diff > 0 && diff <= 0.5F ) {
-                            neighbourTriple = new IntTriple( neighbourTriple.getX(), neighbourTriple.getY() + 1, neighbourTriple.getZ() );
-                        } else {
-                            continue;
-                        }
-                    }
-
-                    // We need to account for gravity here
-                    Block blockBeneath = this.getGoal().getWorld().getBlockAt( neighbourTriple.getX(), neighbourTriple.getY() - 1, neighbourTriple.getZ() );
-                    if ( blockBeneath.canPassThrough() ) {
-                        neighbourTriple = new IntTriple( neighbourTriple.getX(), neighbourTriple.getY() - 1, neighbourTriple.getZ() );
-                    }
-
-                    // This block is a valid neighbour:
-                    AStarNode neighbourNode = discoveredMap.get( neighbourTriple );
-                    if ( neighbourNode != null ) {
-                        double g = node.getG() + this.gridDistance( node.getBlockPosition(), neighbourTriple );
-                        if ( g < neighbourNode.getG() ) {
-                            neighbourNode.setG( g );
-                            neighbourNode.setF( g + this.estimateDistance( neighbourTriple, this.goal ) );
-                            neighbourNode.setK( node.getK() + 1 );
-                            neighbourNode.setPredecessor( node );
-                        }
-                    } else {
-                        neighbourNode = new AStarNode( neighbourTriple );
-                        neighbourNode.setG( node.getG() + this.gridDistance( node.getBlockPosition(), neighbourTriple ) );
-                        neighbourNode.setF( neighbourNode.getG() + this.estimateDistance( neighbourTriple, this.goal ) );
-                        neighbourNode.setK( node.getK() + 1 );
-                        neighbourNode.setPredecessor( node );
-                        discoveredMap.put( neighbourTriple, neighbourNode );
-                        discoveredNodes.add( neighbourNode );
-                    }
+            if ( this.lastPath != null && goalDistance <= EXTEND_DISTANCE ) {
+                prefix = this.getRemainingPath( startX, startY, startZ );
+                if ( prefix != null && goalDistance == 0 ) {
+                    this.cachedPath = prefix;
+                    return null;
                 }
             }
+        }
 
-            ++exploredNodesCount;
-
-            if ( exploredNodesCount >= MAXIMUM_NODES_TO_EXPLORE ) {
-                // Debug
-                // Goal was reached -> reconstruct path and return:
-                ArrayList<IntTriple> path = new ArrayList<>( node.getK() );
-                while ( true ) {
-                    path.add( node.getBlockPosition() );
-
-                    if ( node.isStart() ) {
-                        break;
-                    }
+        WorldAdapter world = (WorldAdapter) this.goal.getWorld();
+        PathfindingSnapshot snapshot = PathfindingSnapshot.capture( world,
+                Math.min( startX, goalX ), Math.min( startY, goalY ), Math.min( startZ, goalZ ),
+                Math.max( startX, goalX ), Math.max( startY, goalY ), Math.max( startZ, goalZ ), SNAPSHOT_MARGIN );
 
-                    node = node.getPredecessor();
-                }
-
-                Collections.reverse( path );
+        return new PathRequest( snapshot, startX, startY, startZ, goalX, goalY, goalZ, prefix );
+    }
 
-                LOGGER.debug( "Path selected:" );
-                for ( IntTriple intTriple : path ) {
-                    Block block = this.getGoal().getWorld().getBlockAt( intTriple.getX(), intTriple.getY(), intTriple.getZ() );
-                    LOGGER.debug( "> " + intTriple + " > " + block.getClass() );
-                }
+    /**
+     * Get the part of the last path which is still ahead of the given block
+     *
+     * @param x The x coordinate of the block the transform is in
+     * @param y The y coordinate of the block the transform is in
+     * @param z The z coordinate of the block the transform is in
+     * @return the path from the given block on or null when the block is not part of the last path
+     */
+    private List<IntTriple> getRemainingPath( int x, int y, int z ) {
+        for ( int i = 0; i < this.lastPath.size(); i++ ) {
+            IntTriple node = this.lastPath.get( i );
+            if ( node.getX() == x && node.getY() == y && node.getZ() == z ) {
+                return new ArrayList<>( this.lastPath.subList( i, this.lastPath.size() ) );
             }
         }
 
-
-
-        // Either has the threshold been exceeded or there is no solution to the problem:
         return null;
     }
 
-    private double gridDistance( IntTriple a, IntTriple b ) {
-        return ( Math.abs( b.getX() - a.getX() ) + Math.abs( b.getZ() - a.getZ() ) );
-    }
-
-    public double estimateDistance( IntTriple a, Vector b ) {
-        return ( Math.abs( b.getX() - a.getX() ) + Math.abs( b.getY() - a.getY() ) + Math.abs( b.getZ() - a.getZ() ) );
-    }
-
 }
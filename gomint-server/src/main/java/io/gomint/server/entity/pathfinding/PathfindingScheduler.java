@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.entity.pathfinding;
+
+import io.gomint.server.async.Future;
+import io.gomint.server.util.IntTriple;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches the paths of the entities of a world on a small pool of workers. Searches only read the snapshot
+ * they have been given, so the entity tick only has to capture the snapshot and can pick up the path in one
+ * of the next ticks.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class PathfindingScheduler {
+
+    private final String worldName;
+    private final BlockingQueue<PathRequest> queue = new LinkedBlockingQueue<>();
+    private volatile boolean running = true;
+
+    // Statistics
+    private final AtomicLong completedSearches = new AtomicLong();
+    private final AtomicLong exploredNodes = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+
+    /**
+     * Create a new scheduler and start its workers
+     *
+     * @param worldName       The name of the world, used to name the worker threads
+     * @param executorService The executor which provides the worker threads
+     * @param threads         Amount of workers which should be started
+     */
+    public PathfindingScheduler( String worldName, ExecutorService executorService, int threads ) {
+        this.worldName = worldName;
+
+        for ( int i = 0; i < Math.max( 1, threads ); i++ ) {
+            executorService.execute( new Worker( i ) );
+        }
+    }
+
+    /**
+     * Queue a search
+     *
+     * @param request The path which should be searched
+     * @return future which resolves with the path or null when none has been found
+     */
+    Future<List<IntTriple>> submit( PathRequest request ) {
+        this.queue.offer( request );
+        return request.getFuture();
+    }
+
+    /**
+     * Stop the workers, searches which are still queued are dropped
+     */
+    public void close() {
+        this.running = false;
+    }
+
+    /**
+     * Get the amount of searches which wait for a worker
+     *
+     * @return amount of queued searches
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    public long getCompletedSearches() {
+        return this.completedSearches.get();
+    }
+
+    /**
+     * Get the average amount of nodes a search explores
+     *
+     * @return explored nodes per search
+     */
+    public double getAverageExploredNodes() {
+        long searches = this.completedSearches.get();
+        return searches == 0 ? 0 : this.exploredNodes.get() / (double) searches;
+    }
+
+    /**
+     * Get the average time a worker needs for a search
+     *
+     * @return search time in milliseconds
+     */
+    public double getAverageSearchTime() {
+        long searches = this.completedSearches.get();
+        return searches == 0 ? 0 : this.searchNanos.get() / (double) searches / 1000000D;
+    }
+
+    private final class Worker implements Runnable {
+
+        private final int id;
+
+        private Worker( int id ) {
+            this.id = id;
+        }
+
+        @Override
+        public void run() {
+            Thread.currentThread().setName( Thread.currentThread().getName() + " [Async Pathfinding #" + this.id + ": " + worldName + "]" );
+
+            PathSearch search = PathSearch.forThread();
+            while ( running ) {
+                PathRequest request;
+                try {
+                    request = queue.poll( 500, TimeUnit.MILLISECONDS );
+                } catch ( InterruptedException e ) {
+                    continue;
+                }
+
+                if ( request == null ) {
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                request.run( search );
+
+                searchNanos.addAndGet( System.nanoTime() - start );
+                exploredNodes.addAndGet( search.getExploredNodes() );
+                completedSearches.incrementAndGet();
+            }
+        }
+
+    }
+
+}
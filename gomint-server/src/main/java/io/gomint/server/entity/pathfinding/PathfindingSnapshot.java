@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.entity.pathfinding;
+
+import io.gomint.server.world.ChunkAdapter;
+import io.gomint.server.world.CoordinateUtils;
+import io.gomint.server.world.WorldAdapter;
+
+/**
+ * The {@link Passability} of all blocks in a box of a world at one point in time. Capturing only collects the
+ * passability arrays the chunks keep per slice, which are never modified, so the snapshot can be searched by
+ * any thread while the world goes on. Blocks outside of the box or in chunks which were not loaded are
+ * {@link Passability#UNKNOWN}.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public final class PathfindingSnapshot {
+
+    private final WorldAdapter world;
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int sizeX;
+    private final int sizeZ;
+    private final int minSection;
+    private final int sections;
+
+    // Passability of each slice, null when the chunk was not loaded
+    private final byte[][] slices;
+
+    PathfindingSnapshot( WorldAdapter world, int minChunkX, int minChunkZ, int sizeX, int sizeZ, int minSection, int sections ) {
+        this.world = world;
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.sizeX = sizeX;
+        this.sizeZ = sizeZ;
+        this.minSection = minSection;
+        this.sections = sections;
+        this.slices = new byte[sizeX * sizeZ * sections][];
+    }
+
+    /**
+     * Capture the box which spans the given blocks and the given margin around them. This has to be called from
+     * a thread which may access the chunks of the world.
+     *
+     * @param world  The world from which the blocks should be taken
+     * @param minX   The lowest x coordinate of the blocks
+     * @param minY   The lowest y coordinate of the blocks
+     * @param minZ   The lowest z coordinate of the blocks
+     * @param maxX   The highest x coordinate of the blocks
+     * @param maxY   The highest y coordinate of the blocks
+     * @param maxZ   The highest z coordinate of the blocks
+     * @param margin The amount of blocks which should be added to every side
+     * @return the captured snapshot
+     */
+    public static PathfindingSnapshot capture( WorldAdapter world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int margin ) {
+        int minChunkX = CoordinateUtils.fromBlockToChunk( minX - margin );
+        int minChunkZ = CoordinateUtils.fromBlockToChunk( minZ - margin );
+        int maxChunkX = CoordinateUtils.fromBlockToChunk( maxX + margin );
+        int maxChunkZ = CoordinateUtils.fromBlockToChunk( maxZ + margin );
+        int minSection = Math.max( 0, minY - margin ) >> 4;
+        int maxSection = Math.min( 255, maxY + margin ) >> 4;
+
+        PathfindingSnapshot snapshot = new PathfindingSnapshot( world, minChunkX, minChunkZ, maxChunkX - minChunkX + 1,
+                maxChunkZ - minChunkZ + 1, minSection, Math.max( 0, maxSection - minSection + 1 ) );
+
+        for ( int x = 0; x < snapshot.sizeX; x++ ) {
+            for ( int z = 0; z < snapshot.sizeZ; z++ ) {
+                ChunkAdapter chunk = world.getChunk( minChunkX + x, minChunkZ + z );
+                if ( chunk == null ) {
+                    continue;
+                }
+
+                for ( int s = 0; s < snapshot.sections; s++ ) {
+                    snapshot.slices[snapshot.getSlot( x, z, s )] = chunk.getPassability( minSection + s );
+                }
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Get how the block at the given position can be passed
+     *
+     * @param x The x coordinate of the block
+     * @param y The y coordinate of the block
+     * @param z The z coordinate of the block
+     * @return one of the constants of {@link Passability}
+     */
+    public byte get( int x, int y, int z ) {
+        int chunkX = ( x >> 4 ) - this.minChunkX;
+        int chunkZ = ( z >> 4 ) - this.minChunkZ;
+        int section = ( y >> 4 ) - this.minSection;
+        if ( y < 0 || chunkX < 0 || chunkX >= this.sizeX || chunkZ < 0 || chunkZ >= this.sizeZ || section < 0 || section >= this.sections ) {
+            return Passability.UNKNOWN;
+        }
+
+        byte[] slice = this.slices[this.getSlot( chunkX, chunkZ, section )];
+        if ( slice == null ) {
+            return Passability.UNKNOWN;
+        }
+
+        return slice[( ( x & 0xF ) << 8 ) + ( ( z & 0xF ) << 4 ) + ( y & 0xF )];
+    }
+
+    /**
+     * Check if no block inside of the box has changed and no chunk has been unloaded since the snapshot has been
+     * captured. Chunks which have been loaded since then are ignored. This has to be called from a thread which
+     * may access the chunks of the world.
+     *
+     * @return true when the snapshot still shows the world as it is
+     */
+    public boolean isCurrent() {
+        if ( this.sections == 0 ) {
+            return true;
+        }
+
+        for ( int x = 0; x < this.sizeX; x++ ) {
+            for ( int z = 0; z < this.sizeZ; z++ ) {
+                if ( this.slices[this.getSlot( x, z, 0 )] == null ) {
+                    continue;
+                }
+
+                ChunkAdapter chunk = this.world.getChunk( this.minChunkX + x, this.minChunkZ + z );
+                if ( chunk == null ) {
+                    return false;
+                }
+
+                for ( int s = 0; s < this.sections; s++ ) {
+                    if ( chunk.getPassability( this.minSection + s ) != this.slices[this.getSlot( x, z, s )] ) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Put the passability of a slice into this snapshot
+     *
+     * @param chunkX      The x coordinate of the chunk
+     * @param chunkZ      The z coordinate of the chunk
+     * @param sectionY    The y coordinate of the slice
+     * @param passability The passability of all blocks of the slice
+     */
+    void setSlice( int chunkX, int chunkZ, int sectionY, byte[] passability ) {
+        this.slices[this.getSlot( chunkX - this.minChunkX, chunkZ - this.minChunkZ, sectionY - this.minSection )] = passability;
+    }
+
+    private int getSlot( int x, int z, int section ) {
+        return ( x * this.sizeZ + z ) * this.sections + section;
+    }
+
+}
@@ -7,72 +7,56 @@
 
 package io.gomint.server.event;
 
-import com.google.common.base.Preconditions;
 import io.gomint.event.CancellableEvent;
 import io.gomint.event.Event;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.Collection;
 
 /**
- * This list sorts and triggers all EventHandlerMethods which have been registered for a event.
+ * All EventHandlerMethods which should get an event of one class, including the ones which have been registered
+ * for a super class of it. The handlers are sorted once when the list is created and the list never changes
+ * afterwards, so it can be used by any thread without locking. Registering a listener creates new lists.
  *
  * @author BlackyPaw
  * @version 1.0
  */
 public class EventHandlerList {
 
-    // If the handler list is dirty we need to sort it by the event handler priorities:
-    private boolean dirty;
-    private Map<String, EventHandlerMethod> handlers = new HashMap<>();
-    private List<EventHandlerMethod> sortedHandlerList = new ArrayList<>();
+    static final EventHandlerList EMPTY = new EventHandlerList( new EventHandlerMethod[0] );
 
-    /**
-     * Construct a new EventHandlerList
-     */
-    public EventHandlerList() {
+    private final EventHandlerMethod[] handlers;
 
+    private EventHandlerList( EventHandlerMethod[] handlers ) {
+        this.handlers = handlers;
     }
 
     /**
-     * Add a new handler. This marks the whole list dirty and it gets sorted when the next event arrives.
+     * Create a new list out of the given handlers
      *
-     * @param key     The key which should be used to store this handler
-     * @param handler The handler which should be added
+     * @param handlers The handlers which should be triggered, in any order
+     * @return list which triggers the handlers sorted by their priority
      */
-    public void addHandler( String key, EventHandlerMethod handler ) {
-        Preconditions.checkArgument( !this.handlers.containsKey( key ), "EventHandler can't be registered twice" );
-
-        this.handlers.put( key, handler );
-        this.sortedHandlerList.add( handler );
-        this.dirty = true;
-    }
-
-    /**
-     * Remove a handler from the list. This does not dirty the list.
-     *
-     * @param key The key which has been used to store this handler
-     */
-    public void removeHandler( String key ) {
-        EventHandlerMethod method = this.handlers.remove( key );
-        if ( method != null ) {
-            this.sortedHandlerList.remove( method );
+    static EventHandlerList of( Collection<EventHandlerMethod> handlers ) {
+        if ( handlers.isEmpty() ) {
+            return EMPTY;
         }
+
+        EventHandlerMethod[] sorted = handlers.toArray( new EventHandlerMethod[handlers.size()] );
+        Arrays.sort( sorted );
+        return new EventHandlerList( sorted );
     }
 
     /**
-     * Iterate over all EventHandler Methods and sort them if needed. This also controls when a Event got cancelled
-     * that it does not get fired for Handlers which does not want it.
+     * Iterate over all EventHandler Methods in order of their priority. This also controls when a Event got
+     * cancelled that it does not get fired for Handlers which does not want it.
      *
      * @param event The event which gets passed to all handlers
      */
     public void triggerEvent( Event event ) {
-        if ( this.dirty ) {
-            Collections.sort( this.sortedHandlerList );
-        }
-
         if ( event instanceof CancellableEvent ) {
             CancellableEvent cancelableEvent = (CancellableEvent) event;
-            for ( EventHandlerMethod handler : this.sortedHandlerList ) {
+            for ( EventHandlerMethod handler : this.handlers ) {
                 if ( cancelableEvent.isCancelled() && handler.ignoreCancelled() ) {
                     continue;
                 }
@@ -80,7 +64,7 @@ public class EventHandlerList {
                 handler.invoke( event );
             }
         } else {
-            for ( EventHandlerMethod handler : this.sortedHandlerList ) {
+            for ( EventHandlerMethod handler : this.handlers ) {
                 handler.invoke( event );
             }
         }
@@ -10,51 +10,68 @@ package io.gomint.server.event;
 import io.gomint.event.Event;
 import io.gomint.event.EventHandler;
 import io.gomint.event.EventListener;
-import javassist.*;
-import lombok.EqualsAndHashCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author BlackyPaw
  * @version 1.0
  */
-@EqualsAndHashCode( callSuper = false )
 class EventHandlerMethod implements Comparable<EventHandlerMethod> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger( EventHandlerMethod.class );
-    private static final AtomicInteger PROXY_COUNT = new AtomicInteger( 0 );
+    private static final MethodType PROXY_TYPE = MethodType.methodType( void.class, Event.class );
+    private static final int ALL_LOOKUP_MODES = MethodHandles.Lookup.PUBLIC | MethodHandles.Lookup.PRIVATE |
+            MethodHandles.Lookup.PROTECTED | MethodHandles.Lookup.PACKAGE;
+
     private final EventHandler annotation;
+    private final long registrationOrder;
+
+    // Only one of them is set, the method handle is used when no proxy could be generated
     private EventProxy proxy;
+    private MethodHandle handle;
 
     /**
      * Construct a new data holder for a EventHandler.
      *
-     * @param instance   The instance of the EventHandler which should be used to invoke the EventHandler Method
-     * @param method     The method which should be invoked when the event arrives
-     * @param annotation The annotation which holds additional information about this EventHandler Method
+     * @param instance          The instance of the EventHandler which should be used to invoke the EventHandler Method
+     * @param method            The method which should be invoked when the event arrives, it has to be accessible
+     * @param annotation        The annotation which holds additional information about this EventHandler Method
+     * @param registrationOrder Handlers with the same priority get invoked in order of this number
      */
-    public EventHandlerMethod( final EventListener instance, final Method method, final EventHandler annotation ) {
+    EventHandlerMethod( final EventListener instance, final Method method, final EventHandler annotation, long registrationOrder ) {
         this.annotation = annotation;
+        this.registrationOrder = registrationOrder;
 
-        // Build up proxy
+        // Let the JVM generate a class which calls the method directly
         try {
-            // Prepare class pool for this plugin
-            ClassPool pool = new ClassPool( ClassPool.getDefault() );
-            pool.appendClassPath( new LoaderClassPath( instance.getClass().getClassLoader() ) );
-
-            CtClass ctClass = pool.makeClass( "io.gomint.server.event.Proxy" + PROXY_COUNT.incrementAndGet() );
-            ctClass.addInterface( pool.get( "io.gomint.server.event.EventProxy" ) );
-            ctClass.addField( CtField.make( "public " + instance.getClass().getName() + " obj;", ctClass ) );
-            ctClass.addMethod( CtMethod.make( "public void call( io.gomint.event.Event e ) { obj." + method.getName() + "( (" + method.getParameterTypes()[0].getName() + ") e ); }", ctClass ) );
-
-            this.proxy = (EventProxy) ctClass.toClass( instance.getClass().getClassLoader() ).newInstance();
-            this.proxy.getClass().getDeclaredField( "obj" ).set( this.proxy, instance );
-        } catch ( Exception e ) {
-            LOGGER.error( "Could not construct new proxy for " + method.toString(), e );
+            MethodHandles.Lookup lookup = privateLookupIn( method.getDeclaringClass() );
+            CallSite callSite = LambdaMetafactory.metafactory(
+                    lookup,
+                    "call",
+                    MethodType.methodType( EventProxy.class, method.getDeclaringClass() ),
+                    PROXY_TYPE,
+                    lookup.unreflect( method ),
+                    MethodType.methodType( void.class, method.getParameterTypes()[0] ) );
+
+            this.proxy = (EventProxy) callSite.getTarget().invoke( instance );
+            return;
+        } catch ( Throwable cause ) {
+            LOGGER.debug( "Could not construct new proxy for " + method.toString() + ", falling back to a method handle", cause );
+        }
+
+        try {
+            this.handle = MethodHandles.lookup().unreflect( method ).bindTo( instance ).asType( PROXY_TYPE );
+        } catch ( IllegalAccessException e ) {
+            throw new IllegalArgumentException( "Could not access event handler " + method.toString(), e );
         }
     }
 
@@ -65,7 +82,11 @@ class EventHandlerMethod implements Comparable<EventHandlerMethod> {
      */
     public void invoke( Event event ) {
         try {
-            this.proxy.call( event );
+            if ( this.proxy != null ) {
+                this.proxy.call( event );
+            } else {
+                this.handle.invokeExact( event );
+            }
         } catch ( Throwable cause ) {
             cause.printStackTrace();
         }
@@ -82,7 +103,21 @@ class EventHandlerMethod implements Comparable<EventHandlerMethod> {
 
     @Override
     public int compareTo( EventHandlerMethod o ) {
-        return ( Byte.compare( this.annotation.priority().getValue(), o.annotation.priority().getValue() ) );
+        int priority = Byte.compare( this.annotation.priority().getValue(), o.annotation.priority().getValue() );
+        return priority != 0 ? priority : Long.compare( this.registrationOrder, o.registrationOrder );
+    }
+
+    private static MethodHandles.Lookup privateLookupIn( Class<?> clazz ) throws ReflectiveOperationException {
+        try {
+            // Java 9 and newer have a public API for this
+            Method privateLookupIn = MethodHandles.class.getMethod( "privateLookupIn", Class.class, MethodHandles.Lookup.class );
+            return (MethodHandles.Lookup) privateLookupIn.invoke( null, clazz, MethodHandles.lookup() );
+        } catch ( NoSuchMethodException e ) {
+            // Java 8 only offers the private constructor
+            Constructor<MethodHandles.Lookup> constructor = MethodHandles.Lookup.class.getDeclaredConstructor( Class.class, int.class );
+            constructor.setAccessible( true );
+            return constructor.newInstance( clazz, ALL_LOOKUP_MODES );
+        }
     }
 
 }
@@ -7,35 +7,40 @@
 
 package io.gomint.server.event;
 
+import com.google.common.base.Preconditions;
 import io.gomint.event.Event;
 import io.gomint.event.EventHandler;
 import io.gomint.event.EventListener;
-import net.openhft.koloboke.collect.map.IntObjMap;
-import net.openhft.koloboke.collect.map.hash.HashIntObjMaps;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
+ * Dispatches events to the registered listeners. Triggering an event does not lock: the handlers for every event
+ * class are kept in an immutable {@link EventHandlerList} which already contains the handlers of all super classes.
+ * Registering and unregistering listeners build new lists and publish them in a new map.
+ *
  * @author BlackyPaw
  * @version 1.0
  */
 public class EventManager {
 
-    // Fair-Mode reentrant R/W lock used for synchronizing access to the event handler map:
-    private final ReentrantReadWriteLock collectionLock = new ReentrantReadWriteLock( true );
-    private final ReentrantLock queueLock = new ReentrantLock( true );
+    // All event handlers that have been registered, by the event class of their parameter. Guarded by this
+    private final Map<Class<?>, Map<String, EventHandlerMethod>> registeredHandlers = new HashMap<>();
+    private long registrationCounter;
 
-    // All event handlers that have been registered
-    private final IntObjMap<EventHandlerList> eventHandlers = HashIntObjMaps.newMutableMap();
+    // Handlers for every event class which has been seen so far. This map never gets modified, it gets replaced
+    private volatile Map<Class<?>, EventHandlerList> eventHandlers = Collections.emptyMap();
 
-    // Not actually a queue, but used for the sake of cache efficiency provided by array lists over
-    // actual queue implementations such as LinkedList
-    private final List<Event> eventQueue = new ArrayList<>();
+    private final Queue<Event> eventQueue = new ConcurrentLinkedQueue<>();
 
     /**
      * Constructs a new EventManager.
@@ -50,12 +55,7 @@ public class EventManager {
      * @param event The event to be enqueued
      */
     public void queueEvent( Event event ) {
-        this.queueLock.lock();
-        try {
-            this.eventQueue.add( event );
-        } finally {
-            this.queueLock.unlock();
-        }
+        this.eventQueue.offer( event );
     }
 
     /**
@@ -64,29 +64,21 @@ public class EventManager {
      * @param event The event to be triggered
      */
     public void triggerEvent( Event event ) {
-        this.collectionLock.readLock().lock();
-        try {
-            this.triggerEvent0( event );
-        } finally {
-            this.collectionLock.readLock().unlock();
+        EventHandlerList eventHandlerList = this.eventHandlers.get( event.getClass() );
+        if ( eventHandlerList == null ) {
+            eventHandlerList = this.bakeHandlerList( event.getClass() );
         }
+
+        eventHandlerList.triggerEvent( event );
     }
 
     /**
      * Flushes the internal event queue of the EventManager by triggering all enqueued events at once.
      */
     public void flush() {
-        this.collectionLock.readLock().lock();
-        this.queueLock.lock();
-        try {
-            for ( Event event : this.eventQueue ) {
-                this.triggerEvent0( event );
-            }
-
-            this.eventQueue.clear();
-        } finally {
-            this.queueLock.unlock();
-            this.collectionLock.writeLock().unlock();
+        Event event;
+        while ( ( event = this.eventQueue.poll() ) != null ) {
+            this.triggerEvent( event );
         }
     }
 
@@ -96,82 +88,119 @@ public class EventManager {
      * @param listener The listener to register
      * @param <T>      The generic type of the listener
      */
-    public <T extends EventListener> void registerListener( T listener ) {
-        Class<? extends EventListener> listenerClass = listener.getClass();
-        for ( Method listenerMethod : listenerClass.getDeclaredMethods() ) {
-            if ( !listenerMethod.isAnnotationPresent( EventHandler.class ) ||
-                    listenerMethod.getParameterCount() != 1 ||
-                    !Event.class.isAssignableFrom( listenerMethod.getParameterTypes()[0] ) ||
-                    Modifier.isStatic( listenerMethod.getModifiers() ) ) {
+    public synchronized <T extends EventListener> void registerListener( T listener ) {
+        List<Class<?>> changedEvents = new ArrayList<>();
+        for ( Method listenerMethod : listener.getClass().getDeclaredMethods() ) {
+            if ( !isEventHandler( listenerMethod ) ) {
                 continue;
             }
 
+            Class<?> eventClass = listenerMethod.getParameterTypes()[0];
+            Map<String, EventHandlerMethod> handlers = this.registeredHandlers.get( eventClass );
+            if ( handlers == null ) {
+                handlers = new LinkedHashMap<>();
+                this.registeredHandlers.put( eventClass, handlers );
+            }
+
+            String key = getKey( listener, listenerMethod );
+            Preconditions.checkArgument( !handlers.containsKey( key ), "EventHandler can't be registered twice" );
+
             listenerMethod.setAccessible( true );
-            this.registerListener0( listener, listenerMethod );
+            handlers.put( key, new EventHandlerMethod( listener, listenerMethod, listenerMethod.getAnnotation( EventHandler.class ), this.registrationCounter++ ) );
+            changedEvents.add( eventClass );
         }
+
+        this.rebakeHandlerLists( changedEvents );
     }
 
     /**
-     * Registers all event handler methods found on the specified listener.
+     * Unregisters all event handler methods found on the specified listener.
      *
-     * @param listener The listener to register
+     * @param listener The listener to unregister
      * @param <T>      The generic type of the listener
      */
-    public <T extends EventListener> void unregisterListener( T listener ) {
-        Class<? extends EventListener> listenerClass = listener.getClass();
-        for ( Method listenerMethod : listenerClass.getDeclaredMethods() ) {
-            if ( !listenerMethod.isAnnotationPresent( EventHandler.class ) ||
-                    listenerMethod.getParameterCount() != 1 ||
-                    !Event.class.isAssignableFrom( listenerMethod.getParameterTypes()[0] ) ||
-                    Modifier.isStatic( listenerMethod.getModifiers() ) ) {
+    public synchronized <T extends EventListener> void unregisterListener( T listener ) {
+        List<Class<?>> changedEvents = new ArrayList<>();
+        for ( Method listenerMethod : listener.getClass().getDeclaredMethods() ) {
+            if ( !isEventHandler( listenerMethod ) ) {
                 continue;
             }
 
-            this.unregisterListener0( listener, listenerMethod );
+            Class<?> eventClass = listenerMethod.getParameterTypes()[0];
+            Map<String, EventHandlerMethod> handlers = this.registeredHandlers.get( eventClass );
+            if ( handlers != null && handlers.remove( getKey( listener, listenerMethod ) ) != null ) {
+                if ( handlers.isEmpty() ) {
+                    this.registeredHandlers.remove( eventClass );
+                }
+
+                changedEvents.add( eventClass );
+            }
         }
+
+        this.rebakeHandlerLists( changedEvents );
     }
 
-    private void triggerEvent0( Event event ) {
-        // Assume we already acquired a readLock:
-        int eventHash = event.getClass().hashCode();
-        EventHandlerList eventHandlerList = this.eventHandlers.get( eventHash );
-        if ( eventHandlerList == null ) {
-            return;
+    private synchronized EventHandlerList bakeHandlerList( Class<?> eventClass ) {
+        // Another thread may have baked it while we waited
+        EventHandlerList eventHandlerList = this.eventHandlers.get( eventClass );
+        if ( eventHandlerList != null ) {
+            return eventHandlerList;
         }
 
-        eventHandlerList.triggerEvent( event );
+        eventHandlerList = this.collectHandlers( eventClass );
+
+        Map<Class<?>, EventHandlerList> eventHandlers = new HashMap<>( this.eventHandlers );
+        eventHandlers.put( eventClass, eventHandlerList );
+        this.eventHandlers = eventHandlers;
+        return eventHandlerList;
     }
 
-    private <T extends EventListener> void registerListener0( T listener, Method listenerMethod ) {
-        this.collectionLock.writeLock().lock();
-        try {
-            int eventHash = listenerMethod.getParameterTypes()[0].hashCode();
-            EventHandler annotation = listenerMethod.getAnnotation( EventHandler.class );
-            EventHandlerList eventHandlerList = this.eventHandlers.get( eventHash );
-            if ( eventHandlerList == null ) {
-                eventHandlerList = new EventHandlerList();
-                this.eventHandlers.put( eventHash, eventHandlerList );
+    private void rebakeHandlerLists( List<Class<?>> changedEvents ) {
+        if ( changedEvents.isEmpty() ) {
+            return;
+        }
+
+        // Every event class which is or extends one of the changed ones needs a new list
+        Map<Class<?>, EventHandlerList> eventHandlers = new HashMap<>( this.eventHandlers );
+        for ( Map.Entry<Class<?>, EventHandlerList> entry : eventHandlers.entrySet() ) {
+            for ( Class<?> changedEvent : changedEvents ) {
+                if ( changedEvent.isAssignableFrom( entry.getKey() ) ) {
+                    entry.setValue( this.collectHandlers( entry.getKey() ) );
+                    break;
+                }
             }
+        }
 
-            eventHandlerList.addHandler( listener.getClass().getName() + "#" + listenerMethod.getName() + "_" + eventHash, new EventHandlerMethod( listener, listenerMethod, annotation ) );
-        } finally {
-            this.collectionLock.writeLock().unlock();
+        for ( Class<?> changedEvent : changedEvents ) {
+            if ( !eventHandlers.containsKey( changedEvent ) ) {
+                eventHandlers.put( changedEvent, this.collectHandlers( changedEvent ) );
+            }
         }
+
+        this.eventHandlers = eventHandlers;
     }
 
-    private <T extends EventListener> void unregisterListener0( T listener, Method listenerMethod ) {
-        this.collectionLock.writeLock().lock();
-        try {
-            int eventHash = listenerMethod.getParameterTypes()[0].hashCode();
-            EventHandlerList eventHandlerList = this.eventHandlers.get( eventHash );
-            if ( eventHandlerList == null ) {
-                return;
+    private EventHandlerList collectHandlers( Class<?> eventClass ) {
+        List<EventHandlerMethod> handlers = new ArrayList<>();
+        for ( Class<?> clazz = eventClass; clazz != null && Event.class.isAssignableFrom( clazz ); clazz = clazz.getSuperclass() ) {
+            Map<String, EventHandlerMethod> registered = this.registeredHandlers.get( clazz );
+            if ( registered != null ) {
+                handlers.addAll( registered.values() );
             }
-
-            eventHandlerList.removeHandler( listener.getClass().getName() + "#" + listenerMethod.getName() + "_" + eventHash );
-        } finally {
-            this.collectionLock.writeLock().unlock();
         }
+
+        return EventHandlerList.of( handlers );
+    }
+
+    private static boolean isEventHandler( Method method ) {
+        return method.isAnnotationPresent( EventHandler.class ) &&
+                method.getParameterCount() == 1 &&
+                Event.class.isAssignableFrom( method.getParameterTypes()[0] ) &&
+                !Modifier.isStatic( method.getModifiers() );
+    }
+
+    private static String getKey( EventListener listener, Method listenerMethod ) {
+        return listener.getClass().getName() + "#" + listenerMethod.getName() + "_" + listenerMethod.getParameterTypes()[0].hashCode();
     }
 
 }
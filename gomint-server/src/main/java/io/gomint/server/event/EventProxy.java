@@ -9,6 +9,13 @@ package io.gomint.server.event;
 
 import io.gomint.event.Event;
 
+/**
+ * Implemented by the classes which {@link java.lang.invoke.LambdaMetafactory} generates for every event handler.
+ * It has to be public since the classes get defined next to the listener classes.
+ *
+ * @author BlackyPaw
+ * @version 1.0
+ */
 public interface EventProxy {
     void call( Event e );
-}
\ No newline at end of file
+}
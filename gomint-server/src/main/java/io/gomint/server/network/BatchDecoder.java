@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.jraknet.PacketBuffer;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses incoming batch packets of a single connection. The inflater, the output buffer and the buffers
+ * handed out for the payload and its sub packets are kept between batches, so decoding a batch does not allocate
+ * once the output buffer has grown to the size the client uses. Buffers bigger than {@link #MAX_RETAINED_SIZE}
+ * are only kept for the batch which needed them.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class BatchDecoder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( BatchDecoder.class );
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+    private final Inflater inflater = new Inflater();
+    private byte[] buffer;
+    private int length;
+
+    // Views on the buffer, they get replaced together with it
+    private PacketBufferSlice payload;
+    private PacketBufferSlice packet;
+
+    // Statistics
+    @Getter private long decodedBatches;
+    @Getter private long decodedPackets;
+    @Getter private long bufferAllocations;
+    @Getter private long allocatedBytes;
+
+    /**
+     * Create a new decoder with a small output buffer
+     */
+    public BatchDecoder() {
+        this.setBuffer( new byte[INITIAL_BUFFER_SIZE] );
+    }
+
+    /**
+     * Decompress the given zlib data into the internal buffer. The result stays valid until the next call.
+     *
+     * @param input  The array which holds the compressed data
+     * @param offset The offset at which the compressed data starts
+     * @param length The amount of compressed bytes
+     * @return true when the data could be decompressed, false when it was corrupted
+     */
+    public boolean decode( byte[] input, int offset, int length ) {
+        // Don't keep the memory of a single large batch forever
+        if ( this.buffer.length > MAX_RETAINED_SIZE ) {
+            this.setBuffer( new byte[MAX_RETAINED_SIZE] );
+        }
+
+        this.inflater.reset();
+        this.inflater.setInput( input, offset, length );
+        this.length = 0;
+
+        try {
+            while ( !this.inflater.finished() ) {
+                if ( this.length == this.buffer.length ) {
+                    this.grow();
+                }
+
+                int read = this.inflater.inflate( this.buffer, this.length, this.buffer.length - this.length );
+                if ( read == 0 && ( this.inflater.needsInput() || this.inflater.needsDictionary() ) ) {
+                    LOGGER.error( "Failed to decompress batch packet: Data ended before the stream was finished" );
+                    return false;
+                }
+
+                this.length += read;
+            }
+        } catch ( DataFormatException e ) {
+            LOGGER.error( "Failed to decompress batch packet", e );
+            return false;
+        }
+
+        this.decodedBatches++;
+        return true;
+    }
+
+    /**
+     * Get a buffer over the data decompressed by the last {@link #decode(byte[], int, int)} call. The same buffer
+     * is returned for every batch, it is valid until the next call.
+     *
+     * @return buffer which reads the decompressed data in place
+     */
+    public PacketBuffer getPayload() {
+        this.payload.resetPosition();
+        this.payload.setLimit( this.length );
+        return this.payload;
+    }
+
+    /**
+     * Get a buffer over the next sub packet of the payload and skip the payload past it. The same buffer is
+     * returned for every sub packet, it is valid until the next call.
+     *
+     * @param payload      The buffer returned by {@link #getPayload()}
+     * @param packetLength The length of the sub packet
+     * @return buffer which reads the sub packet in place
+     */
+    public PacketBuffer slicePacket( PacketBuffer payload, int packetLength ) {
+        this.packet.resetPosition();
+        this.packet.skip( payload.getPosition() );
+        this.packet.setLimit( payload.getPosition() + packetLength );
+        payload.skip( packetLength );
+
+        this.decodedPackets++;
+        return this.packet;
+    }
+
+    /**
+     * Get the size of the output buffer
+     *
+     * @return size of the output buffer in bytes
+     */
+    public int getBufferSize() {
+        return this.buffer.length;
+    }
+
+    /**
+     * Get the amount of objects (the output buffer and the views on it) which have been allocated per decoded sub
+     * packet
+     *
+     * @return allocations per sub packet
+     */
+    public double getAllocationsPerPacket() {
+        return this.decodedPackets == 0 ? this.bufferAllocations : this.bufferAllocations / (double) this.decodedPackets;
+    }
+
+    /**
+     * Release the native resources of the inflater
+     */
+    public void close() {
+        this.inflater.end();
+    }
+
+    private void grow() {
+        byte[] newBuffer = new byte[this.buffer.length << 1];
+        System.arraycopy( this.buffer, 0, newBuffer, 0, this.length );
+        this.setBuffer( newBuffer );
+    }
+
+    private void setBuffer( byte[] newBuffer ) {
+        this.buffer = newBuffer;
+        this.payload = new PacketBufferSlice( newBuffer, 0, 0 );
+        this.packet = new PacketBufferSlice( newBuffer, 0, 0 );
+
+        this.bufferAllocations += 3;
+        this.allocatedBytes += newBuffer.length;
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.jraknet.PacketBuffer;
+import io.gomint.server.network.packet.Packet;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Serializes packets into the payload of a batch and compresses it. The deflater and all buffers are kept between
+ * batches, so once the buffers have grown to the sizes the batches need only the final payload gets allocated.
+ * An encoder must only be used by one thread at a time.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class BatchEncoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final Deflater deflater = new Deflater();
+    private byte[] packetBuffer = new byte[INITIAL_BUFFER_SIZE];
+    private byte[] payload = new byte[INITIAL_BUFFER_SIZE];
+    private byte[] output = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * Amount of bytes of the uncompressed payload
+     */
+    @Getter private int length;
+
+    // Statistics
+    @Getter private long bufferAllocations = 3;
+
+    /**
+     * Start a new batch, the packets of the last batch are dropped
+     */
+    public void reset() {
+        this.length = 0;
+    }
+
+    /**
+     * Serialize the given packet and append it to the payload
+     *
+     * @param packet The packet which should be added
+     */
+    public void add( Packet packet ) {
+        PacketBuffer buffer = new PacketBuffer( this.packetBuffer, 0 );
+        buffer.writeByte( packet.getId() );
+        packet.serialize( buffer );
+
+        // Keep the array if the packet had to grow it
+        if ( buffer.getBuffer() != this.packetBuffer ) {
+            this.packetBuffer = buffer.getBuffer();
+            this.bufferAllocations++;
+        }
+
+        int packetLength = buffer.getPosition() - buffer.getBufferOffset();
+        if ( this.payload.length < this.length + 5 + packetLength ) {
+            this.payload = Arrays.copyOf( this.payload, Math.max( this.payload.length << 1, this.length + 5 + packetLength ) );
+            this.bufferAllocations++;
+        }
+
+        // Length of the packet as unsigned var int
+        int value = packetLength;
+        while ( ( value & -128 ) != 0 ) {
+            this.payload[this.length++] = (byte) ( value & 127 | 128 );
+            value >>>= 7;
+        }
+
+        this.payload[this.length++] = (byte) value;
+
+        System.arraycopy( this.packetBuffer, buffer.getBufferOffset(), this.payload, this.length, packetLength );
+        this.length += packetLength;
+    }
+
+    /**
+     * Compress the payload with zlib. Level 0 stores the payload without compressing it, which still is a valid
+     * zlib stream.
+     *
+     * @param level The deflate level from 0 to 9
+     * @return the amount of compressed bytes in {@link #getOutput()}
+     */
+    public int compress( int level ) {
+        this.deflater.reset();
+        this.deflater.setLevel( level );
+        this.deflater.setInput( this.payload, 0, this.length );
+        this.deflater.finish();
+
+        // Same bound as compressBound of zlib, the deflater should never need more
+        int bound = this.length + ( this.length >> 12 ) + ( this.length >> 14 ) + ( this.length >> 25 ) + 13;
+        if ( this.output.length < bound ) {
+            this.output = new byte[Math.max( this.output.length << 1, bound )];
+            this.bufferAllocations++;
+        }
+
+        int written = 0;
+        while ( !this.deflater.finished() ) {
+            if ( written == this.output.length ) {
+                this.output = Arrays.copyOf( this.output, this.output.length << 1 );
+                this.bufferAllocations++;
+            }
+
+            written += this.deflater.deflate( this.output, written, this.output.length - written );
+        }
+
+        return written;
+    }
+
+    /**
+     * Get the array which holds the result of the last {@link #compress(int)} call. It is overwritten by the next
+     * batch.
+     *
+     * @return array with the compressed payload at its start
+     */
+    public byte[] getOutput() {
+        return this.output;
+    }
+
+    /**
+     * Release the native resources of the deflater
+     */
+    public void close() {
+        this.deflater.end();
+    }
+
+}
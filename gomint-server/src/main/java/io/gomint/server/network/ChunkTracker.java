@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.server.entity.Entity;
+import io.gomint.server.entity.EntityPlayer;
+import io.gomint.server.network.packet.PacketBatch;
+import io.gomint.server.world.ChunkAdapter;
+import io.gomint.server.world.ChunkIOScheduler;
+import io.gomint.server.world.CoordinateUtils;
+import io.gomint.server.world.WorldAdapter;
+import io.gomint.util.Numbers;
+import lombok.Getter;
+import net.openhft.koloboke.collect.LongCursor;
+import net.openhft.koloboke.collect.set.LongSet;
+import net.openhft.koloboke.collect.set.hash.HashLongSets;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+
+/**
+ * Keeps track of the chunks a player has and streams the missing ones to him. Chunks inside of the view
+ * distance are requested nearest first, chunks in the direction the player looks at count as nearer than
+ * the ones behind him. Requests and sends are limited per tick: at most a few chunks get requested from the
+ * world, and packaged chunks are sent as long as the bytes sent to the player in this tick stay below the
+ * budget, so chunks give way to the other traffic of the connection.
+ * <p>
+ * Chunks which leave the view distance are forgotten. The client drops chunks outside of the confirmed chunk
+ * radius on its own, they get sent again once the player comes back.
+ * <p>
+ * While a player logs in only the chunks under his spawn point are streamed, they are loaded before all other
+ * requests of the world. The player is spawned as soon as he has all of them, the rest of the view distance
+ * follows afterwards.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class ChunkTracker {
+
+    // How much nearer a chunk straight in front of the player counts, relative to its distance
+    private static final float DIRECTION_WEIGHT = 0.5F;
+
+    private final PlayerConnection connection;
+    private final int chunksPerTick;
+    private final int bytesPerTick;
+    private final int maxPendingRequests;
+    private final int spawnRadius;
+
+    // Chunks the client has and chunks which have been requested from the world
+    private final LongSet loadedChunks = HashLongSets.newMutableSet();
+    private final LongSet requestedChunks = HashLongSets.newMutableSet();
+    private final Queue<ReadyChunk> readyChunks = new ArrayDeque<>();
+
+    // Chunks in the view distance by the order in which they should be sent
+    private int centerX;
+    private int centerZ;
+    private int viewDistance = -1;
+    private long[] order = new long[0];
+    private int orderSize;
+    private int orderCursor;
+
+    // Chunks which need to be sent before the player can be spawned
+    private final LongSet spawnChunks = HashLongSets.newMutableSet();
+    private long spawnStart;
+
+    // Statistics
+    @Getter private long sentChunks;
+    @Getter private long sentBytes;
+    @Getter private long forgottenChunks;
+
+    /**
+     * Nanoseconds from the start of the login until the player had all chunks under his spawn point, -1 while
+     * he has not been spawned yet
+     */
+    @Getter private long timeToSpawn = -1;
+
+    /**
+     * Create a new tracker for a connection
+     *
+     * @param connection         The connection to which the chunks should be sent
+     * @param chunksPerTick      Amount of chunks which may be requested and sent per tick
+     * @param bytesPerTick       Amount of bytes which may be sent to the player per tick
+     * @param maxPendingRequests Amount of chunks which may be requested but not sent yet
+     * @param spawnRadius        Radius in chunks around the spawn point which is needed for spawning
+     */
+    ChunkTracker( PlayerConnection connection, int chunksPerTick, int bytesPerTick, int maxPendingRequests, int spawnRadius ) {
+        this.connection = connection;
+        this.chunksPerTick = Math.max( 1, chunksPerTick );
+        this.bytesPerTick = bytesPerTick;
+        this.maxPendingRequests = Math.max( this.chunksPerTick, maxPendingRequests );
+        this.spawnRadius = Math.max( 0, spawnRadius );
+    }
+
+    /**
+     * Request the chunks the player needs before he can be spawned. Those are the chunks which have blocks
+     * inside of the spawn radius around his position, a player next to a chunk border only needs the chunks
+     * on that side. The radius is never larger than the view distance of the player.
+     *
+     * @param player The player who logs in, his position has to be set to the spawn point
+     */
+    public synchronized void prepareSpawn( EntityPlayer player ) {
+        this.update( player );
+        this.spawnStart = System.nanoTime();
+        this.timeToSpawn = -1;
+
+        float positionX = player.getPositionX();
+        float positionZ = player.getPositionZ();
+        int radius = Math.min( this.spawnRadius, player.getViewDistance() ) << 4;
+        WorldAdapter world = player.getWorld();
+
+        int minChunkX = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( positionX - radius ) );
+        int maxChunkX = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( positionX + radius ) );
+        int minChunkZ = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( positionZ - radius ) );
+        int maxChunkZ = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( positionZ + radius ) );
+        for ( int x = minChunkX; x <= maxChunkX; x++ ) {
+            for ( int z = minChunkZ; z <= maxChunkZ; z++ ) {
+                // Distance from the spawn point to the nearest block of the chunk
+                float distanceX = Math.max( 0, Math.max( ( x << 4 ) - positionX, positionX - ( ( x << 4 ) + 16 ) ) );
+                float distanceZ = Math.max( 0, Math.max( ( z << 4 ) - positionZ, positionZ - ( ( z << 4 ) + 16 ) ) );
+                if ( distanceX * distanceX + distanceZ * distanceZ > radius * radius ) {
+                    continue;
+                }
+
+                long hash = CoordinateUtils.toLong( x, z );
+                this.spawnChunks.add( hash );
+                if ( !this.loadedChunks.contains( hash ) && !this.requestedChunks.contains( hash ) ) {
+                    this.requestedChunks.add( hash );
+                    world.sendChunk( x, z, player, ChunkIOScheduler.PRIORITY_SPAWN );
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the chunks the player should have. When the player entered another chunk or changed his view
+     * distance the order of the missing chunks is calculated again and chunks which are out of range are
+     * forgotten.
+     *
+     * @param player The player whose position should be used
+     * @return true when the player entered another chunk
+     */
+    public synchronized boolean update( EntityPlayer player ) {
+        int chunkX = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( player.getPositionX() ) );
+        int chunkZ = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( player.getPositionZ() ) );
+        int viewDistance = player.getViewDistance();
+
+        if ( chunkX == this.centerX && chunkZ == this.centerZ && viewDistance == this.viewDistance ) {
+            return false;
+        }
+
+        this.centerX = chunkX;
+        this.centerZ = chunkZ;
+        this.viewDistance = viewDistance;
+
+        this.forgetOutOfRange( this.loadedChunks );
+        this.forgetOutOfRange( this.requestedChunks );
+        this.calculateOrder( player.getYaw() );
+        return true;
+    }
+
+    /**
+     * Request missing chunks from the world and send the chunks which are ready
+     *
+     * @param player    The player who gets the chunks
+     * @param usedBytes Amount of bytes which have been sent to the player in this tick already
+     */
+    public synchronized void tick( EntityPlayer player, int usedBytes ) {
+        this.sendReadyChunks( usedBytes );
+
+        if ( this.spawnStart != 0 ) {
+            if ( !this.spawnChunks.isEmpty() ) {
+                // The rest of the view distance waits until the player has been spawned
+                return;
+            }
+
+            this.timeToSpawn = System.nanoTime() - this.spawnStart;
+            this.spawnStart = 0;
+            this.connection.spawnPlayer();
+        }
+
+        this.requestMissingChunks( player );
+    }
+
+    /**
+     * A chunk which has been requested from the world is packaged and can be sent
+     *
+     * @param chunk The chunk which has been packaged
+     * @param batch The batch which contains the chunk
+     */
+    public synchronized void onChunkReady( ChunkAdapter chunk, PacketBatch batch ) {
+        long hash = CoordinateUtils.toLong( chunk.getX(), chunk.getZ() );
+        if ( this.loadedChunks.contains( hash ) ) {
+            this.requestedChunks.removeLong( hash );
+            return;
+        }
+
+        // The player may have moved away while the chunk has been loaded
+        if ( this.viewDistance != -1 && !this.spawnChunks.contains( hash ) && !this.isInRange( chunk.getX(), chunk.getZ() ) ) {
+            this.requestedChunks.removeLong( hash );
+            return;
+        }
+
+        this.readyChunks.offer( new ReadyChunk( hash, chunk, batch ) );
+    }
+
+    /**
+     * A chunk which has been requested from the world could not be loaded. It will be requested again when the
+     * player enters another chunk, the spawn of the player does not wait for it.
+     *
+     * @param x The x coordinate of the chunk
+     * @param z The z coordinate of the chunk
+     */
+    public synchronized void onChunkFailed( int x, int z ) {
+        long hash = CoordinateUtils.toLong( x, z );
+        this.requestedChunks.removeLong( hash );
+        this.spawnChunks.removeLong( hash );
+    }
+
+    /**
+     * Forget all chunks, this is used when the player changes the world
+     */
+    public synchronized void reset() {
+        this.loadedChunks.clear();
+        this.requestedChunks.clear();
+        this.readyChunks.clear();
+        this.spawnChunks.clear();
+        this.spawnStart = 0;
+        this.viewDistance = -1;
+        this.orderSize = 0;
+        this.orderCursor = 0;
+    }
+
+    /**
+     * Check if the client has the given chunk
+     *
+     * @param x The x coordinate of the chunk
+     * @param z The z coordinate of the chunk
+     * @return true when the chunk has been sent to the client
+     */
+    public synchronized boolean isLoaded( int x, int z ) {
+        return this.loadedChunks.contains( CoordinateUtils.toLong( x, z ) );
+    }
+
+    /**
+     * Get the amount of chunks inside of the view distance which the client does not have yet
+     *
+     * @return amount of missing chunks
+     */
+    public synchronized int getMissingChunks() {
+        int missing = 0;
+        for ( int i = 0; i < this.orderSize; i++ ) {
+            if ( !this.loadedChunks.contains( this.order[i] ) ) {
+                missing++;
+            }
+        }
+
+        return missing;
+    }
+
+    private void sendReadyChunks( int usedBytes ) {
+        int sent = 0;
+        Iterator<ReadyChunk> iterator = this.readyChunks.iterator();
+        while ( iterator.hasNext() && sent < this.chunksPerTick ) {
+            ReadyChunk readyChunk = iterator.next();
+
+            // One chunk per tick is always sent so a busy connection still gets its chunks
+            int size = readyChunk.batch.getPayload().length;
+            if ( sent > 0 && usedBytes + size > this.bytesPerTick ) {
+                break;
+            }
+
+            iterator.remove();
+            this.requestedChunks.removeLong( readyChunk.hash );
+            if ( this.loadedChunks.contains( readyChunk.hash ) ) {
+                continue;
+            }
+
+            this.connection.sendWorldChunk( readyChunk.hash, readyChunk.batch );
+            this.loadedChunks.add( readyChunk.hash );
+            this.spawnChunks.removeLong( readyChunk.hash );
+
+            // Send all spawned entities
+            Collection<io.gomint.entity.Entity> entities = readyChunk.chunk.getEntities();
+            if ( entities != null ) {
+                for ( io.gomint.entity.Entity entity : entities ) {
+                    if ( entity instanceof Entity ) {
+                        this.connection.addToSendQueue( ( (Entity) entity ).createSpawnPacket() );
+                    }
+                }
+            }
+
+            usedBytes += size;
+            sent++;
+
+            this.sentChunks++;
+            this.sentBytes += size;
+        }
+    }
+
+    private void requestMissingChunks( EntityPlayer player ) {
+        WorldAdapter world = player.getWorld();
+
+        // Everything in front of the cursor has been requested already
+        int requested = 0;
+        while ( this.orderCursor < this.orderSize && requested < this.chunksPerTick && this.requestedChunks.size() < this.maxPendingRequests ) {
+            long hash = this.order[this.orderCursor++];
+            if ( this.loadedChunks.contains( hash ) || this.requestedChunks.contains( hash ) ) {
+                continue;
+            }
+
+            int x = (int) ( hash >> 32 );
+            int z = (int) hash + Integer.MIN_VALUE;
+
+            this.requestedChunks.add( hash );
+            world.sendChunk( x, z, player );
+            requested++;
+        }
+    }
+
+    private void calculateOrder( float yaw ) {
+        int radius = this.viewDistance;
+        int diameter = radius * 2 + 1;
+        if ( this.order.length < diameter * diameter ) {
+            this.order = new long[diameter * diameter];
+        }
+
+        // Direction of the view of the player
+        double directionX = -Math.sin( Math.toRadians( yaw ) );
+        double directionZ = Math.cos( Math.toRadians( yaw ) );
+
+        // Sort by score in the upper bits, the offset in the lower ones keeps them unique
+        long[] keys = new long[diameter * diameter];
+        int size = 0;
+        for ( int x = -radius; x <= radius; x++ ) {
+            for ( int z = -radius; z <= radius; z++ ) {
+                if ( x * x + z * z > radius * radius ) {
+                    continue;
+                }
+
+                double distance = Math.sqrt( x * x + z * z );
+                double score = distance - DIRECTION_WEIGHT * ( x * directionX + z * directionZ );
+                keys[size++] = ( (long) ( score * 1024 ) << 32 ) | ( ( x + radius ) << 16 ) | ( z + radius );
+            }
+        }
+
+        Arrays.sort( keys, 0, size );
+
+        for ( int i = 0; i < size; i++ ) {
+            int x = (int) ( ( keys[i] >> 16 ) & 0xFFFF ) - radius;
+            int z = (int) ( keys[i] & 0xFFFF ) - radius;
+            this.order[i] = CoordinateUtils.toLong( this.centerX + x, this.centerZ + z );
+        }
+
+        this.orderSize = size;
+        this.orderCursor = 0;
+    }
+
+    private void forgetOutOfRange( LongSet chunks ) {
+        LongCursor cursor = chunks.cursor();
+        while ( cursor.moveNext() ) {
+            int x = (int) ( cursor.elem() >> 32 );
+            int z = (int) cursor.elem() + Integer.MIN_VALUE;
+
+            if ( !this.isInRange( x, z ) ) {
+                cursor.remove();
+                this.forgottenChunks++;
+            }
+        }
+    }
+
+    private boolean isInRange( int x, int z ) {
+        int distanceX = x - this.centerX;
+        int distanceZ = z - this.centerZ;
+        return distanceX * distanceX + distanceZ * distanceZ <= this.viewDistance * this.viewDistance;
+    }
+
+    private static final class ReadyChunk {
+
+        private final long hash;
+        private final ChunkAdapter chunk;
+        private final PacketBatch batch;
+
+        private ReadyChunk( long hash, ChunkAdapter chunk, PacketBatch batch ) {
+            this.hash = hash;
+            this.chunk = chunk;
+            this.batch = batch;
+        }
+
+    }
+
+}
@@ -7,21 +7,16 @@
 
 package io.gomint.server.network;
 
+import io.gomint.server.network.cipher.CipherBackend;
+import io.gomint.server.network.cipher.PacketCipher;
 import io.gomint.server.util.DumpUtil;
 import lombok.Getter;
-import org.bouncycastle.crypto.BufferedBlockCipher;
 import org.bouncycastle.crypto.InvalidCipherTextException;
 import org.bouncycastle.crypto.digests.SHA256Digest;
-import org.bouncycastle.crypto.engines.AESFastEngine;
-import org.bouncycastle.crypto.modes.CFBBlockCipher;
-import org.bouncycastle.crypto.params.KeyParameter;
-import org.bouncycastle.crypto.params.ParametersWithIV;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.crypto.KeyAgreement;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.security.*;
 import java.security.interfaces.ECPublicKey;
 import java.util.Arrays;
@@ -45,8 +40,14 @@ public class EncryptionHandler {
 
     // Client Side:
     private ECPublicKey clientPublicKey;
-    private BufferedBlockCipher clientEncryptor;
-    private BufferedBlockCipher clientDecryptor;
+    private PacketCipher clientEncryptor;
+    private PacketCipher clientDecryptor;
+
+    // Checksums, one digest per direction so nothing gets allocated per packet
+    private final MessageDigest sendDigest = createDigest();
+    private final MessageDigest receiveDigest = createDigest();
+    private final byte[] sendHash = new byte[32];
+    private final byte[] receiveHash = new byte[32];
 
     // Data for packet and checksum calculations
     @Getter
@@ -55,6 +56,7 @@ public class EncryptionHandler {
 
     // Holder for the server keypair
     private final EncryptionKeyFactory keyFactory;
+    private final CipherBackend cipherBackend;
 
     /**
      * Create a new EncryptionHandler for the client
@@ -62,7 +64,18 @@ public class EncryptionHandler {
      * @param keyFactory The keyFactory which created the server keypair
      */
     public EncryptionHandler( EncryptionKeyFactory keyFactory ) {
+        this( keyFactory, CipherBackend.getPreferred() );
+    }
+
+    /**
+     * Create a new EncryptionHandler for the client which uses the given cipher implementation
+     *
+     * @param keyFactory    The keyFactory which created the server keypair
+     * @param cipherBackend The implementation of AES/CFB8 which should be used
+     */
+    EncryptionHandler( EncryptionKeyFactory keyFactory, CipherBackend cipherBackend ) {
         this.keyFactory = keyFactory;
+        this.cipherBackend = cipherBackend;
     }
 
     /**
@@ -96,12 +109,27 @@ public class EncryptionHandler {
         }
 
         // Derive key as salted SHA-256 hash digest:
-        this.key = this.hashSHA256( this.clientSalt, secret );
+        return this.initializeCiphers( this.hashSHA256( this.clientSalt, secret ) );
+    }
+
+    /**
+     * Use the given key for both directions. The first 16 bytes of the key are the initial vector.
+     *
+     * @param key The shared key of the server and the client
+     * @return Whether or not the ciphers could be created
+     */
+    boolean initializeCiphers( byte[] key ) {
+        this.key = key;
         byte[] iv = this.takeBytesFromArray( this.key, 0, 16 );
 
-        // Initialize BlockCiphers:
-        this.clientEncryptor = this.createCipher( true, this.key, iv );
-        this.clientDecryptor = this.createCipher( false, this.key, iv );
+        try {
+            this.clientEncryptor = this.cipherBackend.createCipher( true, this.key, iv );
+            this.clientDecryptor = this.cipherBackend.createCipher( false, this.key, iv );
+        } catch ( GeneralSecurityException e ) {
+            LOGGER.error( "Could not create " + this.cipherBackend + " cipher for clientside encryption", e );
+            return false;
+        }
+
         return true;
     }
 
@@ -112,23 +140,45 @@ public class EncryptionHandler {
      * @return Either null when the data was corrupted or the decrypted data
      */
     public byte[] decryptInputFromClient( byte[] input ) {
-        byte[] output = this.processCipher( this.clientDecryptor, input );
-        if ( output == null ) {
+        byte[] output = Arrays.copyOf( input, input.length );
+        int length = this.decryptInputFromClient( output, 0, output.length );
+        if ( length == -1 ) {
             return null;
         }
 
-        byte[] outputChunked = new byte[input.length - 8];
+        return Arrays.copyOf( output, length );
+    }
+
+    /**
+     * Decrypt data from the clients in place. The checksum at the end of the data is verified and not part
+     * of the resulting length.
+     *
+     * @param input  RAW packet data from RakNet, will be overwritten with the decrypted data
+     * @param offset offset at which the encrypted data starts
+     * @param length amount of encrypted bytes including the checksum
+     * @return Either -1 when the data was corrupted or the length of the decrypted data
+     */
+    public int decryptInputFromClient( byte[] input, int offset, int length ) {
+        if ( length < 8 ) {
+            return -1;
+        }
 
-        System.arraycopy( output, 0, outputChunked, 0, outputChunked.length );
+        // CFB8 processes byte by byte so input and output may be the same array
+        int cursor = this.clientDecryptor.process( input, offset, length, input, offset );
+        if ( cursor != length ) {
+            LOGGER.error( "Could not decrypt from cipher-text", new InvalidCipherTextException( "Output size did not match cursor" ) );
+            return -1;
+        }
 
-        byte[] hashBytes = calcHash( outputChunked, this.receiveCounter );
-        for ( int i = output.length - 8; i < output.length; i++ ) {
-            if ( hashBytes[i - (output.length - 8)] != output[i] ) {
-                return null;
+        int payloadLength = length - 8;
+        this.calcHash( this.receiveDigest, input, offset, payloadLength, this.receiveCounter, this.receiveHash );
+        for ( int i = 0; i < 8; i++ ) {
+            if ( this.receiveHash[i] != input[offset + payloadLength + i] ) {
+                return -1;
             }
         }
 
-        return outputChunked;
+        return payloadLength;
     }
 
     /**
@@ -138,15 +188,50 @@ public class EncryptionHandler {
      * @return data ready to be sent directly to the client
      */
     public byte[] encryptInputForClient( byte[] input ) {
-        byte[] hashBytes = calcHash( input, this.sendingCounter );
-        byte[] finalInput = new byte[hashBytes.length + input.length];
+        byte[] output = new byte[this.getEncryptedLength( input.length )];
+        if ( this.encryptInputForClient( input, 0, input.length, output, 0 ) == -1 ) {
+            return null;
+        }
+
+        return output;
+    }
 
-        System.arraycopy( input, 0, finalInput, 0, input.length );
-        System.arraycopy( hashBytes, 0, finalInput, input.length, 8 );
+    /**
+     * Encrypt data for the client directly into the given output array. The input is not modified, so the
+     * same input can be encrypted for multiple clients.
+     *
+     * @param input        zlib compressed data
+     * @param inputOffset  offset at which the data starts in the input
+     * @param inputLength  amount of bytes which should be encrypted
+     * @param output       array into which the encrypted data and the checksum should be written, needs at least
+     *                     {@link #getEncryptedLength(int)} bytes of space after the output offset
+     * @param outputOffset offset at which the encrypted data should start in the output
+     * @return amount of bytes written to the output or -1 when the cipher failed
+     */
+    public int encryptInputForClient( byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset ) {
+        this.calcHash( this.sendDigest, input, inputOffset, inputLength, this.sendingCounter, this.sendHash );
+
+        // The cipher is a stream cipher so we can feed the data and the checksum one after another
+        int cursor = this.clientEncryptor.process( input, inputOffset, inputLength, output, outputOffset );
+        cursor += this.clientEncryptor.process( this.sendHash, 0, 8, output, outputOffset + cursor );
 
-        return this.processCipher( this.clientEncryptor, finalInput );
+        if ( cursor != inputLength + 8 ) {
+            LOGGER.error( "Could not encrypt to cipher-text", new InvalidCipherTextException( "Output size did not match cursor" ) );
+            return -1;
+        }
+
+        return cursor;
     }
 
+    /**
+     * Get the amount of bytes the encrypted form of the given amount of data needs
+     *
+     * @param length The length of the zlib compressed data
+     * @return length of the data after encryption including its checksum
+     */
+    public int getEncryptedLength( int length ) {
+        return length + 8;
+    }
 
     /**
      * Get the servers public key
@@ -157,33 +242,29 @@ public class EncryptionHandler {
         return Base64.getEncoder().encodeToString( this.keyFactory.getKeyPair().getPublic().getEncoded() );
     }
 
-    private byte[] calcHash( byte[] input, AtomicLong counter ) {
-        SHA256Digest digest = new SHA256Digest();
+    private void calcHash( MessageDigest digest, byte[] input, int offset, int length, AtomicLong counter, byte[] result ) {
+        // The counter is hashed as little endian long
+        long count = counter.getAndIncrement();
+        for ( int i = 0; i < 8; i++ ) {
+            digest.update( (byte) ( count >>> ( i * 8 ) ) );
+        }
 
-        byte[] result = new byte[digest.getDigestSize()];
-        digest.update( ByteBuffer.allocate( 8 ).order( ByteOrder.LITTLE_ENDIAN ).putLong( counter.getAndIncrement() ).array(), 0, 8 );
-        digest.update( input, 0, input.length );
+        digest.update( input, offset, length );
         digest.update( this.key, 0, this.key.length );
-        digest.doFinal( result, 0 );
 
-        return Arrays.copyOf( result, 8 );
+        try {
+            digest.digest( result, 0, result.length );
+        } catch ( DigestException e ) {
+            throw new IllegalStateException( "SHA-256 digest does not fit into 32 bytes", e );
+        }
     }
 
-    private byte[] processCipher( BufferedBlockCipher cipher, byte[] input ) {
-        byte[] output = new byte[cipher.getOutputSize( input.length )];
-        int cursor = cipher.processBytes( input, 0, input.length, output, 0 );
-
+    private static MessageDigest createDigest() {
         try {
-            // cursor += cipher.doFinal( output, cursor );
-            if ( cursor != output.length ) {
-                throw new InvalidCipherTextException( "Output size did not match cursor" );
-            }
-        } catch ( InvalidCipherTextException e ) {
-            LOGGER.error( "Could not encrypt/decrypt to/from cipher-text", e );
-            return null;
+            return MessageDigest.getInstance( "SHA-256" );
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new IllegalStateException( "Every JRE has to support SHA-256", e );
         }
-
-        return output;
     }
 
     // ========================================== Utility Methods
@@ -219,10 +300,4 @@ public class EncryptionHandler {
         return result;
     }
 
-    private BufferedBlockCipher createCipher( boolean encryptor, byte[] key, byte[] iv ) {
-        BufferedBlockCipher cipher = new BufferedBlockCipher( new CFBBlockCipher( new AESFastEngine(), 8 ) );
-        cipher.init( encryptor, new ParametersWithIV( new KeyParameter( key ), iv ) );
-        return cipher;
-    }
-
 }
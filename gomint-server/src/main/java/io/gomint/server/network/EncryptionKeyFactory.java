@@ -37,6 +37,15 @@ public class EncryptionKeyFactory {
      * @param server The server for which this factory is
      */
     public EncryptionKeyFactory( GoMintServer server ) {
+        this( server.getServerConfig().getConnection().isEnableEncryption() );
+    }
+
+    /**
+     * Create a new factory which holds / creates a ECDH key factory and a optional keypair
+     *
+     * @param generateKeyPair true when a keypair for connection encryption should be generated
+     */
+    public EncryptionKeyFactory( boolean generateKeyPair ) {
         // We use BouncyCastle due to the policy restrictions in JRE
         Security.addProvider( new org.bouncycastle.jce.provider.BouncyCastleProvider() );
 
@@ -63,7 +72,7 @@ public class EncryptionKeyFactory {
         }
 
         // If needed (for connection encryption) generate a keypair
-        if ( server.getServerConfig().getConnection().isEnableEncryption() ) {
+        if ( generateKeyPair ) {
             // Setup KeyPairGenerator:
             KeyPairGenerator generator;
             try {
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.server.async.Delegate;
+import io.gomint.server.jwt.JwtAlgorithm;
+import io.gomint.server.jwt.JwtSignatureException;
+import io.gomint.server.jwt.JwtToken;
+import io.gomint.server.jwt.MojangChainValidator;
+import io.gomint.server.player.PlayerSkin;
+import lombok.Getter;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Verifies the payload of a login packet. The JWT chain gets checked against the Mojang root key, the skin token
+ * against the keys of the chain and the skin gets decoded. When the server encrypts connections the shared secret
+ * is derived as well. This is run by the workers of a {@link LoginVerifier}, the results are read on the main
+ * thread once the callback has been invoked.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@Getter
+public class LoginVerification implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( LoginVerification.class );
+
+    private final EncryptionKeyFactory keyFactory;
+    private final byte[] payload;
+    private final Delegate<LoginVerification> callback;
+
+    private boolean malformed;
+    private boolean validChain;
+    private boolean validSkin;
+    private String username;
+    private UUID uuid;
+    private PlayerSkin skin;
+    private EncryptionHandler encryptionHandler;
+
+    /**
+     * Create a new verification
+     *
+     * @param keyFactory The key factory of the server
+     * @param payload    The payload of the login packet
+     * @param callback   The callback which gets invoked on the main thread once the verification is done
+     */
+    LoginVerification( EncryptionKeyFactory keyFactory, byte[] payload, Delegate<LoginVerification> callback ) {
+        this.keyFactory = keyFactory;
+        this.payload = payload;
+        this.callback = callback;
+    }
+
+    @Override
+    public void run() {
+        try {
+            this.verify();
+        } catch ( RuntimeException e ) {
+            LOGGER.warn( "Could not read login payload", e );
+            this.malformed = true;
+        }
+    }
+
+    private void verify() {
+        ByteBuffer byteBuffer = ByteBuffer.wrap( this.payload );
+        byteBuffer.order( ByteOrder.LITTLE_ENDIAN );
+        byte[] stringBuffer = new byte[byteBuffer.getInt()];
+        byteBuffer.get( stringBuffer );
+
+        // Parse chain and validate
+        JSONObject json;
+        try {
+            json = this.parseJwtString( new String( stringBuffer ) );
+        } catch ( ParseException e ) {
+            LOGGER.warn( "Could not parse login chain", e );
+            this.malformed = true;
+            return;
+        }
+
+        Object jsonChainRaw = json.get( "chain" );
+        if ( jsonChainRaw == null || !( jsonChainRaw instanceof JSONArray ) ) {
+            this.malformed = true;
+            return;
+        }
+
+        MojangChainValidator chainValidator = new MojangChainValidator( this.keyFactory );
+        JSONArray jsonChain = (JSONArray) jsonChainRaw;
+        for ( int i = 0; i < jsonChain.size(); ++i ) {
+            Object jsonTokenRaw = jsonChain.get( i );
+            if ( jsonTokenRaw instanceof String ) {
+                try {
+                    chainValidator.addToken( JwtToken.parse( (String) jsonTokenRaw ) );
+                } catch ( IllegalArgumentException e ) {
+                    LOGGER.warn( "Could not parse token of login chain", e );
+                }
+            }
+        }
+
+        this.validChain = chainValidator.validate();
+        this.username = chainValidator.getUsername();
+        this.uuid = chainValidator.getUuid();
+
+        // Parse skin
+        byte[] skinBuffer = new byte[byteBuffer.getInt()];
+        byteBuffer.get( skinBuffer );
+
+        JwtToken skinToken = JwtToken.parse( new String( skinBuffer ) );
+        try {
+            this.validSkin = skinToken.validateSignature( JwtAlgorithm.ES384, chainValidator.getTrustedKeys().get( skinToken.getHeader().getProperty( "x5u" ) ) );
+        } catch ( JwtSignatureException e ) {
+            this.validSkin = false;
+        }
+
+        this.skin = new PlayerSkin( (String) skinToken.getClaim( "SkinId" ), Base64.getDecoder().decode( (String) skinToken.getClaim( "SkinData" ) ) );
+
+        // Derive the shared secret for the encryption
+        if ( this.keyFactory.getKeyPair() != null && chainValidator.getClientPublicKey() != null ) {
+            EncryptionHandler handler = new EncryptionHandler( this.keyFactory );
+            handler.supplyClientKey( chainValidator.getClientPublicKey() );
+            if ( handler.beginClientsideEncryption() ) {
+                this.encryptionHandler = handler;
+            }
+        }
+    }
+
+    /**
+     * Parses the specified JSON string and ensures it is a JSONObject.
+     *
+     * @param jwt The string to parse
+     * @return The parsed JSON object on success
+     * @throws ParseException Thrown if the given JSON string is invalid or does not start with a JSONObject
+     */
+    private JSONObject parseJwtString( String jwt ) throws ParseException {
+        Object jsonParsed = new JSONParser().parse( jwt );
+        if ( jsonParsed instanceof JSONObject ) {
+            return (JSONObject) jsonParsed;
+        } else {
+            throw new ParseException( ParseException.ERROR_UNEXPECTED_TOKEN );
+        }
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.server.async.Delegate;
+
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies logins on a fixed amount of workers so a burst of joining players does not stall the main thread.
+ * Logins are admitted on the main thread as long as less than the configured amount is pending, completed
+ * verifications are handed back to the main thread by {@link #resolveCompleted()}.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class LoginVerifier {
+
+    private final EncryptionKeyFactory keyFactory;
+    private final int maxPending;
+    private final BlockingQueue<LoginVerification> queue = new LinkedBlockingQueue<>();
+    private final Queue<LoginVerification> completed = new ConcurrentLinkedQueue<>();
+
+    // Only touched by the main thread
+    private int pending;
+
+    private volatile boolean running = true;
+
+    /**
+     * Create a new verifier and start its workers
+     *
+     * @param keyFactory      The key factory of the server
+     * @param executorService The executor which provides the worker threads
+     * @param threads         Amount of workers which should be started
+     * @param maxPending      Amount of logins which may be pending at the same time
+     */
+    LoginVerifier( EncryptionKeyFactory keyFactory, ExecutorService executorService, int threads, int maxPending ) {
+        this.keyFactory = keyFactory;
+        this.maxPending = maxPending;
+
+        for ( int i = 0; i < Math.max( 1, threads ); i++ ) {
+            executorService.execute( new Worker( i ) );
+        }
+    }
+
+    /**
+     * Queue the payload of a login packet for verification. Must be called from the main thread.
+     *
+     * @param payload  The payload of the login packet
+     * @param callback The callback which gets invoked on the main thread once the verification is done
+     * @return true when the login has been queued, false when too many logins are pending
+     */
+    public boolean verify( byte[] payload, Delegate<LoginVerification> callback ) {
+        if ( this.pending >= this.maxPending ) {
+            return false;
+        }
+
+        this.pending++;
+        this.queue.offer( new LoginVerification( this.keyFactory, payload, callback ) );
+        return true;
+    }
+
+    /**
+     * Invoke the callbacks of all verifications which have been completed since the last call. Must be called
+     * from the main thread.
+     */
+    public void resolveCompleted() {
+        LoginVerification verification;
+        while ( ( verification = this.completed.poll() ) != null ) {
+            this.pending--;
+            verification.getCallback().invoke( verification );
+        }
+    }
+
+    /**
+     * Get the amount of logins which have been queued but whose callback has not been invoked yet
+     *
+     * @return amount of pending logins
+     */
+    public int getPending() {
+        return this.pending;
+    }
+
+    /**
+     * Stop the workers, pending logins are dropped
+     */
+    public void close() {
+        this.running = false;
+    }
+
+    private final class Worker implements Runnable {
+
+        private final int id;
+
+        private Worker( int id ) {
+            this.id = id;
+        }
+
+        @Override
+        public void run() {
+            Thread.currentThread().setName( Thread.currentThread().getName() + " [Login Verification #" + this.id + "]" );
+
+            while ( running ) {
+                LoginVerification verification;
+                try {
+                    verification = queue.poll( 500, TimeUnit.MILLISECONDS );
+                } catch ( InterruptedException e ) {
+                    continue;
+                }
+
+                if ( verification != null ) {
+                    verification.run();
+                    completed.offer( verification );
+                }
+            }
+        }
+
+    }
+
+}
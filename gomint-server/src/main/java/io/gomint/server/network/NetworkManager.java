@@ -46,6 +46,10 @@ public class NetworkManager {
     // Incoming connections to be added to the player map during next tick:
     private Queue<PlayerConnection> incomingConnections = new ConcurrentLinkedQueue<>();
 
+    // Logins which are verified off the main thread
+    @Getter
+    private LoginVerifier loginVerifier;
+
     // Packet Dumping
     private boolean dump;
     private File dumpDirectory;
@@ -97,6 +101,10 @@ public class NetworkManager {
         } );
         this.socket.bind( host, port );
 
+        this.loginVerifier = new LoginVerifier( this.server.getEncryptionKeyFactory(), this.server.getExecutorService(),
+                this.server.getServerConfig().getConnection().getLoginVerificationThreads(),
+                this.server.getServerConfig().getConnection().getMaxPendingLogins() );
+
         this.dump = false;
         this.dumpDirectory = null;
     }
@@ -148,6 +156,11 @@ public class NetworkManager {
             }
         }
 
+        // Continue the logins which have been verified since the last tick
+        if ( this.loginVerifier != null ) {
+            this.loginVerifier.resolveCompleted();
+        }
+
         // Tick all player connections in order to receive all incoming packets:
         this.currentTickMillis = currentMillis;
         this.playersByGuid.forEach( this.connectionConsumer );
@@ -161,6 +174,11 @@ public class NetworkManager {
             this.socket.close();
             this.socket = null;
         }
+
+        if ( this.loginVerifier != null ) {
+            this.loginVerifier.close();
+            this.loginVerifier = null;
+        }
     }
 
     /**
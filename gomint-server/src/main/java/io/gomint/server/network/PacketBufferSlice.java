@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.jraknet.PacketBuffer;
+
+/**
+ * A packet buffer which only sees a part of the given array. It reads the data in place so sub packets of a
+ * batch don't need to be copied into their own arrays.
+ * <p>
+ * Reads are not checked against the end of the view, they may continue into the rest of the array. The remaining
+ * bytes get negative in that case, so whoever deserializes from a slice has to check them afterwards.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class PacketBufferSlice extends PacketBuffer {
+
+    private int limit;
+
+    /**
+     * Create a new view on the given array
+     *
+     * @param buffer The array which holds the data
+     * @param offset The offset at which the view starts
+     * @param length The amount of bytes which can be read
+     */
+    public PacketBufferSlice( byte[] buffer, int offset, int length ) {
+        super( buffer, offset );
+        this.limit = offset + length;
+    }
+
+    /**
+     * Move the end of the view, the slice can be reused for another part of the array that way
+     *
+     * @param limit The index in the array at which the view ends
+     */
+    void setLimit( int limit ) {
+        this.limit = limit;
+    }
+
+    @Override
+    public int getRemaining() {
+        return this.limit - this.getPosition();
+    }
+
+}
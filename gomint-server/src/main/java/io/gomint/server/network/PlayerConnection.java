@@ -15,28 +15,23 @@ import io.gomint.jraknet.PacketBuffer;
 import io.gomint.jraknet.PacketReliability;
 import io.gomint.math.Location;
 import io.gomint.server.GoMintServer;
+import io.gomint.server.config.ConnectionConfig;
 import io.gomint.server.entity.EntityPlayer;
 import io.gomint.server.network.handler.*;
 import io.gomint.server.network.packet.*;
 import io.gomint.server.util.BatchUtil;
 import io.gomint.server.world.CoordinateUtils;
 import io.gomint.server.world.WorldAdapter;
+import io.gomint.util.Numbers;
 import lombok.Getter;
 import lombok.Setter;
-import net.openhft.koloboke.collect.LongCursor;
-import net.openhft.koloboke.collect.set.LongSet;
-import net.openhft.koloboke.collect.set.hash.HashLongSets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.zip.InflaterInputStream;
 
 import static io.gomint.server.network.Protocol.*;
 
@@ -82,18 +77,19 @@ public class PlayerConnection {
     private final Connection connection;
 
     // World data
-    private final LongSet playerChunks;
+    @Getter private final ChunkTracker chunkTracker;
 
     // Connection State:
     @Getter
     @Setter
     private PlayerConnectionState state;
-    private int sentChunks;
     private BlockingQueue<Packet> sendQueue;
 
     // Entity
     @Getter @Setter private EntityPlayer entity;
-    private LongSet currentlySendingPlayerChunks;
+
+    // Incoming batches
+    @Getter private final BatchDecoder batchDecoder = new BatchDecoder();
 
     /**
      * Constructs a new player connection.
@@ -108,8 +104,9 @@ public class PlayerConnection {
         this.state = initialState;
         this.server = networkManager.getServer();
 
-        this.playerChunks = HashLongSets.newMutableSet();
-        this.currentlySendingPlayerChunks = HashLongSets.newMutableSet();
+        ConnectionConfig config = this.server.getServerConfig().getConnection();
+        this.chunkTracker = new ChunkTracker( this, config.getChunksPerTick(), config.getChunkBytesPerTick(),
+                config.getMaxPendingChunks(), config.getSpawnChunkRadius() );
     }
 
     /**
@@ -125,6 +122,21 @@ public class PlayerConnection {
         this.sendQueue.offer( packet );
     }
 
+    /**
+     * Drop all packets which have been queued for the next network tick without sending them
+     *
+     * @return amount of packets which have been dropped
+     */
+    int discardSendQueue() {
+        if ( this.sendQueue == null ) {
+            return 0;
+        }
+
+        int size = this.sendQueue.size();
+        this.sendQueue.clear();
+        return size;
+    }
+
     /**
      * Notifies the player connection that the player's view distance was changed somehow. This might
      * result in several packets and chunks to be sent in order to account for the change.
@@ -148,15 +160,23 @@ public class PlayerConnection {
         }
 
         // Send all queued packets
+        int sentBytes = 0;
         if ( this.sendQueue != null && this.sendQueue.size() > 0 ) {
             PacketBatch batch = BatchUtil.batch( ( this.state != PlayerConnectionState.ENCRPYTION_INIT ) ? this.encryptionHandler : null, this.sendQueue );
 
             if ( connection.isConnected() ) {
                 send( batch );
+                sentBytes = batch.getPayload().length;
             }
 
             this.sendQueue.clear();
         }
+
+        // Stream chunks with what is left of this tick's budget
+        if ( this.entity != null && this.connection.isConnected() &&
+                ( this.state == PlayerConnectionState.LOGIN || this.state == PlayerConnectionState.PLAYING ) ) {
+            this.chunkTracker.tick( this.entity, sentBytes );
+        }
     }
 
     /**
@@ -196,40 +216,60 @@ public class PlayerConnection {
     }
 
     /**
-     * Sends a world chunk to the player. This is used by world adapters in order to give the player connection
-     * a chance to know once it is ready for spawning.
+     * Sends a batch whose payload is shared with other connections, like cached chunks or the crafting recipes.
+     * The payload is never modified, it is encrypted straight into the frame which is handed to RakNet.
+     *
+     * @param batch The batch which should be sent, the payload must only contain the compressed data
+     */
+    public void sendSharedBatch( PacketBatch batch ) {
+        byte[] payload = batch.getPayload();
+        EncryptionHandler encryption = ( this.state != PlayerConnectionState.ENCRPYTION_INIT ) ? this.encryptionHandler : null;
+
+        byte[] frame;
+        if ( encryption != null ) {
+            frame = new byte[1 + encryption.getEncryptedLength( payload.length )];
+            if ( encryption.encryptInputForClient( payload, 0, payload.length, frame, 1 ) == -1 ) {
+                return;
+            }
+        } else {
+            frame = new byte[1 + payload.length];
+            System.arraycopy( payload, 0, frame, 1, payload.length );
+        }
+
+        frame[0] = batch.getId();
+        this.connection.send( PacketReliability.RELIABLE_ORDERED, batch.orderingChannel(), frame, 0, frame.length );
+    }
+
+    /**
+     * Sends a world chunk to the player. This is used by the chunk tracker which keeps track of what the player
+     * has loaded.
      *
-     * @param chunkHash The hash of the chunk to keep track of what the player has loaded
+     * @param chunkHash The hash of the chunk which is sent
      * @param chunkData The chunk data packet to send to the player
      */
-    public void sendWorldChunk( long chunkHash, PacketBatch chunkData ) {
+    void sendWorldChunk( long chunkHash, PacketBatch chunkData ) {
         LOGGER.debug( "Sending chunk with hash: " + chunkHash + " to the client" );
+        this.sendSharedBatch( chunkData );
+    }
 
-        PacketBatch batch = new PacketBatch();
-        batch.setPayload( this.encryptionHandler.encryptInputForClient( chunkData.getPayload() ) );
-        this.send( batch );
-
-        synchronized ( this.playerChunks ) {
-            this.currentlySendingPlayerChunks.removeLong( chunkHash );
-            this.playerChunks.add( chunkHash );
+    /**
+     * Spawns the player once the chunk tracker has sent all chunks under his spawn point
+     */
+    void spawnPlayer() {
+        if ( this.state != PlayerConnectionState.LOGIN ) {
+            return;
         }
 
-        if ( this.state == PlayerConnectionState.LOGIN ) {
-            this.sentChunks++;
+        int spawnXChunk = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( this.entity.getPositionX() ) );
+        int spawnZChunk = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( this.entity.getPositionZ() ) );
 
-            if ( this.sentChunks == 64 ) {
-                int spawnXChunk = CoordinateUtils.fromBlockToChunk( (int) this.entity.getLocation().getX() );
-                int spawnZChunk = CoordinateUtils.fromBlockToChunk( (int) this.entity.getLocation().getZ() );
-
-                WorldAdapter worldAdapter = this.entity.getWorld();
-                worldAdapter.movePlayerToChunk( spawnXChunk, spawnZChunk, this.entity );
+        WorldAdapter worldAdapter = this.entity.getWorld();
+        worldAdapter.movePlayerToChunk( spawnXChunk, spawnZChunk, this.entity );
 
-                this.sendPlayState( PacketPlayState.PlayState.SPAWN );
-                this.sendWorldTime( 0, false );
-                this.sendMovePlayer( this.entity.getLocation() );
-                this.state = PlayerConnectionState.PLAYING;
-            }
-        }
+        this.sendPlayState( PacketPlayState.PlayState.SPAWN );
+        this.sendWorldTime( 0, false );
+        this.sendMovePlayer( this.entity.getLocation() );
+        this.state = PlayerConnectionState.PLAYING;
     }
 
     // ========================================= PACKET HANDLERS ========================================= //
@@ -256,8 +296,9 @@ public class PlayerConnection {
                 this.handleBatchPacket( currentTimeMillis, buffer, batch );
             } else if ( packetId == PACKET_LOGIN ) {
                 PacketLogin packet = new PacketLogin();
-                packet.deserialize( buffer );
-                this.handlePacket( currentTimeMillis, packet );
+                if ( this.deserialize( packet, buffer ) ) {
+                    this.handlePacket( currentTimeMillis, packet );
+                }
             } else {
                 LOGGER.error( "Received odd packet" );
             }
@@ -266,6 +307,12 @@ public class PlayerConnection {
             return;
         }
 
+        // The client waits for our answer to its login, nothing else is expected until the login has been verified
+        if ( this.state == PlayerConnectionState.VERIFYING_LOGIN ) {
+            buffer.skip( buffer.getRemaining() );
+            return;
+        }
+
         // When we are in encryption init state
         if ( this.state == PlayerConnectionState.ENCRPYTION_INIT ) {
             if ( packetId == PACKET_BATCH ) {
@@ -286,8 +333,9 @@ public class PlayerConnection {
                 this.handleBatchPacket( currentTimeMillis, buffer, batch );
             } else if ( packetId == PACKET_RESOURCEPACK_RESPONSE ) {
                 PacketResourcePackResponse packet = new PacketResourcePackResponse();
-                packet.deserialize( buffer );
-                this.handlePacket( currentTimeMillis, packet );
+                if ( this.deserialize( packet, buffer ) ) {
+                    this.handlePacket( currentTimeMillis, packet );
+                }
             } else {
                 LOGGER.error( "Received odd packet" );
             }
@@ -308,8 +356,9 @@ public class PlayerConnection {
                 return;
             }
 
-            packet.deserialize( buffer );
-            this.handlePacket( currentTimeMillis, packet );
+            if ( this.deserialize( packet, buffer ) ) {
+                this.handlePacket( currentTimeMillis, packet );
+            }
         }
     }
 
@@ -324,51 +373,62 @@ public class PlayerConnection {
             return;
         }
 
-        // Encrypted?
-        byte[] input = new byte[buffer.getRemaining()];
-        System.arraycopy( buffer.getBuffer(), buffer.getPosition(), input, 0, input.length );
+        // Encrypted? Decrypt in place, the buffer belongs to this connection
+        byte[] input = buffer.getBuffer();
+        int offset = buffer.getPosition();
+        int length = buffer.getRemaining();
+        buffer.skip( length );
+
         if ( this.encryptionHandler != null ) {
-            input = this.encryptionHandler.decryptInputFromClient( input );
-            if ( input == null ) {
+            length = this.encryptionHandler.decryptInputFromClient( input, offset, length );
+            if ( length == -1 ) {
                 // Decryption error
                 disconnect( "Checksum of encrypted packet was wrong" );
                 return;
             }
         }
 
-        InflaterInputStream inflaterInputStream = new InflaterInputStream( new ByteArrayInputStream( input ) );
-
-        ByteArrayOutputStream bout = new ByteArrayOutputStream( buffer.getRemaining() );
-        byte[] batchIntermediate = new byte[256];
-
-        try {
-            int read;
-            while ( ( read = inflaterInputStream.read( batchIntermediate ) ) > -1 ) {
-                bout.write( batchIntermediate, 0, read );
-            }
-        } catch ( IOException e ) {
-            LOGGER.error( "Failed to decompress batch packet", e );
+        if ( !this.batchDecoder.decode( input, offset, length ) ) {
             return;
         }
 
-        byte[] payload = bout.toByteArray();
-
-        PacketBuffer payloadBuffer = new PacketBuffer( payload, 0 );
+        PacketBuffer payloadBuffer = this.batchDecoder.getPayload();
         while ( payloadBuffer.getRemaining() > 0 ) {
             int packetLength = payloadBuffer.readUnsignedVarInt();
+            if ( packetLength > payloadBuffer.getRemaining() ) {
+                LOGGER.error( "Malformed batch packet payload: Enclosed packet is longer than the batch: " + packetLength + " > " + payloadBuffer.getRemaining() );
+                return;
+            }
 
-            byte[] payData = new byte[packetLength];
-            payloadBuffer.readBytes( payData );
-            PacketBuffer pktBuf = new PacketBuffer( payData, 0 );
+            PacketBuffer pktBuf = this.batchDecoder.slicePacket( payloadBuffer, packetLength );
             this.handleSocketData( currentTimeMillis, pktBuf, true );
 
-            if ( pktBuf.getRemaining() > 0 ) {
-                LOGGER.error( "Malformed batch packet payload: Could not read enclosed packet data correctly: 0x" + Integer.toHexString( payData[0] ) + " reamining " + pktBuf.getRemaining() + " bytes" );
+            if ( pktBuf.getRemaining() != 0 ) {
+                LOGGER.error( "Malformed batch packet payload: Could not read enclosed packet data correctly: 0x" + Integer.toHexString( pktBuf.getBuffer()[pktBuf.getBufferOffset()] ) + " reamining " + pktBuf.getRemaining() + " bytes" );
                 return;
             }
         }
     }
 
+    /**
+     * Deserialize a packet and check that it did not read past the end of its data. Sub packets of a batch are
+     * views on the decompressed batch, reading past their end reads the next packet or stale data of an older
+     * batch instead of failing.
+     *
+     * @param packet The packet which should be read
+     * @param buffer The buffer containing the packet's data (except packet ID)
+     * @return true when the packet has been read from its own data only
+     */
+    private boolean deserialize( Packet packet, PacketBuffer buffer ) {
+        packet.deserialize( buffer );
+        if ( buffer.getRemaining() < 0 ) {
+            LOGGER.error( "Malformed packet: " + packet.getClass().getSimpleName() + " read " + -buffer.getRemaining() + " bytes past its end" );
+            return false;
+        }
+
+        return true;
+    }
+
     /**
      * Handles a deserialized packet by dispatching it to the appropriate handler method.
      *
@@ -386,47 +446,15 @@ public class PlayerConnection {
     }
 
     /**
-     * Check if we need to send new chunks to the player
+     * Check if we need to send new chunks to the player. The chunks are sent by the chunk tracker during the
+     * next network ticks.
      */
     public void checkForNewChunks() {
-        WorldAdapter worldAdapter = this.entity.getWorld();
-
-        int currentXChunk = CoordinateUtils.fromBlockToChunk( (int) this.entity.getLocation().getX() );
-        int currentZChunk = CoordinateUtils.fromBlockToChunk( (int) this.entity.getLocation().getZ() );
-
-        int viewDistance = this.entity.getViewDistance();
-        synchronized ( this.playerChunks ) {
-            for ( int sendXChunk = currentXChunk - viewDistance; sendXChunk < currentXChunk + viewDistance; sendXChunk++ ) {
-                for ( int sendZChunk = currentZChunk - viewDistance; sendZChunk < currentZChunk + viewDistance; sendZChunk++ ) {
-                    long hash = CoordinateUtils.toLong( sendXChunk, sendZChunk );
-
-                    if ( !this.playerChunks.contains( hash ) &&
-                            !this.currentlySendingPlayerChunks.contains( hash ) ) {
-                        this.currentlySendingPlayerChunks.add( hash );
-                        worldAdapter.sendChunk( sendXChunk, sendZChunk, this.entity, false );
-                    }
-                }
-            }
-        }
-
-        // Move the player to this chunk
-        worldAdapter.movePlayerToChunk( currentXChunk, currentZChunk, this.entity );
-
-        // Check for unloading chunks
-        synchronized ( this.playerChunks ) {
-            LongCursor longCursor = this.playerChunks.cursor();
-            while ( longCursor.moveNext() ) {
-                int x = (int) ( longCursor.elem() >> 32 );
-                int z = (int) ( longCursor.elem() ) + Integer.MIN_VALUE;
-
-                if ( x > currentXChunk + viewDistance ||
-                        x < currentXChunk - viewDistance ||
-                        z > currentZChunk + viewDistance ||
-                        z < currentZChunk - viewDistance ) {
-                    // TODO: Check for Packets to send to the client to unload the chunk?
-                    longCursor.remove();
-                }
-            }
+        if ( this.chunkTracker.update( this.entity ) ) {
+            // Move the player to this chunk
+            int currentXChunk = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( this.entity.getPositionX() ) );
+            int currentZChunk = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( this.entity.getPositionZ() ) );
+            this.entity.getWorld().movePlayerToChunk( currentXChunk, currentZChunk, this.entity );
         }
     }
 
@@ -565,13 +593,15 @@ public class PlayerConnection {
             this.entity.despawn();
             this.entity = null;
         }
+
+        this.batchDecoder.close();
     }
 
     /**
      * Clear the chunks which we know the player has gotten
      */
     public void resetPlayerChunks() {
-        this.playerChunks.clear();
+        this.chunkTracker.reset();
     }
 
 }
@@ -18,6 +18,11 @@ public enum PlayerConnectionState {
      */
     HANDSHAKE,
 
+    /**
+     * The login has been received and is being verified off the main thread
+     */
+    VERIFYING_LOGIN,
+
     /**
      * We told the client it should get ready for encryption
      */
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network.cipher;
+
+import org.bouncycastle.crypto.BufferedBlockCipher;
+import org.bouncycastle.crypto.engines.AESFastEngine;
+import org.bouncycastle.crypto.modes.CFBBlockCipher;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+
+/**
+ * AES/CFB8 of BouncyCastle, implemented in plain Java. It is used when the JDK refuses 256 bit AES keys.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+class BouncyCastlePacketCipher implements PacketCipher {
+
+    private final BufferedBlockCipher cipher;
+
+    BouncyCastlePacketCipher( boolean encrypt, byte[] key, byte[] iv ) {
+        this.cipher = new BufferedBlockCipher( new CFBBlockCipher( new AESFastEngine(), 8 ) );
+        this.cipher.init( encrypt, new ParametersWithIV( new KeyParameter( key ), iv ) );
+    }
+
+    @Override
+    public int process( byte[] input, int inputOffset, int length, byte[] output, int outputOffset ) {
+        return this.cipher.processBytes( input, inputOffset, length, output, outputOffset );
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network.cipher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * Implementations of the AES/CFB8 cipher used for connection encryption. Both produce the same bytes, the JDK
+ * one is a lot faster but older JREs refuse the 256 bit keys Minecraft uses unless the unlimited strength policy
+ * has been installed.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public enum CipherBackend {
+
+    JDK {
+        @Override
+        public PacketCipher createCipher( boolean encrypt, byte[] key, byte[] iv ) throws GeneralSecurityException {
+            return new JdkPacketCipher( encrypt, key, iv );
+        }
+    },
+
+    BOUNCY_CASTLE {
+        @Override
+        public PacketCipher createCipher( boolean encrypt, byte[] key, byte[] iv ) {
+            return new BouncyCastlePacketCipher( encrypt, key, iv );
+        }
+    };
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( CipherBackend.class );
+    private static final CipherBackend PREFERRED = detectPreferred();
+
+    /**
+     * Create a cipher for one direction of a connection
+     *
+     * @param encrypt true when the cipher should encrypt, false when it should decrypt
+     * @param key     The AES key, 32 bytes
+     * @param iv      The initial vector, 16 bytes
+     * @return a new cipher
+     * @throws GeneralSecurityException Thrown when the backend can't be used with the given key
+     */
+    public abstract PacketCipher createCipher( boolean encrypt, byte[] key, byte[] iv ) throws GeneralSecurityException;
+
+    /**
+     * Check if this backend can create ciphers for the 256 bit keys of Minecraft
+     *
+     * @return true when the backend can be used
+     */
+    public boolean isAvailable() {
+        try {
+            this.createCipher( true, new byte[32], new byte[16] );
+            return true;
+        } catch ( GeneralSecurityException e ) {
+            return false;
+        }
+    }
+
+    /**
+     * Get the fastest backend which can be used on this JVM
+     *
+     * @return the backend which should be used
+     */
+    public static CipherBackend getPreferred() {
+        return PREFERRED;
+    }
+
+    private static CipherBackend detectPreferred() {
+        if ( JDK.isAvailable() ) {
+            return JDK;
+        }
+
+        LOGGER.warn( "The JRE does not allow 256 bit AES keys, falling back to the slower BouncyCastle encryption. Install the JCE unlimited strength policy to use the faster one." );
+        return BOUNCY_CASTLE;
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network.cipher;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * AES/CFB8 of the JDK. HotSpot compiles the AES rounds to AES-NI instructions when the CPU supports them.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+class JdkPacketCipher implements PacketCipher {
+
+    private final Cipher cipher;
+
+    JdkPacketCipher( boolean encrypt, byte[] key, byte[] iv ) throws GeneralSecurityException {
+        this.cipher = Cipher.getInstance( "AES/CFB8/NoPadding" );
+        this.cipher.init( encrypt ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, new SecretKeySpec( key, "AES" ), new IvParameterSpec( iv ) );
+    }
+
+    @Override
+    public int process( byte[] input, int inputOffset, int length, byte[] output, int outputOffset ) {
+        try {
+            return this.cipher.update( input, inputOffset, length, output, outputOffset );
+        } catch ( ShortBufferException e ) {
+            throw new IllegalArgumentException( "Output has no space for " + length + " bytes", e );
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network.cipher;
+
+/**
+ * One direction of the AES/CFB8 stream of a connection. CFB8 works byte by byte, so every call encrypts or
+ * decrypts exactly the given amount of bytes and continues the stream of the previous call.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public interface PacketCipher {
+
+    /**
+     * Encrypt or decrypt the given bytes. Input and output may be the same array at the same offset.
+     *
+     * @param input        The array which holds the data
+     * @param inputOffset  The offset at which the data starts
+     * @param length       The amount of bytes to process
+     * @param output       The array into which the result should be written
+     * @param outputOffset The offset at which the result should start
+     * @return amount of bytes written to the output
+     */
+    int process( byte[] input, int inputOffset, int length, byte[] output, int outputOffset );
+
+}
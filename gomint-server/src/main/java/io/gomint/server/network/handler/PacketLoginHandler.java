@@ -9,31 +9,20 @@ package io.gomint.server.network.handler;
 
 import io.gomint.event.player.PlayerLoginEvent;
 import io.gomint.event.player.PlayerPreLoginEvent;
+import io.gomint.server.async.Delegate;
 import io.gomint.server.entity.EntityPlayer;
-import io.gomint.server.jwt.JwtAlgorithm;
-import io.gomint.server.jwt.JwtSignatureException;
-import io.gomint.server.jwt.JwtToken;
-import io.gomint.server.jwt.MojangChainValidator;
 import io.gomint.server.network.EncryptionHandler;
+import io.gomint.server.network.LoginVerification;
 import io.gomint.server.network.PlayerConnection;
 import io.gomint.server.network.PlayerConnectionState;
 import io.gomint.server.network.Protocol;
 import io.gomint.server.network.packet.PacketEncryptionRequest;
 import io.gomint.server.network.packet.PacketLogin;
 import io.gomint.server.network.packet.PacketPlayState;
-import io.gomint.server.player.PlayerSkin;
 import io.gomint.server.world.WorldAdapter;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.Base64;
-
 /**
  * @author geNAZt
  * @version 1.0
@@ -43,7 +32,7 @@ public class PacketLoginHandler implements PacketHandler<PacketLogin> {
     private static final Logger LOGGER = LoggerFactory.getLogger( PacketLoginHandler.class );
 
     @Override
-    public void handle( PacketLogin packet, long currentTimeMillis, PlayerConnection connection ) {
+    public void handle( PacketLogin packet, long currentTimeMillis, final PlayerConnection connection ) {
         PlayerPreLoginEvent playerPreLoginEvent = connection.getNetworkManager().getServer().getPluginManager().callEvent(
                 new PlayerPreLoginEvent( connection.getConnection().getAddress() )
         );
@@ -71,71 +60,53 @@ public class PacketLoginHandler implements PacketHandler<PacketLogin> {
             return;
         }
 
-        // More data please
-        ByteBuffer byteBuffer = ByteBuffer.wrap( packet.getPayload() );
-        byteBuffer.order( ByteOrder.LITTLE_ENDIAN );
-        byte[] stringBuffer = new byte[byteBuffer.getInt()];
-        byteBuffer.get( stringBuffer );
-
-        // Parse chain and validate
-        String jwt = new String( stringBuffer );
-        JSONObject json;
-        try {
-            json = this.parseJwtString( jwt );
-        } catch ( ParseException e ) {
-            e.printStackTrace();
-            return;
+        // Checking the chain, the skin and deriving the encryption key is expensive, the login workers do that
+        connection.setState( PlayerConnectionState.VERIFYING_LOGIN );
+        boolean admitted = connection.getNetworkManager().getLoginVerifier().verify( packet.getPayload(), new Delegate<LoginVerification>() {
+            @Override
+            public void invoke( LoginVerification verification ) {
+                completeLogin( verification, connection );
+            }
+        } );
+
+        if ( !admitted ) {
+            connection.disconnect( "Too many players are logging in, please try again" );
         }
+    }
 
-        Object jsonChainRaw = json.get( "chain" );
-        if ( jsonChainRaw == null || !( jsonChainRaw instanceof JSONArray ) ) {
+    /**
+     * Continue the login once its payload has been verified. This is called on the main thread.
+     *
+     * @param verification The completed verification of the login payload
+     * @param connection   The connection which sent the login
+     */
+    private void completeLogin( LoginVerification verification, PlayerConnection connection ) {
+        // The player may have left while we were verifying
+        if ( !connection.getConnection().isConnected() ) {
             return;
         }
 
-        MojangChainValidator chainValidator = new MojangChainValidator( connection.getServer().getEncryptionKeyFactory() );
-        JSONArray jsonChain = (JSONArray) jsonChainRaw;
-        for ( int i = 0; i < jsonChain.size(); ++i ) {
-            Object jsonTokenRaw = jsonChain.get( i );
-            if ( jsonTokenRaw instanceof String ) {
-                try {
-                    JwtToken token = JwtToken.parse( (String) jsonTokenRaw );
-                    chainValidator.addToken( token );
-                } catch ( IllegalArgumentException e ) {
-                    e.printStackTrace();
-                    continue;
-                }
-            }
+        if ( verification.isMalformed() ) {
+            connection.disconnect( null );
+            return;
         }
 
         // Check if valid user (xbox live)
-        if ( !chainValidator.validate() && connection.getNetworkManager().getServer().getServerConfig().isOnlyXBOXLogin() ) {
+        boolean onlyXBOXLogin = connection.getNetworkManager().getServer().getServerConfig().isOnlyXBOXLogin();
+        if ( !verification.isValidChain() && onlyXBOXLogin ) {
             connection.disconnect( "Only valid XBOX Logins are allowed" );
             return;
         }
 
-        // Parse skin
-        byte[] skin = new byte[byteBuffer.getInt()];
-        byteBuffer.get( skin );
-
-        JwtToken skinToken = JwtToken.parse( new String( skin ) );
-
-        try {
-            skinToken.validateSignature( JwtAlgorithm.ES384, chainValidator.getTrustedKeys().get( skinToken.getHeader().getProperty( "x5u" ) ) );
-        } catch ( JwtSignatureException e ) {
-            // Invalid skin
-            if ( connection.getNetworkManager().getServer().getServerConfig().isOnlyXBOXLogin() ) {
-                connection.disconnect( "Skin is invalid or corrupted" );
-                return;
-            }
+        if ( !verification.isValidSkin() && onlyXBOXLogin ) {
+            connection.disconnect( "Skin is invalid or corrupted" );
+            return;
         }
 
-        // Create additional data wrappers
-        PlayerSkin playerSkin = new PlayerSkin( skinToken.getClaim( "SkinId" ), Base64.getDecoder().decode( (String) skinToken.getClaim( "SkinData" ) ) );
-
         // Create entity:
         WorldAdapter world = connection.getNetworkManager().getServer().getDefaultWorld();
-        connection.setEntity( new EntityPlayer( world, connection, chainValidator.getUsername(), chainValidator.getUuid() ) );
-        connection.getEntity().setSkin( playerSkin );
+        connection.setEntity( new EntityPlayer( world, connection, verification.getUsername(), verification.getUuid() ) );
+        connection.getEntity().setSkin( verification.getSkin() );
         connection.getEntity().setNameTagVisible( true );
         connection.getEntity().setNameTagAlwaysVisible( true );
 
@@ -152,38 +123,24 @@ public class PacketLoginHandler implements PacketHandler<PacketLogin> {
             connection.sendPlayState( PacketPlayState.PlayState.LOGIN_SUCCESS );
             connection.sendResourcePacks();
         } else {
-            // Enable encryption
-            EncryptionHandler encryptionHandler = new EncryptionHandler( connection.getEntity().getWorld().getServer().getEncryptionKeyFactory() );
-            encryptionHandler.supplyClientKey( chainValidator.getClientPublicKey() );
-            if ( encryptionHandler.beginClientsideEncryption() ) {
-                // Get the needed data for the encryption start
-                byte[] salt = encryptionHandler.getClientSalt();
-                String serverPublic = encryptionHandler.getServerPublic();
-
-                connection.setState( PlayerConnectionState.ENCRPYTION_INIT );
-                connection.setEncryptionHandler( encryptionHandler );
-
-                PacketEncryptionRequest packetEncryptionRequest = new PacketEncryptionRequest();
-                packetEncryptionRequest.setServerKey( serverPublic );
-                packetEncryptionRequest.setClientSalt( salt );
-                connection.send( packetEncryptionRequest );
+            // Enable encryption, the shared secret has been derived by the verification
+            EncryptionHandler encryptionHandler = verification.getEncryptionHandler();
+            if ( encryptionHandler == null ) {
+                connection.disconnect( "Could not enable encryption" );
+                return;
             }
-        }
-    }
 
-    /**
-     * Parses the specified JSON string and ensures it is a JSONObject.
-     *
-     * @param jwt The string to parse
-     * @return The parsed JSON object on success
-     * @throws ParseException Thrown if the given JSON string is invalid or does not start with a JSONObject
-     */
-    private JSONObject parseJwtString( String jwt ) throws ParseException {
-        Object jsonParsed = new JSONParser().parse( jwt );
-        if ( jsonParsed instanceof JSONObject ) {
-            return (JSONObject) jsonParsed;
-        } else {
-            throw new ParseException( ParseException.ERROR_UNEXPECTED_TOKEN );
+            // Get the needed data for the encryption start
+            byte[] salt = encryptionHandler.getClientSalt();
+            String serverPublic = encryptionHandler.getServerPublic();
+
+            connection.setState( PlayerConnectionState.ENCRPYTION_INIT );
+            connection.setEncryptionHandler( encryptionHandler );
+
+            PacketEncryptionRequest packetEncryptionRequest = new PacketEncryptionRequest();
+            packetEncryptionRequest.setServerKey( serverPublic );
+            packetEncryptionRequest.setClientSalt( salt );
+            connection.send( packetEncryptionRequest );
         }
     }
 
@@ -1,12 +1,77 @@
 package io.gomint.server.performance;
 
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 /**
+ * Records how long the sections of every tick take. Timing a section is done like this:
+ * <pre>
+ * long start = report.begin();
+ * doWork();
+ * report.end( Section.ENTITIES, start );
+ * </pre>
+ * Sections which follow each other should be chained, {@link #end(Section, long)} returns the start of the next span:
+ * <pre>
+ * long start = report.begin();
+ * doWork();
+ * start = report.end( Section.BLOCK_UPDATES, start );
+ * doOtherWork();
+ * report.end( Section.ENTITIES, start );
+ * </pre>
+ * When the report is disabled {@link #begin()} returns 0 and nothing gets measured. When enabled the duration of
+ * every tick is recorded, but its sections are only timed on every n-th tick. On the other ticks {@link #begin()}
+ * returns 0 as well, so a span costs a single field read. A timed span costs one {@link System#nanoTime()} call and
+ * one atomic add, the time and the amount of calls of a section share one counter. This cost is measured once on
+ * creation and every tick records the amount of time it spent on measuring itself, so the overhead can be checked
+ * in the viewer.
+ * <p>
+ * With a tick of 200 spans of 2.5 microseconds a timed tick costs about 4% when reading the clock takes 100 ns,
+ * sampling every tenth tick keeps the profiler below 1% of the tick time.
+ *
  * @author geNAZt
  * @version 1.0
  */
 public class PeformanceReport {
 
+    /**
+     * Amount of worlds which can be timed on their own
+     */
+    public static final int MAX_WORLDS = 16;
+
+    /**
+     * Every n-th tick gets its sections timed by default
+     */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 10;
+
+    /**
+     * Amount of ticks which are kept by default
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static final int CALIBRATION_SPANS = 100000;
+    private static final Section[] SECTIONS = Section.values();
+
+    /**
+     * The lower bits of a section counter hold the amount of calls, the upper ones the nanoseconds
+     */
+    static final int CALL_BITS = 20;
+    static final long CALL_MASK = ( 1L << CALL_BITS ) - 1;
+
     private boolean enabled;
+    private final int sampleInterval;
+    private volatile boolean sampling;
+
+    @Getter private final TickRecordBuffer buffer;
+    private final AtomicLongArray sectionCounters = new AtomicLongArray( SECTIONS.length );
+    private final AtomicLongArray worldNanos = new AtomicLongArray( MAX_WORLDS );
+
+    private volatile String[] registeredWorlds = new String[0];
+
+    @Getter private long spanCostNanos;
+
+    private long tick;
+    private long tickStart;
 
     /**
      * Generate a new PerformanceReport
@@ -14,7 +79,45 @@ public class PeformanceReport {
      * @param enabled Default enabled or not
      */
     public PeformanceReport( boolean enabled ) {
+        this( enabled, DEFAULT_CAPACITY, DEFAULT_SAMPLE_INTERVAL );
+    }
+
+    /**
+     * Generate a new PerformanceReport
+     *
+     * @param enabled  Default enabled or not
+     * @param capacity Amount of ticks which are kept
+     */
+    public PeformanceReport( boolean enabled, int capacity ) {
+        this( enabled, capacity, DEFAULT_SAMPLE_INTERVAL );
+    }
+
+    /**
+     * Generate a new PerformanceReport
+     *
+     * @param enabled        Default enabled or not
+     * @param capacity       Amount of ticks which are kept
+     * @param sampleInterval Every n-th tick gets its sections timed, 1 times every tick
+     */
+    public PeformanceReport( boolean enabled, int capacity, int sampleInterval ) {
         this.enabled = enabled;
+        this.sampleInterval = Math.max( 1, sampleInterval );
+        this.buffer = new TickRecordBuffer( capacity, SECTIONS.length, MAX_WORLDS );
+
+        if ( enabled ) {
+            this.sampling = true;
+            this.spanCostNanos = this.calibrate();
+            this.sampling = false;
+        }
+    }
+
+    /**
+     * Check if ticks are being recorded
+     *
+     * @return true when ticks are recorded
+     */
+    public boolean isEnabled() {
+        return this.enabled;
     }
 
     public void startTick( long currentTimeMillis ) {
@@ -23,7 +126,113 @@ public class PeformanceReport {
             return;
         }
 
+        this.sampling = this.tick % this.sampleInterval == 0;
+        this.tickStart = System.nanoTime();
+    }
+
+    /**
+     * Complete the tick which has been started with {@link #startTick(long)} and store its record
+     */
+    public void endTick() {
+        if ( !this.enabled ) {
+            return;
+        }
+
+        long duration = System.nanoTime() - this.tickStart;
+
+        // The tick span itself and one span per world are not counted as calls
+        long spans = 1;
+        boolean sampled = this.sampling;
+        if ( sampled ) {
+            spans += this.registeredWorlds.length;
+            for ( int i = 0; i < SECTIONS.length; i++ ) {
+                spans += this.sectionCounters.get( i ) & CALL_MASK;
+            }
+
+            this.sampling = false;
+        }
+
+        this.buffer.write( this.tick++, this.tickStart, duration, spans * this.spanCostNanos, sampled,
+                this.sectionCounters, this.worldNanos );
+    }
+
+    /**
+     * Begin a span
+     *
+     * @return the start of the span which needs to be given to {@link #end(Section, long)}, 0 when disabled or
+     * the current tick is not sampled
+     */
+    public long begin() {
+        return this.sampling ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Complete a span and add its time to the given section. This may be called from any thread.
+     *
+     * @param section The section the span belongs to
+     * @param start   The value {@link #begin()} or the end of the previous span returned
+     * @return the end of the span which can be used as start of the next one, 0 when disabled
+     */
+    public long end( Section section, long start ) {
+        if ( start == 0 ) {
+            return 0;
+        }
+
+        long end = System.nanoTime();
+        this.sectionCounters.addAndGet( section.ordinal(), ( ( end - start ) << CALL_BITS ) + 1 );
+        return end;
+    }
+
+    /**
+     * Reserve a slot for a world so its tick can be timed with {@link #endWorld(int, long)}
+     *
+     * @param name The name of the world
+     * @return the slot of the world or -1 when the report is disabled or there are too many worlds
+     */
+    public synchronized int registerWorld( String name ) {
+        if ( !this.enabled || this.registeredWorlds.length == MAX_WORLDS ) {
+            return -1;
+        }
+
+        String[] worlds = Arrays.copyOf( this.registeredWorlds, this.registeredWorlds.length + 1 );
+        worlds[worlds.length - 1] = name;
+        this.registeredWorlds = worlds;
+        return worlds.length - 1;
+    }
+
+    /**
+     * Complete the span of a world tick
+     *
+     * @param slot  The slot {@link #registerWorld(String)} returned
+     * @param start The value {@link #begin()} returned
+     */
+    public void endWorld( int slot, long start ) {
+        if ( start == 0 || slot < 0 ) {
+            return;
+        }
+
+        this.worldNanos.addAndGet( slot, System.nanoTime() - start );
+    }
+
+    /**
+     * Get the names of all registered worlds, the index is the slot of the world
+     *
+     * @return names of the worlds
+     */
+    public String[] getWorldNames() {
+        return this.registeredWorlds;
+    }
+
+    private long calibrate() {
+        long start = System.nanoTime();
+        long spanStart = this.begin();
+        for ( int i = 0; i < CALIBRATION_SPANS; i++ ) {
+            spanStart = this.end( Section.NETWORK, spanStart );
+        }
 
+        long cost = ( System.nanoTime() - start ) / CALIBRATION_SPANS;
+        this.sectionCounters.set( Section.NETWORK.ordinal(), 0 );
+        return Math.max( 1, cost );
     }
 
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.performance;
+
+import io.gomint.server.performance.protocol.HandshakePacket;
+import io.gomint.server.performance.protocol.PerformanceProtocol;
+import io.gomint.server.performance.protocol.TickPacket;
+import io.gomint.server.performance.protocol.WorldListPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Streams the records of a {@link PeformanceReport} to performance viewers. The socket is only bound to the
+ * loopback interface. Viewers first get all records which are still in the buffer and then every new tick. The
+ * main thread is never blocked by a viewer, a viewer which is too slow skips the records which got overwritten.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class PerformanceStreamServer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( PerformanceStreamServer.class );
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    private final PeformanceReport report;
+    private final long tickNanos;
+    private final ExecutorService executorService;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> clients = Collections.newSetFromMap( new ConcurrentHashMap<Socket, Boolean>() );
+
+    private volatile boolean running = true;
+
+    /**
+     * Bind the socket and start accepting viewers
+     *
+     * @param report          The report which should be streamed
+     * @param tickNanos       The time one tick should take
+     * @param port            The port on the loopback interface to bind to
+     * @param executorService The executor which runs the accepting and the streaming
+     * @throws IOException Thrown when the socket could not be bound
+     */
+    public PerformanceStreamServer( PeformanceReport report, long tickNanos, int port, ExecutorService executorService ) throws IOException {
+        this.report = report;
+        this.tickNanos = tickNanos;
+        this.executorService = executorService;
+        this.serverSocket = new ServerSocket( port, 4, InetAddress.getLoopbackAddress() );
+
+        this.executorService.execute( new Runnable() {
+            @Override
+            public void run() {
+                acceptViewers();
+            }
+        } );
+    }
+
+    /**
+     * Stop streaming and disconnect all viewers
+     */
+    public void close() {
+        this.running = false;
+
+        try {
+            this.serverSocket.close();
+        } catch ( IOException e ) {
+            LOGGER.warn( "Could not close performance stream socket", e );
+        }
+
+        for ( Socket socket : this.clients ) {
+            closeQuietly( socket );
+        }
+    }
+
+    private void acceptViewers() {
+        while ( this.running ) {
+            try {
+                final Socket socket = this.serverSocket.accept();
+                socket.setTcpNoDelay( true );
+                this.clients.add( socket );
+
+                this.executorService.execute( new Runnable() {
+                    @Override
+                    public void run() {
+                        stream( socket );
+                    }
+                } );
+            } catch ( IOException e ) {
+                if ( this.running ) {
+                    LOGGER.warn( "Could not accept performance viewer", e );
+                }
+            }
+        }
+    }
+
+    private void stream( Socket socket ) {
+        LOGGER.info( "Performance viewer connected from " + socket.getRemoteSocketAddress() );
+
+        TickRecordBuffer buffer = this.report.getBuffer();
+        TickPacket tickPacket = new TickPacket();
+
+        try ( DataOutputStream out = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) ) ) {
+            Section[] sections = Section.values();
+            String[] sectionNames = new String[sections.length];
+            byte[] sectionPlacements = new byte[sections.length];
+            for ( int i = 0; i < sections.length; i++ ) {
+                sectionNames[i] = sections[i].getDisplayName();
+                sectionPlacements[i] = sections[i].getPlacement();
+            }
+
+            HandshakePacket handshakePacket = new HandshakePacket();
+            handshakePacket.setTickNanos( this.tickNanos );
+            handshakePacket.setSectionNames( sectionNames );
+            handshakePacket.setSectionPlacements( sectionPlacements );
+            PerformanceProtocol.writePacket( out, handshakePacket );
+
+            String[] worldNames = null;
+            long sequence = buffer.getOldest();
+            while ( this.running ) {
+                // Worlds only get added, so a new array means there is a new world
+                String[] currentWorldNames = this.report.getWorldNames();
+                if ( currentWorldNames != worldNames ) {
+                    WorldListPacket worldListPacket = new WorldListPacket();
+                    worldListPacket.setWorldNames( currentWorldNames );
+                    PerformanceProtocol.writePacket( out, worldListPacket );
+                    worldNames = currentWorldNames;
+                }
+
+                while ( sequence < buffer.getWritten() ) {
+                    if ( !buffer.read( sequence, tickPacket ) ) {
+                        // We fell behind and the record has been overwritten already
+                        sequence = buffer.getOldest();
+                        continue;
+                    }
+
+                    PerformanceProtocol.writePacket( out, tickPacket );
+                    sequence++;
+                }
+
+                out.flush();
+                Thread.sleep( POLL_INTERVAL_MILLIS );
+            }
+        } catch ( IOException e ) {
+            LOGGER.info( "Performance viewer " + socket.getRemoteSocketAddress() + " disconnected" );
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.clients.remove( socket );
+            closeQuietly( socket );
+        }
+    }
+
+    private static void closeQuietly( Socket socket ) {
+        try {
+            socket.close();
+        } catch ( IOException e ) {
+            // Ignored, the viewer is gone anyway
+        }
+    }
+
+}
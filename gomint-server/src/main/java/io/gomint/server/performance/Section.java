@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.performance;
+
+import io.gomint.server.performance.protocol.PerformanceProtocol;
+
+/**
+ * Parts of a tick which get timed by the {@link PeformanceReport}. Sections which run on more than one thread
+ * record the time summed over all threads.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public enum Section {
+
+    /**
+     * Receiving packets and flushing the send queues of all connections
+     */
+    NETWORK( "Network", PerformanceProtocol.SECTION_TICK ),
+
+    /**
+     * Tasks scheduled by plugins
+     */
+    SYNC_TASKS( "Sync tasks", PerformanceProtocol.SECTION_TICK ),
+
+    /**
+     * Chunk garbage collection and handing out chunks which have been loaded
+     */
+    CHUNK_CACHE( "Chunk cache", PerformanceProtocol.SECTION_WORLD ),
+
+    /**
+     * Random block ticks of all loaded chunks
+     */
+    RANDOM_TICKS( "Random ticks", PerformanceProtocol.SECTION_WORLD ),
+
+    /**
+     * Scheduled block updates
+     */
+    BLOCK_UPDATES( "Block updates", PerformanceProtocol.SECTION_WORLD ),
+
+    /**
+     * Updating entities and broadcasting their movement
+     */
+    ENTITIES( "Entities", PerformanceProtocol.SECTION_WORLD ),
+
+    /**
+     * Relighting around changed blocks
+     */
+    LIGHT( "Light", PerformanceProtocol.SECTION_WORLD ),
+
+    /**
+     * Packaging chunks into packets, this runs on the chunk I/O workers
+     */
+    PACKAGING( "Chunk packaging", PerformanceProtocol.SECTION_OFF_TICK );
+
+    private final String displayName;
+    private final byte placement;
+
+    Section( String displayName, byte placement ) {
+        this.displayName = displayName;
+        this.placement = placement;
+    }
+
+    /**
+     * Get the name which should be shown for this section
+     *
+     * @return name of the section
+     */
+    public String getDisplayName() {
+        return this.displayName;
+    }
+
+    /**
+     * Get where this section runs, one of the SECTION_ constants of {@link PerformanceProtocol}
+     *
+     * @return placement of the section
+     */
+    public byte getPlacement() {
+        return this.placement;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.performance;
+
+import io.gomint.server.performance.protocol.TickPacket;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ring buffer which holds the records of the last ticks in one flat array. Only the main thread writes, readers
+ * get a copy of a record and notice when it has already been overwritten.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class TickRecordBuffer {
+
+    private static final int HEADER = 5;
+
+    private final int capacity;
+    private final int sections;
+    private final int worlds;
+    private final int recordSize;
+    private final long[] data;
+
+    private long written;
+
+    /**
+     * Create a new buffer
+     *
+     * @param capacity Amount of ticks which are kept
+     * @param sections Amount of sections each tick has
+     * @param worlds   Amount of worlds each tick has
+     */
+    public TickRecordBuffer( int capacity, int sections, int worlds ) {
+        this.capacity = capacity;
+        this.sections = sections;
+        this.worlds = worlds;
+        this.recordSize = HEADER + sections * 2 + worlds;
+        this.data = new long[capacity * this.recordSize];
+    }
+
+    /**
+     * Store the next tick. The counters of a sampled tick are reset to 0 while they are copied, ticks which have
+     * not been sampled store zeros and leave the counters alone.
+     *
+     * @param tick            The number of the tick
+     * @param startNanos      The {@link System#nanoTime()} at which the tick started
+     * @param durationNanos   How long the tick took
+     * @param overheadNanos   How much of the tick has been spent on measuring it
+     * @param sampled         Whether or not the sections and worlds of the tick have been timed
+     * @param sectionCounters The time and amount of spans of each section, packed like {@link PeformanceReport} does
+     * @param worldNanos      The time spent in each world
+     */
+    synchronized void write( long tick, long startNanos, long durationNanos, long overheadNanos, boolean sampled,
+                             AtomicLongArray sectionCounters, AtomicLongArray worldNanos ) {
+        int offset = (int) ( this.written % this.capacity ) * this.recordSize;
+        this.data[offset++] = tick;
+        this.data[offset++] = startNanos;
+        this.data[offset++] = durationNanos;
+        this.data[offset++] = overheadNanos;
+        this.data[offset++] = sampled ? 1 : 0;
+
+        for ( int i = 0; i < this.sections; i++ ) {
+            long counter = sampled ? sectionCounters.getAndSet( i, 0 ) : 0;
+            this.data[offset++] = counter >>> PeformanceReport.CALL_BITS;
+            this.data[offset++] = counter & PeformanceReport.CALL_MASK;
+        }
+
+        for ( int i = 0; i < this.worlds; i++ ) {
+            this.data[offset++] = sampled ? worldNanos.getAndSet( i, 0 ) : 0;
+        }
+
+        this.written++;
+    }
+
+    /**
+     * Get the amount of records which have been written since the buffer has been created. The sequence of the
+     * next record is the returned value.
+     *
+     * @return amount of records written
+     */
+    public synchronized long getWritten() {
+        return this.written;
+    }
+
+    /**
+     * Get the sequence of the oldest record which is still in the buffer
+     *
+     * @return sequence of the oldest record
+     */
+    public synchronized long getOldest() {
+        return Math.max( 0, this.written - this.capacity );
+    }
+
+    /**
+     * Copy the record with the given sequence into the packet
+     *
+     * @param sequence The sequence of the record
+     * @param packet   The packet which should be filled
+     * @return true when the record has been copied, false when it has not been written yet or has been overwritten
+     */
+    public synchronized boolean read( long sequence, TickPacket packet ) {
+        if ( sequence >= this.written || sequence < this.written - this.capacity ) {
+            return false;
+        }
+
+        packet.ensureCapacity( this.sections, this.worlds );
+
+        int offset = (int) ( sequence % this.capacity ) * this.recordSize;
+        packet.setTick( this.data[offset++] );
+        packet.setStartNanos( this.data[offset++] );
+        packet.setDurationNanos( this.data[offset++] );
+        packet.setOverheadNanos( this.data[offset++] );
+        packet.setSampled( this.data[offset++] != 0 );
+
+        long[] sectionNanos = packet.getSectionNanos();
+        int[] sectionCalls = packet.getSectionCalls();
+        for ( int i = 0; i < this.sections; i++ ) {
+            sectionNanos[i] = this.data[offset++];
+            sectionCalls[i] = (int) this.data[offset++];
+        }
+
+        long[] worldNanos = packet.getWorldNanos();
+        for ( int i = 0; i < this.worlds; i++ ) {
+            worldNanos[i] = this.data[offset++];
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,56 @@
+package io.gomint.server.performance.protocol;
+
+import lombok.Data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * First packet of the stream. It tells the viewer how long a tick should take and which sections the
+ * following ticks contain, together with where each section runs.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@Data
+public class HandshakePacket extends Packet {
+
+    private int version = PerformanceProtocol.VERSION;
+    private long tickNanos;
+    private String[] sectionNames;
+    private byte[] sectionPlacements;
+
+    @Override
+    public byte getId() {
+        return PerformanceProtocol.PACKET_HANDSHAKE;
+    }
+
+    @Override
+    public void serialize( DataOutputStream dataOutputStream ) throws IOException {
+        dataOutputStream.writeInt( this.version );
+        dataOutputStream.writeLong( this.tickNanos );
+        dataOutputStream.writeByte( this.sectionNames.length );
+        for ( int i = 0; i < this.sectionNames.length; i++ ) {
+            dataOutputStream.writeUTF( this.sectionNames[i] );
+            dataOutputStream.writeByte( this.sectionPlacements[i] );
+        }
+    }
+
+    @Override
+    public void deserialize( DataInputStream dataInputStream ) throws IOException {
+        this.version = dataInputStream.readInt();
+        if ( this.version != PerformanceProtocol.VERSION ) {
+            throw new IOException( "Unsupported stream version " + this.version + ", expected " + PerformanceProtocol.VERSION );
+        }
+
+        this.tickNanos = dataInputStream.readLong();
+        this.sectionNames = new String[dataInputStream.readUnsignedByte()];
+        this.sectionPlacements = new byte[this.sectionNames.length];
+        for ( int i = 0; i < this.sectionNames.length; i++ ) {
+            this.sectionNames[i] = dataInputStream.readUTF();
+            this.sectionPlacements[i] = dataInputStream.readByte();
+        }
+    }
+
+}
@@ -10,6 +10,13 @@ import java.io.IOException;
  */
 public abstract class Packet {
 
+    /**
+     * Get the id which is written in front of the packet
+     *
+     * @return id of the packet
+     */
+    public abstract byte getId();
+
     public abstract void serialize( DataOutputStream dataOutputStream ) throws IOException;
 
     public abstract void deserialize( DataInputStream dataInputStream ) throws IOException;
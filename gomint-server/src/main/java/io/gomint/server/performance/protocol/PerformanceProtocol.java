@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.performance.protocol;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The stream between the server and the performance viewer. Every packet is its id followed by its data, all
+ * numbers are big endian. The server starts with a {@link HandshakePacket} and a {@link WorldListPacket}, after
+ * that one {@link TickPacket} follows for each tick. A new {@link WorldListPacket} is sent when a world has been
+ * loaded.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public final class PerformanceProtocol {
+
+    /**
+     * Version of the stream format, the viewer refuses streams with another version
+     */
+    public static final int VERSION = 2;
+
+    public static final byte PACKET_HANDSHAKE = 0x00;
+    public static final byte PACKET_WORLD_LIST = 0x01;
+    public static final byte PACKET_TICK = 0x02;
+
+    /**
+     * Section which runs on the main thread as part of the tick
+     */
+    public static final byte SECTION_TICK = 0;
+
+    /**
+     * Section which runs inside of a world tick, possibly on multiple threads
+     */
+    public static final byte SECTION_WORLD = 1;
+
+    /**
+     * Section which runs on other threads independent of the tick
+     */
+    public static final byte SECTION_OFF_TICK = 2;
+
+    private PerformanceProtocol() {
+        throw new AssertionError( "Cannot instantiate PerformanceProtocol!" );
+    }
+
+    /**
+     * Write the given packet including its id
+     *
+     * @param out    The stream to write to
+     * @param packet The packet which should be written
+     * @throws IOException Thrown when the stream could not be written
+     */
+    public static void writePacket( DataOutputStream out, Packet packet ) throws IOException {
+        out.writeByte( packet.getId() );
+        packet.serialize( out );
+    }
+
+    /**
+     * Read the next packet
+     *
+     * @param in The stream to read from
+     * @return the packet which has been read
+     * @throws IOException Thrown when the stream could not be read or contains an unknown packet
+     */
+    public static Packet readPacket( DataInputStream in ) throws IOException {
+        byte packetId = in.readByte();
+
+        Packet packet;
+        switch ( packetId ) {
+            case PACKET_HANDSHAKE:
+                packet = new HandshakePacket();
+                break;
+            case PACKET_WORLD_LIST:
+                packet = new WorldListPacket();
+                break;
+            case PACKET_TICK:
+                packet = new TickPacket();
+                break;
+            default:
+                throw new IOException( "Unknown packet id 0x" + Integer.toHexString( packetId & 0xFF ) );
+        }
+
+        packet.deserialize( in );
+        return packet;
+    }
+
+}
@@ -0,0 +1,91 @@
+package io.gomint.server.performance.protocol;
+
+import lombok.Data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Timings of one tick. Sections and worlds are only timed when the tick has been sampled, otherwise they are 0.
+ * The arrays are reused when a packet is deserialized or filled again, so one instance can
+ * be used for a whole stream.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@Data
+public class TickPacket extends Packet {
+
+    private long tick;
+    private long startNanos;
+    private long durationNanos;
+    private long overheadNanos;
+    private boolean sampled;
+    private long[] sectionNanos = new long[0];
+    private int[] sectionCalls = new int[0];
+    private long[] worldNanos = new long[0];
+
+    @Override
+    public byte getId() {
+        return PerformanceProtocol.PACKET_TICK;
+    }
+
+    @Override
+    public void serialize( DataOutputStream dataOutputStream ) throws IOException {
+        dataOutputStream.writeLong( this.tick );
+        dataOutputStream.writeLong( this.startNanos );
+        dataOutputStream.writeLong( this.durationNanos );
+        dataOutputStream.writeLong( this.overheadNanos );
+        dataOutputStream.writeBoolean( this.sampled );
+
+        dataOutputStream.writeByte( this.sectionNanos.length );
+        for ( int i = 0; i < this.sectionNanos.length; i++ ) {
+            dataOutputStream.writeLong( this.sectionNanos[i] );
+            dataOutputStream.writeInt( this.sectionCalls[i] );
+        }
+
+        dataOutputStream.writeByte( this.worldNanos.length );
+        for ( long nanos : this.worldNanos ) {
+            dataOutputStream.writeLong( nanos );
+        }
+    }
+
+    @Override
+    public void deserialize( DataInputStream dataInputStream ) throws IOException {
+        this.tick = dataInputStream.readLong();
+        this.startNanos = dataInputStream.readLong();
+        this.durationNanos = dataInputStream.readLong();
+        this.overheadNanos = dataInputStream.readLong();
+        this.sampled = dataInputStream.readBoolean();
+
+        this.ensureCapacity( dataInputStream.readUnsignedByte(), this.worldNanos.length );
+        for ( int i = 0; i < this.sectionNanos.length; i++ ) {
+            this.sectionNanos[i] = dataInputStream.readLong();
+            this.sectionCalls[i] = dataInputStream.readInt();
+        }
+
+        this.ensureCapacity( this.sectionNanos.length, dataInputStream.readUnsignedByte() );
+        for ( int i = 0; i < this.worldNanos.length; i++ ) {
+            this.worldNanos[i] = dataInputStream.readLong();
+        }
+    }
+
+    /**
+     * Make sure the arrays have the given lengths
+     *
+     * @param sections Amount of sections
+     * @param worlds   Amount of worlds
+     */
+    public void ensureCapacity( int sections, int worlds ) {
+        if ( this.sectionNanos.length != sections ) {
+            this.sectionNanos = new long[sections];
+            this.sectionCalls = new int[sections];
+        }
+
+        if ( this.worldNanos.length != worlds ) {
+            this.worldNanos = new long[worlds];
+        }
+    }
+
+}
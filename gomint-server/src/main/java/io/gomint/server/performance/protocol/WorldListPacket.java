@@ -0,0 +1,41 @@
+package io.gomint.server.performance.protocol;
+
+import lombok.Data;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Names of the worlds, the index of a name is the index of the world time inside of {@link TickPacket}s
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@Data
+public class WorldListPacket extends Packet {
+
+    private String[] worldNames;
+
+    @Override
+    public byte getId() {
+        return PerformanceProtocol.PACKET_WORLD_LIST;
+    }
+
+    @Override
+    public void serialize( DataOutputStream dataOutputStream ) throws IOException {
+        dataOutputStream.writeByte( this.worldNames.length );
+        for ( String worldName : this.worldNames ) {
+            dataOutputStream.writeUTF( worldName );
+        }
+    }
+
+    @Override
+    public void deserialize( DataInputStream dataInputStream ) throws IOException {
+        this.worldNames = new String[dataInputStream.readUnsignedByte()];
+        for ( int i = 0; i < this.worldNames.length; i++ ) {
+            this.worldNames[i] = dataInputStream.readUTF();
+        }
+    }
+
+}
@@ -8,6 +8,7 @@
 package io.gomint.server.scheduler;
 
 import io.gomint.scheduler.Task;
+import io.gomint.server.util.TimingWheel;
 import io.gomint.util.CompleteHandler;
 import io.gomint.util.ExceptionHandler;
 import lombok.Getter;
@@ -29,6 +30,9 @@ public class SyncScheduledTask implements Task, Runnable {
     private ExceptionHandler exceptionHandler;
     private List<CompleteHandler> completeHandlerList;
 
+    // Entry in the task list of the scheduler, cancelling it removes this task without searching the list
+    private volatile TimingWheel.Node<SyncScheduledTask> node;
+
     /**
      * Constructs a new SyncScheduledTask. It needs to be executed via a normal {@link java.util.concurrent.ExecutorService}
      *
@@ -69,9 +73,21 @@ public class SyncScheduledTask implements Task, Runnable {
     @Override
     public void cancel() {
         this.nextExecution = -1;
+        this.removeFromTaskList();
         this.fireCompleteHandlers();
     }
 
+    void setNode( TimingWheel.Node<SyncScheduledTask> node ) {
+        this.node = node;
+    }
+
+    void removeFromTaskList() {
+        TimingWheel.Node<SyncScheduledTask> node = this.node;
+        if ( node != null ) {
+            node.cancel();
+        }
+    }
+
     @Override
     public void onException( ExceptionHandler exceptionHandler ) {
         this.exceptionHandler = exceptionHandler;
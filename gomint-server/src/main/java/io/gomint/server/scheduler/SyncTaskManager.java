@@ -11,6 +11,9 @@ import io.gomint.server.GoMintServer;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author geNAZt
  * @version 1.0
@@ -23,6 +26,7 @@ public class SyncTaskManager {
     @Getter
     private final long tickLength;
     private final TaskList<SyncScheduledTask> taskList = new TaskList<>();
+    private final List<SyncScheduledTask> dueTasks = new ArrayList<>();
 
     /**
      * Add a new pre configured Task to this scheduler
@@ -32,9 +36,7 @@ public class SyncTaskManager {
     public void addTask( SyncScheduledTask task ) {
         if ( task.getNextExecution() == -1 ) return;
 
-        synchronized ( this.taskList ) {
-            this.taskList.add( task.getNextExecution(), task );
-        }
+        task.setNode( this.taskList.add( task.getNextExecution(), task ) );
     }
 
     /**
@@ -43,9 +45,7 @@ public class SyncTaskManager {
      * @param task The task which should be removed
      */
     public void removeTask( SyncScheduledTask task ) {
-        synchronized ( this.taskList ) {
-            this.taskList.remove( task );
-        }
+        task.removeFromTaskList();
     }
 
     /**
@@ -55,27 +55,26 @@ public class SyncTaskManager {
      * @param dt            The delta time from a full second which has already been calculated
      */
     public void update( long currentMillis, float dt ) {
-        synchronized ( this.taskList ) {
-            // Iterate over all Tasks until we find some for later ticks
-            while ( this.taskList.getNextTaskTime() < currentMillis ) {
-                SyncScheduledTask task = this.taskList.getNextElement();
-                if ( task == null ) {
-                    return;
-                }
+        // Take all due tasks out first, tasks which reschedule themselves must not run twice in one update
+        this.taskList.drainUntil( currentMillis, this.dueTasks );
 
-                // Check for abort value ( -1 )
-                if ( task.getNextExecution() == -1 ) {
-                    continue;
-                }
+        for ( int i = 0; i < this.dueTasks.size(); i++ ) {
+            SyncScheduledTask task = this.dueTasks.get( i );
 
-                task.run();
+            // Check for abort value ( -1 )
+            if ( task.getNextExecution() == -1 ) {
+                continue;
+            }
+
+            task.run();
 
-                // Reschedule if needed
-                if ( task.getNextExecution() > currentMillis ) {
-                    this.taskList.add( task.getNextExecution(), task );
-                }
+            // Reschedule if needed
+            if ( task.getNextExecution() > currentMillis ) {
+                this.addTask( task );
             }
         }
+
+        this.dueTasks.clear();
     }
 
 }
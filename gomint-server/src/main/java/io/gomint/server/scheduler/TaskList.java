@@ -7,92 +7,41 @@
 
 package io.gomint.server.scheduler;
 
-import io.gomint.server.util.ObjectBuffer;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import io.gomint.server.util.TimingWheel;
 
-import java.lang.ref.SoftReference;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
 
 /**
+ * Tasks sorted by the time at which they should run. Tasks with the same key come out in the order in which
+ * they have been added. Adding and cancelling through the returned node are lock free and may happen from
+ * any thread, all other methods must be called from the thread which runs the tasks.
+ *
  * @param <T> type of Task
  * @author geNAZt
  * @version 1.0
  */
 public class TaskList<T> {
 
-    private LongElement head;
-    private SoftReference<ObjectBuffer<TaskListNode>> buffer = new SoftReference<>( new ObjectBuffer<>( 10 ) );
-    private long lastRecalc = System.currentTimeMillis();
+    private final TimingWheel<T> wheel = new TimingWheel<>( 0 );
 
     /**
      * Add a new Element to the tasklist
      *
      * @param key     which should be used to sort the element
      * @param element which should be stored
+     * @return node which can be used to cancel the element
      */
-    public synchronized void add( long key, T element ) {
-        TaskListNode taskListNode = null;
-        ObjectBuffer<TaskListNode> buffer = this.buffer.get();
-        if ( buffer != null ) {
-            // Recalc the buffer
-            if ( key - this.lastRecalc >= TimeUnit.SECONDS.toMillis( 5 ) ) {
-                buffer.recalc();
-                this.lastRecalc = key;
-            }
-
-            taskListNode = buffer.get();
-        }
-
-        if ( taskListNode == null ) {
-            taskListNode = new TaskListNode( element, null );
-        }
-
-        taskListNode.setCurrent( element );
-        taskListNode.setTail( null );
-
-        // Check if we have a head state
-        if ( this.head == null ) {
-            this.head = new LongElement( key, null, taskListNode, taskListNode );
-        } else {
-            LongElement longElement = this.head;
-            LongElement previousLongElement = null;
-
-            // Check until we got a element with a key higher than us or we reached the end
-            while ( longElement != null && longElement.getKey() < key ) {
-                previousLongElement = longElement;
-                longElement = longElement.getNext();
-            }
-
-            // We are at the end of the chain
-            if ( longElement == null ) {
-                previousLongElement.setNext( new LongElement( key, null, taskListNode, taskListNode ) );
-            } else {
-                // Check if we need to insert a element
-                if ( longElement.getKey() != key ) {
-                    LongElement newLongElement = new LongElement( key, longElement, taskListNode, taskListNode );
-
-                    if ( previousLongElement != null ) {
-                        previousLongElement.setNext( newLongElement );
-                    } else {
-                        // We added a new head
-                        this.head = newLongElement;
-                    }
-                } else {
-                    // We already have this key, append task
-                    TaskListNode node = longElement.getTaskListTail();
-                    node.setTail( taskListNode );
-                    longElement.setTaskListTail( taskListNode );
-                }
-            }
-        }
+    public TimingWheel.Node<T> add( long key, T element ) {
+        return this.wheel.offer( key, 0, element );
     }
 
     /**
-     * @return
+     * Get the key of the next element
+     *
+     * @return the lowest key or {@link Long#MAX_VALUE} when the list is empty
      */
-    public synchronized long getNextTaskTime() {
-        return this.head != null ? this.head.getKey() : Long.MAX_VALUE;
+    public long getNextTaskTime() {
+        return this.wheel.nextKey();
     }
 
     /**
@@ -101,8 +50,8 @@ public class TaskList<T> {
      * @param key to check against
      * @return true when the next key is the key given, false when not
      */
-    public synchronized boolean checkNextKey( long key ) {
-        return this.head != null && this.head.getKey() == key && this.head.getTaskListHead() != null;
+    public boolean checkNextKey( long key ) {
+        return this.wheel.nextKey() == key;
     }
 
     /**
@@ -110,106 +59,33 @@ public class TaskList<T> {
      *
      * @return next element out of this list or null when there is none
      */
-    public synchronized T getNextElement() {
-        // There is nothing we can reach
-        if ( this.head == null ) return null;
-
-        // Check if we have a head node
-        TaskListNode taskListNode = this.head.getTaskListHead();
-        while ( this.head != null && taskListNode == null ) {
-            taskListNode = this.head.getTaskListHead();
-            if ( taskListNode == null ) {
-                // This head is empty, remove it
-                this.head = this.head.getNext();
-            }
-        }
-
-        // This list has reached its end
-        if ( this.head == null ) return null;
-
-        // Extract the element
-        T element = taskListNode.getCurrent();
-        this.head.setTaskListHead( taskListNode.getTail() );
-        while ( this.head.getTaskListHead() == null ) {
-            this.head = this.head.getNext();
-            if ( this.head == null ) break;
-        }
-
-        ObjectBuffer<TaskListNode> buffer = this.buffer.get();
-        if ( buffer != null ) {
-            buffer.push( taskListNode );
-        }
-
-        return element;
+    public T getNextElement() {
+        TimingWheel.Node<T> node = this.wheel.poll();
+        return node != null ? node.getElement() : null;
     }
 
     /**
-     * Remove a task from the list
+     * Remove all elements whose key is lower than the given time and add them to the target list in the
+     * order of their keys
      *
-     * @param task which should be removed
+     * @param time   The first key which should stay in the list
+     * @param target The list to which the elements should be added
      */
-    public synchronized void remove( T task ) {
-        // There is nothing we can reach
-        if ( this.head == null ) return;
-
-        LongElement longElement = this.head;
-        LongElement previousElement = null;
-        while ( longElement != null ) {
-            // Check if we have a head node
-            TaskListNode taskListNode = longElement.getTaskListHead();
-            TaskListNode previousNode = null;
-
-            while ( taskListNode != null ) {
-                if ( taskListNode.getCurrent().equals( task ) ) {
-                    // Check if we are at the tail of the longElement
-                    if ( taskListNode.getTail() == null ) {
-                        if ( previousNode != null ) {
-                            longElement.setTaskListTail( previousNode );
-                        } else {
-                            longElement.setTaskListTail( null );
-                        }
-                    }
-
-                    // Chain the previous node to the next node after the removed one
-                    if ( previousNode != null ) {
-                        previousNode.setTail( taskListNode.getTail() );
-                    } else {
-                        longElement.setTaskListHead( null );
-                    }
-                }
-
-                previousNode = taskListNode;
-                taskListNode = taskListNode.getTail();
-            }
-
-            // Check if we left a empty longElement
-            if ( longElement.getTaskListHead() == null ) {
-                if ( previousElement != null ) {
-                    previousElement.setNext( longElement.getNext() );
-                } else {
-                    this.head = null;
-                }
-            }
-
-            previousElement = longElement;
-            longElement = longElement.getNext();
+    public void drainUntil( long time, List<T> target ) {
+        TimingWheel.Node<T> node;
+        while ( ( node = this.wheel.pollUntil( time ) ) != null ) {
+            target.add( node.getElement() );
         }
     }
 
-    @AllArgsConstructor
-    @Data
-    private final class LongElement {
-        private long key;
-        private LongElement next;
-        private TaskListNode taskListHead;
-        private TaskListNode taskListTail;
-    }
-
-    @AllArgsConstructor
-    @Data
-    private final class TaskListNode {
-        private T current;
-        private TaskListNode tail;
+    /**
+     * Remove a task from the list. This has to look at all tasks, cancel the node returned by
+     * {@link #add(long, Object)} when possible.
+     *
+     * @param task which should be removed
+     */
+    public void remove( T task ) {
+        this.wheel.cancelAll( task );
     }
 
 }
@@ -7,31 +7,86 @@
 
 package io.gomint.server.util;
 
-import io.gomint.jraknet.PacketBuffer;
+import io.gomint.server.config.ConnectionConfig;
+import io.gomint.server.network.BatchEncoder;
 import io.gomint.server.network.EncryptionHandler;
 import io.gomint.server.network.packet.Packet;
 import io.gomint.server.network.packet.PacketBatch;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import io.gomint.server.network.packet.PacketCraftingRecipes;
+import io.gomint.server.network.packet.PacketEntityMotion;
+import io.gomint.server.network.packet.PacketEntityMovement;
+import io.gomint.server.network.packet.PacketMovePlayer;
+import io.gomint.server.network.packet.PacketWorldChunk;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.Deflater;
 
 /**
+ * Batches packets together and compresses them. Every thread has its own {@link BatchEncoder}. The compression
+ * level of a batch is the highest level of its packets, packets which have no own level use the default level.
+ * Batches which are smaller than the threshold are stored without compression since the protocol requires zlib
+ * data but deflating a few bytes does not save anything.
+ *
  * @author geNAZt
  * @version 1.0
  */
 public class BatchUtil {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger( BatchUtil.class );
+    private static final ThreadLocal<BatchEncoder> ENCODERS = new ThreadLocal<BatchEncoder>() {
+        @Override
+        protected BatchEncoder initialValue() {
+            return new BatchEncoder();
+        }
+    };
+
+    private static final Map<Class<? extends Packet>, Integer> COMPRESSION_LEVELS = new ConcurrentHashMap<>();
+    private static final CompressionStatistics STATISTICS = new CompressionStatistics();
 
-    private static final ObjectBuffer<BatchStreamHolder> STREAM_BUFFER = new ObjectBuffer<>( 5 );
-    private static long lastChecked = System.currentTimeMillis();
+    private static volatile int defaultCompressionLevel = 7;
+    private static volatile int compressionThreshold = 0;
+
+    /**
+     * Take the compression settings of the given config
+     *
+     * @param config The connection config of the server
+     */
+    public static void configure( ConnectionConfig config ) {
+        defaultCompressionLevel = clampLevel( config.getCompressionLevel() );
+        compressionThreshold = config.getCompressionThreshold();
+
+        // Movement is sent every tick and hardly compresses, so it is done as fast as possible
+        setCompressionLevel( PacketMovePlayer.class, config.getMovementCompressionLevel() );
+        setCompressionLevel( PacketEntityMovement.class, config.getMovementCompressionLevel() );
+        setCompressionLevel( PacketEntityMotion.class, config.getMovementCompressionLevel() );
+
+        // Those get compressed once and sent to many players
+        setCompressionLevel( PacketWorldChunk.class, config.getCachedPacketCompressionLevel() );
+        setCompressionLevel( PacketCraftingRecipes.class, config.getCachedPacketCompressionLevel() );
+    }
+
+    /**
+     * Set the compression level of batches which contain packets of the given class
+     *
+     * @param packetClass The class of the packets
+     * @param level       The deflate level from 0 to 9
+     */
+    public static void setCompressionLevel( Class<? extends Packet> packetClass, int level ) {
+        COMPRESSION_LEVELS.put( packetClass, clampLevel( level ) );
+    }
+
+    /**
+     * Get the statistics of all batches which have been compressed
+     *
+     * @return compression statistics
+     */
+    public static CompressionStatistics getStatistics() {
+        return STATISTICS;
+    }
 
     /**
      * Batch multiple packets together and zlib compress them
@@ -41,43 +96,35 @@ public class BatchUtil {
      * @return the completely ready to be sent batch packet
      */
     public static PacketBatch batch( EncryptionHandler encryptionHandler, Collection<Packet> packets ) {
-        if ( System.currentTimeMillis() - lastChecked >= TimeUnit.SECONDS.toMillis( 10 ) ) {
-            STREAM_BUFFER.recalc();
-        }
-
-        BatchStreamHolder batchStreamHolder = STREAM_BUFFER.get();
-        if ( batchStreamHolder == null ) {
-            batchStreamHolder = new BatchStreamHolder();
-        }
+        BatchEncoder encoder = ENCODERS.get();
+        encoder.reset();
 
+        int level = Deflater.NO_COMPRESSION;
         for ( Packet packet : packets ) {
-            int estimate = packet.estimateLength();
-            if ( estimate == -1 ) {
-                LOGGER.warn( "Packet " + packet.getClass().getSimpleName() + " has returned negative estimation" );
-            }
+            encoder.add( packet );
 
-            PacketBuffer buffer = new PacketBuffer( estimate == -1 ? 64 : estimate );
-            buffer.writeByte( packet.getId() );
-            packet.serialize( buffer );
+            Integer packetLevel = COMPRESSION_LEVELS.get( packet.getClass() );
+            level = Math.max( level, packetLevel != null ? packetLevel : defaultCompressionLevel );
+        }
 
-            try {
-                writeVarInt( buffer.getPosition(), batchStreamHolder.getOutputStream() );
-                batchStreamHolder.getOutputStream().write( buffer.getBuffer(), buffer.getBufferOffset(), buffer.getPosition() - buffer.getBufferOffset() );
-            } catch ( IOException e ) {
-                e.printStackTrace();
-            }
+        if ( encoder.getLength() < compressionThreshold ) {
+            level = Deflater.NO_COMPRESSION;
         }
 
-        PacketBatch batch = new PacketBatch();
-        batch.setPayload( batchStreamHolder.getBytes() );
+        long start = System.nanoTime();
+        int length = encoder.compress( level );
+        STATISTICS.record( encoder.getLength(), length, System.nanoTime() - start, level == Deflater.NO_COMPRESSION );
 
+        PacketBatch batch = new PacketBatch();
         if ( encryptionHandler != null ) {
-            batch.setPayload( encryptionHandler.encryptInputForClient( batch.getPayload() ) );
+            byte[] payload = new byte[encryptionHandler.getEncryptedLength( length )];
+            if ( encryptionHandler.encryptInputForClient( encoder.getOutput(), 0, length, payload, 0 ) != -1 ) {
+                batch.setPayload( payload );
+            }
+        } else {
+            batch.setPayload( Arrays.copyOf( encoder.getOutput(), length ) );
         }
 
-        batchStreamHolder.reset();
-        STREAM_BUFFER.push( batchStreamHolder );
-
         return batch;
     }
 
@@ -94,41 +141,8 @@ public class BatchUtil {
         return batch( encryptionHandler, Arrays.asList( packets ) );
     }
 
-    public static class BatchStreamHolder {
-
-        private ByteArrayOutputStream bout;
-        private final Deflater deflater;
-
-        public BatchStreamHolder() {
-            this.bout = new ByteArrayOutputStream();
-            this.deflater = new Deflater();
-        }
-
-        public void reset() {
-            this.bout = new ByteArrayOutputStream();
-            this.deflater.reset();
-            this.deflater.setInput( new byte[0] );
-        }
-
-        public OutputStream getOutputStream() {
-            return this.bout;
-        }
-
-        public byte[] getBytes() {
-            byte[] input = this.bout.toByteArray();
-            this.deflater.setInput( input );
-            this.deflater.finish();
-
-            this.bout.reset();
-            byte[] intermediate = new byte[1024];
-            while ( !this.deflater.finished() ) {
-                int read = this.deflater.deflate( intermediate );
-                this.bout.write( intermediate, 0, read );
-            }
-
-            return this.bout.toByteArray();
-        }
-
+    private static int clampLevel( int level ) {
+        return level == Deflater.DEFAULT_COMPRESSION ? 6 : Math.max( Deflater.NO_COMPRESSION, Math.min( Deflater.BEST_COMPRESSION, level ) );
     }
 
 }
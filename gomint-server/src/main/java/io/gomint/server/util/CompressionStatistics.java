@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how well outgoing batches compress and how much CPU time compressing them costs. Batches get compressed
+ * on many threads at once, so the counters are adders.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class CompressionStatistics {
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder storedBatches = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    private final LongAdder compressionNanos = new LongAdder();
+
+    /**
+     * Count a compressed batch
+     *
+     * @param uncompressed The size of the payload before compression
+     * @param compressed   The size of the payload after compression
+     * @param nanos        How long compressing took
+     * @param stored       True when the payload has been stored without compressing it
+     */
+    void record( int uncompressed, int compressed, long nanos, boolean stored ) {
+        this.batches.increment();
+        this.uncompressedBytes.add( uncompressed );
+        this.compressedBytes.add( compressed );
+        this.compressionNanos.add( nanos );
+
+        if ( stored ) {
+            this.storedBatches.increment();
+        }
+    }
+
+    public long getBatches() {
+        return this.batches.sum();
+    }
+
+    /**
+     * Get the amount of batches which were below the compression threshold and have been stored uncompressed
+     *
+     * @return amount of stored batches
+     */
+    public long getStoredBatches() {
+        return this.storedBatches.sum();
+    }
+
+    public long getUncompressedBytes() {
+        return this.uncompressedBytes.sum();
+    }
+
+    public long getCompressedBytes() {
+        return this.compressedBytes.sum();
+    }
+
+    /**
+     * Get the CPU time spent on compressing batches
+     *
+     * @return time in nanoseconds summed over all threads
+     */
+    public long getCompressionNanos() {
+        return this.compressionNanos.sum();
+    }
+
+    /**
+     * Get the size of all compressed batches relative to their uncompressed size
+     *
+     * @return ratio between 0 and slightly above 1, lower is better
+     */
+    public double getRatio() {
+        long uncompressed = this.getUncompressedBytes();
+        return uncompressed == 0 ? 1 : this.getCompressedBytes() / (double) uncompressed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format( "%d batches (%d stored), %.1f MB -> %.1f MB (ratio %.3f), %.1f ms CPU",
+                this.getBatches(), this.getStoredBatches(), this.getUncompressedBytes() / 1048576D,
+                this.getCompressedBytes() / 1048576D, this.getRatio(), this.getCompressionNanos() / 1000000D );
+    }
+
+}
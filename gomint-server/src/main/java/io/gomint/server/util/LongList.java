@@ -99,4 +99,25 @@ public class LongList {
         return this.elementData[--size];
     }
 
+    /**
+     * Get the element at the given index
+     *
+     * @param index The index of the element
+     * @return the element at the given index
+     */
+    public long get( int index ) {
+        if ( index >= this.size ) {
+            throw new IndexOutOfBoundsException( "Index: " + index + ", Size: " + this.size );
+        }
+
+        return this.elementData[index];
+    }
+
+    /**
+     * Remove all elements from this list. The backing array is kept so the list can be reused without allocation
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
 }
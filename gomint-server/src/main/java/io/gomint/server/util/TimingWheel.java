@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.util;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hierarchical timing wheel which sorts elements by a long key, normally a timestamp in milliseconds. The
+ * lowest level has one slot per key for the next 256 keys, every higher level has 64 slots which each cover
+ * a whole window of the level below. Elements are put into the lowest level whose window they share with
+ * the cursor and move down a level when the cursor reaches their slot. Keys which are more than 2^38 keys
+ * away wait in an overflow list. Adding and cancelling are O(1), finding the next slot only looks at
+ * occupancy bitmaps.
+ * <p>
+ * Elements with the same key come out in the order in which they have been added. Elements with a key
+ * before the cursor are due right away and come out together with the elements at the cursor.
+ * <p>
+ * {@link #offer(long, long, Object)} and {@link Node#cancel()} may be called from any thread. New elements
+ * wait in a lock free queue until the thread which owns the wheel calls one of the other methods, those
+ * must only be called by that thread.
+ *
+ * @param <T> type of the elements
+ * @author geNAZt
+ * @version 1.0
+ */
+public class TimingWheel<T> {
+
+    private static final int LEVEL_ZERO_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVELS = 6;
+    private static final int OVERFLOW = LEVELS;
+    private static final int[] SHIFT = new int[LEVELS];
+
+    static {
+        for ( int level = 1; level < LEVELS; level++ ) {
+            SHIFT[level] = LEVEL_ZERO_BITS + ( level - 1 ) * LEVEL_BITS;
+        }
+    }
+
+    private static final long LEVEL_ZERO_MASK = ( 1L << LEVEL_ZERO_BITS ) - 1;
+    private static final int LEVEL_MASK = ( 1 << LEVEL_BITS ) - 1;
+
+    // Slot lists by level, the overflow list is the only slot of the last level
+    private final Node<T>[][] heads;
+    private final Node<T>[][] tails;
+    private final long[] levelZeroOccupied = new long[( 1 << LEVEL_ZERO_BITS ) / 64];
+    private final long[] occupied = new long[LEVELS];
+
+    private long cursor;
+    private int size;
+
+    // Elements which have been offered but not been put into a slot yet
+    private final AtomicReference<Node<T>> inboxTail;
+    private Node<T> inboxHead;
+
+    /**
+     * Create a new timing wheel
+     *
+     * @param cursor The lowest key which is expected, lower keys are due right away
+     */
+    public TimingWheel( long cursor ) {
+        this.cursor = cursor;
+        this.heads = new Node[LEVELS + 1][];
+        this.tails = new Node[LEVELS + 1][];
+        this.heads[0] = new Node[1 << LEVEL_ZERO_BITS];
+        this.tails[0] = new Node[1 << LEVEL_ZERO_BITS];
+        for ( int level = 1; level < LEVELS; level++ ) {
+            this.heads[level] = new Node[1 << LEVEL_BITS];
+            this.tails[level] = new Node[1 << LEVEL_BITS];
+        }
+
+        this.heads[OVERFLOW] = new Node[1];
+        this.tails[OVERFLOW] = new Node[1];
+
+        this.inboxHead = new Node<>( 0, 0, null );
+        this.inboxTail = new AtomicReference<>( this.inboxHead );
+    }
+
+    /**
+     * Add a new element. This is lock free and may be called from any thread.
+     *
+     * @param key     The key by which the element gets sorted
+     * @param value   A primitive value which is stored with the element
+     * @param element The element, may be null when only the value is used
+     * @return node which can be used to cancel the element
+     */
+    public Node<T> offer( long key, long value, T element ) {
+        Node<T> node = new Node<>( key, value, element );
+        Node<T> previous = this.inboxTail.getAndSet( node );
+        previous.queued = node;
+        return node;
+    }
+
+    /**
+     * Get the lowest key of all elements which have not been cancelled
+     *
+     * @return the lowest key or {@link Long#MAX_VALUE} when there are no elements
+     */
+    public long nextKey() {
+        this.drainInbox();
+
+        while ( true ) {
+            int slot = this.nextLevelZeroSlot();
+            if ( slot != -1 ) {
+                return ( this.cursor & ~LEVEL_ZERO_MASK ) | slot;
+            }
+
+            for ( int level = 1; level < LEVELS; level++ ) {
+                slot = this.nextSlot( level );
+                if ( slot != -1 ) {
+                    long key = this.lowestKey( level, slot );
+                    if ( key != Long.MAX_VALUE ) {
+                        return key;
+                    }
+
+                    // Everything in the slot was cancelled, search again
+                    break;
+                }
+            }
+
+            if ( slot == -1 ) {
+                return this.lowestKey( OVERFLOW, 0 );
+            }
+        }
+    }
+
+    /**
+     * Remove and return the element with the lowest key when its key is lower than the given time. The cursor
+     * of the wheel gets moved up to the time.
+     *
+     * @param time The first key which should not be returned anymore
+     * @return the node of the element or null when there is no element with a lower key
+     */
+    public Node<T> pollUntil( long time ) {
+        this.drainInbox();
+
+        while ( true ) {
+            int slot = this.nextLevelZeroSlot();
+            if ( slot != -1 ) {
+                long key = ( this.cursor & ~LEVEL_ZERO_MASK ) | slot;
+                if ( key >= time ) {
+                    return null;
+                }
+
+                Node<T> node = this.heads[0][slot];
+                this.cursor = key;
+                this.unlink( node );
+                return node;
+            }
+
+            // Nothing left in this window, move to the next slot of a higher level which has elements
+            long target = this.nextCascadeKey();
+            if ( target >= time ) {
+                if ( time - 1 > this.cursor ) {
+                    this.advance( time - 1 );
+                }
+
+                return null;
+            }
+
+            this.advance( target );
+        }
+    }
+
+    /**
+     * Remove and return the element with the lowest key
+     *
+     * @return the node of the element or null when there are no elements
+     */
+    public Node<T> poll() {
+        long key = this.nextKey();
+        if ( key == Long.MAX_VALUE ) {
+            return null;
+        }
+
+        return this.pollUntil( key + 1 );
+    }
+
+    /**
+     * Cancel all elements which are equal to the given one. This needs to look at every element, use
+     * {@link Node#cancel()} where possible.
+     *
+     * @param element The element which should be cancelled
+     * @return amount of cancelled elements
+     */
+    public int cancelAll( T element ) {
+        this.drainInbox();
+
+        int cancelled = 0;
+        for ( int level = 0; level <= OVERFLOW; level++ ) {
+            for ( Node<T> head : this.heads[level] ) {
+                for ( Node<T> node = head; node != null; node = node.next ) {
+                    if ( !node.cancelled && element.equals( node.element ) ) {
+                        node.cancel();
+                        cancelled++;
+                    }
+                }
+            }
+        }
+
+        return cancelled;
+    }
+
+    /**
+     * Get the amount of elements in the wheel. Cancelled elements are counted until the wheel reaches them.
+     *
+     * @return amount of elements
+     */
+    public int size() {
+        this.drainInbox();
+        return this.size;
+    }
+
+    private void drainInbox() {
+        Node<T> next;
+        while ( ( next = this.inboxHead.queued ) != null ) {
+            // The producer which linked the next node does not touch the old head anymore
+            this.inboxHead.queued = null;
+            this.inboxHead = next;
+
+            if ( !next.cancelled ) {
+                this.link( next );
+            }
+        }
+    }
+
+    private int nextLevelZeroSlot() {
+        int from = (int) ( this.cursor & LEVEL_ZERO_MASK );
+        int word = from >>> 6;
+        long bits = this.levelZeroOccupied[word] & ( -1L << from );
+
+        while ( true ) {
+            while ( bits != 0 ) {
+                int slot = ( word << 6 ) + Long.numberOfTrailingZeros( bits );
+
+                // Cancelled elements get dropped when they reach the front
+                Node<T> head = this.heads[0][slot];
+                while ( head != null && head.cancelled ) {
+                    this.unlink( head );
+                    head = this.heads[0][slot];
+                }
+
+                if ( head != null ) {
+                    return slot;
+                }
+
+                bits &= bits - 1;
+            }
+
+            if ( ++word == this.levelZeroOccupied.length ) {
+                return -1;
+            }
+
+            bits = this.levelZeroOccupied[word];
+        }
+    }
+
+    private int nextSlot( int level ) {
+        // Slots of higher levels only contain elements after the slot of the cursor
+        int index = (int) ( this.cursor >>> SHIFT[level] ) & LEVEL_MASK;
+        long bits = this.occupied[level] & ( -2L << index );
+        return bits == 0 ? -1 : Long.numberOfTrailingZeros( bits );
+    }
+
+    private long nextCascadeKey() {
+        for ( int level = 1; level < LEVELS; level++ ) {
+            int slot = this.nextSlot( level );
+            if ( slot != -1 ) {
+                int windowShift = SHIFT[level] + LEVEL_BITS;
+                return ( ( this.cursor >>> windowShift ) << windowShift ) | ( (long) slot << SHIFT[level] );
+            }
+        }
+
+        return this.lowestKey( OVERFLOW, 0 );
+    }
+
+    private long lowestKey( int level, int slot ) {
+        long lowest = Long.MAX_VALUE;
+        Node<T> node = this.heads[level][slot];
+        while ( node != null ) {
+            Node<T> next = node.next;
+            if ( node.cancelled ) {
+                this.unlink( node );
+            } else if ( node.key < lowest ) {
+                lowest = node.key;
+            }
+
+            node = next;
+        }
+
+        return lowest;
+    }
+
+    private void advance( long target ) {
+        long difference = target ^ this.cursor;
+        this.cursor = target;
+
+        int level = levelOf( difference );
+        if ( level == 0 ) {
+            return;
+        }
+
+        // Nothing is before the target, so only the slot which contains it has elements which need to move down
+        int slot = level == OVERFLOW ? 0 : (int) ( target >>> SHIFT[level] ) & LEVEL_MASK;
+        Node<T> node = this.heads[level][slot];
+        this.heads[level][slot] = null;
+        this.tails[level][slot] = null;
+        this.clearOccupied( level, slot );
+
+        while ( node != null ) {
+            Node<T> next = node.next;
+            this.size--;
+            if ( !node.cancelled ) {
+                this.link( node );
+            }
+
+            node = next;
+        }
+    }
+
+    private void link( Node<T> node ) {
+        if ( node.key < this.cursor ) {
+            node.key = this.cursor;
+        }
+
+        int level = levelOf( node.key ^ this.cursor );
+        int slot;
+        if ( level == 0 ) {
+            slot = (int) ( node.key & LEVEL_ZERO_MASK );
+            this.levelZeroOccupied[slot >>> 6] |= 1L << slot;
+        } else if ( level == OVERFLOW ) {
+            slot = 0;
+        } else {
+            slot = (int) ( node.key >>> SHIFT[level] ) & LEVEL_MASK;
+            this.occupied[level] |= 1L << slot;
+        }
+
+        node.level = level;
+        node.slot = slot;
+        node.next = null;
+        node.prev = this.tails[level][slot];
+        if ( node.prev == null ) {
+            this.heads[level][slot] = node;
+        } else {
+            node.prev.next = node;
+        }
+
+        this.tails[level][slot] = node;
+        this.size++;
+    }
+
+    private void unlink( Node<T> node ) {
+        int level = node.level;
+        int slot = node.slot;
+
+        if ( node.prev == null ) {
+            this.heads[level][slot] = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+
+        if ( node.next == null ) {
+            this.tails[level][slot] = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+
+        if ( this.heads[level][slot] == null ) {
+            this.clearOccupied( level, slot );
+        }
+
+        node.prev = null;
+        node.next = null;
+        this.size--;
+    }
+
+    private void clearOccupied( int level, int slot ) {
+        if ( level == 0 ) {
+            this.levelZeroOccupied[slot >>> 6] &= ~( 1L << slot );
+        } else if ( level != OVERFLOW ) {
+            this.occupied[level] &= ~( 1L << slot );
+        }
+    }
+
+    private static int levelOf( long difference ) {
+        if ( difference >>> LEVEL_ZERO_BITS == 0 ) {
+            return 0;
+        }
+
+        int highestBit = 63 - Long.numberOfLeadingZeros( difference );
+        return Math.min( OVERFLOW, 1 + ( highestBit - LEVEL_ZERO_BITS ) / LEVEL_BITS );
+    }
+
+    /**
+     * One element inside of the wheel
+     *
+     * @param <T> type of the element
+     */
+    public static final class Node<T> {
+
+        private long key;
+        private final long value;
+        private final T element;
+        private volatile boolean cancelled;
+
+        // Only touched by the owner of the wheel
+        private Node<T> prev;
+        private Node<T> next;
+        private int level;
+        private int slot;
+
+        // Link of the queue of offered elements
+        private volatile Node<T> queued;
+
+        private Node( long key, long value, T element ) {
+            this.key = key;
+            this.value = value;
+            this.element = element;
+        }
+
+        /**
+         * Get the key of this element. Keys which have been before the cursor when the element got into the
+         * wheel are raised to the cursor.
+         *
+         * @return the key of this element
+         */
+        public long getKey() {
+            return this.key;
+        }
+
+        public long getValue() {
+            return this.value;
+        }
+
+        public T getElement() {
+            return this.element;
+        }
+
+        /**
+         * Cancel this element. It will not be returned by the wheel anymore. May be called from any thread.
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+    }
+
+}
@@ -9,6 +9,9 @@ package io.gomint.server.world;
 
 import io.gomint.server.async.Delegate;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author BlackyPaw
  * @version 1.0
@@ -18,7 +21,7 @@ public class AsyncChunkLoadTask extends AsyncChunkTask {
     private int x;
     private int z;
     private boolean generate;
-    private Delegate<ChunkAdapter> callback;
+    private List<Delegate<ChunkAdapter>> callbacks = new ArrayList<>( 1 );
 
     /**
      * Construct a new loading task
@@ -33,7 +36,7 @@ public class AsyncChunkLoadTask extends AsyncChunkTask {
         this.x = x;
         this.z = z;
         this.generate = generate;
-        this.callback = callback;
+        this.callbacks.add( callback );
     }
 
     /**
@@ -64,12 +67,34 @@ public class AsyncChunkLoadTask extends AsyncChunkTask {
     }
 
     /**
-     * The callback which should be invoked when the task has been completed
+     * Allow this task to generate the chunk. This must not be called while the task is queued.
+     */
+    void allowGenerate() {
+        this.generate = true;
+    }
+
+    /**
+     * Add another callback which wants the same chunk
+     *
+     * @param callback The callback which should be invoked when the task has been completed
+     */
+    void addCallback( Delegate<ChunkAdapter> callback ) {
+        this.callbacks.add( callback );
+    }
+
+    /**
+     * The callbacks which should be invoked when the task has been completed
      *
-     * @return the callback which should be invoked on completion
+     * @return the callbacks which should be invoked on completion
      */
-    Delegate<ChunkAdapter> getCallback() {
-        return callback;
+    List<Delegate<ChunkAdapter>> getCallbacks() {
+        return callbacks;
+    }
+
+    @Override
+    protected int getPriorityClass() {
+        // Chunks which may need to be generated are slower, load the ones which exist first
+        return this.generate ? 1 : 0;
     }
 
 }
@@ -7,34 +7,63 @@
 
 package io.gomint.server.world;
 
-import io.gomint.server.async.Delegate2;
-import io.gomint.server.network.packet.Packet;
-import lombok.Getter;
+import io.gomint.server.async.Future;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author BlackyPaw
- * @author geNAZt
  * @version 1.0
  */
-@Getter
 class AsyncChunkPackageTask extends AsyncChunkTask {
 
-    private int x;
-    private int z;
-    private Delegate2<Long, ChunkAdapter> callback;
+    private final ChunkAdapter chunk;
+    private final List<Future<ChunkAdapter>> futures = new ArrayList<>( 1 );
 
     /**
      * This task should package the chunk into the PE packet format
      *
-     * @param x        The X coordinate of the chunk
-     * @param z        The Z coordinate of the chunk
-     * @param callback The callback which is invoked when the chunk has been packed
+     * @param chunk  The chunk which should be packaged
+     * @param future The future which should be resolved once the chunk has been packaged
      */
-    AsyncChunkPackageTask( int x, int z, Delegate2<Long, ChunkAdapter> callback ) {
+    AsyncChunkPackageTask( ChunkAdapter chunk, Future<ChunkAdapter> future ) {
         super( Type.PACKAGE );
-        this.x = x;
-        this.z = z;
-        this.callback = callback;
+        this.chunk = chunk;
+        this.futures.add( future );
+    }
+
+    /**
+     * Get the chunk which should be packaged
+     *
+     * @return chunk which should be packaged
+     */
+    ChunkAdapter getChunk() {
+        return this.chunk;
+    }
+
+    /**
+     * Add another future which waits for the same chunk
+     *
+     * @param future The future which should be resolved once the chunk has been packaged
+     */
+    void addFuture( Future<ChunkAdapter> future ) {
+        this.futures.add( future );
+    }
+
+    /**
+     * Get all futures which wait for this chunk
+     *
+     * @return list of futures
+     */
+    List<Future<ChunkAdapter>> getFutures() {
+        return this.futures;
+    }
+
+    @Override
+    protected int getPriorityClass() {
+        // A player waits for this chunk, package it together with the loads
+        return 0;
     }
 
 }
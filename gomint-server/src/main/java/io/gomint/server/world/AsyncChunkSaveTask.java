@@ -34,4 +34,10 @@ public class AsyncChunkSaveTask extends AsyncChunkTask {
         return this.chunk;
     }
 
+    @Override
+    protected int getPriorityClass() {
+        // Saves are only done when no load is waiting
+        return 2;
+    }
+
 }
@@ -11,10 +11,16 @@ package io.gomint.server.world;
  * @author BlackyPaw
  * @version 1.0
  */
-public abstract class AsyncChunkTask {
+public abstract class AsyncChunkTask implements Comparable<AsyncChunkTask> {
 
     private final Type type;
 
+    // Ordering inside the I/O queue
+    private int priority;
+    private long sequence;
+    private long queuedAt;
+    private volatile boolean cancelled;
+
     /**
      * Construct the generic task with the given type
      *
@@ -33,6 +39,85 @@ public abstract class AsyncChunkTask {
         return type;
     }
 
+    /**
+     * Get the priority of this task inside its class of tasks. Lower values are run first, for loads this is
+     * the distance to the nearest player which requested the chunk.
+     *
+     * @return priority of the task
+     */
+    public int getPriority() {
+        return this.priority;
+    }
+
+    /**
+     * Set the priority of this task. This must not be called while the task is queued.
+     *
+     * @param priority The new priority, lower values are run first
+     */
+    void setPriority( int priority ) {
+        this.priority = priority;
+    }
+
+    /**
+     * Mark the task as queued
+     *
+     * @param sequence The sequence number which breaks ties between tasks of the same priority
+     * @param queuedAt The time in nanoseconds at which the task has been queued
+     */
+    void markQueued( long sequence, long queuedAt ) {
+        this.sequence = sequence;
+        this.queuedAt = queuedAt;
+    }
+
+    /**
+     * Get the time at which this task has been queued
+     *
+     * @return time in nanoseconds
+     */
+    long getQueuedAt() {
+        return this.queuedAt;
+    }
+
+    /**
+     * Cancel this task. Cancelled tasks are skipped when they reach the head of the queue.
+     */
+    void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Check if this task has been cancelled
+     *
+     * @return true when the task should not be run anymore
+     */
+    boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Get the class of this task. Tasks of a lower class are always run before tasks of a higher class.
+     *
+     * @return class of the task
+     */
+    protected int getPriorityClass() {
+        return this.type.ordinal();
+    }
+
+    @Override
+    public int compareTo( AsyncChunkTask other ) {
+        int result = Integer.compare( this.getPriorityClass(), other.getPriorityClass() );
+        if ( result != 0 ) {
+            return result;
+        }
+
+        result = Integer.compare( this.priority, other.priority );
+        if ( result != 0 ) {
+            return result;
+        }
+
+        return Long.compare( this.sequence, other.sequence );
+    }
+
     public enum Type {
 
         /**
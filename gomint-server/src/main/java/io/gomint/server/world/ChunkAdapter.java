@@ -8,14 +8,15 @@
 package io.gomint.server.world;
 
 import io.gomint.jraknet.PacketBuffer;
-import io.gomint.server.async.Delegate2;
 import io.gomint.server.entity.Entity;
 import io.gomint.server.entity.EntityPlayer;
 import io.gomint.server.entity.tileentity.TileEntities;
 import io.gomint.server.entity.tileentity.TileEntity;
-import io.gomint.server.network.packet.Packet;
 import io.gomint.server.network.packet.PacketBatch;
 import io.gomint.server.network.packet.PacketWorldChunk;
+import io.gomint.server.util.BatchUtil;
+import io.gomint.server.world.block.BlockState;
+import io.gomint.server.world.block.Blocks;
 import io.gomint.taglib.NBTTagCompound;
 import io.gomint.taglib.NBTWriter;
 import io.gomint.world.Biome;
@@ -42,7 +43,7 @@ public abstract class ChunkAdapter implements Chunk {
     protected WorldAdapter world;
 
     // Networking
-    protected boolean dirty;
+    protected volatile boolean dirty;
     protected SoftReference<PacketBatch> cachedPacket;
 
     // Chunk
@@ -62,13 +63,14 @@ public abstract class ChunkAdapter implements Chunk {
     protected long lastPlayerOnThisChunk;
     protected long loadedTime;
     protected long lastSavedTimestamp;
+    protected volatile boolean modified;
 
     // Entities
     protected LongObjMap<io.gomint.entity.Entity> entities;
 
     // CHECKSTYLE:ON
 
-    private ChunkSlice ensureSlice( int y ) {
+    ChunkSlice ensureSlice( int y ) {
         ChunkSlice slice = this.chunkSlices[y];
         if ( slice != null ) {
             return slice;
@@ -117,7 +119,8 @@ public abstract class ChunkAdapter implements Chunk {
 
     /**
      * Remove the dirty state for the chunk and set the batched packet to the
-     * cache.
+     * cache. The payload is shared by all connections the chunk gets sent to
+     * and must not be modified afterwards.
      *
      * @param batch The batch which has been generated to be sent to the clients
      */
@@ -126,6 +129,38 @@ public abstract class ChunkAdapter implements Chunk {
         this.cachedPacket = new SoftReference<>( batch );
     }
 
+    /**
+     * Get the batched packet which has been generated last for this chunk. It may be outdated when
+     * the chunk has been modified since.
+     *
+     * @return the batch or null when the chunk has not been packaged or the batch has been collected
+     */
+    public PacketBatch getCachedPacket() {
+        SoftReference<PacketBatch> reference = this.cachedPacket;
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * Check if the cached packet of this chunk is up to date
+     *
+     * @return true when the cached packet can be sent, false when the chunk needs to be packaged
+     */
+    public boolean isPackaged() {
+        return !this.dirty && this.getCachedPacket() != null;
+    }
+
+    /**
+     * Package this chunk into a world chunk packet inside a batch and cache it. This is called by the
+     * chunk I/O workers. Modifications which are done while packaging mark the chunk dirty again, so
+     * they get picked up by the next package.
+     */
+    void createCachedPacket() {
+        this.dirty = false;
+
+        PacketWorldChunk packet = this.createPackagedData();
+        this.cachedPacket = new SoftReference<>( BatchUtil.batch( null, packet ) );
+    }
+
 
     /**
      * Gets the time at which this chunk was last written out to disk.
@@ -137,38 +172,35 @@ public abstract class ChunkAdapter implements Chunk {
     }
 
     /**
-     * Sets the timestamp on which this chunk was last written out to disk.
+     * Sets the timestamp on which this chunk was last written out to disk. This needs to be called right before the
+     * chunk is handed to the save, changes which are done afterwards mark the chunk as modified again.
      *
      * @param timestamp The timestamp to set
      */
     public void setLastSavedTimestamp( long timestamp ) {
         this.lastSavedTimestamp = timestamp;
+        this.modified = false;
     }
 
-    // ==================================== MANIPULATION ==================================== //
-
     /**
-     * Makes a request to package this chunk asynchronously. The package that will be
-     * given to the provided callback will be a world chunk packet inside a batch packet.
-     * <p>
-     * This operation is done asynchronously in order to limit how many chunks are being
-     * packaged in parallel as well as to cache some chunk packets.
+     * Check if this chunk has been changed since it has been loaded or saved the last time
      *
-     * @param callback The callback to be invoked once the operation is complete
+     * @return true when the chunk needs to be saved
      */
-    public void packageChunk( Delegate2<Long, ChunkAdapter> callback ) {
-        if ( !this.dirty && this.cachedPacket != null ) {
-            Packet packet = this.cachedPacket.get();
-            if ( packet != null ) {
-                callback.invoke( CoordinateUtils.toLong( x, z ), this );
-            } else {
-                this.world.notifyPackageChunk( x, z, callback );
-            }
-        } else {
-            this.world.notifyPackageChunk( x, z, callback );
-        }
+    public boolean isModified() {
+        return this.modified;
     }
 
+    /**
+     * Mark this chunk as changed, it needs to be packaged again for the clients and saved
+     */
+    void markDirty() {
+        this.dirty = true;
+        this.modified = true;
+    }
+
+    // ==================================== MANIPULATION ==================================== //
+
     /**
      * Checks if this chunk can be gced
      *
@@ -215,8 +247,9 @@ public abstract class ChunkAdapter implements Chunk {
      * Add a new tile entity to the chunk
      *
      * @param tileEntity The NBT tag of the tile entity which should be added
+     * @return true when the tile entity has been added, false when it is not known
      */
-    protected void addTileEntity( NBTTagCompound tileEntity ) {
+    protected boolean addTileEntity( NBTTagCompound tileEntity ) {
         int x = tileEntity.getInteger( "x", 0 ) & 0xF;
         int y = tileEntity.getInteger( "y", -1 );
         int z = tileEntity.getInteger( "z", 0 ) & 0xF;
@@ -225,7 +258,63 @@ public abstract class ChunkAdapter implements Chunk {
         if ( tileEntity1 != null ) {
             ChunkSlice slice = ensureSlice( y >> 4 );
             slice.addTileEntity( x, y - slice.getSectionY() * 16, z, tileEntity1 );
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Replace a whole section of this chunk. The arrays are taken over without copying, they need to be
+     * in x, z, y order.
+     *
+     * @param sectionY   The y coordinate of the section
+     * @param blocks     4096 block ids
+     * @param data       2048 bytes of block data nibbles
+     * @param skyLight   2048 bytes of sky light nibbles
+     * @param blockLight 2048 bytes of block light nibbles
+     */
+    protected void setSection( int sectionY, byte[] blocks, byte[] data, byte[] skyLight, byte[] blockLight ) {
+        ensureSlice( sectionY ).setRawData( blocks, data, skyLight, blockLight );
+        this.markDirty();
+    }
+
+    /**
+     * Copy a whole section of this chunk into the given array. The layout is 4096 block ids followed by
+     * data, sky light and block light with 2048 bytes each, in x, z, y order.
+     *
+     * @param sectionY The y coordinate of the section
+     * @param target   The zeroed array to copy into
+     * @param offset   The offset at which the section should be put
+     * @return true when the section has been copied, false when it does not exist and the target stayed empty
+     */
+    protected boolean getSection( int sectionY, byte[] target, int offset ) {
+        ChunkSlice slice = this.chunkSlices[sectionY];
+        if ( slice == null ) {
+            return false;
         }
+
+        slice.writeRawData( target, offset );
+        return true;
+    }
+
+    /**
+     * Get the amount of sections from the bottom which contain blocks. Sections above only contain air.
+     *
+     * @return amount of sections which need to be stored or sent
+     */
+    protected int getSectionCount() {
+        int topEmpty = 16;
+        for ( int i = 15; i >= 0; i-- ) {
+            ChunkSlice slice = this.chunkSlices[i];
+            if ( slice == null || slice.isAllAir() ) {
+                topEmpty = i;
+            } else {
+                break;
+            }
+        }
+
+        return topEmpty;
     }
 
     /**
@@ -239,7 +328,7 @@ public abstract class ChunkAdapter implements Chunk {
     public void setBlock( int x, int y, int z, int id ) {
         ChunkSlice slice = ensureSlice( y >> 4 );
         slice.setBlock( x, y - 16 * ( y >> 4 ), z, (byte) id );
-        this.dirty = true;
+        this.markDirty();
     }
 
     /**
@@ -251,8 +340,8 @@ public abstract class ChunkAdapter implements Chunk {
      * @return The ID of the block
      */
     public byte getBlock( int x, int y, int z ) {
-        ChunkSlice slice = ensureSlice( y >> 4 );
-        return slice.getBlock( x, y - 16 * ( y >> 4 ), z );
+        ChunkSlice slice = this.chunkSlices[y >> 4];
+        return slice == null ? 0 : slice.getBlock( x, y - 16 * ( y >> 4 ), z );
     }
 
     /**
@@ -266,7 +355,7 @@ public abstract class ChunkAdapter implements Chunk {
     public void setData( int x, int y, int z, byte data ) {
         ChunkSlice slice = ensureSlice( y >> 4 );
         slice.setData( x, y - 16 * ( y >> 4 ), z, data );
-        this.dirty = true;
+        this.markDirty();
     }
 
     /**
@@ -278,8 +367,8 @@ public abstract class ChunkAdapter implements Chunk {
      * @return The data value of the block
      */
     public byte getData( int x, int y, int z ) {
-        ChunkSlice slice = ensureSlice( y >> 4 );
-        return slice.getData( x, y - 16 * ( y >> 4 ), z );
+        ChunkSlice slice = this.chunkSlices[y >> 4];
+        return slice == null ? 0 : slice.getData( x, y - 16 * ( y >> 4 ), z );
     }
 
     /**
@@ -291,7 +380,7 @@ public abstract class ChunkAdapter implements Chunk {
      */
     private void setHeight( int x, int z, byte height ) {
         this.height[( z << 4 ) + x] = height;
-        this.dirty = true;
+        this.markDirty();
     }
 
     /**
@@ -317,7 +406,7 @@ public abstract class ChunkAdapter implements Chunk {
     protected void setBlockLight( int x, int y, int z, byte value ) {
         ChunkSlice slice = ensureSlice( y >> 4 );
         slice.setBlockLight( x, y - 16 * ( y >> 4 ), z, value );
-        this.dirty = true;
+        this.markDirty();
     }
 
     /**
@@ -329,8 +418,8 @@ public abstract class ChunkAdapter implements Chunk {
      * @return The block's lighting value
      */
     public byte getBlockLight( int x, int y, int z ) {
-        ChunkSlice slice = ensureSlice( y >> 4 );
-        return slice.getBlockLight( x, y - 16 * ( y >> 4 ), z );
+        ChunkSlice slice = this.chunkSlices[y >> 4];
+        return slice == null ? 0 : slice.getBlockLight( x, y - 16 * ( y >> 4 ), z );
     }
 
     /**
@@ -344,7 +433,7 @@ public abstract class ChunkAdapter implements Chunk {
     protected void setSkyLight( int x, int y, int z, byte value ) {
         ChunkSlice slice = ensureSlice( y >> 4 );
         slice.setSkyLight( x, y - 16 * ( y >> 4 ), z, value );
-        this.dirty = true;
+        this.markDirty();
     }
 
     /**
@@ -356,8 +445,9 @@ public abstract class ChunkAdapter implements Chunk {
      * @return The block's lighting value
      */
     public byte getSkyLight( int x, int y, int z ) {
-        ChunkSlice slice = ensureSlice( y >> 4 );
-        return slice.getSkyLight( x, y - 16 * ( y >> 4 ), z );
+        // Missing slices are open sky
+        ChunkSlice slice = this.chunkSlices[y >> 4];
+        return slice == null ? 15 : slice.getSkyLight( x, y - 16 * ( y >> 4 ), z );
     }
 
     /**
@@ -369,7 +459,7 @@ public abstract class ChunkAdapter implements Chunk {
      */
     protected void setBiome( int x, int z, Biome biome ) {
         this.biomes[( x << 4 ) + z] = (byte) biome.getId();
-        this.dirty = true;
+        this.markDirty();
     }
 
     /**
@@ -389,22 +479,88 @@ public abstract class ChunkAdapter implements Chunk {
         return slice.getBlockInstance( x, y & 0x000000F, z );
     }
 
+    /**
+     * Get the state of a block without creating a block instance
+     *
+     * @param x The x-coordinate of the block inside of the chunk
+     * @param y The y-coordinate of the block
+     * @param z The z-coordinate of the block inside of the chunk
+     * @return the state of the block
+     */
+    public BlockState getBlockState( int x, int y, int z ) {
+        ChunkSlice slice = this.chunkSlices[y >> 4];
+        if ( slice == null ) {
+            return Blocks.getState( 0, 0 );
+        }
+
+        return slice.getBlockState( x, y & 0x000000F, z );
+    }
+
+    /**
+     * Get the {@link io.gomint.server.entity.pathfinding.Passability} of all blocks of a slice. The array
+     * is indexed like the blocks of a slice and must not be modified. It is replaced when a block changes,
+     * so it can be read by other threads while the chunk goes on.
+     *
+     * @param sectionY The y coordinate of the slice
+     * @return passability of every block of the slice
+     */
+    public byte[] getPassability( int sectionY ) {
+        ChunkSlice slice = this.chunkSlices[sectionY];
+        if ( slice == null ) {
+            return ChunkSlice.getAirPassability();
+        }
+
+        return slice.getPassability();
+    }
+
     // ==================================== MISCELLANEOUS ==================================== //
 
     /**
      * Recalculates the height map of the chunk.
      */
     public void calculateHeightmap() {
+        int top = this.getSectionCount() << 4;
         for ( int i = 0; i < 16; ++i ) {
             for ( int k = 0; k < 16; ++k ) {
-                for ( int j = 255; j > 0; --j ) {
-                    if ( this.getBlock( i, j, k ) != 0 ) {
-                        this.setHeight( i, k, (byte) j );
+                int height = 0;
+                for ( int j = top - 1; j > 0; --j ) {
+                    ChunkSlice slice = this.chunkSlices[j >> 4];
+                    if ( slice != null && slice.getBlock( i, j & 0xF, k ) != 0 ) {
+                        height = j;
                         break;
                     }
                 }
+
+                this.setHeight( i, k, (byte) height );
+            }
+        }
+    }
+
+    /**
+     * Update the height map after the block at the given position has been changed.
+     *
+     * @param x The x-coordinate of the block
+     * @param y The y-coordinate of the block
+     * @param z The z-coordinate of the block
+     */
+    void updateHeight( int x, int y, int z ) {
+        int height = this.getHeight( x, z ) & 0xFF;
+        if ( y < height ) {
+            return;
+        }
+
+        // Only the top block of a column can lower the height
+        int j = y;
+        for ( ; j > 0; --j ) {
+            ChunkSlice slice = this.chunkSlices[j >> 4];
+            if ( slice != null && slice.getBlock( x, j & 0xF, z ) != 0 ) {
+                break;
             }
         }
+
+        if ( j != height ) {
+            this.setHeight( x, z, (byte) j );
+        }
     }
 
     /**
@@ -417,15 +573,7 @@ public abstract class ChunkAdapter implements Chunk {
         PacketBuffer buffer = new PacketBuffer( 512 );
 
         // Detect how much data we can skip
-        int topEmpty = 16;
-        for ( int i = 15; i >= 0; i-- ) {
-            ChunkSlice slice = chunkSlices[i];
-            if ( slice == null || slice.isAllAir() ) {
-                topEmpty = i;
-            } else {
-                break;
-            }
-        }
+        int topEmpty = this.getSectionCount();
 
         buffer.writeByte( (byte) topEmpty );
         for ( int i = 0; i < topEmpty; i++ ) {
@@ -108,7 +108,8 @@ public class ChunkCache {
 
                 LOGGER.debug( "Cleaning up chunk @ " + this.currentX + " " + this.currentZ );
 
-                if ( chunk.getLastSavedTimestamp() + this.autoSaveInterval < currentTimeMS ) {
+                // Chunks which have not been changed since they have been loaded or saved are already on disk
+                if ( chunk.isModified() ) {
                     this.world.saveChunkAsynchronously( chunk );
                     chunk.setLastSavedTimestamp( currentTimeMS );
                 }
@@ -168,6 +169,9 @@ public class ChunkCache {
         synchronized ( this.cachedChunks ) {
             this.cachedChunks.put( CoordinateUtils.toLong( chunk.getX(), chunk.getZ() ), chunk );
         }
+
+        // Light has been calculated for the chunk alone, let it cross the borders to the loaded neighbours
+        this.world.getLightEngine().chunkAdded( chunk.getX(), chunk.getZ() );
     }
 
     // ==================================== AUTOSAVE ==================================== //
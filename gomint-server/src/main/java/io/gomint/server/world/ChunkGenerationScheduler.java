@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.async.Future;
+import io.gomint.world.generator.ChunkGenerator;
+import net.openhft.koloboke.collect.map.LongObjMap;
+import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates missing chunks of a world on a pool of workers. Every chunk runs through the stages of
+ * {@link Stage}, the noise and surface stage only touch the chunk itself. Decoration may write into the eight
+ * neighbours, so it waits until their surface is done and never runs while another decoration within two chunks
+ * is running. A chunk is lit and handed out once it and all its neighbours are decorated, nothing writes into it
+ * after that.
+ * <p>
+ * To hand out one chunk its 5x5 neighbourhood has to be known. Chunks of that neighbourhood which exist
+ * already act as finished chunks, decoration does not write into them. Neighbours which have been generated
+ * partially stay in memory until they are requested themselves, so features placed into them are not lost.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class ChunkGenerationScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( ChunkGenerationScheduler.class );
+
+    // A chunk needs its neighbours decorated, which need their neighbours surfaced
+    private static final int NEIGHBOURHOOD = 2;
+
+    private final String worldName;
+    private final Backend backend;
+    private final ChunkGenerator generator;
+    private final PriorityBlockingQueue<GenerationTask> queue = new PriorityBlockingQueue<>();
+
+    // Chunks which are being generated or are needed by a running request, guarded by this
+    private final LongObjMap<ProtoChunk> protoChunks = HashLongObjMaps.newMutableMap();
+    private long sequence;
+
+    private volatile boolean running = true;
+
+    // Statistics
+    private final AtomicLong generatedChunks = new AtomicLong();
+    private final AtomicLong generationLatency = new AtomicLong();
+    private final AtomicLong[] stageTime = new AtomicLong[Stage.values().length];
+
+    /**
+     * Create a new generation scheduler and start its workers
+     *
+     * @param worldName       The name of the world, used to name the worker threads
+     * @param backend         The world for which chunks get generated
+     * @param generator       The generator which creates the content of the chunks
+     * @param executorService The executor which provides the worker threads
+     * @param threads         Amount of workers which should be started
+     */
+    ChunkGenerationScheduler( String worldName, Backend backend, ChunkGenerator generator, ExecutorService executorService, int threads ) {
+        this.worldName = worldName;
+        this.backend = backend;
+        this.generator = generator;
+
+        for ( int i = 0; i < this.stageTime.length; i++ ) {
+            this.stageTime[i] = new AtomicLong();
+        }
+
+        for ( int i = 0; i < Math.max( 1, threads ); i++ ) {
+            executorService.execute( new Worker( i ) );
+        }
+    }
+
+    /**
+     * Generate a chunk which does not exist yet. The returned future is resolved by a worker once the chunk
+     * has been generated and handed to {@link Backend#chunkGenerated(ChunkAdapter)}.
+     *
+     * @param x        The x coordinate of the chunk
+     * @param z        The z coordinate of the chunk
+     * @param priority The distance to the player who wants the chunk, lower is generated first
+     * @return future which resolves with the chunk or null when it exists already
+     */
+    Future<ChunkAdapter> generate( int x, int z, int priority ) {
+        Future<ChunkAdapter> future = new Future<>();
+
+        // Look into the storage before the lock is taken, this may touch the disk
+        int size = NEIGHBOURHOOD * 2 + 1;
+        boolean[] existing = new boolean[size * size];
+        for ( int i = 0; i < size; i++ ) {
+            for ( int j = 0; j < size; j++ ) {
+                int chunkX = x + i - NEIGHBOURHOOD;
+                int chunkZ = z + j - NEIGHBOURHOOD;
+                existing[i * size + j] = this.isKnown( chunkX, chunkZ ) == null && this.backend.chunkExists( chunkX, chunkZ );
+            }
+        }
+
+        ChunkAdapter resolved = null;
+        boolean resolve = false;
+
+        synchronized ( this ) {
+            for ( int i = 0; i < size; i++ ) {
+                for ( int j = 0; j < size; j++ ) {
+                    int chunkX = x + i - NEIGHBOURHOOD;
+                    int chunkZ = z + j - NEIGHBOURHOOD;
+                    int distance = Math.max( Math.abs( chunkX - x ), Math.abs( chunkZ - z ) );
+
+                    ProtoChunk protoChunk = this.getOrCreate( chunkX, chunkZ, existing[i * size + j] );
+                    protoChunk.users++;
+                    protoChunk.priority = Math.min( protoChunk.priority, priority );
+                    protoChunk.require( distance == 0 ? Stage.LIGHTING : ( distance == 1 ? Stage.DECORATION : Stage.SURFACE ) );
+                }
+            }
+
+            ProtoChunk protoChunk = this.protoChunks.get( CoordinateUtils.toLong( x, z ) );
+            if ( protoChunk.stage == Stage.LIGHTING ) {
+                // Someone else has been faster or the chunk is stored but could not be loaded, it must not be
+                // generated over
+                resolved = protoChunk.chunk;
+                resolve = true;
+                this.release( x, z );
+            } else {
+                protoChunk.futures.add( future );
+                protoChunk.requestedAt = Math.min( protoChunk.requestedAt, System.nanoTime() );
+                this.scheduleAround( x, z );
+            }
+        }
+
+        if ( resolve ) {
+            future.resolve( resolved );
+        }
+
+        return future;
+    }
+
+    /**
+     * Stop all workers once they have worked through their queue
+     */
+    public void close() {
+        this.running = false;
+    }
+
+    /**
+     * Get the amount of chunks which have been generated
+     *
+     * @return amount of generated chunks
+     */
+    public long getGeneratedChunks() {
+        return this.generatedChunks.get();
+    }
+
+    /**
+     * Get the average time between the request of a chunk and its generation
+     *
+     * @return latency in milliseconds
+     */
+    public double getAverageLatency() {
+        long chunks = this.generatedChunks.get();
+        return chunks == 0 ? 0 : this.generationLatency.get() / (double) chunks / 1000000D;
+    }
+
+    /**
+     * Get the time all workers spent in the given stage
+     *
+     * @param stage The stage for which the time should be returned
+     * @return time in milliseconds
+     */
+    public long getStageTime( Stage stage ) {
+        return TimeUnit.NANOSECONDS.toMillis( this.stageTime[stage.ordinal()].get() );
+    }
+
+    /**
+     * Get the amount of chunks which are kept in memory while they or their neighbours are generated
+     *
+     * @return amount of chunks in generation
+     */
+    public synchronized int getChunksInGeneration() {
+        return this.protoChunks.size();
+    }
+
+    /**
+     * Get the amount of tasks which wait for a worker
+     *
+     * @return amount of queued tasks
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    private ProtoChunk isKnown( int x, int z ) {
+        synchronized ( this ) {
+            return this.protoChunks.get( CoordinateUtils.toLong( x, z ) );
+        }
+    }
+
+    private ProtoChunk getOrCreate( int x, int z, boolean existing ) {
+        long chunkHash = CoordinateUtils.toLong( x, z );
+        ProtoChunk protoChunk = this.protoChunks.get( chunkHash );
+        if ( protoChunk == null ) {
+            // The chunk may have been handed out since we looked into the storage
+            if ( existing || this.backend.isChunkLoaded( x, z ) ) {
+                protoChunk = new ProtoChunk( x, z, null );
+                protoChunk.stage = Stage.LIGHTING;
+            } else {
+                protoChunk = new ProtoChunk( x, z, this.backend.createChunk( x, z ) );
+            }
+
+            this.protoChunks.put( chunkHash, protoChunk );
+        }
+
+        return protoChunk;
+    }
+
+    private void release( int x, int z ) {
+        for ( int i = x - NEIGHBOURHOOD; i <= x + NEIGHBOURHOOD; i++ ) {
+            for ( int j = z - NEIGHBOURHOOD; j <= z + NEIGHBOURHOOD; j++ ) {
+                long chunkHash = CoordinateUtils.toLong( i, j );
+                ProtoChunk protoChunk = this.protoChunks.get( chunkHash );
+                if ( protoChunk != null && --protoChunk.users <= 0 && protoChunk.stage == Stage.LIGHTING ) {
+                    this.protoChunks.remove( chunkHash );
+                }
+            }
+        }
+    }
+
+    private void scheduleAround( int x, int z ) {
+        for ( int i = x - NEIGHBOURHOOD; i <= x + NEIGHBOURHOOD; i++ ) {
+            for ( int j = z - NEIGHBOURHOOD; j <= z + NEIGHBOURHOOD; j++ ) {
+                ProtoChunk protoChunk = this.protoChunks.get( CoordinateUtils.toLong( i, j ) );
+                if ( protoChunk != null ) {
+                    this.schedule( protoChunk );
+                }
+            }
+        }
+    }
+
+    private void schedule( ProtoChunk protoChunk ) {
+        if ( protoChunk.running || protoChunk.chunk == null || protoChunk.stage.ordinal() >= protoChunk.target.ordinal() ) {
+            return;
+        }
+
+        Stage next = Stage.values()[protoChunk.stage.ordinal() + 1];
+        GeneratedRegion region = null;
+        switch ( next ) {
+            case DECORATION:
+                if ( !this.neighboursReached( protoChunk, Stage.SURFACE ) || this.isDecorationRunningNear( protoChunk ) ) {
+                    return;
+                }
+
+                region = this.createRegion( protoChunk );
+                break;
+
+            case LIGHTING:
+                if ( !this.neighboursReached( protoChunk, Stage.DECORATION ) ) {
+                    return;
+                }
+
+                break;
+
+            default:
+                break;
+        }
+
+        protoChunk.running = true;
+        protoChunk.runningStage = next;
+        this.queue.offer( new GenerationTask( protoChunk, next, region, protoChunk.priority, this.sequence++ ) );
+    }
+
+    private boolean neighboursReached( ProtoChunk protoChunk, Stage stage ) {
+        for ( int i = protoChunk.x - 1; i <= protoChunk.x + 1; i++ ) {
+            for ( int j = protoChunk.z - 1; j <= protoChunk.z + 1; j++ ) {
+                ProtoChunk neighbour = this.protoChunks.get( CoordinateUtils.toLong( i, j ) );
+                if ( neighbour == null || neighbour.stage.ordinal() < stage.ordinal() ) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isDecorationRunningNear( ProtoChunk protoChunk ) {
+        // Two decorations share a chunk they may write into when they are less than three chunks apart
+        for ( int i = protoChunk.x - 2; i <= protoChunk.x + 2; i++ ) {
+            for ( int j = protoChunk.z - 2; j <= protoChunk.z + 2; j++ ) {
+                ProtoChunk other = this.protoChunks.get( CoordinateUtils.toLong( i, j ) );
+                if ( other != null && other.running && other.runningStage == Stage.DECORATION ) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private GeneratedRegion createRegion( ProtoChunk protoChunk ) {
+        ChunkAdapter[] chunks = new ChunkAdapter[9];
+        for ( int i = 0; i < 3; i++ ) {
+            for ( int j = 0; j < 3; j++ ) {
+                ProtoChunk neighbour = this.protoChunks.get( CoordinateUtils.toLong( protoChunk.x + i - 1, protoChunk.z + j - 1 ) );
+
+                // Finished chunks may be in use by the world already
+                if ( neighbour.stage != Stage.LIGHTING ) {
+                    chunks[i * 3 + j] = neighbour.chunk;
+                }
+            }
+        }
+
+        return new GeneratedRegion( protoChunk.x, protoChunk.z, chunks );
+    }
+
+    private void run( GenerationTask task ) {
+        ProtoChunk protoChunk = task.protoChunk;
+        ChunkAdapter chunk = protoChunk.chunk;
+        long start = System.nanoTime();
+
+        // A broken stage must not stall the chunks around it, the chunk is handed out with what it got
+        // CHECKSTYLE:OFF
+        try {
+            switch ( task.stage ) {
+                case NOISE:
+                    this.generator.generateNoise( new GeneratedChunk( chunk ) );
+                    break;
+
+                case SURFACE:
+                    this.generator.generateSurface( new GeneratedChunk( chunk ) );
+                    break;
+
+                case DECORATION:
+                    this.generator.decorate( task.region, protoChunk.x, protoChunk.z );
+                    break;
+
+                case LIGHTING:
+                    LightEngine.relightChunk( chunk );
+                    break;
+
+                default:
+                    break;
+            }
+        } catch ( Throwable cause ) {
+            LOGGER.error( "Error whilst generating " + task.stage + " of chunk " + protoChunk.x + ":" + protoChunk.z, cause );
+        }
+        // CHECKSTYLE:ON
+
+        this.stageTime[task.stage.ordinal()].addAndGet( System.nanoTime() - start );
+
+        if ( task.stage == Stage.LIGHTING ) {
+            // Make the chunk known to the world before it is forgotten here, so it is never generated twice
+            // CHECKSTYLE:OFF
+            try {
+                this.backend.chunkGenerated( chunk );
+            } catch ( Throwable cause ) {
+                LOGGER.error( "Error whilst handing out generated chunk " + protoChunk.x + ":" + protoChunk.z, cause );
+            }
+            // CHECKSTYLE:ON
+        }
+
+        List<Future<ChunkAdapter>> futures = null;
+        synchronized ( this ) {
+            protoChunk.stage = task.stage;
+            protoChunk.running = false;
+            protoChunk.runningStage = null;
+
+            if ( task.stage == Stage.LIGHTING ) {
+                futures = protoChunk.futures;
+                protoChunk.futures = new ArrayList<>( 0 );
+                for ( int i = 0; i < futures.size(); i++ ) {
+                    this.release( protoChunk.x, protoChunk.z );
+                }
+            }
+
+            this.scheduleAround( protoChunk.x, protoChunk.z );
+        }
+
+        if ( futures != null ) {
+            this.generatedChunks.incrementAndGet();
+            this.generationLatency.addAndGet( System.nanoTime() - protoChunk.requestedAt );
+
+            for ( Future<ChunkAdapter> future : futures ) {
+                future.resolve( chunk );
+            }
+        }
+    }
+
+    /**
+     * Stages a chunk runs through, in order
+     */
+    public enum Stage {
+        /**
+         * Nothing has been generated yet
+         */
+        EMPTY,
+        /**
+         * Base shape of the terrain
+         */
+        NOISE,
+        /**
+         * Top layers and biomes
+         */
+        SURFACE,
+        /**
+         * Features which may cross into the neighbours
+         */
+        DECORATION,
+        /**
+         * Heightmap, sky light and block light, the chunk is done after this stage
+         */
+        LIGHTING
+    }
+
+    /**
+     * The world for which chunks get generated
+     */
+    interface Backend {
+
+        /**
+         * Check if a chunk exists in memory or in the storage of the world. Called by the threads which request
+         * chunks, this may touch the disk.
+         *
+         * @param x The x coordinate of the chunk
+         * @param z The z coordinate of the chunk
+         * @return true when the chunk exists, false when it would need to be generated
+         */
+        boolean chunkExists( int x, int z );
+
+        /**
+         * Check if a chunk is in memory without touching the disk
+         *
+         * @param x The x coordinate of the chunk
+         * @param z The z coordinate of the chunk
+         * @return true when the chunk is loaded
+         */
+        boolean isChunkLoaded( int x, int z );
+
+        /**
+         * Create an empty chunk in the format of the world
+         *
+         * @param x The x coordinate of the chunk
+         * @param z The z coordinate of the chunk
+         * @return the empty chunk
+         */
+        ChunkAdapter createChunk( int x, int z );
+
+        /**
+         * Take over a chunk which has been generated completely. Called by the workers before the futures of the
+         * chunk get resolved.
+         *
+         * @param chunk The generated chunk
+         */
+        void chunkGenerated( ChunkAdapter chunk );
+
+    }
+
+    private static final class ProtoChunk {
+
+        private final int x;
+        private final int z;
+        private final ChunkAdapter chunk;
+
+        private Stage stage = Stage.EMPTY;
+        private Stage target = Stage.EMPTY;
+        private Stage runningStage;
+        private boolean running;
+
+        // Requests which need this chunk or one of its neighbours
+        private int users;
+        private int priority = Integer.MAX_VALUE;
+        private long requestedAt = Long.MAX_VALUE;
+        private List<Future<ChunkAdapter>> futures = new ArrayList<>( 1 );
+
+        private ProtoChunk( int x, int z, ChunkAdapter chunk ) {
+            this.x = x;
+            this.z = z;
+            this.chunk = chunk;
+        }
+
+        private void require( Stage stage ) {
+            if ( stage.ordinal() > this.target.ordinal() ) {
+                this.target = stage;
+            }
+        }
+
+    }
+
+    private static final class GenerationTask implements Comparable<GenerationTask> {
+
+        private final ProtoChunk protoChunk;
+        private final Stage stage;
+        private final GeneratedRegion region;
+        private final int priority;
+        private final long sequence;
+
+        private GenerationTask( ProtoChunk protoChunk, Stage stage, GeneratedRegion region, int priority, long sequence ) {
+            this.protoChunk = protoChunk;
+            this.stage = stage;
+            this.region = region;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo( GenerationTask other ) {
+            // Later stages first, they finish chunks which are waited for
+            if ( this.priority != other.priority ) {
+                return Integer.compare( this.priority, other.priority );
+            }
+
+            if ( this.stage != other.stage ) {
+                return Integer.compare( other.stage.ordinal(), this.stage.ordinal() );
+            }
+
+            return Long.compare( this.sequence, other.sequence );
+        }
+
+    }
+
+    private final class Worker implements Runnable {
+
+        private final int id;
+
+        private Worker( int id ) {
+            this.id = id;
+        }
+
+        @Override
+        public void run() {
+            Thread.currentThread().setName( Thread.currentThread().getName() + " [Async World Generation #" + this.id + ": " + worldName + "]" );
+
+            while ( running || !queue.isEmpty() ) {
+                GenerationTask task;
+                try {
+                    task = queue.poll( 500, TimeUnit.MILLISECONDS );
+                } catch ( InterruptedException e ) {
+                    continue;
+                }
+
+                if ( task != null ) {
+                    ChunkGenerationScheduler.this.run( task );
+                }
+            }
+        }
+
+    }
+
+}
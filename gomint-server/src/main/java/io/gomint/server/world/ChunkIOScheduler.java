@@ -0,0 +1,612 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.async.Delegate;
+import io.gomint.server.async.Future;
+import io.gomint.server.async.FutureListener;
+import net.openhft.koloboke.collect.map.LongObjMap;
+import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the chunk I/O of a world on a small pool of workers. Every region (32x32 chunks) belongs to exactly one
+ * worker so two workers never touch the same region file. Each worker runs its tasks by priority: loads of
+ * existing chunks ordered by the distance to the player who wants them, then loads which may need to generate,
+ * then saves.
+ * <p>
+ * Requests for the same chunk are coalesced. A load which arrives while the chunk still waits to be saved
+ * cancels the save and gets the chunk back with all its changes, so a stale copy is never read from disk.
+ * <p>
+ * Chunks requested for players are loaded and packaged on the workers. Only the resolution of the returned
+ * futures and the callbacks of loads run on the thread which ticks the world, so the tick never waits for the
+ * disk and the callbacks never race with the tick. Loads of chunks
+ * which don't exist are handed to the generation workers and complete once the chunk has been generated.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class ChunkIOScheduler {
+
+    /**
+     * Priority used for loads which have not been requested by a player
+     */
+    public static final int PRIORITY_BACKGROUND = Integer.MAX_VALUE;
+
+    /**
+     * Priority used for chunks a player needs before he can be spawned, those go before every other request
+     */
+    public static final int PRIORITY_SPAWN = -1;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( ChunkIOScheduler.class );
+
+    private final String worldName;
+    private final Backend backend;
+    private final Worker[] workers;
+
+    // Pending tasks by chunk hash, guarded by this
+    private final LongObjMap<AsyncChunkLoadTask> pendingLoads = HashLongObjMaps.newMutableMap();
+    private final LongObjMap<AsyncChunkSaveTask> pendingSaves = HashLongObjMaps.newMutableMap();
+    private final LongObjMap<AsyncChunkPackageTask> pendingPackages = HashLongObjMaps.newMutableMap();
+    private long sequence;
+
+    // Requests which are done and need to be resolved on the world thread
+    private final Queue<Runnable> completedRequests = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+    private final CountDownLatch stoppedWorkers;
+
+    // Statistics
+    private final AtomicLong completedLoads = new AtomicLong();
+    private final AtomicLong loadLatency = new AtomicLong();
+    private final AtomicLong completedSaves = new AtomicLong();
+    private final AtomicLong saveLatency = new AtomicLong();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+    private final AtomicLong cancelledSaves = new AtomicLong();
+
+    /**
+     * Create a new I/O scheduler and start its workers
+     *
+     * @param worldName       The name of the world, used to name the worker threads
+     * @param backend         The backend which loads, saves and packages chunks
+     * @param executorService The executor which provides the worker threads
+     * @param threads         Amount of workers which should be started
+     */
+    ChunkIOScheduler( String worldName, Backend backend, ExecutorService executorService, int threads ) {
+        this.worldName = worldName;
+        this.backend = backend;
+        this.workers = new Worker[Math.max( 1, threads )];
+        this.stoppedWorkers = new CountDownLatch( this.workers.length );
+
+        for ( int i = 0; i < this.workers.length; i++ ) {
+            Worker worker = new Worker( i );
+            this.workers[i] = worker;
+            executorService.execute( worker );
+        }
+    }
+
+    /**
+     * Request a chunk which should be sent to a player. The chunk is loaded and packaged on the workers when
+     * needed, the returned future gets resolved in {@link #resolveCompletedRequests()}.
+     *
+     * @param x        The x coordinate of the chunk
+     * @param z        The z coordinate of the chunk
+     * @param generate Whether or not the chunk may be generated when it does not exist
+     * @param priority The distance to the player who wants the chunk
+     * @return future which resolves with the packaged chunk or null when it could not be loaded
+     */
+    Future<ChunkAdapter> requestPackagedChunk( int x, int z, boolean generate, int priority ) {
+        final Future<ChunkAdapter> future = new Future<>();
+
+        ChunkAdapter chunk = this.backend.getCachedChunk( x, z );
+        if ( chunk != null ) {
+            this.packageChunk( chunk, priority, future );
+            return future;
+        }
+
+        this.load( x, z, generate, priority, new Delegate<ChunkAdapter>() {
+            @Override
+            public void invoke( ChunkAdapter loaded ) {
+                if ( loaded == null ) {
+                    complete( future, null );
+                } else {
+                    packageChunk( loaded, priority, future );
+                }
+            }
+        } );
+
+        return future;
+    }
+
+    /**
+     * Resolve all futures and invoke all load callbacks of requests which have been completed by the workers.
+     * This has to be called by the thread which ticks the world.
+     */
+    void resolveCompletedRequests() {
+        Runnable runnable;
+        while ( ( runnable = this.completedRequests.poll() ) != null ) {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Queue a chunk to be loaded. When the chunk is already queued the callback is attached to the queued
+     * load, which is moved forward when the new request is more important.
+     *
+     * @param x        The x coordinate of the chunk
+     * @param z        The z coordinate of the chunk
+     * @param generate Whether or not the chunk may be generated when it does not exist
+     * @param priority The distance to the player who wants the chunk or {@link #PRIORITY_BACKGROUND}
+     * @param callback The callback which gets invoked with the chunk, or null when it could not be loaded. It is
+     *                 invoked on the world thread in {@link #resolveCompletedRequests()}
+     */
+    void load( int x, int z, boolean generate, int priority, Delegate<ChunkAdapter> callback ) {
+        long chunkHash = CoordinateUtils.toLong( x, z );
+        Worker worker = this.getWorker( x, z );
+
+        synchronized ( this ) {
+            AsyncChunkLoadTask task = this.pendingLoads.get( chunkHash );
+            if ( task != null ) {
+                task.addCallback( callback );
+                this.coalescedRequests.incrementAndGet();
+
+                // Reorder when this request is more important. If the worker already took the task it is
+                // running right now and will invoke the new callback as well
+                boolean moreImportant = priority < task.getPriority() || ( generate && !task.isGenerate() );
+                if ( moreImportant && worker.queue.remove( task ) ) {
+                    task.setPriority( Math.min( priority, task.getPriority() ) );
+                    if ( generate ) {
+                        task.allowGenerate();
+                    }
+
+                    worker.queue.offer( task );
+                }
+
+                return;
+            }
+
+            task = new AsyncChunkLoadTask( x, z, generate, callback );
+            task.setPriority( priority );
+            task.markQueued( this.sequence++, System.nanoTime() );
+            this.pendingLoads.put( chunkHash, task );
+            worker.queue.offer( task );
+        }
+    }
+
+    private void packageChunk( ChunkAdapter chunk, int priority, Future<ChunkAdapter> future ) {
+        if ( chunk.isPackaged() ) {
+            this.complete( future, chunk );
+            return;
+        }
+
+        long chunkHash = CoordinateUtils.toLong( chunk.getX(), chunk.getZ() );
+        Worker worker = this.getWorker( chunk.getX(), chunk.getZ() );
+
+        synchronized ( this ) {
+            AsyncChunkPackageTask task = this.pendingPackages.get( chunkHash );
+            if ( task != null ) {
+                task.addFuture( future );
+                this.coalescedRequests.incrementAndGet();
+
+                if ( priority < task.getPriority() && worker.queue.remove( task ) ) {
+                    task.setPriority( priority );
+                    worker.queue.offer( task );
+                }
+
+                return;
+            }
+
+            task = new AsyncChunkPackageTask( chunk, future );
+            task.setPriority( priority );
+            task.markQueued( this.sequence++, System.nanoTime() );
+            this.pendingPackages.put( chunkHash, task );
+            worker.queue.offer( task );
+        }
+    }
+
+    private void complete( final Future<ChunkAdapter> future, final ChunkAdapter chunk ) {
+        this.completedRequests.offer( new Runnable() {
+            @Override
+            public void run() {
+                future.resolve( chunk );
+            }
+        } );
+    }
+
+    /**
+     * Queue a chunk to be saved. The save writes the state the chunk has when the worker reaches it, so
+     * another request while the save is queued is dropped.
+     *
+     * @param chunk The chunk which should be saved
+     */
+    void save( ChunkAdapter chunk ) {
+        long chunkHash = CoordinateUtils.toLong( chunk.getX(), chunk.getZ() );
+
+        synchronized ( this ) {
+            if ( this.pendingSaves.containsKey( chunkHash ) ) {
+                this.coalescedRequests.incrementAndGet();
+                return;
+            }
+
+            AsyncChunkSaveTask task = new AsyncChunkSaveTask( chunk );
+            task.markQueued( this.sequence++, System.nanoTime() );
+            this.pendingSaves.put( chunkHash, task );
+            this.getWorker( chunk.getX(), chunk.getZ() ).queue.offer( task );
+        }
+    }
+
+    /**
+     * Take back a chunk which is waiting to be saved. The save is cancelled since the chunk is in use again
+     * and will be saved once it gets unloaded the next time.
+     *
+     * @param x The x coordinate of the chunk
+     * @param z The z coordinate of the chunk
+     * @return the chunk which waited for its save or null when there was none
+     */
+    ChunkAdapter reclaim( int x, int z ) {
+        AsyncChunkSaveTask task;
+        synchronized ( this ) {
+            if ( this.pendingSaves.isEmpty() ) {
+                return null;
+            }
+
+            task = this.pendingSaves.remove( CoordinateUtils.toLong( x, z ) );
+        }
+
+        if ( task == null ) {
+            return null;
+        }
+
+        task.cancel();
+        this.cancelledSaves.incrementAndGet();
+        return task.getChunk();
+    }
+
+    /**
+     * Check if a chunk waits to be saved
+     *
+     * @param x The x coordinate of the chunk
+     * @param z The z coordinate of the chunk
+     * @return true when a save of the chunk is queued or running
+     */
+    synchronized boolean isSavePending( int x, int z ) {
+        return this.pendingSaves.containsKey( CoordinateUtils.toLong( x, z ) );
+    }
+
+    /**
+     * Stop all workers once they have worked through their queues and wait until they are done, so the storage of
+     * the world can be closed afterwards
+     */
+    public void close() {
+        this.running = false;
+
+        try {
+            if ( !this.stoppedWorkers.await( 30, TimeUnit.SECONDS ) ) {
+                LOGGER.warn( "Chunk I/O workers of world " + this.worldName + " did not finish their queues in time" );
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the amount of tasks which wait to be run
+     *
+     * @return amount of queued tasks over all workers
+     */
+    public int getQueueDepth() {
+        int depth = 0;
+        for ( Worker worker : this.workers ) {
+            depth += worker.queue.size();
+        }
+
+        return depth;
+    }
+
+    /**
+     * Get the average time between queueing a load and its completion
+     *
+     * @return latency in milliseconds
+     */
+    public double getAverageLoadLatency() {
+        long loads = this.completedLoads.get();
+        return loads == 0 ? 0 : this.loadLatency.get() / (double) loads / 1000000D;
+    }
+
+    /**
+     * Get the average time between queueing a save and its completion
+     *
+     * @return latency in milliseconds
+     */
+    public double getAverageSaveLatency() {
+        long saves = this.completedSaves.get();
+        return saves == 0 ? 0 : this.saveLatency.get() / (double) saves / 1000000D;
+    }
+
+    /**
+     * Get the amount of loads which have been completed
+     *
+     * @return amount of completed loads
+     */
+    public long getCompletedLoads() {
+        return this.completedLoads.get();
+    }
+
+    /**
+     * Get the amount of saves which have been completed
+     *
+     * @return amount of completed saves
+     */
+    public long getCompletedSaves() {
+        return this.completedSaves.get();
+    }
+
+    /**
+     * Get the amount of requests which have been merged into an already queued task
+     *
+     * @return amount of coalesced requests
+     */
+    public long getCoalescedRequests() {
+        return this.coalescedRequests.get();
+    }
+
+    /**
+     * Get the amount of saves which have been cancelled since their chunk was requested again
+     *
+     * @return amount of cancelled saves
+     */
+    public long getCancelledSaves() {
+        return this.cancelledSaves.get();
+    }
+
+    private Worker getWorker( int chunkX, int chunkZ ) {
+        int regionX = CoordinateUtils.fromChunkToRegion( chunkX );
+        int regionZ = CoordinateUtils.fromChunkToRegion( chunkZ );
+        return this.workers[Math.floorMod( regionX * 31 + regionZ, this.workers.length )];
+    }
+
+    private void runLoad( final AsyncChunkLoadTask task ) {
+        ChunkAdapter chunk = null;
+
+        // CHECKSTYLE:OFF
+        try {
+            chunk = this.backend.loadChunk( task.getX(), task.getZ() );
+        } catch ( Throwable cause ) {
+            LOGGER.error( "Error whilst loading chunk " + task.getX() + ":" + task.getZ(), cause );
+        }
+        // CHECKSTYLE:ON
+
+        if ( chunk == null && task.isGenerate() ) {
+            // Generation runs on its own workers, the load stays pending so new requests still get merged into it
+            Future<ChunkAdapter> generation = this.backend.generateChunk( task.getX(), task.getZ(), task.getPriority() );
+            if ( generation != null ) {
+                generation.addFutureListener( new FutureListener<Future<ChunkAdapter>>() {
+                    @Override
+                    public void onFutureResolved( Future<ChunkAdapter> future ) {
+                        ChunkAdapter generated = future.tryGet();
+                        finishLoad( task, generated != null ? generated : backend.getCachedChunk( task.getX(), task.getZ() ) );
+                    }
+                } );
+
+                return;
+            }
+        }
+
+        this.finishLoad( task, chunk );
+    }
+
+    private void finishLoad( AsyncChunkLoadTask task, final ChunkAdapter chunk ) {
+        // No callbacks can be attached anymore once the task is not pending
+        final List<Delegate<ChunkAdapter>> callbacks;
+        synchronized ( this ) {
+            this.pendingLoads.remove( CoordinateUtils.toLong( task.getX(), task.getZ() ) );
+            callbacks = task.getCallbacks();
+        }
+
+        this.loadLatency.addAndGet( System.nanoTime() - task.getQueuedAt() );
+        this.completedLoads.incrementAndGet();
+
+        // Callbacks touch the players and entities of the world, so they run on the world thread
+        this.completedRequests.offer( new Runnable() {
+            @Override
+            public void run() {
+                for ( Delegate<ChunkAdapter> callback : callbacks ) {
+                    // CHECKSTYLE:OFF
+                    try {
+                        callback.invoke( chunk );
+                    } catch ( Throwable cause ) {
+                        LOGGER.error( "Error whilst invoking chunk load callback", cause );
+                    }
+                    // CHECKSTYLE:ON
+                }
+            }
+        } );
+    }
+
+    private void runSave( AsyncChunkSaveTask task ) {
+        ChunkAdapter chunk = task.getChunk();
+
+        // CHECKSTYLE:OFF
+        try {
+            this.backend.saveChunk( chunk );
+        } catch ( Throwable cause ) {
+            LOGGER.error( "Error whilst saving chunk " + chunk.getX() + ":" + chunk.getZ(), cause );
+        }
+        // CHECKSTYLE:ON
+
+        // Stay pending until the data is written, a load in the meantime gets this chunk instead of the file
+        synchronized ( this ) {
+            long chunkHash = CoordinateUtils.toLong( chunk.getX(), chunk.getZ() );
+            if ( this.pendingSaves.get( chunkHash ) == task ) {
+                this.pendingSaves.remove( chunkHash );
+            }
+        }
+
+        this.saveLatency.addAndGet( System.nanoTime() - task.getQueuedAt() );
+        this.completedSaves.incrementAndGet();
+    }
+
+    private void runPackage( AsyncChunkPackageTask task ) {
+        ChunkAdapter chunk = task.getChunk();
+        boolean packaged = false;
+
+        // CHECKSTYLE:OFF
+        try {
+            this.backend.packageChunk( chunk );
+            packaged = true;
+        } catch ( Throwable cause ) {
+            LOGGER.error( "Error whilst packaging chunk " + chunk.getX() + ":" + chunk.getZ(), cause );
+        }
+        // CHECKSTYLE:ON
+
+        List<Future<ChunkAdapter>> futures;
+        synchronized ( this ) {
+            this.pendingPackages.remove( CoordinateUtils.toLong( chunk.getX(), chunk.getZ() ) );
+            futures = task.getFutures();
+        }
+
+        for ( Future<ChunkAdapter> future : futures ) {
+            this.complete( future, packaged ? chunk : null );
+        }
+    }
+
+    private void runFlush() {
+        // CHECKSTYLE:OFF
+        try {
+            this.backend.flush();
+        } catch ( Throwable cause ) {
+            LOGGER.error( "Error whilst flushing saved chunks of world " + this.worldName, cause );
+        }
+        // CHECKSTYLE:ON
+    }
+
+    /**
+     * The storage of a world which does the actual work for the scheduler
+     */
+    interface Backend {
+
+        /**
+         * Get a chunk which is in memory without touching the disk
+         *
+         * @param x The x coordinate of the chunk
+         * @param z The z coordinate of the chunk
+         * @return the chunk or null when it needs to be loaded
+         */
+        ChunkAdapter getCachedChunk( int x, int z );
+
+        /**
+         * Load a chunk from the storage. Only called by the workers.
+         *
+         * @param x The x coordinate of the chunk
+         * @param z The z coordinate of the chunk
+         * @return the chunk or null when it does not exist or could not be loaded
+         */
+        ChunkAdapter loadChunk( int x, int z );
+
+        /**
+         * Start the generation of a chunk which does not exist. Only called by the workers.
+         *
+         * @param x        The x coordinate of the chunk
+         * @param z        The z coordinate of the chunk
+         * @param priority The distance to the player who wants the chunk
+         * @return future which resolves with the generated chunk or null when chunks can't be generated
+         */
+        Future<ChunkAdapter> generateChunk( int x, int z, int priority );
+
+        /**
+         * Save a chunk. Only called by the workers.
+         *
+         * @param chunk The chunk which should be saved
+         */
+        void saveChunk( ChunkAdapter chunk );
+
+        /**
+         * Write out all saves which have been collected but not written yet. Called by a worker once its
+         * queue ran empty after it saved chunks.
+         */
+        void flush();
+
+        /**
+         * Package a chunk into its network form and cache it. Only called by the workers.
+         *
+         * @param chunk The chunk which should be packaged
+         */
+        void packageChunk( ChunkAdapter chunk );
+
+    }
+
+    private final class Worker implements Runnable {
+
+        private final int id;
+        private final PriorityBlockingQueue<AsyncChunkTask> queue = new PriorityBlockingQueue<>();
+
+        private Worker( int id ) {
+            this.id = id;
+        }
+
+        @Override
+        public void run() {
+            Thread.currentThread().setName( Thread.currentThread().getName() + " [Async World I/O #" + this.id + ": " + worldName + "]" );
+
+            try {
+                boolean unflushedSaves = false;
+                while ( running || !this.queue.isEmpty() ) {
+                    AsyncChunkTask task;
+                    try {
+                        task = this.queue.poll( 500, TimeUnit.MILLISECONDS );
+                    } catch ( InterruptedException e ) {
+                        continue;
+                    }
+
+                    if ( task == null || task.isCancelled() ) {
+                        continue;
+                    }
+
+                    switch ( task.getType() ) {
+                        case LOAD:
+                            runLoad( (AsyncChunkLoadTask) task );
+                            break;
+
+                        case SAVE:
+                            runSave( (AsyncChunkSaveTask) task );
+                            unflushedSaves = true;
+                            break;
+
+                        case PACKAGE:
+                            runPackage( (AsyncChunkPackageTask) task );
+                            break;
+
+                        default:
+                            LOGGER.warn( "Chunk I/O worker got a task it can't handle: " + task.getType() );
+                            break;
+                    }
+
+                    // Saves which have been collected by the backend are written once there is nothing else to do
+                    if ( unflushedSaves && this.queue.isEmpty() ) {
+                        runFlush();
+                        unflushedSaves = false;
+                    }
+                }
+            } finally {
+                stoppedWorkers.countDown();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.async.Delegate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads or generates all chunks in a square around a center chunk, ring by ring from the inside out. Requests are
+ * made with background priority so players are served first, and only a bounded amount of them is in flight.
+ * The progress is logged in chunks per second.
+ * <p>
+ * Started with {@code --pregenerate <radius>} on the command line for the spawn of the default world.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class ChunkPregenerator implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( ChunkPregenerator.class );
+    private static final int MAX_IN_FLIGHT = 256;
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos( 5 );
+
+    private final WorldAdapter world;
+    private final int centerX;
+    private final int centerZ;
+    private final int radius;
+    private final int total;
+
+    private final Semaphore inFlight = new Semaphore( MAX_IN_FLIGHT );
+    private final AtomicInteger done = new AtomicInteger();
+    private final AtomicLong lastReport = new AtomicLong();
+    private long startTime;
+    private long startGenerated;
+
+    /**
+     * Create a new pregeneration
+     *
+     * @param world   The world in which the chunks should be generated
+     * @param centerX The x coordinate of the chunk in the middle
+     * @param centerZ The z coordinate of the chunk in the middle
+     * @param radius  The radius of the square in chunks
+     */
+    public ChunkPregenerator( WorldAdapter world, int centerX, int centerZ, int radius ) {
+        this.world = world;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.total = ( radius * 2 + 1 ) * ( radius * 2 + 1 );
+    }
+
+    @Override
+    public void run() {
+        LOGGER.info( "Pregenerating " + this.total + " chunks of world " + this.world.getWorldName() + " around " + this.centerX + ":" + this.centerZ );
+
+        this.startTime = System.nanoTime();
+        this.lastReport.set( this.startTime );
+        this.startGenerated = this.getGeneratedChunks();
+
+        // Neighbouring requests share most of their neighbourhood, so rings keep the generation local
+        this.request( this.centerX, this.centerZ );
+        for ( int ring = 1; ring <= this.radius; ring++ ) {
+            for ( int i = -ring; i < ring; i++ ) {
+                this.request( this.centerX + i, this.centerZ - ring );
+                this.request( this.centerX + ring, this.centerZ + i );
+                this.request( this.centerX - i, this.centerZ + ring );
+                this.request( this.centerX - ring, this.centerZ - i );
+            }
+        }
+    }
+
+    private void request( int x, int z ) {
+        this.inFlight.acquireUninterruptibly();
+        this.world.getOrLoadChunk( x, z, true, ChunkIOScheduler.PRIORITY_BACKGROUND, new Delegate<ChunkAdapter>() {
+            @Override
+            public void invoke( ChunkAdapter chunk ) {
+                inFlight.release();
+                completed();
+            }
+        } );
+    }
+
+    private void completed() {
+        int completed = this.done.incrementAndGet();
+        long now = System.nanoTime();
+        long last = this.lastReport.get();
+
+        if ( completed == this.total ) {
+            this.report( completed, now, "Pregeneration done" );
+        } else if ( now - last >= REPORT_INTERVAL && this.lastReport.compareAndSet( last, now ) ) {
+            this.report( completed, now, "Pregenerating" );
+        }
+    }
+
+    private void report( int completed, long now, String prefix ) {
+        double seconds = ( now - this.startTime ) / 1000000000D;
+        long generated = this.getGeneratedChunks() - this.startGenerated;
+
+        LOGGER.info( String.format( "%s: %d/%d chunks (%.1f%%), %d generated, %.1f chunks/s",
+                prefix, completed, this.total, completed * 100D / this.total, generated, seconds > 0 ? completed / seconds : 0 ) );
+    }
+
+    private long getGeneratedChunks() {
+        ChunkGenerationScheduler generation = this.world.getGeneration();
+        return generation != null ? generation.getGeneratedChunks() : 0;
+    }
+
+}
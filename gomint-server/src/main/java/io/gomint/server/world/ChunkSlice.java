@@ -1,17 +1,25 @@
 package io.gomint.server.world;
 
 import io.gomint.math.Location;
+import io.gomint.server.entity.pathfinding.Passability;
 import io.gomint.server.entity.tileentity.TileEntity;
+import io.gomint.server.world.block.BlockState;
 import io.gomint.server.world.block.Blocks;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import net.openhft.koloboke.collect.map.ShortObjMap;
+import net.openhft.koloboke.collect.map.hash.HashShortObjMaps;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
+import java.util.Collections;
 
 /**
+ * Blocks are stored in a palette which only grows as far as the amount of different blocks needs it. Light
+ * which is the same everywhere shares one constant array until the first different value gets written,
+ * block data and tile entities are only allocated when there are some.
+ *
  * @author geNAZt
  * @version 1.0
  */
@@ -23,25 +31,41 @@ class ChunkSlice {
     @Getter
     private final int sectionY;
 
-    private boolean isAllAir = true;
+    /**
+     * Amount of bytes of the raw data of a slice
+     */
+    static final int RAW_LENGTH = 4096 + 3 * 2048;
 
-    private byte[] blocks = null;
+    // Shared by all slices with uniform light, they must never be written to
+    private static final NibbleArray EMPTY_LIGHT = new NibbleArray( 4096 );
+    private static final NibbleArray FULL_LIGHT = new NibbleArray( 4096 );
+
+    // Shared by all slices which only contain air
+    private static final byte[] AIR_PASSABILITY = new byte[4096];
+
+    static {
+        Arrays.fill( FULL_LIGHT.raw(), (byte) 0xFF );
+        Arrays.fill( AIR_PASSABILITY, Passability.PASSABLE );
+    }
+
+    private PalettedBlockStorage blocks = new PalettedBlockStorage( 0 );
     private NibbleArray data = null;
-    private NibbleArray blockLight = new NibbleArray( 4096 );
-    private NibbleArray skyLight = new NibbleArray( 4096 );
+    private NibbleArray blockLight = EMPTY_LIGHT;
+
+    // Missing slices count as open sky, so new slices start fully lit until the light engine says otherwise
+    private NibbleArray skyLight = FULL_LIGHT;
 
-    private TileEntity[] tileEntities = new TileEntity[4096];
+    private ShortObjMap<TileEntity> tileEntities = null;
 
-    private int getIndex( int x, int y, int z ) {
+    // Calculated when pathfinding needs it, dropped on every block change
+    private byte[] passability = null;
+
+    static int getIndex( int x, int y, int z ) {
         return ( x << 8 ) + ( z << 4 ) + y;
     }
 
     byte getBlock( int x, int y, int z ) {
-        if ( this.isAllAir ) {
-            return 0;
-        }
-
-        return this.blocks[getIndex( x, y, z )];
+        return (byte) this.blocks.get( getIndex( x, y, z ) );
     }
 
     <T extends io.gomint.world.block.Block> T getBlockInstance( int x, int y, int z ) {
@@ -51,53 +75,56 @@ class ChunkSlice {
         int fullY = CoordinateUtils.getChunkMin( this.sectionY ) + y;
         int fullZ = CoordinateUtils.getChunkMin( this.chunk.getZ() ) + z;
 
-        if ( isAllAir ) {
-            return (T) Blocks.get( 0, (byte) 0, this.skyLight.get( index ), this.blockLight.get( index ), null, new Location( this.chunk.world, fullX, fullY, fullZ ) );
-        }
+        TileEntity tileEntity = this.tileEntities == null ? null : this.tileEntities.get( (short) index );
+        return (T) Blocks.get( this.blocks.get( index ), this.data == null ? 0 : this.data.get( index ), this.skyLight.get( index ),
+                this.blockLight.get( index ), tileEntity, new Location( this.chunk.world, fullX, fullY, fullZ ) );
+    }
 
-        return (T) Blocks.get( this.blocks[index] & 0xFF, this.data == null ? 0 : this.data.get( index ), this.skyLight.get( index ),
-                this.blockLight.get( index ), this.tileEntities[index], new Location( this.chunk.world, fullX, fullY, fullZ ) );
+    BlockState getBlockState( int x, int y, int z ) {
+        int index = getIndex( x, y, z );
+        return Blocks.getState( this.blocks.get( index ), this.data == null ? 0 : this.data.get( index ) );
     }
 
     Collection<TileEntity> getTileEntities() {
-        List<TileEntity> tileEntities = new ArrayList<>();
-
-        for ( TileEntity tileEntity : this.tileEntities ) {
-            if ( tileEntity != null ) {
-                tileEntities.add( tileEntity );
-            }
+        if ( this.tileEntities == null ) {
+            return Collections.emptyList();
         }
 
-        return tileEntities;
+        return new ArrayList<>( this.tileEntities.values() );
     }
 
     void addTileEntity( int x, int y, int z, TileEntity tileEntity ) {
-        int index = getIndex( x, y, z );
-        this.tileEntities[index] = tileEntity;
-    }
-
-    void setBlock( int x, int y, int z, byte blockId ) {
-        int index = getIndex( x, y, z );
-
-        if ( blockId != 0 ) {
-            if ( this.blocks == null ) {
-                this.blocks = new byte[4096];
-                this.isAllAir = false;
+        short index = (short) getIndex( x, y, z );
+        if ( tileEntity == null ) {
+            if ( this.tileEntities != null ) {
+                this.tileEntities.remove( index );
             }
+
+            return;
         }
 
-        if ( this.blocks != null ) {
-            this.blocks[index] = blockId;
+        if ( this.tileEntities == null ) {
+            this.tileEntities = HashShortObjMaps.newMutableMap( 4 );
         }
+
+        this.tileEntities.put( index, tileEntity );
+    }
+
+    void setBlock( int x, int y, int z, byte blockId ) {
+        this.blocks.set( getIndex( x, y, z ), blockId & 0xFF );
+        this.passability = null;
     }
 
     void setData( int x, int y, int z, byte data ) {
         int index = getIndex( x, y, z );
+        this.passability = null;
 
-        if ( !this.isAllAir ) {
-            if ( this.data == null ) {
-                this.data = new NibbleArray( 4096 );
+        if ( this.data == null ) {
+            if ( data == 0 ) {
+                return;
             }
+
+            this.data = new NibbleArray( 4096 );
         }
 
         this.data.set( index, data );
@@ -112,7 +139,7 @@ class ChunkSlice {
     }
 
     void setBlockLight( int x, int y, int z, byte value ) {
-        this.blockLight.set( getIndex( x, y, z ), value );
+        this.setBlockLight( getIndex( x, y, z ), value );
     }
 
     byte getBlockLight( int x, int y, int z ) {
@@ -120,30 +147,213 @@ class ChunkSlice {
     }
 
     void setSkyLight( int x, int y, int z, byte value ) {
-        this.skyLight.set( getIndex( x, y, z ), value );
+        this.setSkyLight( getIndex( x, y, z ), value );
     }
 
     byte getSkyLight( int x, int y, int z ) {
         return this.skyLight.get( getIndex( x, y, z ) );
     }
 
+    /**
+     * Get the id of a block by its index inside of this slice
+     *
+     * @param index The index as given by {@link #getIndex(int, int, int)}
+     * @return the id of the block
+     */
+    int getBlockId( int index ) {
+        return this.blocks.get( index );
+    }
+
+    /**
+     * Get the block light by the index of a block inside of this slice
+     *
+     * @param index The index as given by {@link #getIndex(int, int, int)}
+     * @return the light level
+     */
+    int getBlockLight( int index ) {
+        return this.blockLight.get( index );
+    }
+
+    /**
+     * Set the block light by the index of a block inside of this slice
+     *
+     * @param index The index as given by {@link #getIndex(int, int, int)}
+     * @param value The new light level
+     */
+    void setBlockLight( int index, int value ) {
+        NibbleArray light = this.blockLight;
+        if ( isShared( light ) ) {
+            if ( light.get( index ) == value ) {
+                return;
+            }
+
+            light = this.blockLight = new NibbleArray( light.raw().clone() );
+        }
+
+        light.set( index, (byte) value );
+    }
+
+    /**
+     * Get the sky light by the index of a block inside of this slice
+     *
+     * @param index The index as given by {@link #getIndex(int, int, int)}
+     * @return the light level
+     */
+    int getSkyLight( int index ) {
+        return this.skyLight.get( index );
+    }
+
+    /**
+     * Set the sky light by the index of a block inside of this slice
+     *
+     * @param index The index as given by {@link #getIndex(int, int, int)}
+     * @param value The new light level
+     */
+    void setSkyLight( int index, int value ) {
+        NibbleArray light = this.skyLight;
+        if ( isShared( light ) ) {
+            if ( light.get( index ) == value ) {
+                return;
+            }
+
+            light = this.skyLight = new NibbleArray( light.raw().clone() );
+        }
+
+        light.set( index, (byte) value );
+    }
+
+    /**
+     * Remove all block light and set the sky light of all blocks to the same level. This drops the light
+     * arrays of this slice.
+     *
+     * @param fullSkyLight true when the sky light should be 15, false for 0
+     */
+    void resetLight( boolean fullSkyLight ) {
+        this.blockLight = EMPTY_LIGHT;
+        this.skyLight = fullSkyLight ? FULL_LIGHT : EMPTY_LIGHT;
+    }
+
+    /**
+     * Get the {@link Passability} of all blocks in this slice. The array is never modified, a block change
+     * creates a new one on the next call, so it can be handed to other threads as a snapshot.
+     *
+     * @return passability of every block by its index
+     */
+    byte[] getPassability() {
+        byte[] passability = this.passability;
+        if ( passability == null ) {
+            if ( this.blocks.isAllAir() ) {
+                passability = AIR_PASSABILITY;
+            } else {
+                passability = new byte[4096];
+                for ( int i = 0; i < passability.length; i++ ) {
+                    passability[i] = Passability.of( Blocks.getState( this.blocks.get( i ), this.data == null ? 0 : this.data.get( i ) ) );
+                }
+            }
+
+            this.passability = passability;
+        }
+
+        return passability;
+    }
+
+    /**
+     * Get the passability of a slice which does not exist
+     *
+     * @return passability of a slice full of air
+     */
+    static byte[] getAirPassability() {
+        return AIR_PASSABILITY;
+    }
+
     boolean isAllAir() {
-        return this.isAllAir;
+        return this.blocks.isAllAir();
+    }
+
+    /**
+     * Check if there may be blocks in this slice which emit light. This only looks at the palette, so it may
+     * also be true for a block which has been replaced already.
+     *
+     * @return true when the palette contains a light emitting block
+     */
+    boolean containsLightEmitters() {
+        for ( int i = 0; i < this.blocks.getPaletteSize(); i++ ) {
+            if ( Blocks.getLightEmission( this.blocks.getPaletteEntry( i ) ) > 0 ) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     byte[] getBytes() {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] bytes = new byte[RAW_LENGTH];
+        this.writeRawData( bytes, 0 );
+        return bytes;
+    }
+
+    /**
+     * Replace the content of this slice. The block ids get packed into a palette, the other arrays are taken
+     * over without copying unless they contain one value only. All of them need to use the same x, z, y order
+     * as this slice.
+     *
+     * @param blocks     4096 block ids
+     * @param data       2048 bytes of block data nibbles
+     * @param skyLight   2048 bytes of sky light nibbles
+     * @param blockLight 2048 bytes of block light nibbles
+     */
+    void setRawData( byte[] blocks, byte[] data, byte[] skyLight, byte[] blockLight ) {
+        this.blocks = PalettedBlockStorage.fromBytes( blocks );
+        this.data = isFilled( data, (byte) 0 ) ? null : new NibbleArray( data );
+        this.skyLight = toLight( skyLight );
+        this.blockLight = toLight( blockLight );
+        this.passability = null;
+    }
 
-        try {
-            baos.write( this.blocks == null ? new byte[4096] : this.blocks );
-            baos.write( this.data == null ? new byte[2048] : this.data.raw() );
-            baos.write( this.skyLight.raw() );
-            baos.write( this.blockLight.raw() );
-        } catch ( Exception ignored ) {
+    /**
+     * Copy blocks, data, sky light and block light of this slice into the given array. The target
+     * needs {@link #RAW_LENGTH} bytes of space after the offset and has to be zeroed.
+     *
+     * @param target The array to copy into
+     * @param offset The offset at which the data should be put
+     */
+    void writeRawData( byte[] target, int offset ) {
+        if ( !this.blocks.isAllAir() ) {
+            this.blocks.toBytes( target, offset );
+        }
+
+        if ( this.data != null ) {
+            System.arraycopy( this.data.raw(), 0, target, offset + 4096, 2048 );
+        }
+
+        System.arraycopy( this.skyLight.raw(), 0, target, offset + 6144, 2048 );
+        System.arraycopy( this.blockLight.raw(), 0, target, offset + 8192, 2048 );
+    }
 
+    private static boolean isShared( NibbleArray light ) {
+        return light == EMPTY_LIGHT || light == FULL_LIGHT;
+    }
+
+    private static NibbleArray toLight( byte[] light ) {
+        if ( isFilled( light, (byte) 0 ) ) {
+            return EMPTY_LIGHT;
+        }
+
+        if ( isFilled( light, (byte) 0xFF ) ) {
+            return FULL_LIGHT;
+        }
+
+        return new NibbleArray( light );
+    }
+
+    private static boolean isFilled( byte[] array, byte value ) {
+        for ( byte b : array ) {
+            if ( b != value ) {
+                return false;
+            }
         }
 
-        return baos.toByteArray();
+        return true;
     }
 
 }
@@ -114,7 +114,7 @@ public final class CoordinateUtils {
     public static Vector fromLong( long hash ) {
         int x = (int) ( hash >> 38 );
         int y = (int) ( hash >> 26 ) & 0xFFF;
-        int z = (int) ( hash );
+        int z = (int) ( hash << 38 >> 38 );
 
         return new Vector( x, y, z );
     }
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.config.EntityActivationConfig;
+import io.gomint.server.entity.ActivationCategory;
+import net.openhft.koloboke.collect.map.LongIntMap;
+import net.openhft.koloboke.collect.map.hash.HashLongIntMaps;
+
+/**
+ * Decides which entities get ticked in a tick. Before each tick the distance from every chunk column near a player
+ * to the nearest player is collected, an entity is active while that distance is inside the activation range of
+ * its category. Since the distance is measured to the nearest block of the column, entities may be up to one
+ * column further away than their range. Inactive entities are ticked once per interval, spread over the interval by
+ * their id.
+ * <p>
+ * The distances are only written by the thread which owns the world before shards get ticked, so shard threads can
+ * read them.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+class EntityActivation {
+
+    private static final ActivationCategory[] CATEGORIES = ActivationCategory.values();
+
+    private final int[] ranges = new int[CATEGORIES.length];
+    private final int maxRange;
+    private final int inactiveTickInterval;
+
+    // Distance in blocks to the nearest player by chunk column
+    private final LongIntMap distances = HashLongIntMaps.newMutableMap();
+
+    /**
+     * Create a new activation with the ranges of the given config
+     *
+     * @param config The config which contains the ranges
+     */
+    EntityActivation( EntityActivationConfig config ) {
+        this.ranges[ActivationCategory.PLAYER.ordinal()] = Integer.MAX_VALUE;
+        this.ranges[ActivationCategory.ITEM.ordinal()] = config.getItemRange();
+        this.ranges[ActivationCategory.ANIMAL.ordinal()] = config.getAnimalRange();
+        this.ranges[ActivationCategory.MONSTER.ordinal()] = config.getMonsterRange();
+        this.ranges[ActivationCategory.MISC.ordinal()] = config.getMiscRange();
+
+        this.maxRange = Math.max( Math.max( config.getItemRange(), config.getAnimalRange() ),
+                Math.max( config.getMonsterRange(), config.getMiscRange() ) );
+        this.inactiveTickInterval = Math.max( 1, config.getInactiveTickInterval() );
+    }
+
+    /**
+     * Forget all players, this has to be done before the players of the next tick get added
+     */
+    void clear() {
+        this.distances.clear();
+    }
+
+    /**
+     * Activate the columns around the given player position
+     *
+     * @param x The x coordinate of the player
+     * @param z The z coordinate of the player
+     */
+    void addPlayer( float x, float z ) {
+        int minChunkX = CoordinateUtils.fromBlockToChunk( (int) Math.floor( x - this.maxRange ) );
+        int maxChunkX = CoordinateUtils.fromBlockToChunk( (int) Math.floor( x + this.maxRange ) );
+        int minChunkZ = CoordinateUtils.fromBlockToChunk( (int) Math.floor( z - this.maxRange ) );
+        int maxChunkZ = CoordinateUtils.fromBlockToChunk( (int) Math.floor( z + this.maxRange ) );
+
+        for ( int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++ ) {
+            for ( int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++ ) {
+                // Distance to the nearest block of the column
+                float distanceX = Math.max( 0, Math.max( ( chunkX << 4 ) - x, x - ( ( chunkX << 4 ) + 16 ) ) );
+                float distanceZ = Math.max( 0, Math.max( ( chunkZ << 4 ) - z, z - ( ( chunkZ << 4 ) + 16 ) ) );
+                int distance = (int) Math.ceil( Math.sqrt( distanceX * distanceX + distanceZ * distanceZ ) );
+                if ( distance > this.maxRange ) {
+                    continue;
+                }
+
+                long key = CoordinateUtils.toLong( chunkX, chunkZ );
+                if ( distance < this.distances.getOrDefault( key, Integer.MAX_VALUE ) ) {
+                    this.distances.put( key, distance );
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if an entity at the given position is inside the activation range of its category
+     *
+     * @param category The category of the entity
+     * @param x        The x coordinate of the entity
+     * @param z        The z coordinate of the entity
+     * @return true when the entity should be ticked every tick
+     */
+    boolean isActive( ActivationCategory category, float x, float z ) {
+        if ( category == ActivationCategory.PLAYER || this.inactiveTickInterval == 1 ) {
+            return true;
+        }
+
+        long key = CoordinateUtils.toLong( CoordinateUtils.fromBlockToChunk( (int) Math.floor( x ) ),
+                CoordinateUtils.fromBlockToChunk( (int) Math.floor( z ) ) );
+        return this.distances.getOrDefault( key, Integer.MAX_VALUE ) <= this.ranges[category.ordinal()];
+    }
+
+    /**
+     * Check if an inactive entity gets its tick in the given tick
+     *
+     * @param entityId The id of the entity
+     * @param tick     The number of the current tick
+     * @return true when the entity should be ticked
+     */
+    boolean isInactiveTick( long entityId, long tick ) {
+        return ( tick + entityId ) % this.inactiveTickInterval == 0;
+    }
+
+}
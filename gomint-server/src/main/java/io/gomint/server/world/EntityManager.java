@@ -8,19 +8,28 @@
 package io.gomint.server.world;
 
 import io.gomint.entity.Player;
+import io.gomint.math.AxisAlignedBB;
+import io.gomint.server.async.Delegate;
+import io.gomint.server.entity.ActivationCategory;
 import io.gomint.server.entity.Entity;
 import io.gomint.server.entity.EntityPlayer;
+import io.gomint.server.entity.passive.EntityItem;
 import io.gomint.server.network.packet.Packet;
 import io.gomint.server.network.packet.PacketDespawnEntity;
 import io.gomint.server.network.packet.PacketEntityMovement;
+import io.gomint.util.Numbers;
 import io.gomint.world.Chunk;
+import lombok.Getter;
 import net.openhft.koloboke.collect.map.LongObjCursor;
 import net.openhft.koloboke.collect.map.LongObjMap;
 import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -36,6 +45,16 @@ public class EntityManager {
     private final WorldAdapter world;
     private LongObjMap<Entity> entitiesById;
     private LongObjMap<Entity> spawnedInThisTick;
+    private LongObjMap<ChunkAdapter> chunkOfEntity;
+    @Getter private final EntitySpatialIndex spatialIndex;
+
+    // Activation ranges
+    private final EntityActivation activation;
+    @Getter private final EntityTickStatistics tickStatistics = new EntityTickStatistics();
+    private long tick;
+
+    // Dropped item merging
+    private final ItemMerger itemMerger;
 
     private boolean currentlyTicking;
 
@@ -48,70 +67,116 @@ public class EntityManager {
         this.world = world;
         this.entitiesById = HashLongObjMaps.newMutableMap();
         this.spawnedInThisTick = HashLongObjMaps.newMutableMap();
+        this.chunkOfEntity = HashLongObjMaps.newMutableMap();
+        this.spatialIndex = new EntitySpatialIndex();
+        this.activation = new EntityActivation( world.getServer().getServerConfig().getEntityActivation() );
+        this.itemMerger = new ItemMerger( world.getServer().getServerConfig().getItemMerge(), this.spatialIndex );
+    }
+
+    /**
+     * Marks the beginning of the entity tick. Entities which spawn until {@link #finishTick(List, List)} has been
+     * called will be added after the tick. The activation ranges around all players are collected for the tick.
+     */
+    void startTick() {
+        this.currentlyTicking = true;
+        this.tick++;
+
+        this.activation.clear();
+        for ( Entity entity : this.entitiesById.values() ) {
+            if ( entity instanceof EntityPlayer ) {
+                this.activation.addPlayer( entity.getPositionX(), entity.getPositionZ() );
+            }
+        }
+    }
+
+    /**
+     * Get all entities which are currently spawned in the world. Entities which have been spawned during
+     * the current tick are not included.
+     *
+     * @return collection of all entities
+     */
+    Collection<Entity> getEntities() {
+        return this.entitiesById.values();
     }
 
     /**
-     * Updates all entities managed by the EntityManager.
+     * Updates a single entity. This may be called from the thread which ticks the shard the entity is in, so it
+     * only records what needs to be done afterwards. Entities outside of their activation range are only updated
+     * once per interval and that update gets the time of a single tick, so their AI and physics take the same steps
+     * as in an active tick and they just move slower. Timers like the pickup delay run on the current time and are
+     * not affected.
      *
+     * @param entity        The entity which should be updated
      * @param currentTimeMS The current system time in milliseconds
      * @param dT            The time that has passed since the last update in seconds
+     * @param movedEntities The list to which the entity is added when it moved
+     * @param deadEntities  The list to which the entity is added when it died
      */
-    public void update( long currentTimeMS, float dT ) {
-        // --------------------------------------
-        // Update all entities:
-        Set<Entity> movedEntities = null;
-        this.currentlyTicking = true;
+    void updateEntity( Entity entity, long currentTimeMS, float dT, List<Entity> movedEntities, List<Entity> deadEntities ) {
+        if ( entity.isDead() ) {
+            deadEntities.add( entity );
+            return;
+        }
 
-        LongObjCursor<Entity> cursor = this.entitiesById.cursor();
-        while ( cursor.moveNext() ) {
-            Entity entity = cursor.value();
-            if ( !entity.isDead() ) {
-                Chunk current = entity.getChunk();
-                entity.update( currentTimeMS, dT );
-
-                if ( !entity.isDead() ) {
-                    if ( entity.getTransform().isDirty() ) {
-                        if ( movedEntities == null ) {
-                            movedEntities = new HashSet<>();
-                        }
+        boolean active = this.activation.isActive( ActivationCategory.of( entity.getType() ), entity.getPositionX(), entity.getPositionZ() );
+        if ( !active ) {
+            if ( !this.activation.isInactiveTick( entity.getEntityId(), this.tick ) ) {
+                this.tickStatistics.recordSkip();
+                return;
+            }
+        }
 
-                        if ( !current.equals( entity.getChunk() ) ) {
-                            if ( current instanceof ChunkAdapter ) {
-                                ( (ChunkAdapter) current ).removeEntity( entity );
-                            }
-                        }
+        entity.update( currentTimeMS, dT );
+        this.tickStatistics.recordTick( active, entity.isSleeping() );
 
-                        movedEntities.add( entity );
-                    }
-                }
-            } else {
-                cursor.remove();
-                despawnEntity( entity );
-            }
+        if ( entity.isDead() ) {
+            deadEntities.add( entity );
+        } else if ( entity.getTransform().isDirty() ) {
+            movedEntities.add( entity );
+        }
+    }
+
+    /**
+     * Completes the entity tick: despawns dead entities, moves entities into their new chunks, adds entities
+     * which spawned during the tick, broadcasts all movements and merges dropped items from time to time.
+     *
+     * @param movedEntities The entities which moved in this tick
+     * @param deadEntities  The entities which died in this tick
+     */
+    void finishTick( List<Entity> movedEntities, List<Entity> deadEntities ) {
+        for ( Entity entity : deadEntities ) {
+            this.entitiesById.remove( entity.getEntityId() );
+            despawnEntity( entity );
         }
 
         this.currentlyTicking = false;
 
         // --------------------------------------
         // Merge created entities
-        this.entitiesById.putAll( this.spawnedInThisTick );
-        this.spawnedInThisTick.clear();
+        synchronized ( this.spawnedInThisTick ) {
+            LongObjCursor<Entity> cursor = this.spawnedInThisTick.cursor();
+            while ( cursor.moveNext() ) {
+                this.addEntity( cursor.value() );
+            }
+
+            this.spawnedInThisTick.clear();
+        }
 
         // --------------------------------------
         // Create movement batches:
-        if ( movedEntities != null && movedEntities.size() > 0 ) {
+        if ( movedEntities.size() > 0 ) {
             for ( Entity movedEntity : movedEntities ) {
                 // Check if we need to move chunks
                 Chunk chunk = movedEntity.getChunk();
                 if ( chunk == null ) {
-                    int chunkX = CoordinateUtils.fromBlockToChunk( (int) movedEntity.getPositionX() );
-                    int chunkZ = CoordinateUtils.fromBlockToChunk( (int) movedEntity.getPositionZ() );
+                    int chunkX = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( movedEntity.getPositionX() ) );
+                    int chunkZ = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( movedEntity.getPositionZ() ) );
 
                     // The entity moved in a not loaded chunk. We have two options now:
-                    // 1. Load the chunk
+                    // 1. Load the chunk, the entity stays in its old chunk until the I/O workers have it
                     // 2. Don't move the entity
                     if ( this.world.getServer().getServerConfig().isLoadChunksForEntities() ) {
-                        chunk = this.world.loadChunk( chunkX, chunkZ, true );
+                        this.loadChunkFor( movedEntity, chunkX, chunkZ );
                     } else {
                         // "Revert" movement
                         int maxX = CoordinateUtils.getChunkMax( chunkX );
@@ -142,12 +207,15 @@ public class EntityManager {
 
                 // Set the new entity
                 if ( chunk instanceof ChunkAdapter ) {
-                    ChunkAdapter castedChunk = (ChunkAdapter) chunk;
-                    if ( !castedChunk.knowsEntity( movedEntity ) ) {
-                        castedChunk.addEntity( movedEntity );
-                    }
+                    this.moveToChunk( movedEntity, (ChunkAdapter) chunk );
                 }
 
+                // Move inside the index, this also moves the view of players
+                this.spatialIndex.update( movedEntity );
+
+                // Resting entities which have been touched need to fall again
+                this.wakeEntities( movedEntity.getBoundingBox().grow( 0.5f, 0.5f, 0.5f ), movedEntity );
+
                 // Prepare movement packet
                 PacketEntityMovement packetEntityMovement = new PacketEntityMovement();
                 packetEntityMovement.setEntityId( movedEntity.getEntityId() );
@@ -160,19 +228,72 @@ public class EntityManager {
                 packetEntityMovement.setHeadYaw( movedEntity.getHeadYaw() );
                 packetEntityMovement.setPitch( movedEntity.getPitch() );
 
-                // Check which player we need to inform about this movement
-                for ( EntityPlayer entityPlayer : this.world.getPlayers0().keySet() ) {
-                    if ( movedEntity instanceof EntityPlayer ) {
-                        if ( entityPlayer.isHidden( (Player) movedEntity ) || entityPlayer.equals( movedEntity ) ) {
-                            continue;
+                // Only players which have the column in view need to know about this movement
+                List<EntityPlayer> subscribers = this.spatialIndex.getSubscribers( movedEntity );
+                if ( subscribers != null ) {
+                    for ( int i = 0; i < subscribers.size(); i++ ) {
+                        EntityPlayer entityPlayer = subscribers.get( i );
+                        if ( this.isVisibleFor( entityPlayer, movedEntity ) ) {
+                            entityPlayer.getConnection().addToSendQueue( packetEntityMovement );
                         }
                     }
+                }
+            }
+        }
 
-                    Chunk playerChunk = entityPlayer.getChunk();
-                    if ( Math.abs( playerChunk.getX() - chunk.getX() ) <= entityPlayer.getViewDistance() &&
-                            Math.abs( playerChunk.getZ() - chunk.getZ() ) <= entityPlayer.getViewDistance() ) {
-                        entityPlayer.getConnection().addToSendQueue( packetEntityMovement );
-                    }
+        // --------------------------------------
+        // Merge dropped items which lie next to each other
+        if ( this.itemMerger.isMergeTick( this.tick ) ) {
+            List<EntityItem> mergedItems = new ArrayList<>();
+            Set<EntityItem> grownItems = new HashSet<>();
+            this.itemMerger.mergeItems( this.entitiesById.values(), mergedItems, grownItems );
+            this.removeItems( mergedItems );
+            this.respawnItems( grownItems );
+        }
+    }
+
+    private void removeItems( List<EntityItem> items ) {
+        for ( int i = 0; i < items.size(); i++ ) {
+            EntityItem item = items.get( i );
+            this.entitiesById.remove( item.getEntityId() );
+            this.despawnEntity( item );
+        }
+    }
+
+    private void respawnItems( Set<EntityItem> items ) {
+        // Clients can't change the amount of a drop, so drops which took items of others have to be spawned again
+        for ( EntityItem item : items ) {
+            if ( item.isDead() ) {
+                continue;
+            }
+
+            List<EntityPlayer> subscribers = this.spatialIndex.getSubscribers( item );
+            if ( subscribers != null ) {
+                PacketDespawnEntity despawnPacket = new PacketDespawnEntity();
+                despawnPacket.setEntityId( item.getEntityId() );
+                Packet spawnPacket = item.createSpawnPacket();
+
+                for ( int i = 0; i < subscribers.size(); i++ ) {
+                    EntityPlayer entityPlayer = subscribers.get( i );
+                    entityPlayer.getConnection().addToSendQueue( despawnPacket );
+                    entityPlayer.getConnection().addToSendQueue( spawnPacket );
+                }
+            }
+        }
+    }
+
+    /**
+     * Wake up all resting entities whose bounding box intersects with the given one
+     *
+     * @param bb        The bounding box in which entities should be woken up
+     * @param exception The entity which should not be woken up, may be null
+     */
+    public void wakeEntities( AxisAlignedBB bb, Entity exception ) {
+        List<io.gomint.entity.Entity> entities = this.spatialIndex.getNearbyEntities( bb, exception );
+        if ( entities != null ) {
+            for ( io.gomint.entity.Entity entity : entities ) {
+                if ( entity instanceof Entity ) {
+                    ( (Entity) entity ).wakeUp();
                 }
             }
         }
@@ -187,7 +308,9 @@ public class EntityManager {
     public Entity findEntity( long entityId ) {
         Entity entity = this.entitiesById.get( entityId );
         if ( entity == null ) {
-            return this.spawnedInThisTick.get( entityId );
+            synchronized ( this.spawnedInThisTick ) {
+                return this.spawnedInThisTick.get( entityId );
+            }
         }
 
         return entity;
@@ -232,46 +355,113 @@ public class EntityManager {
                 entity.getPositionZ() + ( entity.getWidth() / 2 )
         );
 
+        // Entities spawned while ticking get added once the tick is complete
         if ( this.currentlyTicking ) {
-            this.spawnedInThisTick.put( entity.getEntityId(), entity );
-        } else {
-            this.entitiesById.put( entity.getEntityId(), entity );
+            synchronized ( this.spawnedInThisTick ) {
+                this.spawnedInThisTick.put( entity.getEntityId(), entity );
+            }
+
+            return;
         }
 
-        // Register to the correct chunk
+        this.addEntity( entity );
+    }
+
+    private void addEntity( final Entity entity ) {
+        // The tick never waits for the disk, entities whose chunk is not loaded join the world once the I/O workers
+        // have loaded it
         Chunk chunk = entity.getChunk();
         if ( chunk == null ) {
-            int chunkX = CoordinateUtils.fromBlockToChunk( (int) entity.getPositionX() );
-            int chunkZ = CoordinateUtils.fromBlockToChunk( (int) entity.getPositionZ() );
-            chunk = this.world.loadChunk( chunkX, chunkZ, true );
+            int chunkX = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( entity.getPositionX() ) );
+            int chunkZ = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( entity.getPositionZ() ) );
+            this.world.getOrLoadChunk( chunkX, chunkZ, true, ChunkIOScheduler.PRIORITY_SPAWN, new Delegate<ChunkAdapter>() {
+                @Override
+                public void invoke( ChunkAdapter loaded ) {
+                    if ( loaded == null ) {
+                        LOGGER.warn( "Could not spawn entity " + entity.getEntityId() + " since chunk " + chunkX + ":" + chunkZ + " could not be loaded" );
+                        return;
+                    }
+
+                    if ( !entity.isDead() ) {
+                        addEntity( entity );
+                    }
+                }
+            } );
+
+            return;
         }
 
-        // Set the new entity
-        if ( chunk instanceof ChunkAdapter ) {
-            ChunkAdapter castedChunk = (ChunkAdapter) chunk;
-            if ( !castedChunk.knowsEntity( entity ) ) {
-                castedChunk.addEntity( entity );
+        this.entitiesById.put( entity.getEntityId(), entity );
+        this.registerSpawn( entity, (ChunkAdapter) chunk );
+    }
+
+    private void loadChunkFor( final Entity entity, int chunkX, int chunkZ ) {
+        this.world.getOrLoadChunk( chunkX, chunkZ, true, new Delegate<ChunkAdapter>() {
+            @Override
+            public void invoke( ChunkAdapter loaded ) {
+                // The entity may have been despawned or moved on while the chunk has been loaded
+                if ( loaded != null && entitiesById.get( entity.getEntityId() ) == entity && entity.getChunk() == loaded ) {
+                    moveToChunk( entity, loaded );
+                }
+            }
+        } );
+    }
+
+    private void moveToChunk( Entity entity, ChunkAdapter chunk ) {
+        if ( !chunk.knowsEntity( entity ) ) {
+            // Remove the entity from the chunk it was in before
+            ChunkAdapter oldChunk = this.chunkOfEntity.put( entity.getEntityId(), chunk );
+            if ( oldChunk != null ) {
+                oldChunk.removeEntity( entity );
             }
+
+            chunk.addEntity( entity );
         }
+    }
 
-        Packet spawnPacket = entity.createSpawnPacket();
+    private void registerSpawn( Entity entity, ChunkAdapter chunk ) {
+        // Register to the correct chunk
+        if ( !chunk.knowsEntity( entity ) ) {
+            chunk.addEntity( entity );
+        }
 
-        // Check which player we need to inform about this movement
-        for ( EntityPlayer entityPlayer : this.world.getPlayers0().keySet() ) {
-            if ( entity instanceof EntityPlayer ) {
-                if ( entityPlayer.isHidden( (Player) entity ) || entityPlayer.equals( entity ) ) {
-                    continue;
-                }
+        this.chunkOfEntity.put( entity.getEntityId(), chunk );
+        this.spatialIndex.update( entity );
+
+        // Dropped items may not exceed the limit of their chunk
+        if ( entity instanceof EntityItem ) {
+            List<EntityItem> removedItems = new ArrayList<>( 1 );
+            Set<EntityItem> grownItems = new HashSet<>( 2 );
+            this.itemMerger.limitItems( (EntityItem) entity, removedItems, grownItems );
+            this.removeItems( removedItems );
+            this.respawnItems( grownItems );
+
+            if ( entity.isDead() ) {
+                return;
             }
+        }
 
-            Chunk playerChunk = entityPlayer.getChunk();
-            if ( Math.abs( playerChunk.getX() - chunk.getX() ) <= entityPlayer.getViewDistance() &&
-                    Math.abs( playerChunk.getZ() - chunk.getZ() ) <= entityPlayer.getViewDistance() ) {
-                entityPlayer.getConnection().send( spawnPacket );
+        // Check which player we need to inform about this spawn
+        List<EntityPlayer> subscribers = this.spatialIndex.getSubscribers( entity );
+        if ( subscribers != null ) {
+            Packet spawnPacket = entity.createSpawnPacket();
+            for ( int i = 0; i < subscribers.size(); i++ ) {
+                EntityPlayer entityPlayer = subscribers.get( i );
+                if ( this.isVisibleFor( entityPlayer, entity ) ) {
+                    entityPlayer.getConnection().send( spawnPacket );
+                }
             }
         }
     }
 
+    private boolean isVisibleFor( EntityPlayer entityPlayer, Entity entity ) {
+        if ( entity instanceof EntityPlayer ) {
+            return !entityPlayer.isHidden( (Player) entity ) && !entityPlayer.equals( entity );
+        }
+
+        return true;
+    }
+
     /**
      * Despawns an entity
      *
@@ -280,20 +470,26 @@ public class EntityManager {
 
     public void despawnEntity( Entity entity ) {
         // Remove from chunk
-        Chunk chunk = entity.getChunk();
-        if ( chunk instanceof ChunkAdapter ) {
-            ( (ChunkAdapter) chunk ).removeEntity( entity );
+        ChunkAdapter chunk = this.chunkOfEntity.remove( entity.getEntityId() );
+        if ( chunk != null ) {
+            chunk.removeEntity( entity );
         }
 
-        // Broadcast despawn entity packet:
-        PacketDespawnEntity packet = new PacketDespawnEntity();
-        packet.setEntityId( entity.getEntityId() );
+        // Broadcast despawn entity packet to all players which could see the entity
+        List<EntityPlayer> subscribers = this.spatialIndex.getSubscribers( entity );
+        if ( subscribers != null ) {
+            PacketDespawnEntity packet = new PacketDespawnEntity();
+            packet.setEntityId( entity.getEntityId() );
 
-        for ( Player player : this.world.getPlayers() ) {
-            if ( player instanceof EntityPlayer ) {
-                ( (EntityPlayer) player ).getConnection().addToSendQueue( packet );
+            for ( int i = 0; i < subscribers.size(); i++ ) {
+                EntityPlayer entityPlayer = subscribers.get( i );
+                if ( !entityPlayer.equals( entity ) ) {
+                    entityPlayer.getConnection().addToSendQueue( packet );
+                }
             }
         }
+
+        this.spatialIndex.remove( entity );
     }
 
 }
\ No newline at end of file
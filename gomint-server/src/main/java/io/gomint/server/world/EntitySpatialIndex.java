@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.math.AxisAlignedBB;
+import io.gomint.server.entity.Entity;
+import io.gomint.server.entity.EntityPlayer;
+import io.gomint.util.Numbers;
+import net.openhft.koloboke.collect.map.LongLongMap;
+import net.openhft.koloboke.collect.map.LongObjMap;
+import net.openhft.koloboke.collect.map.hash.HashLongLongMaps;
+import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spatial hash of all entities of a world, bucketed by chunk column. It also tracks which players are interested
+ * in which column (every column inside their view distance) so broadcasts only need to look at the subscribers
+ * of a single column instead of every player in the world.
+ * <p>
+ * The index is only modified by the thread which owns the world and never while shards are ticked, so lookups
+ * from shard threads see a stable view of the last completed tick.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class EntitySpatialIndex {
+
+    private final LongObjMap<List<Entity>> entitiesByColumn = HashLongObjMaps.newMutableMap();
+    private final LongLongMap columnOfEntity = HashLongLongMaps.newMutableMap();
+
+    private final LongObjMap<List<EntityPlayer>> subscribersByColumn = HashLongObjMaps.newMutableMap();
+    private final LongObjMap<Interest> interests = HashLongObjMaps.newMutableMap();
+
+    /**
+     * Put the entity into the bucket of the column it currently is in. When the entity is a player its
+     * interest set is updated as well.
+     *
+     * @param entity The entity which should be indexed
+     */
+    public void update( Entity entity ) {
+        int chunkX = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( entity.getPositionX() ) );
+        int chunkZ = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( entity.getPositionZ() ) );
+        long column = CoordinateUtils.toLong( chunkX, chunkZ );
+
+        long entityId = entity.getEntityId();
+        if ( this.columnOfEntity.containsKey( entityId ) ) {
+            long oldColumn = this.columnOfEntity.get( entityId );
+            if ( oldColumn != column ) {
+                this.removeFromBucket( this.entitiesByColumn, oldColumn, entity );
+                this.addToBucket( this.entitiesByColumn, column, entity );
+                this.columnOfEntity.put( entityId, column );
+            }
+        } else {
+            this.addToBucket( this.entitiesByColumn, column, entity );
+            this.columnOfEntity.put( entityId, column );
+        }
+
+        if ( entity instanceof EntityPlayer ) {
+            this.updateInterest( (EntityPlayer) entity, chunkX, chunkZ );
+        }
+    }
+
+    /**
+     * Remove the entity from the index. When the entity is a player its interest set is dropped too.
+     *
+     * @param entity The entity which should be removed
+     */
+    public void remove( Entity entity ) {
+        long entityId = entity.getEntityId();
+        if ( this.columnOfEntity.containsKey( entityId ) ) {
+            this.removeFromBucket( this.entitiesByColumn, this.columnOfEntity.remove( entityId ), entity );
+        }
+
+        if ( entity instanceof EntityPlayer ) {
+            this.removeInterest( (EntityPlayer) entity );
+        }
+    }
+
+    /**
+     * Recalculate the interest set of the given player. This needs to be called when the view distance of the
+     * player changed. Players which have not been indexed yet are ignored.
+     *
+     * @param player The player which should be updated
+     */
+    public void updateInterest( EntityPlayer player ) {
+        if ( !this.interests.containsKey( player.getEntityId() ) ) {
+            return;
+        }
+
+        this.updateInterest( player,
+                CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( player.getPositionX() ) ),
+                CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( player.getPositionZ() ) ) );
+    }
+
+    /**
+     * Unsubscribe the given player from all columns
+     *
+     * @param player The player which should not receive any broadcasts anymore
+     */
+    public void removeInterest( EntityPlayer player ) {
+        Interest interest = this.interests.remove( player.getEntityId() );
+        if ( interest != null ) {
+            for ( int x = interest.chunkX - interest.radius; x <= interest.chunkX + interest.radius; x++ ) {
+                for ( int z = interest.chunkZ - interest.radius; z <= interest.chunkZ + interest.radius; z++ ) {
+                    this.removeFromBucket( this.subscribersByColumn, CoordinateUtils.toLong( x, z ), player );
+                }
+            }
+        }
+    }
+
+    /**
+     * Get all players which have the given chunk column inside their view distance
+     *
+     * @param chunkX The x coordinate of the chunk column
+     * @param chunkZ The z coordinate of the chunk column
+     * @return list of players or null when no player is interested in this column
+     */
+    public List<EntityPlayer> getSubscribers( int chunkX, int chunkZ ) {
+        return this.subscribersByColumn.get( CoordinateUtils.toLong( chunkX, chunkZ ) );
+    }
+
+    /**
+     * Get all players which are interested in the column the entity has been indexed in
+     *
+     * @param entity The entity for which we want to know the subscribers
+     * @return list of players or null when the entity is not indexed or nobody is interested
+     */
+    public List<EntityPlayer> getSubscribers( Entity entity ) {
+        long entityId = entity.getEntityId();
+        if ( !this.columnOfEntity.containsKey( entityId ) ) {
+            return null;
+        }
+
+        return this.subscribersByColumn.get( this.columnOfEntity.get( entityId ) );
+    }
+
+    /**
+     * Get all entities which have been indexed in the given column
+     *
+     * @param chunkX The x coordinate of the chunk column
+     * @param chunkZ The z coordinate of the chunk column
+     * @return list of entities or null when there are none
+     */
+    public List<Entity> getEntities( int chunkX, int chunkZ ) {
+        return this.entitiesByColumn.get( CoordinateUtils.toLong( chunkX, chunkZ ) );
+    }
+
+    /**
+     * Get all entities whose bounding box intersects with the given one
+     *
+     * @param bb        The bounding box to search in
+     * @param exception The entity which should not be included, may be null
+     * @return list of entities or null when there are none
+     */
+    public List<io.gomint.entity.Entity> getNearbyEntities( AxisAlignedBB bb, io.gomint.entity.Entity exception ) {
+        List<io.gomint.entity.Entity> nearby = null;
+
+        // Entities are indexed by their position, their bounding box may reach two blocks into neighbour columns
+        int minX = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( bb.getMinX() - 2 ) );
+        int maxX = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( bb.getMaxX() + 2 ) );
+        int minZ = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( bb.getMinZ() - 2 ) );
+        int maxZ = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( bb.getMaxZ() + 2 ) );
+
+        for ( int x = minX; x <= maxX; x++ ) {
+            for ( int z = minZ; z <= maxZ; z++ ) {
+                List<Entity> bucket = this.entitiesByColumn.get( CoordinateUtils.toLong( x, z ) );
+                if ( bucket == null ) {
+                    continue;
+                }
+
+                for ( int i = 0; i < bucket.size(); i++ ) {
+                    Entity entity = bucket.get( i );
+                    if ( !entity.equals( exception ) && entity.getBoundingBox().intersectsWith( bb ) ) {
+                        if ( nearby == null ) {
+                            nearby = new ArrayList<>();
+                        }
+
+                        nearby.add( entity );
+                    }
+                }
+            }
+        }
+
+        return nearby;
+    }
+
+    private void updateInterest( EntityPlayer player, int chunkX, int chunkZ ) {
+        int radius = player.getViewDistance();
+
+        Interest interest = this.interests.get( player.getEntityId() );
+        if ( interest == null ) {
+            interest = new Interest();
+            interest.radius = -1;
+            this.interests.put( player.getEntityId(), interest );
+        } else if ( interest.chunkX == chunkX && interest.chunkZ == chunkZ && interest.radius == radius ) {
+            return;
+        }
+
+        // Unsubscribe from columns which are not in the new view anymore
+        if ( interest.radius >= 0 ) {
+            for ( int x = interest.chunkX - interest.radius; x <= interest.chunkX + interest.radius; x++ ) {
+                for ( int z = interest.chunkZ - interest.radius; z <= interest.chunkZ + interest.radius; z++ ) {
+                    if ( Math.abs( x - chunkX ) > radius || Math.abs( z - chunkZ ) > radius ) {
+                        this.removeFromBucket( this.subscribersByColumn, CoordinateUtils.toLong( x, z ), player );
+                    }
+                }
+            }
+        }
+
+        // Subscribe to columns which are new
+        for ( int x = chunkX - radius; x <= chunkX + radius; x++ ) {
+            for ( int z = chunkZ - radius; z <= chunkZ + radius; z++ ) {
+                if ( interest.radius < 0 || Math.abs( x - interest.chunkX ) > interest.radius || Math.abs( z - interest.chunkZ ) > interest.radius ) {
+                    this.addToBucket( this.subscribersByColumn, CoordinateUtils.toLong( x, z ), player );
+                }
+            }
+        }
+
+        interest.chunkX = chunkX;
+        interest.chunkZ = chunkZ;
+        interest.radius = radius;
+    }
+
+    private <T> void addToBucket( LongObjMap<List<T>> buckets, long column, T value ) {
+        List<T> bucket = buckets.get( column );
+        if ( bucket == null ) {
+            bucket = new ArrayList<>( 4 );
+            buckets.put( column, bucket );
+        }
+
+        bucket.add( value );
+    }
+
+    private <T> void removeFromBucket( LongObjMap<List<T>> buckets, long column, T value ) {
+        List<T> bucket = buckets.get( column );
+        if ( bucket != null && bucket.remove( value ) && bucket.isEmpty() ) {
+            buckets.remove( column );
+        }
+    }
+
+    private static final class Interest {
+
+        private int chunkX;
+        private int chunkZ;
+        private int radius;
+
+    }
+
+}
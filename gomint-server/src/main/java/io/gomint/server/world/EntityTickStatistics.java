@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many entity updates of a world have been run and how many have been skipped because the entity was
+ * outside of its activation range. Entities are updated by all shard threads at once, so the counters are adders.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class EntityTickStatistics {
+
+    private final LongAdder tickedEntities = new LongAdder();
+    private final LongAdder inactiveTicks = new LongAdder();
+    private final LongAdder skippedEntities = new LongAdder();
+    private final LongAdder sleepingEntities = new LongAdder();
+
+    /**
+     * Count an entity update which has been run
+     *
+     * @param active   False when the entity is outside of its activation range and got its reduced rate tick
+     * @param sleeping True when the entity has been resting so no physics have been calculated
+     */
+    void recordTick( boolean active, boolean sleeping ) {
+        this.tickedEntities.increment();
+
+        if ( !active ) {
+            this.inactiveTicks.increment();
+        }
+
+        if ( sleeping ) {
+            this.sleepingEntities.increment();
+        }
+    }
+
+    /**
+     * Count an entity update which has been skipped
+     */
+    void recordSkip() {
+        this.skippedEntities.increment();
+    }
+
+    /**
+     * Get the amount of entity updates which have been run, including the ones of inactive and sleeping entities
+     *
+     * @return amount of updates
+     */
+    public long getTickedEntities() {
+        return this.tickedEntities.sum();
+    }
+
+    /**
+     * Get the amount of entity updates which were the reduced rate tick of an inactive entity
+     *
+     * @return amount of updates
+     */
+    public long getInactiveTicks() {
+        return this.inactiveTicks.sum();
+    }
+
+    /**
+     * Get the amount of entity updates which have been skipped because the entity was inactive
+     *
+     * @return amount of skipped updates
+     */
+    public long getSkippedEntities() {
+        return this.skippedEntities.sum();
+    }
+
+    /**
+     * Get the amount of entity updates which did not need physics because the entity was resting
+     *
+     * @return amount of updates
+     */
+    public long getSleepingEntities() {
+        return this.sleepingEntities.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format( "%d entity updates ticked (%d inactive, %d sleeping), %d skipped",
+                this.getTickedEntities(), this.getInactiveTicks(), this.getSleepingEntities(), this.getSkippedEntities() );
+    }
+
+}
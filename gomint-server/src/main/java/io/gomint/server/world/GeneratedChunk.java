@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.world.Biome;
+import io.gomint.world.generator.GeneratorChunk;
+
+/**
+ * View of a chunk which is being generated, given to the noise and surface stage of a generator
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+class GeneratedChunk implements GeneratorChunk {
+
+    private final ChunkAdapter chunk;
+
+    GeneratedChunk( ChunkAdapter chunk ) {
+        this.chunk = chunk;
+    }
+
+    @Override
+    public int getX() {
+        return this.chunk.getX();
+    }
+
+    @Override
+    public int getZ() {
+        return this.chunk.getZ();
+    }
+
+    @Override
+    public void setBlock( int x, int y, int z, int blockId, byte data ) {
+        setBlock( this.chunk, x, y, z, blockId, data );
+    }
+
+    @Override
+    public int getBlockId( int x, int y, int z ) {
+        return this.chunk.getBlock( x, y, z ) & 0xFF;
+    }
+
+    @Override
+    public void setBiome( int x, int z, Biome biome ) {
+        this.chunk.setBiome( x, z, biome );
+    }
+
+    @Override
+    public Biome getBiome( int x, int z ) {
+        return this.chunk.getBiome( x, z );
+    }
+
+    /**
+     * Set a block and its data in the given chunk
+     *
+     * @param chunk   The chunk in which the block should be set
+     * @param x       The x coordinate inside of the chunk
+     * @param y       The y coordinate of the block
+     * @param z       The z coordinate inside of the chunk
+     * @param blockId The id of the block
+     * @param data    The data value of the block
+     */
+    static void setBlock( ChunkAdapter chunk, int x, int y, int z, int blockId, byte data ) {
+        chunk.setBlock( x, y, z, blockId );
+
+        // Sections which only contain air have no data array
+        if ( data != chunk.getData( x, y, z ) && ( blockId != 0 || data == 0 ) ) {
+            chunk.setData( x, y, z, data );
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.world.generator.GeneratorRegion;
+
+/**
+ * View of a chunk which is being decorated and its eight neighbours. Neighbours which are already done are
+ * missing, writes into them are dropped.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+class GeneratedRegion implements GeneratorRegion {
+
+    private final int chunkX;
+    private final int chunkZ;
+    private final ChunkAdapter[] chunks;
+
+    /**
+     * Create a new region view
+     *
+     * @param chunkX The x coordinate of the chunk in the middle
+     * @param chunkZ The z coordinate of the chunk in the middle
+     * @param chunks The 3x3 chunks around the middle, indexed by x * 3 + z. Finished chunks are null.
+     */
+    GeneratedRegion( int chunkX, int chunkZ, ChunkAdapter[] chunks ) {
+        this.chunkX = chunkX;
+        this.chunkZ = chunkZ;
+        this.chunks = chunks;
+    }
+
+    @Override
+    public void setBlock( int x, int y, int z, int blockId, byte data ) {
+        ChunkAdapter chunk = this.getChunk( x, z );
+        if ( chunk != null && y >= 0 && y < 256 ) {
+            GeneratedChunk.setBlock( chunk, x & 15, y, z & 15, blockId, data );
+        }
+    }
+
+    @Override
+    public int getBlockId( int x, int y, int z ) {
+        ChunkAdapter chunk = this.getChunk( x, z );
+        if ( chunk == null || y < 0 || y >= 256 ) {
+            return 0;
+        }
+
+        return chunk.getBlock( x & 15, y, z & 15 ) & 0xFF;
+    }
+
+    @Override
+    public int getHighestBlockY( int x, int z ) {
+        ChunkAdapter chunk = this.getChunk( x, z );
+        if ( chunk == null ) {
+            return -1;
+        }
+
+        for ( int y = ( chunk.getSectionCount() << 4 ) - 1; y >= 0; y-- ) {
+            if ( chunk.getBlock( x & 15, y, z & 15 ) != 0 ) {
+                return y;
+            }
+        }
+
+        return -1;
+    }
+
+    private ChunkAdapter getChunk( int x, int z ) {
+        int offsetX = CoordinateUtils.fromBlockToChunk( x ) - this.chunkX + 1;
+        int offsetZ = CoordinateUtils.fromBlockToChunk( z ) - this.chunkZ + 1;
+        if ( offsetX < 0 || offsetX > 2 || offsetZ < 0 || offsetZ > 2 ) {
+            throw new IllegalArgumentException( "Block " + x + ":" + z + " is outside of the decorated region around chunk " + this.chunkX + ":" + this.chunkZ );
+        }
+
+        return this.chunks[offsetX * 3 + offsetZ];
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.config.ItemMergeConfig;
+import io.gomint.server.entity.Entity;
+import io.gomint.server.entity.passive.EntityItem;
+import io.gomint.util.Numbers;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Merges dropped items of the same kind which lie next to each other into one stack and limits the amount of dropped
+ * items per chunk. Neighbours are looked up in the spatial index, so this may only run on the thread which owns the
+ * world while no shards are ticked.
+ * <p>
+ * Items which have been merged away or removed are despawned and collected into the given list, the caller has to
+ * remove them from the world. Items which took the items of others are collected into the given set, the caller has
+ * to send their new amount to the players.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+class ItemMerger {
+
+    private final EntitySpatialIndex spatialIndex;
+    private final float mergeRadius;
+    private final int mergeInterval;
+    private final int maxItemsPerChunk;
+
+    /**
+     * Create a new merger for the items in the given index
+     *
+     * @param config       The config which contains the radius, interval and limit
+     * @param spatialIndex The index in which nearby items are searched
+     */
+    ItemMerger( ItemMergeConfig config, EntitySpatialIndex spatialIndex ) {
+        this.spatialIndex = spatialIndex;
+        this.mergeRadius = (float) config.getMergeRadius();
+        this.mergeInterval = config.getMergeInterval();
+        this.maxItemsPerChunk = config.getMaxItemsPerChunk();
+    }
+
+    /**
+     * Check if items should be merged in the given tick
+     *
+     * @param tick The number of the current tick
+     * @return true when {@link #mergeItems(Collection, List, Set)} should be called
+     */
+    boolean isMergeTick( long tick ) {
+        return this.mergeInterval > 0 && tick % this.mergeInterval == 0;
+    }
+
+    /**
+     * Merge all item drops which lie inside the merge radius of each other. The bigger stack takes the items of the
+     * smaller one so stacks which are nearly full keep filling up.
+     *
+     * @param entities The entities of the world
+     * @param removed  The list to which all drops which have been merged away are added
+     * @param grown    The set to which all drops which took the items of others are added
+     */
+    void mergeItems( Collection<Entity> entities, List<EntityItem> removed, Set<EntityItem> grown ) {
+        for ( Entity entity : entities ) {
+            if ( !( entity instanceof EntityItem ) || entity.isDead() ) {
+                continue;
+            }
+
+            EntityItem item = (EntityItem) entity;
+            List<io.gomint.entity.Entity> nearby = this.spatialIndex.getNearbyEntities(
+                    item.getBoundingBox().grow( this.mergeRadius, this.mergeRadius, this.mergeRadius ), item );
+            if ( nearby == null ) {
+                continue;
+            }
+
+            for ( io.gomint.entity.Entity nearbyEntity : nearby ) {
+                if ( !( nearbyEntity instanceof EntityItem ) ) {
+                    continue;
+                }
+
+                EntityItem other = (EntityItem) nearbyEntity;
+                if ( !item.canMergeWith( other ) ) {
+                    continue;
+                }
+
+                if ( other.getAmount() > item.getAmount() ) {
+                    other.mergeWith( item );
+                    removed.add( item );
+                    grown.add( other );
+                    break;
+                }
+
+                item.mergeWith( other );
+                removed.add( other );
+                grown.add( item );
+            }
+        }
+    }
+
+    /**
+     * Keep the amount of item drops in the column of the given drop below the limit. A drop which would exceed the
+     * limit is merged into any drop of the column it fits into, if there is none the oldest unlocked drop is removed.
+     *
+     * @param item    The drop which has just been added to the index
+     * @param removed The list to which the drop which has been merged away or removed is added
+     * @param grown   The set to which the drop which took the items is added
+     */
+    void limitItems( EntityItem item, List<EntityItem> removed, Set<EntityItem> grown ) {
+        if ( this.maxItemsPerChunk <= 0 ) {
+            return;
+        }
+
+        List<Entity> entities = this.spatialIndex.getEntities(
+                CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( item.getPositionX() ) ),
+                CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( item.getPositionZ() ) ) );
+        if ( entities == null ) {
+            return;
+        }
+
+        int items = 0;
+        EntityItem oldest = null;
+        EntityItem mergeTarget = null;
+        for ( int i = 0; i < entities.size(); i++ ) {
+            Entity entity = entities.get( i );
+            if ( !( entity instanceof EntityItem ) || entity.isDead() ) {
+                continue;
+            }
+
+            EntityItem other = (EntityItem) entity;
+            items++;
+
+            if ( mergeTarget == null && other.canMergeWith( item ) ) {
+                mergeTarget = other;
+            }
+
+            if ( other != item && other.isUnlocked() && ( oldest == null || other.getEntityId() < oldest.getEntityId() ) ) {
+                oldest = other;
+            }
+        }
+
+        if ( items <= this.maxItemsPerChunk ) {
+            return;
+        }
+
+        if ( mergeTarget != null ) {
+            mergeTarget.mergeWith( item );
+            removed.add( item );
+            grown.add( mergeTarget );
+        } else if ( oldest != null ) {
+            oldest.despawn();
+            removed.add( oldest );
+        }
+    }
+
+}
@@ -0,0 +1,626 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.world.block.Blocks;
+
+import java.util.Arrays;
+
+/**
+ * Calculates sky and block light directly on the light nibbles of the chunk slices. Block changes of a tick
+ * get collected and are processed as one batch: first all light which could have come from the changed
+ * blocks is removed, then everything gets filled up again from the borders of the removed area and from
+ * the changed blocks. Positions and their light level are packed into ints so the queues don't need to
+ * allocate anything per block.
+ * <p>
+ * Chunks which have been generated or loaded without light get lit as a whole by {@link #relightChunk(ChunkAdapter)}
+ * on the thread which created them. Once such a chunk has been added to the world its borders are handed to the
+ * light engine of the world, which spreads light from the chunk into its loaded neighbours and the other way round.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class LightEngine {
+
+    // Down, up, east, west, south, north
+    private static final int[] OFFSET_X = { 0, 0, 1, -1, 0, 0 };
+    private static final int[] OFFSET_Y = { -1, 1, 0, 0, 0, 0 };
+    private static final int[] OFFSET_Z = { 0, 0, 0, 0, 1, -1 };
+    private static final int DOWN = 0;
+
+    // Packed positions store x and z as 10 bit offsets to the origin of the batch. Light travels at most
+    // 15 blocks away from the border of the removed light, so changes need to stay well inside of that
+    private static final int OFFSET_BIAS = 512;
+    private static final int MAX_BATCH_DISTANCE = OFFSET_BIAS - 64;
+
+    private static final ThreadLocal<LightEngine> RELIGHT_ENGINE = new ThreadLocal<LightEngine>() {
+        @Override
+        protected LightEngine initialValue() {
+            return new LightEngine( null );
+        }
+    };
+
+    private final ChunkSource source;
+    private ChunkAdapter relightedChunk;
+
+    // Changed blocks, three ints per block. Written by all ticking threads, processed by the world thread
+    private IntQueue pending = new IntQueue();
+    private IntQueue processing = new IntQueue();
+
+    // Chunks which have been added to the world, two ints per chunk. Written by the I/O workers
+    private IntQueue pendingChunks = new IntQueue();
+    private IntQueue processingChunks = new IntQueue();
+    private final IntQueue batch = new IntQueue();
+
+    private final IntQueue decrease = new IntQueue();
+    private final IntQueue increase = new IntQueue();
+    private int originX;
+    private int originZ;
+
+    private ChunkAdapter cachedChunk;
+
+    /**
+     * Create a new light engine for the chunks of a world
+     *
+     * @param source which gives access to the loaded chunks
+     */
+    LightEngine( ChunkSource source ) {
+        this.source = source;
+    }
+
+    /**
+     * Light the given chunk from scratch. The sky light is initialized from the height map and spread
+     * sideways, block light is spread from all light emitting blocks. Light does not cross into other
+     * chunks, so this can run on any thread as long as nobody else modifies the chunk. The world exchanges
+     * the light along the borders once the chunk has been added, see {@link #chunkAdded(int, int)}.
+     *
+     * @param chunk The chunk which should be lit
+     */
+    public static void relightChunk( ChunkAdapter chunk ) {
+        LightEngine engine = RELIGHT_ENGINE.get();
+        engine.relightedChunk = chunk;
+
+        try {
+            engine.relight( chunk );
+        } finally {
+            engine.relightedChunk = null;
+            engine.cachedChunk = null;
+            engine.decrease.clear();
+            engine.increase.clear();
+        }
+    }
+
+    /**
+     * Queue a changed block for the next light update. This can be called from any thread.
+     *
+     * @param x The x-coordinate of the block
+     * @param y The y-coordinate of the block
+     * @param z The z-coordinate of the block
+     */
+    public synchronized void blockChanged( int x, int y, int z ) {
+        this.pending.add( x );
+        this.pending.add( y );
+        this.pending.add( z );
+    }
+
+    /**
+     * Queue a chunk which has been added to the world for the next light update. Its light has been
+     * calculated without the neighbours, so light along the borders gets spread into the loaded neighbours
+     * and from them into the chunk. This can be called from any thread.
+     *
+     * @param chunkX The x-coordinate of the chunk
+     * @param chunkZ The z-coordinate of the chunk
+     */
+    public synchronized void chunkAdded( int chunkX, int chunkZ ) {
+        this.pendingChunks.add( chunkX );
+        this.pendingChunks.add( chunkZ );
+    }
+
+    /**
+     * Get the amount of block changes which wait for the next light update
+     *
+     * @return amount of changed blocks
+     */
+    public synchronized int getPendingUpdates() {
+        return this.pending.size() / 3;
+    }
+
+    /**
+     * Update the light for all blocks which have been changed and along the borders of all chunks which have
+     * been added since the last call. This needs to be called by the world thread while no chunk is ticked.
+     */
+    public void processUpdates() {
+        synchronized ( this ) {
+            if ( this.pending.isEmpty() && this.pendingChunks.isEmpty() ) {
+                return;
+            }
+
+            IntQueue changes = this.pending;
+            this.pending = this.processing;
+            this.processing = changes;
+
+            IntQueue chunks = this.pendingChunks;
+            this.pendingChunks = this.processingChunks;
+            this.processingChunks = chunks;
+        }
+
+        IntQueue changes = this.processing;
+        while ( !changes.isEmpty() ) {
+            // Everything close to the first change fits into one batch, the rest stays for the next round
+            this.originX = changes.get( 0 );
+            this.originZ = changes.get( 2 );
+
+            int count = changes.size() / 3;
+            for ( int i = 0; i < count; i++ ) {
+                int x = changes.poll();
+                int y = changes.poll();
+                int z = changes.poll();
+
+                IntQueue target = Math.abs( x - this.originX ) < MAX_BATCH_DISTANCE &&
+                        Math.abs( z - this.originZ ) < MAX_BATCH_DISTANCE ? this.batch : changes;
+                target.add( x );
+                target.add( y );
+                target.add( z );
+            }
+
+            this.updateHeights();
+            this.updateBatch( true );
+            this.updateBatch( false );
+            this.batch.clear();
+        }
+
+        IntQueue chunks = this.processingChunks;
+        while ( !chunks.isEmpty() ) {
+            int chunkX = chunks.poll();
+            int chunkZ = chunks.poll();
+
+            this.spreadBorders( chunkX, chunkZ, true );
+            this.spreadBorders( chunkX, chunkZ, false );
+        }
+
+        // Chunks may get unloaded until the next update
+        this.cachedChunk = null;
+    }
+
+    private void updateHeights() {
+        for ( int i = 0; i < this.batch.size(); i += 3 ) {
+            int x = this.batch.get( i );
+            int z = this.batch.get( i + 2 );
+
+            ChunkAdapter chunk = this.getChunk( x >> 4, z >> 4 );
+            if ( chunk != null ) {
+                chunk.updateHeight( x & 0xF, this.batch.get( i + 1 ), z & 0xF );
+            }
+        }
+    }
+
+    private void updateBatch( boolean sky ) {
+        // Remove all light which could have been spread by the changed blocks
+        for ( int i = 0; i < this.batch.size(); i += 3 ) {
+            int x = this.batch.get( i );
+            int y = this.batch.get( i + 1 );
+            int z = this.batch.get( i + 2 );
+
+            ChunkAdapter chunk = this.getChunk( x >> 4, z >> 4 );
+            if ( chunk == null ) {
+                continue;
+            }
+
+            int level = getLight( chunk, x, y, z, sky );
+            if ( level > 0 ) {
+                setLight( chunk, x, y, z, sky, 0 );
+                this.decrease.add( this.pack( x, y, z, level ) );
+            }
+        }
+
+        this.runDecrease( sky );
+
+        // Fill it up again from the changed blocks and everything around them
+        for ( int i = 0; i < this.batch.size(); i += 3 ) {
+            int x = this.batch.get( i );
+            int y = this.batch.get( i + 1 );
+            int z = this.batch.get( i + 2 );
+
+            ChunkAdapter chunk = this.getChunk( x >> 4, z >> 4 );
+            if ( chunk == null ) {
+                continue;
+            }
+
+            if ( !sky ) {
+                int emission = Blocks.getLightEmission( getBlockId( chunk, x, y, z ) );
+                if ( emission > getLight( chunk, x, y, z, false ) ) {
+                    setLight( chunk, x, y, z, false, emission );
+                    this.increase.add( this.pack( x, y, z, emission ) );
+                }
+            }
+
+            for ( int direction = 0; direction < 6; direction++ ) {
+                int neighbourY = y + OFFSET_Y[direction];
+                if ( neighbourY < 0 || neighbourY > 255 ) {
+                    continue;
+                }
+
+                int neighbourX = x + OFFSET_X[direction];
+                int neighbourZ = z + OFFSET_Z[direction];
+                ChunkAdapter neighbourChunk = this.getChunk( neighbourX >> 4, neighbourZ >> 4 );
+                if ( neighbourChunk == null ) {
+                    continue;
+                }
+
+                int level = getLight( neighbourChunk, neighbourX, neighbourY, neighbourZ, sky );
+                if ( level > 1 ) {
+                    this.increase.add( this.pack( neighbourX, neighbourY, neighbourZ, level ) );
+                }
+            }
+        }
+
+        this.runIncrease( sky );
+    }
+
+    private void spreadBorders( int chunkX, int chunkZ, boolean sky ) {
+        ChunkAdapter chunk = this.getChunk( chunkX, chunkZ );
+        if ( chunk == null ) {
+            // Unloaded again before the update
+            return;
+        }
+
+        this.originX = chunkX << 4;
+        this.originZ = chunkZ << 4;
+
+        // Light of both columns along each border may be brighter than what the other side has. Light only
+        // gets spread further, both sides have been lit without each other so none of it is too bright
+        for ( int direction = 2; direction < 6; direction++ ) {
+            ChunkAdapter neighbour = this.getChunk( chunkX + OFFSET_X[direction], chunkZ + OFFSET_Z[direction] );
+            if ( neighbour == null ) {
+                continue;
+            }
+
+            for ( int i = 0; i < 16; i++ ) {
+                int x = this.originX + ( OFFSET_X[direction] == 0 ? i : ( OFFSET_X[direction] > 0 ? 15 : 0 ) );
+                int z = this.originZ + ( OFFSET_Z[direction] == 0 ? i : ( OFFSET_Z[direction] > 0 ? 15 : 0 ) );
+                int neighbourX = x + OFFSET_X[direction];
+                int neighbourZ = z + OFFSET_Z[direction];
+
+                // Above both columns the sky light is 15 on both sides already
+                int top = 255;
+                if ( sky ) {
+                    top = Math.min( 255, Math.max( chunk.getHeight( x & 0xF, z & 0xF ) & 0xFF,
+                            neighbour.getHeight( neighbourX & 0xF, neighbourZ & 0xF ) & 0xFF ) + 1 );
+                }
+
+                for ( int y = 0; y <= top; y++ ) {
+                    this.queueIncrease( chunk, x, y, z, sky );
+                    this.queueIncrease( neighbour, neighbourX, y, neighbourZ, sky );
+                }
+            }
+        }
+
+        this.runIncrease( sky );
+    }
+
+    private void queueIncrease( ChunkAdapter chunk, int x, int y, int z, boolean sky ) {
+        int level = getLight( chunk, x, y, z, sky );
+        if ( level > 1 ) {
+            this.increase.add( this.pack( x, y, z, level ) );
+        }
+    }
+
+    private void runDecrease( boolean sky ) {
+        while ( !this.decrease.isEmpty() ) {
+            int packed = this.decrease.poll();
+            int x = this.unpackX( packed );
+            int y = unpackY( packed );
+            int z = this.unpackZ( packed );
+            int level = unpackLevel( packed );
+
+            for ( int direction = 0; direction < 6; direction++ ) {
+                int neighbourY = y + OFFSET_Y[direction];
+                if ( neighbourY < 0 || neighbourY > 255 ) {
+                    continue;
+                }
+
+                int neighbourX = x + OFFSET_X[direction];
+                int neighbourZ = z + OFFSET_Z[direction];
+                ChunkAdapter chunk = this.getChunk( neighbourX >> 4, neighbourZ >> 4 );
+                if ( chunk == null ) {
+                    continue;
+                }
+
+                int neighbourLevel = getLight( chunk, neighbourX, neighbourY, neighbourZ, sky );
+                if ( neighbourLevel == 0 ) {
+                    continue;
+                }
+
+                if ( neighbourLevel < level || ( sky && direction == DOWN && level == 15 ) ) {
+                    // This light may have come from the removed one
+                    setLight( chunk, neighbourX, neighbourY, neighbourZ, sky, 0 );
+                    this.decrease.add( this.pack( neighbourX, neighbourY, neighbourZ, neighbourLevel ) );
+
+                    if ( !sky ) {
+                        int emission = Blocks.getLightEmission( getBlockId( chunk, neighbourX, neighbourY, neighbourZ ) );
+                        if ( emission > 0 ) {
+                            setLight( chunk, neighbourX, neighbourY, neighbourZ, false, emission );
+                            this.increase.add( this.pack( neighbourX, neighbourY, neighbourZ, emission ) );
+                        }
+                    }
+                } else {
+                    // Brighter light comes from somewhere else and needs to fill the gap again
+                    this.increase.add( this.pack( neighbourX, neighbourY, neighbourZ, neighbourLevel ) );
+                }
+            }
+        }
+    }
+
+    private void runIncrease( boolean sky ) {
+        while ( !this.increase.isEmpty() ) {
+            int packed = this.increase.poll();
+            int x = this.unpackX( packed );
+            int y = unpackY( packed );
+            int z = this.unpackZ( packed );
+            int level = unpackLevel( packed );
+
+            // The light may have been changed since it has been queued
+            ChunkAdapter chunk = this.getChunk( x >> 4, z >> 4 );
+            if ( chunk == null || getLight( chunk, x, y, z, sky ) != level ) {
+                continue;
+            }
+
+            for ( int direction = 0; direction < 6; direction++ ) {
+                int neighbourY = y + OFFSET_Y[direction];
+                if ( neighbourY < 0 || neighbourY > 255 ) {
+                    continue;
+                }
+
+                int neighbourX = x + OFFSET_X[direction];
+                int neighbourZ = z + OFFSET_Z[direction];
+                ChunkAdapter neighbourChunk = this.getChunk( neighbourX >> 4, neighbourZ >> 4 );
+                if ( neighbourChunk == null ) {
+                    continue;
+                }
+
+                int filter = Blocks.getLightFilter( getBlockId( neighbourChunk, neighbourX, neighbourY, neighbourZ ) );
+                if ( filter >= 15 ) {
+                    continue;
+                }
+
+                int neighbourLevel = sky && direction == DOWN && level == 15 && filter == 0 ? 15 : level - Math.max( 1, filter );
+                if ( neighbourLevel > getLight( neighbourChunk, neighbourX, neighbourY, neighbourZ, sky ) ) {
+                    setLight( neighbourChunk, neighbourX, neighbourY, neighbourZ, sky, neighbourLevel );
+                    if ( neighbourLevel > 1 ) {
+                        this.increase.add( this.pack( neighbourX, neighbourY, neighbourZ, neighbourLevel ) );
+                    }
+                }
+            }
+        }
+    }
+
+    private void relight( ChunkAdapter chunk ) {
+        chunk.calculateHeightmap();
+
+        this.originX = chunk.getX() << 4;
+        this.originZ = chunk.getZ() << 4;
+
+        // Everything above the top section is open sky, the rest gets lit again
+        int topSection = chunk.getSectionCount();
+        int top = topSection << 4;
+        for ( int sectionY = 0; sectionY < 16; sectionY++ ) {
+            ChunkSlice slice = sectionY < topSection ? chunk.ensureSlice( sectionY ) : chunk.chunkSlices[sectionY];
+            if ( slice != null ) {
+                slice.resetLight( sectionY >= topSection );
+            }
+        }
+
+        // Sky light falls straight down until it hits the top block of each column
+        for ( int x = 0; x < 16; x++ ) {
+            for ( int z = 0; z < 16; z++ ) {
+                int height = chunk.getHeight( x, z ) & 0xFF;
+                for ( int y = top - 1; y > height; y-- ) {
+                    setLight( chunk, this.originX + x, y, this.originZ + z, true, 15 );
+                }
+
+                int level = 15;
+                for ( int y = height; y >= 0; y-- ) {
+                    int filter = Blocks.getLightFilter( getBlockId( chunk, this.originX + x, y, this.originZ + z ) );
+                    level = filter == 0 && level == 15 ? 15 : level - Math.max( 1, filter );
+                    if ( level <= 0 ) {
+                        break;
+                    }
+
+                    setLight( chunk, this.originX + x, y, this.originZ + z, true, level );
+                }
+            }
+        }
+
+        // Only light below the height of a neighbouring column can spread sideways
+        for ( int x = 0; x < 16; x++ ) {
+            for ( int z = 0; z < 16; z++ ) {
+                int limit = 0;
+                for ( int direction = 2; direction < 6; direction++ ) {
+                    int neighbourX = x + OFFSET_X[direction];
+                    int neighbourZ = z + OFFSET_Z[direction];
+                    if ( neighbourX >= 0 && neighbourX < 16 && neighbourZ >= 0 && neighbourZ < 16 ) {
+                        limit = Math.max( limit, chunk.getHeight( neighbourX, neighbourZ ) & 0xFF );
+                    }
+                }
+
+                for ( int y = Math.min( limit, top - 1 ); y >= 0; y-- ) {
+                    int level = getLight( chunk, this.originX + x, y, this.originZ + z, true );
+                    if ( level > 1 ) {
+                        this.increase.add( this.pack( this.originX + x, y, this.originZ + z, level ) );
+                    }
+                }
+            }
+        }
+
+        this.runIncrease( true );
+
+        // Block light spreads from every light emitting block
+        for ( int sectionY = 0; sectionY < topSection; sectionY++ ) {
+            ChunkSlice slice = chunk.chunkSlices[sectionY];
+            if ( slice == null || !slice.containsLightEmitters() ) {
+                continue;
+            }
+
+            for ( int index = 0; index < 4096; index++ ) {
+                int emission = Blocks.getLightEmission( slice.getBlockId( index ) );
+                if ( emission > 0 ) {
+                    slice.setBlockLight( index, emission );
+
+                    int x = this.originX + ( index >> 8 );
+                    int y = ( sectionY << 4 ) + ( index & 0xF );
+                    int z = this.originZ + ( ( index >> 4 ) & 0xF );
+                    this.increase.add( this.pack( x, y, z, emission ) );
+                }
+            }
+        }
+
+        this.runIncrease( false );
+    }
+
+    private ChunkAdapter getChunk( int chunkX, int chunkZ ) {
+        ChunkAdapter chunk = this.cachedChunk;
+        if ( chunk != null && chunk.getX() == chunkX && chunk.getZ() == chunkZ ) {
+            return chunk;
+        }
+
+        if ( this.source != null ) {
+            chunk = this.source.getChunk( chunkX, chunkZ );
+        } else {
+            chunk = this.relightedChunk;
+            if ( chunk == null || chunk.getX() != chunkX || chunk.getZ() != chunkZ ) {
+                return null;
+            }
+        }
+
+        if ( chunk != null ) {
+            this.cachedChunk = chunk;
+        }
+
+        return chunk;
+    }
+
+    private static int getBlockId( ChunkAdapter chunk, int x, int y, int z ) {
+        ChunkSlice slice = chunk.chunkSlices[y >> 4];
+        return slice == null ? 0 : slice.getBlockId( ChunkSlice.getIndex( x & 0xF, y & 0xF, z & 0xF ) );
+    }
+
+    private static int getLight( ChunkAdapter chunk, int x, int y, int z, boolean sky ) {
+        ChunkSlice slice = chunk.chunkSlices[y >> 4];
+        if ( slice == null ) {
+            return sky ? 15 : 0;
+        }
+
+        int index = ChunkSlice.getIndex( x & 0xF, y & 0xF, z & 0xF );
+        return sky ? slice.getSkyLight( index ) : slice.getBlockLight( index );
+    }
+
+    private static void setLight( ChunkAdapter chunk, int x, int y, int z, boolean sky, int level ) {
+        ChunkSlice slice = chunk.ensureSlice( y >> 4 );
+        int index = ChunkSlice.getIndex( x & 0xF, y & 0xF, z & 0xF );
+        if ( sky ) {
+            slice.setSkyLight( index, level );
+        } else {
+            slice.setBlockLight( index, level );
+        }
+
+        chunk.markDirty();
+    }
+
+    // ==================================== PACKED POSITIONS ==================================== //
+
+    private int pack( int x, int y, int z, int level ) {
+        return ( x - this.originX + OFFSET_BIAS ) << 22 | ( z - this.originZ + OFFSET_BIAS ) << 12 | y << 4 | level;
+    }
+
+    private int unpackX( int packed ) {
+        return ( packed >>> 22 ) - OFFSET_BIAS + this.originX;
+    }
+
+    private static int unpackY( int packed ) {
+        return ( packed >>> 4 ) & 0xFF;
+    }
+
+    private int unpackZ( int packed ) {
+        return ( ( packed >>> 12 ) & 0x3FF ) - OFFSET_BIAS + this.originZ;
+    }
+
+    private static int unpackLevel( int packed ) {
+        return packed & 0xF;
+    }
+
+    /**
+     * Access to the chunks in which light can be spread
+     */
+    interface ChunkSource {
+
+        /**
+         * Get a loaded chunk
+         *
+         * @param x The x-coordinate of the chunk
+         * @param z The z-coordinate of the chunk
+         * @return the chunk or null when it is not loaded
+         */
+        ChunkAdapter getChunk( int x, int z );
+
+    }
+
+    /**
+     * Growing first in first out queue of ints which starts over once it has been drained
+     */
+    private static final class IntQueue {
+
+        private int[] values = new int[1024];
+        private int head;
+        private int tail;
+
+        void add( int value ) {
+            if ( this.tail == this.values.length ) {
+                if ( this.head > 0 ) {
+                    System.arraycopy( this.values, this.head, this.values, 0, this.tail - this.head );
+                    this.tail -= this.head;
+                    this.head = 0;
+                }
+
+                if ( this.tail == this.values.length ) {
+                    this.values = Arrays.copyOf( this.values, this.values.length << 1 );
+                }
+            }
+
+            this.values[this.tail++] = value;
+        }
+
+        int poll() {
+            int value = this.values[this.head++];
+            if ( this.head == this.tail ) {
+                this.head = 0;
+                this.tail = 0;
+            }
+
+            return value;
+        }
+
+        int get( int index ) {
+            return this.values[this.head + index];
+        }
+
+        int size() {
+            return this.tail - this.head;
+        }
+
+        boolean isEmpty() {
+            return this.head == this.tail;
+        }
+
+        void clear() {
+            this.head = 0;
+            this.tail = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import java.util.Arrays;
+
+/**
+ * Stores the 4096 block ids of a chunk slice as indexes into a palette of the ids which are actually used.
+ * The indexes take 1, 2, 4 or 8 bits depending on the size of the palette and never cross the border
+ * of a long. A slice which only contains one block id needs no index storage at all.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+class PalettedBlockStorage {
+
+    private static final int SIZE = 4096;
+
+    private int[] palette;
+    private int paletteSize;
+    private int bitsPerEntry;
+    private long[] words;
+
+    // Entries per word are a power of two, so the index splits into word and position by shifting
+    private int wordShift;
+    private int entryMask;
+    private int bitsShift;
+
+    // Reverse lookup from block id to palette index, only used by the largest palettes
+    private short[] paletteIndex;
+
+    /**
+     * Create a new storage which contains one block id only
+     *
+     * @param value The block id of all blocks
+     */
+    PalettedBlockStorage( int value ) {
+        this.palette = new int[]{ value };
+        this.paletteSize = 1;
+    }
+
+    /**
+     * Create a new storage from 4096 block ids in slice order
+     *
+     * @param blocks The ids which should be stored
+     * @return the storage with the smallest palette which fits
+     */
+    static PalettedBlockStorage fromBytes( byte[] blocks ) {
+        PalettedBlockStorage storage = new PalettedBlockStorage( blocks[0] & 0xFF );
+
+        // Count the ids first so the storage gets its final size right away
+        boolean[] used = new boolean[256];
+        int distinct = 0;
+        for ( byte block : blocks ) {
+            if ( !used[block & 0xFF] ) {
+                used[block & 0xFF] = true;
+                distinct++;
+            }
+        }
+
+        if ( distinct > 1 ) {
+            storage.resize( bitsFor( distinct ) );
+            for ( int i = 0; i < SIZE; i++ ) {
+                storage.set( i, blocks[i] & 0xFF );
+            }
+        }
+
+        return storage;
+    }
+
+    /**
+     * Get the block id at the given index
+     *
+     * @param index The index of the block inside of the slice
+     * @return the id of the block
+     */
+    int get( int index ) {
+        if ( this.bitsPerEntry == 0 ) {
+            return this.palette[0];
+        }
+
+        long word = this.words[index >>> this.wordShift];
+        int shift = ( index & this.entryMask ) << this.bitsShift;
+        return this.palette[(int) ( word >>> shift ) & ( ( 1 << this.bitsPerEntry ) - 1 )];
+    }
+
+    /**
+     * Set the block id at the given index. The palette grows when the id has not been used yet.
+     *
+     * @param index The index of the block inside of the slice
+     * @param value The id of the block
+     */
+    void set( int index, int value ) {
+        int paletteEntry = this.indexOf( value );
+        if ( paletteEntry == -1 ) {
+            if ( this.paletteSize == ( 1 << this.bitsPerEntry ) ) {
+                this.resize( this.bitsPerEntry == 0 ? 1 : this.bitsPerEntry << 1 );
+            }
+
+            paletteEntry = this.addToPalette( value );
+        }
+
+        // A uniform storage only gets here for its own id and has no indexes to write
+        if ( this.bitsPerEntry == 0 ) {
+            return;
+        }
+
+        int wordIndex = index >>> this.wordShift;
+        int shift = ( index & this.entryMask ) << this.bitsShift;
+        long mask = ( ( 1L << this.bitsPerEntry ) - 1 ) << shift;
+        this.words[wordIndex] = ( this.words[wordIndex] & ~mask ) | ( (long) paletteEntry << shift );
+    }
+
+    /**
+     * Check if all blocks have the same id
+     *
+     * @return true when there is only one id in this storage
+     */
+    boolean isUniform() {
+        return this.bitsPerEntry == 0;
+    }
+
+    /**
+     * Check if all blocks are air. The palette never shrinks, so a storage which had other blocks once
+     * does not count as air anymore.
+     *
+     * @return true when all blocks are air
+     */
+    boolean isAllAir() {
+        return this.bitsPerEntry == 0 && this.palette[0] == 0;
+    }
+
+    /**
+     * Copy the ids of all blocks into the given array, one byte per block
+     *
+     * @param target The array to copy into
+     * @param offset The offset at which the ids should be put
+     */
+    void toBytes( byte[] target, int offset ) {
+        if ( this.bitsPerEntry == 0 ) {
+            Arrays.fill( target, offset, offset + SIZE, (byte) this.palette[0] );
+            return;
+        }
+
+        for ( int i = 0; i < SIZE; i++ ) {
+            target[offset + i] = (byte) this.get( i );
+        }
+    }
+
+    /**
+     * Get the amount of bits every index takes
+     *
+     * @return 0 for a single id, otherwise 1, 2, 4 or 8
+     */
+    int getBitsPerEntry() {
+        return this.bitsPerEntry;
+    }
+
+    /**
+     * Get the amount of block ids in the palette
+     *
+     * @return amount of palette entries
+     */
+    int getPaletteSize() {
+        return this.paletteSize;
+    }
+
+    /**
+     * Get a block id from the palette
+     *
+     * @param paletteIndex The index inside of the palette
+     * @return the block id
+     */
+    int getPaletteEntry( int paletteIndex ) {
+        return this.palette[paletteIndex];
+    }
+
+    private int indexOf( int value ) {
+        if ( this.paletteIndex != null ) {
+            return this.paletteIndex[value] - 1;
+        }
+
+        for ( int i = 0; i < this.paletteSize; i++ ) {
+            if ( this.palette[i] == value ) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int addToPalette( int value ) {
+        if ( this.paletteSize == this.palette.length ) {
+            this.palette = Arrays.copyOf( this.palette, Math.max( 2, this.paletteSize << 1 ) );
+        }
+
+        int entry = this.paletteSize++;
+        this.palette[entry] = value;
+        if ( this.paletteIndex != null ) {
+            this.paletteIndex[value] = (short) ( entry + 1 );
+        }
+
+        return entry;
+    }
+
+    private void resize( int bits ) {
+        int oldBits = this.bitsPerEntry;
+        long[] oldWords = this.words;
+
+        this.bitsPerEntry = bits;
+        this.bitsShift = Integer.numberOfTrailingZeros( bits );
+        this.wordShift = 6 - this.bitsShift;
+        this.entryMask = ( 1 << this.wordShift ) - 1;
+        this.words = new long[SIZE >> this.wordShift];
+
+        // Linear search gets too slow for large palettes
+        if ( bits == 8 && this.paletteIndex == null ) {
+            this.paletteIndex = new short[256];
+            for ( int i = 0; i < this.paletteSize; i++ ) {
+                this.paletteIndex[this.palette[i]] = (short) ( i + 1 );
+            }
+        }
+
+        // Without old indexes every block uses the first palette entry, which is index 0 anyway
+        if ( oldBits == 0 ) {
+            return;
+        }
+
+        int oldEntriesPerWord = 64 / oldBits;
+        int oldMask = ( 1 << oldBits ) - 1;
+        int entriesPerWord = 64 / bits;
+        for ( int i = 0; i < SIZE; i++ ) {
+            long entry = ( oldWords[i / oldEntriesPerWord] >>> ( ( i % oldEntriesPerWord ) * oldBits ) ) & oldMask;
+            this.words[i / entriesPerWord] |= entry << ( ( i % entriesPerWord ) * bits );
+        }
+    }
+
+    private static int bitsFor( int distinct ) {
+        int bits = 1;
+        while ( ( 1 << bits ) < distinct ) {
+            bits <<= 1;
+        }
+
+        return bits;
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.entity.Entity;
+import io.gomint.server.performance.PeformanceReport;
+import io.gomint.server.performance.Section;
+import io.gomint.server.util.LongList;
+import io.gomint.util.Numbers;
+import net.openhft.koloboke.collect.map.LongObjMap;
+import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Splits a world into square shards of {@link #SHARD_SIZE}x{@link #SHARD_SIZE} chunks and ticks them in a
+ * checkerboard pattern. Every tick is done in four phases, in each phase only shards which share the same
+ * parity on both axes are ticked. This means that shards running at the same time never touch each other
+ * and can be ticked in parallel.
+ * <p>
+ * Writes which would leave the shard that is currently ticked are deferred until all four phases are done.
+ * They are applied in shard order afterwards so a parallel run produces the same block state as a single
+ * threaded one.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class RegionShardScheduler {
+
+    /**
+     * Amount of chunks on each axis of a shard
+     */
+    public static final int SHARD_SIZE = 8;
+    private static final int SHARD_SHIFT = 3;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( RegionShardScheduler.class );
+
+    private final WorldAdapter world;
+    private final ExecutorService executorService;
+    private final PeformanceReport report;
+    private final ThreadLocal<Shard> currentShard = new ThreadLocal<>();
+
+    // Per tick data, reused to avoid allocation
+    private final LongObjMap<Shard> shards = HashLongObjMaps.newMutableMap();
+    private final List<List<Shard>> phases = new ArrayList<>( 4 );
+    private final LongList dueBlocks = new LongList();
+
+    /**
+     * Create a new shard scheduler for the given world
+     *
+     * @param world           The world which should be ticked by this scheduler
+     * @param executorService The executor which should tick shards in parallel, null to tick them on the calling thread
+     */
+    public RegionShardScheduler( WorldAdapter world, ExecutorService executorService ) {
+        this.world = world;
+        this.executorService = executorService;
+        this.report = world.getServer().getPerformanceReport();
+
+        for ( int i = 0; i < 4; i++ ) {
+            this.phases.add( new ArrayList<>() );
+        }
+    }
+
+    /**
+     * Get the shard coordinate for the given chunk coordinate
+     *
+     * @param v The chunk coordinate
+     * @return the shard coordinate
+     */
+    public static int fromChunkToShard( int v ) {
+        return v >> SHARD_SHIFT;
+    }
+
+    /**
+     * Runs random block ticks, scheduled block updates and entity updates for all shards of the world.
+     *
+     * @param currentTimeMS The current time in milliseconds. Used to reduce the number of calls to System#currentTimeMillis()
+     * @param dT            The delta from the full second which has been calculated in the last tick
+     */
+    public void tick( long currentTimeMS, float dT ) {
+        this.collectWork( currentTimeMS );
+
+        // Tick the four checkerboard phases
+        for ( List<Shard> phase : this.phases ) {
+            this.runPhase( phase, currentTimeMS, dT );
+        }
+
+        // Post phase: apply all writes which crossed a shard border in deterministic order
+        long sectionStart = this.report.begin();
+        List<Entity> movedEntities = new ArrayList<>();
+        List<Entity> deadEntities = new ArrayList<>();
+        for ( List<Shard> phase : this.phases ) {
+            for ( Shard shard : phase ) {
+                for ( Runnable runnable : shard.deferredWrites ) {
+                    // CHECKSTYLE:OFF
+                    try {
+                        runnable.run();
+                    } catch ( Exception e ) {
+                        LOGGER.error( "Error whilst applying deferred write of shard " + shard.x + ":" + shard.z, e );
+                    }
+                    // CHECKSTYLE:ON
+                }
+
+                for ( int i = 0; i < shard.deferredTickKeys.size(); i++ ) {
+                    this.world.getTickQueue().add( shard.deferredTickKeys.get( i ), shard.deferredTickPositions.get( i ) );
+                }
+
+                movedEntities.addAll( shard.movedEntities );
+                deadEntities.addAll( shard.deadEntities );
+            }
+        }
+
+        sectionStart = this.report.end( Section.BLOCK_UPDATES, sectionStart );
+
+        this.world.getEntityManager().finishTick( movedEntities, deadEntities );
+        this.report.end( Section.ENTITIES, sectionStart );
+
+        // Release references we don't need anymore
+        for ( List<Shard> phase : this.phases ) {
+            phase.clear();
+        }
+
+        this.shards.clear();
+    }
+
+    /**
+     * Check if a write at the given chunk crosses the border of the shard the calling thread is ticking.
+     *
+     * @param chunkX The x coordinate of the chunk which should be written to
+     * @param chunkZ The z coordinate of the chunk which should be written to
+     * @return true when the calling thread ticks a shard which does not own the chunk, false otherwise
+     */
+    public boolean isForeign( int chunkX, int chunkZ ) {
+        Shard shard = this.currentShard.get();
+        return shard != null && !shard.owns( chunkX, chunkZ );
+    }
+
+    /**
+     * Queue a write which crosses a shard border. It is run in the post phase after all shards have been ticked.
+     * When the calling thread is not ticking a shard the write is run directly.
+     *
+     * @param runnable The write operation which should be run
+     */
+    public void defer( Runnable runnable ) {
+        Shard shard = this.currentShard.get();
+        if ( shard == null ) {
+            runnable.run();
+            return;
+        }
+
+        shard.deferredWrites.add( runnable );
+    }
+
+    /**
+     * Schedule a block update. When called while a shard is ticking the update will be added to the tick
+     * queue in the post phase so the order of the queue does not depend on thread timing.
+     *
+     * @param key      The time at which the block should be updated
+     * @param position The packed position of the block
+     */
+    public void scheduleBlockUpdate( long key, long position ) {
+        Shard shard = this.currentShard.get();
+        if ( shard == null ) {
+            this.world.getTickQueue().add( key, position );
+            return;
+        }
+
+        shard.deferredTickKeys.add( key );
+        shard.deferredTickPositions.add( position );
+    }
+
+    private void collectWork( long currentTimeMS ) {
+        // Loaded chunks
+        long[] chunkHashes = this.world.chunkCache.getChunkHashes();
+        Arrays.sort( chunkHashes );
+        for ( long chunkHash : chunkHashes ) {
+            int x = (int) ( chunkHash >> 32 );
+            int z = (int) ( chunkHash ) + Integer.MIN_VALUE;
+            this.getShard( x, z ).chunkHashes.add( chunkHash );
+        }
+
+        // Scheduled block updates which are due
+        this.world.getTickQueue().drainUntil( currentTimeMS, this.dueBlocks );
+        for ( int i = 0; i < this.dueBlocks.size(); i++ ) {
+            long blockToUpdate = this.dueBlocks.get( i );
+            int blockX = (int) ( blockToUpdate >> 38 );
+            int blockZ = (int) ( blockToUpdate << 38 >> 38 );
+            this.getShard( CoordinateUtils.fromBlockToChunk( blockX ), CoordinateUtils.fromBlockToChunk( blockZ ) ).scheduledBlocks.add( blockToUpdate );
+        }
+
+        this.dueBlocks.clear();
+
+        // Entities
+        this.world.getEntityManager().startTick();
+        for ( Entity entity : this.world.getEntityManager().getEntities() ) {
+            int chunkX = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( entity.getPositionX() ) );
+            int chunkZ = CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( entity.getPositionZ() ) );
+            this.getShard( chunkX, chunkZ ).entities.add( entity );
+        }
+
+        // Sort shards into their phases in a stable order
+        long[] shardKeys = this.shards.keySet().toLongArray();
+        Arrays.sort( shardKeys );
+        for ( long shardKey : shardKeys ) {
+            Shard shard = this.shards.get( shardKey );
+            this.phases.get( ( ( shard.x & 1 ) << 1 ) | ( shard.z & 1 ) ).add( shard );
+        }
+    }
+
+    private Shard getShard( int chunkX, int chunkZ ) {
+        int shardX = fromChunkToShard( chunkX );
+        int shardZ = fromChunkToShard( chunkZ );
+        long shardKey = CoordinateUtils.toLong( shardX, shardZ );
+
+        Shard shard = this.shards.get( shardKey );
+        if ( shard == null ) {
+            shard = new Shard( shardX, shardZ );
+            this.shards.put( shardKey, shard );
+        }
+
+        return shard;
+    }
+
+    private void runPhase( List<Shard> phase, long currentTimeMS, float dT ) {
+        if ( phase.isEmpty() ) {
+            return;
+        }
+
+        if ( this.executorService == null || phase.size() == 1 ) {
+            for ( Shard shard : phase ) {
+                this.tickShard( shard, currentTimeMS, dT );
+            }
+
+            return;
+        }
+
+        final CountDownLatch barrier = new CountDownLatch( phase.size() - 1 );
+        for ( int i = 1; i < phase.size(); i++ ) {
+            final Shard shard = phase.get( i );
+            this.executorService.execute( new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        tickShard( shard, currentTimeMS, dT );
+                    } finally {
+                        barrier.countDown();
+                    }
+                }
+            } );
+        }
+
+        // The calling thread works on the first shard itself
+        this.tickShard( phase.get( 0 ), currentTimeMS, dT );
+
+        boolean interrupted = false;
+        while ( barrier.getCount() > 0 ) {
+            try {
+                barrier.await();
+            } catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void tickShard( Shard shard, long currentTimeMS, float dT ) {
+        this.currentShard.set( shard );
+
+        // CHECKSTYLE:OFF
+        try {
+            // Random blocks
+            long sectionStart = this.report.begin();
+            for ( int i = 0; i < shard.chunkHashes.size(); i++ ) {
+                this.world.tickRandomBlocks( shard.chunkHashes.get( i ), currentTimeMS, dT );
+            }
+            sectionStart = this.report.end( Section.RANDOM_TICKS, sectionStart );
+
+            // Scheduled blocks
+            for ( int i = 0; i < shard.scheduledBlocks.size(); i++ ) {
+                this.world.tickScheduledBlock( shard.scheduledBlocks.get( i ), currentTimeMS, dT );
+            }
+            sectionStart = this.report.end( Section.BLOCK_UPDATES, sectionStart );
+
+            // Entities
+            for ( Entity entity : shard.entities ) {
+                this.world.getEntityManager().updateEntity( entity, currentTimeMS, dT, shard.movedEntities, shard.deadEntities );
+            }
+            this.report.end( Section.ENTITIES, sectionStart );
+        } catch ( Throwable cause ) {
+            LOGGER.error( "Error whilst ticking shard " + shard.x + ":" + shard.z + " of world " + this.world.getWorldName(), cause );
+        } finally {
+            this.currentShard.remove();
+        }
+        // CHECKSTYLE:ON
+    }
+
+    private static final class Shard {
+
+        private final int x;
+        private final int z;
+
+        // Work for this tick
+        private final LongList chunkHashes = new LongList();
+        private final LongList scheduledBlocks = new LongList();
+        private final List<Entity> entities = new ArrayList<>();
+
+        // Results of this tick
+        private final List<Entity> movedEntities = new ArrayList<>();
+        private final List<Entity> deadEntities = new ArrayList<>();
+        private final List<Runnable> deferredWrites = new ArrayList<>();
+        private final LongList deferredTickKeys = new LongList();
+        private final LongList deferredTickPositions = new LongList();
+
+        private Shard( int x, int z ) {
+            this.x = x;
+            this.z = z;
+        }
+
+        private boolean owns( int chunkX, int chunkZ ) {
+            return fromChunkToShard( chunkX ) == this.x && fromChunkToShard( chunkZ ) == this.z;
+        }
+
+    }
+
+}
@@ -8,18 +8,18 @@
 package io.gomint.server.world;
 
 import io.gomint.server.util.LongList;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-
-import java.util.concurrent.locks.ReentrantLock;
+import io.gomint.server.util.TimingWheel;
 
 /**
+ * Scheduled block updates sorted by the time at which they are due. Adding is lock free and may happen from
+ * any thread, all other methods must be called from the thread which ticks the world.
+ *
  * @author geNAZt
  * @version 1.0
  */
 public class TickList {
 
-    private LongElement head;
+    private final TimingWheel<Void> wheel = new TimingWheel<>( 0 );
 
     /**
      * Add a new Element to the tasklist
@@ -27,53 +27,17 @@ public class TickList {
      * @param key     which should be used to sort the element
      * @param element which should be stored
      */
-    public synchronized void add( long key, long element ) {
-        // Check if we have a head state
-        if ( this.head == null ) {
-            this.head = new LongElement( key, null, new LongList() {{
-                add( element );
-            }} );
-        } else {
-            LongElement longElement = this.head;
-            LongElement previousLongElement = null;
-
-            // Check until we got a element with a key higher than us or we reached the end
-            while ( longElement != null && longElement.getKey() < key ) {
-                previousLongElement = longElement;
-                longElement = longElement.getNext();
-            }
-
-            // We are at the end of the chain
-            if ( longElement == null ) {
-                previousLongElement.setNext( new LongElement( key, null, new LongList() {{
-                    add( element );
-                }} ) );
-            } else {
-                // Check if we need to insert a element
-                if ( longElement.getKey() != key ) {
-                    LongElement newLongElement = new LongElement( key, longElement, new LongList() {{
-                        add( element );
-                    }} );
-
-                    if ( previousLongElement != null ) {
-                        previousLongElement.setNext( newLongElement );
-                    } else {
-                        // We added a new head
-                        this.head = newLongElement;
-                    }
-                } else {
-                    // We already have this key, append task
-                    longElement.getValues().add( element );
-                }
-            }
-        }
+    public void add( long key, long element ) {
+        this.wheel.offer( key, element, null );
     }
 
     /**
-     * @return
+     * Get the key of the next element
+     *
+     * @return the lowest key or {@link Long#MAX_VALUE} when the list is empty
      */
-    public synchronized long getNextTaskTime() {
-        return this.head != null ? this.head.getKey() : Long.MAX_VALUE;
+    public long getNextTaskTime() {
+        return this.wheel.nextKey();
     }
 
     /**
@@ -82,59 +46,32 @@ public class TickList {
      * @param key to check against
      * @return true when the next key is the key given, false when not
      */
-    public synchronized boolean checkNextKey( long key ) {
-        return this.head != null && this.head.getKey() == key && this.head.getValues().size() > 0;
+    public boolean checkNextKey( long key ) {
+        return this.wheel.nextKey() == key;
     }
 
     /**
      * Gets the next element in this List. The Element will be removed from the list
      *
-     * @return next element out of this list or null when there is none
+     * @return next element out of this list or {@link Long#MIN_VALUE} when there is none
      */
-    public synchronized long getNextElement() {
-        // There is nothing we can reach
-        if ( this.head == null ) return Long.MIN_VALUE;
-
-        // Check if we have a head node
-        while ( this.head != null && this.head.getValues().size() == 0 ) {
-            // This head is empty, remove it
-            this.head = this.head.getNext();
-        }
-
-        // This list has reached its end
-        if ( this.head == null ) return Long.MIN_VALUE;
-
-        // Extract the element
-        long element = this.head.getValues().remove();
-        while ( this.head.getValues().size() == 0 ) {
-            this.head = this.head.getNext();
-            if ( this.head == null ) break;
-        }
-
-        return element;
+    public long getNextElement() {
+        TimingWheel.Node<Void> node = this.wheel.poll();
+        return node != null ? node.getValue() : Long.MIN_VALUE;
     }
 
-    public int size( long key ) {
-        LongElement element = this.head;
-        if ( element == null ) {
-            return 0;
+    /**
+     * Remove all elements whose key is lower than the given time and add them to the target list in the
+     * order of their keys
+     *
+     * @param time   The first key which should stay in the list
+     * @param target The list to which the elements should be added
+     */
+    public void drainUntil( long time, LongList target ) {
+        TimingWheel.Node<Void> node;
+        while ( ( node = this.wheel.pollUntil( time ) ) != null ) {
+            target.add( node.getValue() );
         }
-
-        do {
-            if ( element.getKey() == key ) {
-                return element.getValues().size();
-            }
-        } while ( ( element = element.getNext() ) != null );
-
-        return 0;
-    }
-
-    @AllArgsConstructor
-    @Data
-    private final class LongElement {
-        private long key;
-        private LongElement next;
-        private LongList values;
     }
 
 }
@@ -14,24 +14,26 @@ import io.gomint.math.Location;
 import io.gomint.math.Vector;
 import io.gomint.server.GoMintServer;
 import io.gomint.server.async.Delegate;
-import io.gomint.server.async.Delegate2;
+import io.gomint.server.async.Future;
+import io.gomint.server.async.FutureListener;
 import io.gomint.server.entity.Entity;
 import io.gomint.server.entity.EntityPlayer;
+import io.gomint.server.entity.pathfinding.PathfindingScheduler;
 import io.gomint.server.network.packet.*;
-import io.gomint.server.util.BatchUtil;
+import io.gomint.server.performance.PeformanceReport;
+import io.gomint.server.performance.Section;
 import io.gomint.server.util.EnumConnectors;
+import io.gomint.server.world.block.BlockState;
 import io.gomint.server.world.block.Blocks;
 import io.gomint.util.Numbers;
-import io.gomint.world.Chunk;
 import io.gomint.world.Gamerule;
 import io.gomint.world.Sound;
 import io.gomint.world.World;
 import io.gomint.world.block.Block;
+import io.gomint.world.generator.ChunkGenerator;
 import lombok.Getter;
 import net.openhft.koloboke.collect.map.ObjObjMap;
 import net.openhft.koloboke.collect.map.hash.HashObjObjMaps;
-import net.openhft.koloboke.collect.set.ByteSet;
-import net.openhft.koloboke.collect.set.hash.HashByteSets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -47,25 +49,6 @@ import java.util.concurrent.*;
 public abstract class WorldAdapter implements World {
 
     // CHECKSTYLE:OFF
-    private static final ByteSet CAN_TICK_RANDOM = HashByteSets.newImmutableSet( new byte[]{
-            (byte) Blocks.GRASS_BLOCK.getBlockId(),
-            (byte) Blocks.FARMLAND.getBlockId(),
-            (byte) Blocks.MYCELIUM.getBlockId(),
-
-            (byte) Blocks.SAPLING.getBlockId(),
-
-            (byte) Blocks.LEAVES.getBlockId(),
-            (byte) Blocks.ACACIA_LEAVES.getBlockId(),
-
-            (byte) Blocks.TOP_SNOW.getBlockId(),
-            (byte) Blocks.ICE.getBlockId(),
-            (byte) Blocks.LAVA.getBlockId(),
-            (byte) Blocks.STATIONARY_LAVA.getBlockId(),
-    } );
-
-    // Calculators for light
-    @Getter private static final BlocklightCalculator blockLightCalculator = new BlocklightCalculator();
-
     // Shared objects
     @Getter
     protected final GoMintServer server;
@@ -82,17 +65,35 @@ public abstract class WorldAdapter implements World {
     protected ChunkCache chunkCache;
 
     // Entity Handling
+    @Getter
     protected EntityManager entityManager;
 
     // Block ticking
     @Getter
     protected TickList tickQueue = new TickList();
-    private int randomUpdateNumber = ThreadLocalRandom.current().nextInt();
+    private int randomUpdateNumber;
+    private long currentTick;
+    private RegionShardScheduler shardScheduler;
+
+    // Performance report slot, registered on the first tick since the name is not known before
+    private int reportSlot = -1;
+    private boolean reportRegistered;
 
     // I/O
-    private boolean asyncWorkerRunning;
-    private BlockingQueue<AsyncChunkTask> asyncChunkTasks;
-    private Queue<AsyncChunkPackageTask> chunkPackageTasks;
+    @Getter
+    private final ChunkIOScheduler chunkIO;
+
+    // Generation, null when the world has no generator
+    @Getter
+    private ChunkGenerationScheduler generation;
+
+    // Light
+    @Getter
+    private final LightEngine lightEngine;
+
+    // Pathfinding
+    @Getter
+    private final PathfindingScheduler pathfindingScheduler;
 
     // Player handling
     private ObjObjMap<EntityPlayer, ChunkAdapter> players;
@@ -103,9 +104,48 @@ public abstract class WorldAdapter implements World {
         this.worldDir = worldDir;
         this.entityManager = new EntityManager( this );
         this.players = HashObjObjMaps.newMutableMap();
-        this.asyncChunkTasks = new LinkedBlockingQueue<>();
-        this.chunkPackageTasks = new ConcurrentLinkedQueue<>();
-        this.startAsyncWorker( server.getExecutorService() );
+        this.chunkIO = new ChunkIOScheduler( worldDir.getName(), new ChunkIOScheduler.Backend() {
+            @Override
+            public ChunkAdapter getCachedChunk( int x, int z ) {
+                return WorldAdapter.this.getCachedChunk( x, z );
+            }
+
+            @Override
+            public ChunkAdapter loadChunk( int x, int z ) {
+                return WorldAdapter.this.loadChunk( x, z, false );
+            }
+
+            @Override
+            public Future<ChunkAdapter> generateChunk( int x, int z, int priority ) {
+                ChunkGenerationScheduler generation = WorldAdapter.this.generation;
+                return generation != null ? generation.generate( x, z, priority ) : null;
+            }
+
+            @Override
+            public void saveChunk( ChunkAdapter chunk ) {
+                WorldAdapter.this.saveChunk( chunk );
+            }
+
+            @Override
+            public void flush() {
+                WorldAdapter.this.flushSaves();
+            }
+
+            @Override
+            public void packageChunk( ChunkAdapter chunk ) {
+                PeformanceReport report = WorldAdapter.this.server.getPerformanceReport();
+                long start = report.begin();
+                chunk.createCachedPacket();
+                report.end( Section.PACKAGING, start );
+            }
+        }, server.getExecutorService(), server.getServerConfig().getChunkIOThreads() );
+        this.lightEngine = new LightEngine( new LightEngine.ChunkSource() {
+            @Override
+            public ChunkAdapter getChunk( int x, int z ) {
+                return WorldAdapter.this.chunkCache.getChunk( x, z );
+            }
+        } );
+        this.pathfindingScheduler = new PathfindingScheduler( worldDir.getName(), server.getExecutorService(), server.getServerConfig().getPathfindingThreads() );
         this.initGamerules();
     }
     // CHECKSTYLE:ON
@@ -186,6 +226,28 @@ public abstract class WorldAdapter implements World {
         return chunk.getBlockAt( x & 0xF, y, z & 0xF );
     }
 
+    /**
+     * Get the state of the block at the given position. This does not create a block instance and can be
+     * used from any thread which may access the chunk.
+     *
+     * @param x The x coordinate of the block
+     * @param y The y coordinate of the block
+     * @param z The z coordinate of the block
+     * @return the state of the block or null when the chunk is not loaded
+     */
+    public BlockState getBlockState( int x, int y, int z ) {
+        if ( y < 0 || y > 255 ) {
+            return Blocks.getState( 0, 0 );
+        }
+
+        ChunkAdapter chunk = this.chunkCache.getChunk( CoordinateUtils.fromBlockToChunk( x ), CoordinateUtils.fromBlockToChunk( z ) );
+        if ( chunk == null ) {
+            return null;
+        }
+
+        return chunk.getBlockState( x & 0xF, y, z & 0xF );
+    }
+
     /**
      * Set the block light of the block given by the vector
      *
@@ -197,6 +259,17 @@ public abstract class WorldAdapter implements World {
         int y = (int) vector.getY();
         int z = (int) vector.getZ();
 
+        if ( this.isForeignBlockWrite( x, z ) ) {
+            this.deferBlockWrite( new Runnable() {
+                @Override
+                public void run() {
+                    setBlockLight( new Vector( x, y, z ), lightLevel );
+                }
+            } );
+
+            return;
+        }
+
         final ChunkAdapter chunk = this.getChunk( CoordinateUtils.fromBlockToChunk( x ), CoordinateUtils.fromBlockToChunk( z ) );
         if ( chunk == null ) {
             // TODO: Generate world
@@ -217,6 +290,17 @@ public abstract class WorldAdapter implements World {
         int y = (int) vector.getY();
         int z = (int) vector.getZ();
 
+        if ( this.isForeignBlockWrite( x, z ) ) {
+            this.deferBlockWrite( new Runnable() {
+                @Override
+                public void run() {
+                    setBlockId( new Vector( x, y, z ), blockId );
+                }
+            } );
+
+            return;
+        }
+
         final ChunkAdapter chunk = this.getChunk( CoordinateUtils.fromBlockToChunk( x ), CoordinateUtils.fromBlockToChunk( z ) );
         if ( chunk == null ) {
             // TODO: Generate world
@@ -224,6 +308,13 @@ public abstract class WorldAdapter implements World {
         }
 
         chunk.setBlock( x & 0xF, y, z & 0xF, blockId );
+        this.lightEngine.blockChanged( x, y, z );
+        this.wakeEntitiesAround( x, y, z );
+    }
+
+    private void wakeEntitiesAround( int x, int y, int z ) {
+        // Resting entities next to the block may need to fall or get pushed out of it
+        this.entityManager.wakeEntities( new AxisAlignedBB( x - 1, y - 1, z - 1, x + 2, y + 2, z + 2 ), null );
     }
 
     /**
@@ -237,6 +328,17 @@ public abstract class WorldAdapter implements World {
         int y = (int) vector.getY();
         int z = (int) vector.getZ();
 
+        if ( this.isForeignBlockWrite( x, z ) ) {
+            this.deferBlockWrite( new Runnable() {
+                @Override
+                public void run() {
+                    setBlockData( new Vector( x, y, z ), data );
+                }
+            } );
+
+            return;
+        }
+
         final ChunkAdapter chunk = this.getChunk( CoordinateUtils.fromBlockToChunk( x ), CoordinateUtils.fromBlockToChunk( z ) );
         if ( chunk == null ) {
             // TODO: Generate world
@@ -244,6 +346,7 @@ public abstract class WorldAdapter implements World {
         }
 
         chunk.setData( x & 0xF, y, z & 0xF, data );
+        this.wakeEntitiesAround( x, y, z );
     }
 
     private void initGamerules() {
@@ -270,112 +373,161 @@ public abstract class WorldAdapter implements World {
      * @param dT            The delta from the full second which has been calculated in the last tick
      */
     public void update( long currentTimeMS, float dT ) {
+        this.currentTick++;
+
+        PeformanceReport report = this.server.getPerformanceReport();
+        if ( !this.reportRegistered ) {
+            this.reportSlot = report.registerWorld( this.getWorldName() );
+            this.reportRegistered = true;
+        }
+
+        long worldStart = report.begin();
+
         // ---------------------------------------
         // Tick the chunk cache to get rid of Chunks
+        long sectionStart = worldStart;
         this.chunkCache.tick( currentTimeMS );
+        report.end( Section.CHUNK_CACHE, sectionStart );
+
+        // ---------------------------------------
+        // Update all blocks and entities, shard by shard
+        if ( this.shardScheduler == null ) {
+            this.shardScheduler = new RegionShardScheduler( this, this.server.getWorldManager().getShardExecutor() );
+        }
+
+        this.shardScheduler.tick( currentTimeMS, dT );
+
+        // ---------------------------------------
+        // Update the light around all blocks which have been changed in this tick
+        sectionStart = report.begin();
+        this.lightEngine.processUpdates();
+        sectionStart = report.end( Section.LIGHT, sectionStart );
 
         // ---------------------------------------
-        // Update all blocks
-
-        // Random blocks
-        for ( long chunkHash : this.chunkCache.getChunkHashes() ) {
-            int x = (int) ( chunkHash >> 32 );
-            int z = (int) ( chunkHash ) + Integer.MIN_VALUE;
-
-            ChunkAdapter chunkAdapter = chunkCache.getChunk( x, z );
-            if ( chunkAdapter != null ) {
-                for ( ChunkSlice chunkSlice : chunkAdapter.getChunkSlices() ) {
-                    if ( chunkSlice != null ) {
-                        WorldAdapter.this.randomUpdateNumber = WorldAdapter.this.randomUpdateNumber * 3 + 1013904223;
-                        int blockHash = WorldAdapter.this.randomUpdateNumber >> 2;
-
-                        for ( int i = 0; i < 3; ++i, blockHash >>= 10 ) {
-                            int blockX = blockHash & 0x0f;
-                            int blockY = blockHash >> 8 & 0x0f;
-                            int blockZ = blockHash >> 16 & 0x0f;
-
-                            byte blockId = chunkSlice.getBlock( blockX, blockY, blockZ );
-                            if ( CAN_TICK_RANDOM.contains( blockId ) ) {
-                                Block block = chunkSlice.getBlockInstance( blockX, blockY, blockZ );
-                                if ( block instanceof io.gomint.server.world.block.Block ) {
-                                    long next = ( (io.gomint.server.world.block.Block) block ).update( UpdateReason.RANDOM, currentTimeMS, dT );
-                                    if ( next > currentTimeMS ) {
-                                        Location location = block.getLocation();
-                                        WorldAdapter.this.tickQueue.add( next, CoordinateUtils.toLong( (int) location.getX(), (int) location.getY(), (int) location.getZ() ) );
-                                    }
-                                }
+        // Hand out chunks which have been loaded and packaged by the I/O workers
+        this.chunkIO.resolveCompletedRequests();
+        report.end( Section.CHUNK_CACHE, sectionStart );
+
+        report.endWorld( this.reportSlot, worldStart );
+    }
+
+    /**
+     * Seed the random block ticks from the seed of this world so the same world always ticks the same blocks
+     *
+     * @param seed The seed of this world
+     */
+    protected void seedRandomTicks( long seed ) {
+        this.randomUpdateNumber = (int) ( seed ^ ( seed >>> 32 ) );
+    }
+
+    /**
+     * Does the random block updates for the chunk with the given hash. The blocks which get selected only
+     * depend on the world, the tick and the chunk so it does not matter in which order chunks are ticked.
+     *
+     * @param chunkHash     The hash of the chunk which should be ticked
+     * @param currentTimeMS The current time in milliseconds
+     * @param dT            The delta from the full second which has been calculated in the last tick
+     */
+    void tickRandomBlocks( long chunkHash, long currentTimeMS, float dT ) {
+        int x = (int) ( chunkHash >> 32 );
+        int z = (int) ( chunkHash ) + Integer.MIN_VALUE;
+
+        ChunkAdapter chunkAdapter = this.chunkCache.getChunk( x, z );
+        if ( chunkAdapter == null ) {
+            return;
+        }
+
+        int randomNumber = this.randomUpdateNumber ^ (int) ( chunkHash ^ ( chunkHash >>> 32 ) ) ^ (int) ( this.currentTick * 0x9E3779B9L );
+        ChunkSlice[] chunkSlices = chunkAdapter.getChunkSlices();
+        for ( int sectionY = 0; sectionY < chunkSlices.length; sectionY++ ) {
+            ChunkSlice chunkSlice = chunkSlices[sectionY];
+            if ( chunkSlice != null ) {
+                randomNumber = randomNumber * 3 + 1013904223;
+                int blockHash = randomNumber >> 2;
+
+                for ( int i = 0; i < 3; ++i, blockHash >>= 10 ) {
+                    int blockX = blockHash & 0x0f;
+                    int blockY = blockHash >> 8 & 0x0f;
+                    int blockZ = blockHash >> 16 & 0x0f;
+
+                    // Only blocks which really get ticked need an instance
+                    if ( chunkSlice.getBlockState( blockX, blockY, blockZ ).isRandomTicking() ) {
+                        Block block = chunkSlice.getBlockInstance( blockX, blockY, blockZ );
+                        if ( block instanceof io.gomint.server.world.block.Block ) {
+                            long next = ( (io.gomint.server.world.block.Block) block ).update( UpdateReason.RANDOM, currentTimeMS, dT );
+                            if ( next > currentTimeMS ) {
+                                this.scheduleBlockUpdate( next, CoordinateUtils.toLong( ( x << 4 ) + blockX, ( sectionY << 4 ) + blockY, ( z << 4 ) + blockZ ) );
                             }
                         }
                     }
                 }
             }
         }
+    }
 
-        // Scheduled blocks
-        while ( this.tickQueue.getNextTaskTime() < currentTimeMS ) {
-            long blockToUpdate = this.tickQueue.getNextElement();
-            if ( blockToUpdate == Long.MIN_VALUE ) {
-                break;
-            }
+    /**
+     * Runs a scheduled update for the block at the given packed position.
+     *
+     * @param blockToUpdate The packed position of the block
+     * @param currentTimeMS The current time in milliseconds
+     * @param dT            The delta from the full second which has been calculated in the last tick
+     */
+    void tickScheduledBlock( long blockToUpdate, long currentTimeMS, float dT ) {
+        // Get the block
+        Block block = getBlockAt( CoordinateUtils.fromLong( blockToUpdate ) );
+        if ( block != null ) {
+            // CHECKSTYLE:OFF
+            try {
+                io.gomint.server.world.block.Block block1 = (io.gomint.server.world.block.Block) block;
+                long next = block1.update( UpdateReason.SCHEDULED, currentTimeMS, dT );
 
-            // Get the block
-            Block block = getBlockAt( CoordinateUtils.fromLong( blockToUpdate ) );
-            if ( block != null ) {
-                // CHECKSTYLE:OFF
-                try {
-                    io.gomint.server.world.block.Block block1 = (io.gomint.server.world.block.Block) block;
-                    long next = block1.update( UpdateReason.SCHEDULED, currentTimeMS, dT );
-
-                    // Reschedule if needed
-                    if ( next > currentTimeMS ) {
-                        this.tickQueue.add( next, blockToUpdate );
-                    }
-                } catch ( Exception e ) {
-                    logger.error( "Error whilst ticking block @ " + blockToUpdate, e );
+                // Reschedule if needed
+                if ( next > currentTimeMS ) {
+                    this.scheduleBlockUpdate( next, blockToUpdate );
                 }
-                // CHECKSTYLE:ON
+            } catch ( Exception e ) {
+                logger.error( "Error whilst ticking block @ " + blockToUpdate, e );
             }
+            // CHECKSTYLE:ON
         }
+    }
 
-        // ---------------------------------------
-        // Update all entities
-        this.entityManager.update( currentTimeMS, dT );
-
-        // ---------------------------------------
-        // Chunk packages are done in main thread in order to be able to
-        // cache packets without possibly getting into race conditions:
-        while ( !this.chunkPackageTasks.isEmpty() ) {
-            // One chunk per tick at max:
-            AsyncChunkPackageTask task = this.chunkPackageTasks.poll();
-            ChunkAdapter chunk = this.getChunk( task.getX(), task.getZ() );
-            if ( chunk == null ) {
-                final Object lock = new Object();
-
-                this.getOrLoadChunk( task.getX(), task.getZ(), false, new Delegate<ChunkAdapter>() {
-                    @Override
-                    public void invoke( ChunkAdapter arg ) {
-                        synchronized ( lock ) {
-                            packageChunk( arg, task.getCallback() );
-                            lock.notifyAll();
-                        }
-                    }
-                } );
-
-                // Wait until the chunk is loaded
-                synchronized ( lock ) {
-                    try {
-                        lock.wait();
-                    } catch ( InterruptedException e ) {
-                        // Ignored .-.
-                    }
-                }
-            } else {
-                packageChunk( chunk, task.getCallback() );
-            }
+    /**
+     * Schedules a block update at the given time. If this is called while the world is ticking the update
+     * will be queued once the current tick phase has been completed.
+     *
+     * @param time     The time at which the block should be updated
+     * @param position The packed position of the block
+     */
+    public void scheduleBlockUpdate( long time, long position ) {
+        if ( this.shardScheduler != null ) {
+            this.shardScheduler.scheduleBlockUpdate( time, position );
+        } else {
+            this.tickQueue.add( time, position );
         }
+    }
 
-        // ---------------------------------------
-        // Perform regular updates:
+    /**
+     * Check if a write to the given block needs to wait until the current shard tick has been completed. This
+     * is the case when the calling thread ticks a shard and the block is outside of it.
+     *
+     * @param x The x coordinate of the block which should be written
+     * @param z The z coordinate of the block which should be written
+     * @return true when the write needs to be {@link #deferBlockWrite(Runnable) deferred}, false when not
+     */
+    public boolean isForeignBlockWrite( int x, int z ) {
+        return this.shardScheduler != null &&
+                this.shardScheduler.isForeign( CoordinateUtils.fromBlockToChunk( x ), CoordinateUtils.fromBlockToChunk( z ) );
+    }
+
+    /**
+     * Queue a write operation which crosses the border of the shard which is currently ticked. It will be run
+     * after all shards have been ticked.
+     *
+     * @param runnable The write operation
+     */
+    public void deferBlockWrite( Runnable runnable ) {
+        this.shardScheduler.defer( runnable );
     }
 
     // ==================================== ENTITY MANAGEMENT ==================================== //
@@ -387,22 +539,8 @@ public abstract class WorldAdapter implements World {
      * @param player The player entity to add to the world
      */
     public void addPlayer( EntityPlayer player ) {
-        // Schedule sending spawn region chunks:
-        final int minBlockX = (int) ( this.spawn.getX() - 64 );
-        final int minBlockZ = (int) ( this.spawn.getZ() - 64 );
-        final int maxBlockX = (int) ( this.spawn.getX() + 64 );
-        final int maxBlockZ = (int) ( this.spawn.getZ() + 64 );
-
-        final int minChunkX = CoordinateUtils.fromBlockToChunk( minBlockX );
-        final int minChunkZ = CoordinateUtils.fromBlockToChunk( minBlockZ );
-        final int maxChunkX = CoordinateUtils.fromBlockToChunk( maxBlockX );
-        final int maxChunkZ = CoordinateUtils.fromBlockToChunk( maxBlockZ );
-
-        for ( int i = minChunkZ; i <= maxChunkZ; ++i ) {
-            for ( int j = minChunkX; j <= maxChunkX; ++j ) {
-                this.sendChunk( j, i, player, true );
-            }
-        }
+        // Stream the chunks under the spawn point first, the player gets spawned once he has them
+        player.getConnection().getChunkTracker().prepareSpawn( player );
 
         // Spawn for others
         spawnEntityAt( player, player.getPositionX(), player.getPositionY(), player.getPositionZ(), player.getYaw(), player.getPitch() );
@@ -418,6 +556,9 @@ public abstract class WorldAdapter implements World {
         if ( chunkAdapter != null ) {
             chunkAdapter.removePlayer( player );
         }
+
+        // Stop broadcasting into this world
+        this.entityManager.getSpatialIndex().removeInterest( player );
     }
 
     /**
@@ -491,57 +632,96 @@ public abstract class WorldAdapter implements World {
      * @param callback The callback to be invoked once the chunk is available
      */
     public void getOrLoadChunk( int x, int z, boolean generate, Delegate<ChunkAdapter> callback ) {
+        this.getOrLoadChunk( x, z, generate, ChunkIOScheduler.PRIORITY_BACKGROUND, callback );
+    }
+
+    /**
+     * Gets a chunk asynchronously. If the chunk needs to be loaded the request gets ordered by the given
+     * priority against other requests.
+     *
+     * @param x        The x-coordinate of the chunk
+     * @param z        The z-coordinate of the chunk
+     * @param generate Whether or not to generate teh chunk if it does not yet exist
+     * @param priority The distance in chunks to the player who wants this chunk, lower is loaded first
+     * @param callback The callback to be invoked once the chunk is available
+     */
+    public void getOrLoadChunk( int x, int z, boolean generate, int priority, Delegate<ChunkAdapter> callback ) {
         // Early out:
-        ChunkAdapter chunk = this.chunkCache.getChunk( x, z );
+        ChunkAdapter chunk = this.getCachedChunk( x, z );
         if ( chunk != null ) {
             callback.invoke( chunk );
             return;
         }
 
         // Schedule this chunk for asynchronous loading:
-        AsyncChunkLoadTask task = new AsyncChunkLoadTask( x, z, generate, callback );
-        this.asyncChunkTasks.offer( task );
+        this.chunkIO.load( x, z, generate, priority, callback );
     }
 
     /**
-     * Send a chunk of this world to the client
+     * Get a chunk which is in memory. This also takes back chunks which have been unloaded but still wait
+     * for their save.
+     *
+     * @param x The x-coordinate of the chunk
+     * @param z The z-coordinate of the chunk
+     * @return the chunk or null when it needs to be loaded
+     */
+    protected ChunkAdapter getCachedChunk( int x, int z ) {
+        ChunkAdapter chunk = this.chunkCache.getChunk( x, z );
+        if ( chunk == null ) {
+            chunk = this.chunkIO.reclaim( x, z );
+            if ( chunk != null ) {
+                this.chunkCache.putChunk( chunk );
+            }
+        }
+
+        return chunk;
+    }
+
+    /**
+     * Send a chunk of this world to the client. The chunk is loaded and packaged by the I/O workers, once it is
+     * ready it is handed to the chunk tracker of the player which sends it during one of the next network ticks.
      *
      * @param x      The x-coordinate of the chunk
      * @param z      The z-coordinate of the chunk
      * @param player The player we want to send the chunk to
-     * @param sync   Force sync chunk loading
      */
-    public void sendChunk( int x, int z, EntityPlayer player, boolean sync ) {
-        Delegate2<Long, ChunkAdapter> sendDelegate = new Delegate2<Long, ChunkAdapter>() {
+    public void sendChunk( int x, int z, EntityPlayer player ) {
+        // Chunks closer to the player are needed first
+        int priority = Math.max(
+                Math.abs( x - CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( player.getPositionX() ) ) ),
+                Math.abs( z - CoordinateUtils.fromBlockToChunk( Numbers.fastFloor( player.getPositionZ() ) ) ) );
+
+        this.sendChunk( x, z, player, priority );
+    }
+
+    /**
+     * Send a chunk of this world to the client with the given priority for loading and packaging it.
+     *
+     * @param x        The x-coordinate of the chunk
+     * @param z        The z-coordinate of the chunk
+     * @param player   The player we want to send the chunk to
+     * @param priority The distance in chunks to the player or {@link ChunkIOScheduler#PRIORITY_SPAWN}, lower is loaded first
+     */
+    public void sendChunk( int x, int z, EntityPlayer player, int priority ) {
+        this.chunkIO.requestPackagedChunk( x, z, true, priority ).addFutureListener( new FutureListener<Future<ChunkAdapter>>() {
             @Override
-            public void invoke( Long chunkHash, ChunkAdapter chunk ) {
-                player.getConnection().sendWorldChunk( chunkHash, chunk.cachedPacket.get() );
-
-                // Send all spawned entities
-                Collection<io.gomint.entity.Entity> entities = chunk.getEntities();
-                if ( entities != null ) {
-                    for ( io.gomint.entity.Entity entity : entities ) {
-                        if ( entity instanceof Entity ) {
-                            player.getConnection().addToSendQueue( ( (Entity) entity ).createSpawnPacket() );
-                        }
-                    }
+            public void onFutureResolved( Future<ChunkAdapter> future ) {
+                ChunkAdapter chunk = future.tryGet();
+                if ( chunk == null ) {
+                    player.getConnection().getChunkTracker().onChunkFailed( x, z );
+                    return;
                 }
-            }
-        };
 
-        if ( !sync ) {
-            this.getOrLoadChunk( x, z, true, new Delegate<ChunkAdapter>() {
-                @Override
-                public void invoke( ChunkAdapter chunk ) {
-                    chunk.packageChunk( sendDelegate );
+                // The soft reference may have been cleared since the chunk has been packaged
+                PacketBatch batch = chunk.getCachedPacket();
+                if ( batch == null ) {
+                    sendChunk( x, z, player, priority );
+                    return;
                 }
-            } );
-        } else {
-            ChunkAdapter chunkAdapter = this.loadChunk( x, z, true );
-            if ( chunkAdapter.dirty || chunkAdapter.cachedPacket == null || chunkAdapter.cachedPacket.get() == null ) {
-                packageChunk( chunkAdapter, sendDelegate );
+
+                player.getConnection().getChunkTracker().onChunkReady( chunk, batch );
             }
-        }
+        } );
     }
 
     /**
@@ -554,7 +734,7 @@ public abstract class WorldAdapter implements World {
      */
     public void movePlayerToChunk( int x, int z, EntityPlayer player ) {
         ChunkAdapter oldChunk = this.players.get( player );
-        getOrLoadChunk( x, z, true, new Delegate<ChunkAdapter>() {
+        getOrLoadChunk( x, z, true, 0, new Delegate<ChunkAdapter>() {
             @Override
             public void invoke( ChunkAdapter newChunk ) {
                 if ( oldChunk == null ) {
@@ -593,7 +773,9 @@ public abstract class WorldAdapter implements World {
     }
 
     /**
-     * Load a Chunk from the underlying implementation
+     * Load a Chunk from the underlying implementation. This reads the disk and is only called by the chunk I/O
+     * workers and while the spawn region is prepared, the thread which ticks the world uses
+     * {@link #getOrLoadChunk(int, int, boolean, Delegate)} instead.
      *
      * @param x        The x coordinate of the chunk we want to load
      * @param z        The x coordinate of the chunk we want to load
@@ -611,110 +793,120 @@ public abstract class WorldAdapter implements World {
     protected abstract void saveChunk( ChunkAdapter chunk );
 
     /**
-     * Saves the given chunk to its region file asynchronously.
-     *
-     * @param chunk The chunk to save
+     * Write out saves which have been collected by {@link #saveChunk(ChunkAdapter)} but have not been written
+     * yet. Formats which write every chunk directly don't need to do anything here.
      */
-    public void saveChunkAsynchronously( ChunkAdapter chunk ) {
-        AsyncChunkSaveTask task = new AsyncChunkSaveTask( chunk );
-        this.asyncChunkTasks.add( task );
+    protected void flushSaves() {
+
     }
 
     /**
-     * Notifies the world that the given chunk was told to package itself. This will effectively
-     * produce an asynchronous chunk task which will be completed by the asynchronous worker thread.
-     *
-     * @param x        The x coordinate of the chunk we want to package
-     * @param z        The z coordinate of the chunk we want to package
-     * @param callback The callback to be invoked once the chunk is packaged
+     * Close the files of this world. This is called once the chunk I/O workers have written all saves, nothing may
+     * be loaded or saved afterwards.
      */
-    void notifyPackageChunk( int x, int z, Delegate2<Long, ChunkAdapter> callback ) {
-        AsyncChunkPackageTask task = new AsyncChunkPackageTask( x, z, callback );
-        this.chunkPackageTasks.add( task );
+    protected void closeStorage() {
+
     }
 
     /**
-     * Package a Chunk into a ChunkData Packet for Raknet. This is done to enable caching of those packets.
+     * Check if a chunk has been written to the storage of this world. Chunks which are only in memory don't
+     * need to be found here.
      *
-     * @param chunk    The chunk which should be packed
-     * @param callback The callback which should be invoked when the packing has been done
+     * @param x The x coordinate of the chunk
+     * @param z The z coordinate of the chunk
+     * @return true when the chunk is stored
      */
-    void packageChunk( ChunkAdapter chunk, Delegate2<Long, ChunkAdapter> callback ) {
-        PacketWorldChunk packet = chunk.createPackagedData();
-        PacketBatch batch = BatchUtil.batch( null, packet );
-
-        chunk.setCachedPacket( batch );
-        callback.invoke( CoordinateUtils.toLong( chunk.getX(), chunk.getZ() ), chunk );
-    }
-
-    // ==================================== NETWORKING HELPERS ==================================== //
+    protected abstract boolean isChunkStored( int x, int z );
 
     /**
-     * Broadcasts the given packet to all players in this world.
+     * Create an empty chunk in the format of this world, used as a base for generation
      *
-     * @param reliability     The reliability to send the packet with
-     * @param orderingChannel The ordering channel to send the packet on
-     * @param packet          The packet to send
+     * @param x The x coordinate of the chunk
+     * @param z The z coordinate of the chunk
+     * @return the empty chunk
      */
-    public void broadcast( PacketReliability reliability, int orderingChannel, Packet packet ) {
-        // Send directly:
-        for ( EntityPlayer player : this.players.keySet() ) {
-            player.getConnection().send( reliability, orderingChannel, packet );
-        }
-    }
-
-    // ==================================== ASYNCHRONOUS WORKER ==================================== //
+    protected abstract ChunkAdapter createChunk( int x, int z );
 
     /**
-     * Starts the asynchronous worker thread used by the world to perform I/O operations for chunks.
+     * Set the generator which creates chunks that don't exist yet and start its workers. Worlds without
+     * a generator can't grow beyond the chunks they have stored.
+     *
+     * @param generator The generator of this world
      */
-    private void startAsyncWorker( ExecutorService executorService ) {
-        executorService.execute( new Runnable() {
+    protected void setGenerator( ChunkGenerator generator ) {
+        this.generation = new ChunkGenerationScheduler( this.worldDir.getName(), new ChunkGenerationScheduler.Backend() {
             @Override
-            public void run() {
-                Thread.currentThread().setName( Thread.currentThread().getName() + " [Async World I/O: " + WorldAdapter.this.getWorldName() + "]" );
-                WorldAdapter.this.asyncWorkerLoop();
+            public boolean chunkExists( int x, int z ) {
+                return WorldAdapter.this.chunkCache.hasChunk( x, z ) ||
+                        WorldAdapter.this.chunkIO.isSavePending( x, z ) ||
+                        WorldAdapter.this.isChunkStored( x, z );
             }
-        } );
 
-        this.asyncWorkerRunning = true;
+            @Override
+            public boolean isChunkLoaded( int x, int z ) {
+                return WorldAdapter.this.chunkCache.hasChunk( x, z );
+            }
+
+            @Override
+            public ChunkAdapter createChunk( int x, int z ) {
+                return WorldAdapter.this.createChunk( x, z );
+            }
+
+            @Override
+            public void chunkGenerated( ChunkAdapter chunk ) {
+                WorldAdapter.this.chunkCache.putChunk( chunk );
+
+                // Generated chunks are written right away, so they don't depend on the next unload
+                chunk.setLastSavedTimestamp( System.currentTimeMillis() );
+                WorldAdapter.this.chunkIO.save( chunk );
+            }
+        }, generator, this.server.getExecutorService(), this.server.getServerConfig().getChunkGenerationThreads() );
     }
 
     /**
-     * Main loop of the world's asynchronous worker thread.
+     * Generate a chunk and wait for it. This is meant to be used by {@link #loadChunk(int, int, boolean)} while the
+     * spawn region is prepared, it must not be used while the world ticks. Everything else generates through the
+     * I/O scheduler without blocking.
+     *
+     * @param x The x coordinate of the chunk
+     * @param z The z coordinate of the chunk
+     * @return the generated chunk or null when this world has no generator
      */
-    private void asyncWorkerLoop() {
-        while ( this.asyncWorkerRunning ) {
-            try {
-                AsyncChunkTask task = this.asyncChunkTasks.poll( 500, TimeUnit.MILLISECONDS );
-                if ( task == null ) {
-                    continue;
-                }
+    protected ChunkAdapter generateChunk( int x, int z ) {
+        if ( this.generation == null ) {
+            return null;
+        }
 
-                ChunkAdapter chunk = null;
-                switch ( task.getType() ) {
-                    case LOAD:
-                        AsyncChunkLoadTask load = (AsyncChunkLoadTask) task;
-                        chunk = this.loadChunk( load.getX(), load.getZ(), load.isGenerate() );
-                        load.getCallback().invoke( chunk );
-                        break;
+        try {
+            return this.generation.generate( x, z, 0 ).getUninterruptibly();
+        } catch ( ExecutionException e ) {
+            this.logger.error( "Failed to generate chunk " + x + ":" + z, e );
+            return null;
+        }
+    }
 
-                    case SAVE:
-                        AsyncChunkSaveTask save = (AsyncChunkSaveTask) task;
-                        chunk = save.getChunk();
-                        this.saveChunk( chunk );
-                        break;
+    /**
+     * Saves the given chunk to its region file asynchronously.
+     *
+     * @param chunk The chunk to save
+     */
+    public void saveChunkAsynchronously( ChunkAdapter chunk ) {
+        this.chunkIO.save( chunk );
+    }
 
-                    default:
-                        // Log some error when this happens
+    // ==================================== NETWORKING HELPERS ==================================== //
 
-                        break;
-                }
-            } catch ( Throwable cause ) {
-                // Catching throwable in order to make sure no uncaught exceptions puts
-                // the asynchronous worker into nirvana:
-                logger.error( "Error whilst doing async work: ", cause );
-            }
+    /**
+     * Broadcasts the given packet to all players in this world.
+     *
+     * @param reliability     The reliability to send the packet with
+     * @param orderingChannel The ordering channel to send the packet on
+     * @param packet          The packet to send
+     */
+    public void broadcast( PacketReliability reliability, int orderingChannel, Packet packet ) {
+        // Send directly:
+        for ( EntityPlayer player : this.players.keySet() ) {
+            player.getConnection().send( reliability, orderingChannel, packet );
         }
     }
 
@@ -761,37 +953,7 @@ public abstract class WorldAdapter implements World {
      * @return either null if there are no entities or a list of entities
      */
     public List<io.gomint.entity.Entity> getNearbyEntities( AxisAlignedBB bb, io.gomint.entity.Entity exception ) {
-        List<io.gomint.entity.Entity> nearby = null;
-
-        int minX = Numbers.fastFloor( ( bb.getMinX() - 2 ) / 4 );
-        int maxX = Numbers.fastCeil( ( bb.getMaxX() + 2 ) / 4 );
-        int minZ = Numbers.fastFloor( ( bb.getMinZ() - 2 ) / 4 );
-        int maxZ = Numbers.fastCeil( ( bb.getMaxZ() + 2 ) / 4 );
-
-        for ( int x = minX; x < maxX; ++x ) {
-            for ( int z = minZ; z < maxZ; ++z ) {
-                int chunkX = x >> 2;
-                int chunkZ = z >> 2;
-
-                Chunk chunk = this.getChunk( chunkX, chunkZ );
-                if ( chunk != null ) {
-                    Collection<io.gomint.entity.Entity> entities = chunk.getEntities();
-                    if ( entities != null ) {
-                        for ( io.gomint.entity.Entity entity : entities ) {
-                            if ( !entity.equals( exception ) && entity.getBoundingBox().intersectsWith( bb ) ) {
-                                if ( nearby == null ) {
-                                    nearby = new ArrayList<>();
-                                }
-
-                                nearby.add( entity );
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        return nearby;
+        return this.entityManager.getSpatialIndex().getNearbyEntities( bb, exception );
     }
 
     @Override
@@ -808,14 +970,13 @@ public abstract class WorldAdapter implements World {
         for ( int z = minZ; z < maxZ; ++z ) {
             for ( int x = minX; x < maxX; ++x ) {
                 for ( int y = minY; y < maxY; ++y ) {
-                    Block block = this.getBlockAt( x, y, z );
-                    AxisAlignedBB blockBox;
-                    if ( !block.canPassThrough() && ( blockBox = block.getBoundingBox() ).intersectsWith( bb ) ) {
+                    BlockState state = this.getBlockState( x, y, z );
+                    if ( state != null && !state.isPassThrough() && state.intersects( x, y, z, bb ) ) {
                         if ( collisions == null ) {
                             collisions = new ArrayList<>();
                         }
 
-                        collisions.add( blockBox );
+                        collisions.add( state.createBoundingBox( x, y, z ) );
                     }
                 }
             }
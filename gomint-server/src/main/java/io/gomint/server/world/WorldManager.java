@@ -7,10 +7,12 @@
 
 package io.gomint.server.world;
 
+import io.gomint.entity.Player;
 import io.gomint.server.GoMintServer;
 import io.gomint.server.world.anvil.AnvilWorldAdapter;
 import io.gomint.server.world.leveldb.LevelDBWorldAdapter;
 import io.gomint.world.World;
+import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,8 +20,16 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.function.Consumer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author BlackyPaw
@@ -32,15 +42,14 @@ public class WorldManager {
     private final GoMintServer server;
     private List<WorldAdapter> loadedWorlds;
 
-    // Internal ticking
-    private long currentTickTime;
-    private float lastTickDiff;
-    private final Consumer<WorldAdapter> worldAdapterConsumer = new Consumer<WorldAdapter>() {
-        @Override
-        public void accept( WorldAdapter worldAdapter ) {
-            worldAdapter.update( currentTickTime, lastTickDiff );
-        }
-    };
+    // Parallel ticking
+    private final ExecutorService tickExecutor;
+    @Getter
+    private final ExecutorService shardExecutor;
+    private final Queue<Runnable> handoffQueue = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Boolean> worldTickThread = new ThreadLocal<>();
+    private volatile boolean tickingParallel;
+    private volatile Collection<Player> playerSnapshot = Collections.emptyList();
 
     /**
      * Constructs a new world manager that does not yet hold any worlds.
@@ -49,19 +58,195 @@ public class WorldManager {
      */
     public WorldManager( GoMintServer server ) {
         this.server = server;
-        this.loadedWorlds = new ArrayList<>();
+        this.loadedWorlds = new CopyOnWriteArrayList<>();
+
+        int tickThreads = server.getServerConfig().getWorldTickThreads();
+        if ( tickThreads <= 0 ) {
+            tickThreads = Runtime.getRuntime().availableProcessors();
+        }
+
+        if ( tickThreads > 1 ) {
+            this.tickExecutor = Executors.newFixedThreadPool( tickThreads, new ThreadFactory() {
+                private AtomicLong counter = new AtomicLong( 0 );
+
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread thread = server.getThreadFactory().newThread( r );
+                    thread.setName( "GoMint World Tick #" + counter.getAndIncrement() );
+                    return thread;
+                }
+            } );
+
+            logger.info( "Ticking worlds in parallel using " + tickThreads + " threads" );
+        } else {
+            this.tickExecutor = null;
+        }
+
+        int shardThreads = server.getServerConfig().getRegionShardThreads();
+        if ( shardThreads > 1 ) {
+            this.shardExecutor = Executors.newFixedThreadPool( shardThreads, new ThreadFactory() {
+                private AtomicLong counter = new AtomicLong( 0 );
+
+                @Override
+                public Thread newThread( Runnable r ) {
+                    Thread thread = server.getThreadFactory().newThread( r );
+                    thread.setName( "GoMint Shard Tick #" + counter.getAndIncrement() );
+                    return thread;
+                }
+            } );
+        } else {
+            this.shardExecutor = null;
+        }
     }
 
     /**
-     * Ticks all worlds that are currently loaded.
+     * Ticks all worlds that are currently loaded. When more than one world is loaded and parallel ticking
+     * is enabled every world gets ticked on its own worker. This method returns only after all worlds
+     * have completed their tick so the network flush in the next tick sees every packet the worlds produced.
+     * Operations which have been {@link #handoff(Runnable) handed off} during the tick are run afterwards.
      *
      * @param currentTimeMS The current time in milliseconds. Used to reduce the number of calls to System#currentTimeMillis()
      * @param dT            The delta from the full second which has been calculated in the last tick
      */
     public void update( long currentTimeMS, float dT ) {
-        this.currentTickTime = currentTimeMS;
-        this.lastTickDiff = dT;
-        this.loadedWorlds.forEach( this.worldAdapterConsumer );
+        if ( this.tickExecutor == null || this.loadedWorlds.size() < 2 ) {
+            for ( WorldAdapter worldAdapter : this.loadedWorlds ) {
+                worldAdapter.update( currentTimeMS, dT );
+            }
+        } else {
+            this.updateParallel( currentTimeMS, dT );
+        }
+
+        this.drainHandoffQueue();
+    }
+
+    private void updateParallel( long currentTimeMS, float dT ) {
+        // Worlds are not allowed to look into each other while they tick, give them a stable view
+        this.playerSnapshot = this.collectPlayers();
+        this.tickingParallel = true;
+
+        final CountDownLatch barrier = new CountDownLatch( this.loadedWorlds.size() );
+        for ( final WorldAdapter worldAdapter : this.loadedWorlds ) {
+            this.tickExecutor.execute( new Runnable() {
+                @Override
+                public void run() {
+                    worldTickThread.set( Boolean.TRUE );
+
+                    // CHECKSTYLE:OFF
+                    try {
+                        worldAdapter.update( currentTimeMS, dT );
+                    } catch ( Throwable cause ) {
+                        logger.error( "Error whilst ticking world " + worldAdapter.getWorldName(), cause );
+                    } finally {
+                        worldTickThread.remove();
+                        barrier.countDown();
+                    }
+                    // CHECKSTYLE:ON
+                }
+            } );
+        }
+
+        // Wait until every world has completed its tick
+        boolean interrupted = false;
+        while ( barrier.getCount() > 0 ) {
+            try {
+                barrier.await();
+            } catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+
+        this.tickingParallel = false;
+
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainHandoffQueue() {
+        Runnable runnable;
+        while ( ( runnable = this.handoffQueue.poll() ) != null ) {
+            // CHECKSTYLE:OFF
+            try {
+                runnable.run();
+            } catch ( Exception e ) {
+                logger.error( "Error whilst running cross world operation", e );
+            }
+            // CHECKSTYLE:ON
+        }
+    }
+
+    private Collection<Player> collectPlayers() {
+        List<Player> players = new ArrayList<>();
+        for ( WorldAdapter worldAdapter : this.loadedWorlds ) {
+            players.addAll( worldAdapter.getPlayers0().keySet() );
+        }
+
+        return players;
+    }
+
+    /**
+     * Runs an operation which touches more than one world. While worlds are being ticked in parallel
+     * the operation gets queued and is run on the main thread once all worlds finished their tick. In
+     * every other case it is run immediately.
+     *
+     * @param runnable The operation which should be run
+     */
+    public void handoff( Runnable runnable ) {
+        if ( this.tickingParallel || this.worldTickThread.get() != null ) {
+            this.handoffQueue.offer( runnable );
+        } else {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Checks if the worlds are currently being ticked in parallel.
+     *
+     * @return true when the worlds are ticking on their own workers, false when not
+     */
+    public boolean isTickingParallel() {
+        return this.tickingParallel;
+    }
+
+    /**
+     * Gets all players of all worlds. While worlds are being ticked in parallel this returns a view which
+     * has been taken right before the tick started.
+     *
+     * @return collection of all online players
+     */
+    public Collection<Player> getPlayers() {
+        if ( this.tickingParallel ) {
+            return this.playerSnapshot;
+        }
+
+        return this.collectPlayers();
+    }
+
+    /**
+     * Stops the worker threads used for parallel world and shard ticking as well as the generation, chunk I/O
+     * and pathfinding workers of all worlds. The I/O workers finish their queued saves before they stop.
+     */
+    public void close() {
+        if ( this.tickExecutor != null ) {
+            this.tickExecutor.shutdown();
+        }
+
+        if ( this.shardExecutor != null ) {
+            this.shardExecutor.shutdown();
+        }
+
+        for ( WorldAdapter worldAdapter : this.loadedWorlds ) {
+            if ( worldAdapter.getGeneration() != null ) {
+                worldAdapter.getGeneration().close();
+            }
+
+            worldAdapter.getChunkIO().close();
+            worldAdapter.closeStorage();
+            worldAdapter.getPathfindingScheduler().close();
+
+            logger.info( "World " + worldAdapter.getWorldName() + ": " + worldAdapter.getEntityManager().getTickStatistics() );
+        }
     }
 
     /**
@@ -11,6 +11,7 @@ import io.gomint.server.entity.tileentity.TileEntity;
 import io.gomint.server.util.Pair;
 import io.gomint.server.world.ChunkAdapter;
 import io.gomint.server.world.CoordinateUtils;
+import io.gomint.server.world.LightEngine;
 import io.gomint.server.world.NibbleArray;
 import io.gomint.taglib.NBTStream;
 import io.gomint.taglib.NBTStreamListener;
@@ -34,6 +35,7 @@ class AnvilChunk extends ChunkAdapter {
     private static final DataConverter CONVERTER = new DataConverter();
 
     private boolean converted;
+    private boolean lightPopulated;
 
     /**
      * Load a Chunk from a NBTTagCompound. This is used when loaded from a Regionfile.
@@ -48,6 +50,26 @@ class AnvilChunk extends ChunkAdapter {
         this.entities = HashLongObjMaps.newMutableMap();
         this.loadFromNBT( nbtStream );
         this.dirty = false;
+        this.modified = false;
+    }
+
+    /**
+     * Create an empty chunk which is going to be generated
+     *
+     * @param world The world in which this Chunk resides
+     * @param x     The x coordinate of the chunk
+     * @param z     The z coordinate of the chunk
+     */
+    AnvilChunk( AnvilWorldAdapter world, int x, int z ) {
+        this.world = world;
+        this.x = x;
+        this.z = z;
+        this.lastSavedTimestamp = System.currentTimeMillis();
+        this.loadedTime = this.lastSavedTimestamp;
+        this.entities = HashLongObjMaps.newMutableMap();
+
+        // Generators place pocket edition blocks
+        this.converted = true;
     }
 
     // ==================================== I/O ==================================== //
@@ -158,6 +180,9 @@ class AnvilChunk extends ChunkAdapter {
                     case ".Level.GoMintConverted":
                         AnvilChunk.this.converted = true;
                         break;
+                    case ".Level.LightPopulated":
+                        AnvilChunk.this.lightPopulated = (byte) object != 0;
+                        break;
                     default:
                         if ( path.startsWith( ".Level.Sections" ) ) {
                             // Parse the index
@@ -328,7 +353,12 @@ class AnvilChunk extends ChunkAdapter {
             }
         }
 
-        this.calculateHeightmap();
+        // Chunks which have not been lit or whose blocks have just been converted need new light
+        if ( this.converted && this.lightPopulated ) {
+            this.calculateHeightmap();
+        } else {
+            LightEngine.relightChunk( this );
+        }
     }
     // CHECKSTYLE:ON
 
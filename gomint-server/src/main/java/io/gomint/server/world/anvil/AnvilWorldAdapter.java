@@ -13,6 +13,8 @@ import io.gomint.server.world.ChunkAdapter;
 import io.gomint.server.world.ChunkCache;
 import io.gomint.server.world.CoordinateUtils;
 import io.gomint.server.world.WorldAdapter;
+import io.gomint.server.world.generator.FlatGenerator;
+import io.gomint.server.world.generator.NormalGenerator;
 import io.gomint.taglib.NBTStream;
 import io.gomint.taglib.NBTStreamListener;
 
@@ -28,10 +30,12 @@ public final class AnvilWorldAdapter extends WorldAdapter {
 
     // ==================================== FIELDS ==================================== //
 
-    // I/O
-    private int regionXRead;
-    private int regionZRead;
-    private RegionFile regionFileRead;
+    // I/O, a bounded amount of region files is kept open
+    private final RegionFileCache regionFiles;
+
+    // Generation
+    private long seed;
+    private String generatorName = "default";
 
     /**
      * Construct and init a new Anvil based World
@@ -42,11 +46,14 @@ public final class AnvilWorldAdapter extends WorldAdapter {
     private AnvilWorldAdapter( final GoMintServer server, final File worldDir ) {
         super( server, worldDir );
         this.chunkCache = new ChunkCache( this );
+        this.regionFiles = new RegionFileCache( this, new File( worldDir, "region" ), server.getServerConfig().getMaxOpenRegionFiles() );
 
         // Load this world
         // CHECKSTYLE:OFF
         try {
             this.loadLevelDat();
+            this.seedRandomTicks( this.seed );
+            this.setGenerator( "flat".equalsIgnoreCase( this.generatorName ) ? new FlatGenerator() : new NormalGenerator( this.seed ) );
             this.prepareSpawnRegion();
         } catch ( Exception e ) {
             e.printStackTrace();
@@ -101,6 +108,12 @@ public final class AnvilWorldAdapter extends WorldAdapter {
                                     throw new IOException( "unsupported world format" );
                                 }
                                 break;
+                            case ".Data.RandomSeed":
+                                AnvilWorldAdapter.this.seed = (long) value;
+                                break;
+                            case ".Data.generatorName":
+                                AnvilWorldAdapter.this.generatorName = (String) value;
+                                break;
                             case ".Data.LevelName":
                                 AnvilWorldAdapter.this.levelName = (String) value;
                                 break;
@@ -128,37 +141,29 @@ public final class AnvilWorldAdapter extends WorldAdapter {
 
     @Override
     protected ChunkAdapter loadChunk( int x, int z, boolean generate ) {
-        ChunkAdapter chunk = this.chunkCache.getChunk( x, z );
+        ChunkAdapter chunk = this.getCachedChunk( x, z );
         if ( chunk == null ) {
-            try {
-                int regionX = CoordinateUtils.fromChunkToRegion( x );
-                int regionZ = CoordinateUtils.fromChunkToRegion( z );
+            int regionX = CoordinateUtils.fromChunkToRegion( x );
+            int regionZ = CoordinateUtils.fromChunkToRegion( z );
 
-                RegionFile regionFile = null;
-                if ( this.regionFileRead != null && this.regionXRead == regionX && this.regionZRead == regionZ ) {
-                    regionFile = this.regionFileRead;
-                }
-
-                if ( regionFile == null ) {
-                    this.regionFileRead = new RegionFile( this, new File( this.worldDir, String.format( "region%sr.%d.%d.mca", File.separator, regionX, regionZ ) ) );
-                    this.regionXRead = regionX;
-                    this.regionZRead = regionZ;
-                    regionFile = this.regionFileRead;
+            try {
+                RegionFile regionFile = this.regionFiles.acquire( regionX, regionZ );
+                try {
+                    chunk = regionFile.loadChunk( x, z );
+                } finally {
+                    this.regionFiles.release( regionX, regionZ );
                 }
 
-                chunk = regionFile.loadChunk( x, z );
                 if ( chunk != null ) {
                     this.chunkCache.putChunk( chunk );
                 } else if ( generate ) {
-                    // TODO: Implement chunk generation here
+                    chunk = this.generateChunk( x, z );
                 }
 
                 return chunk;
             } catch ( IOException e ) {
-                if ( generate ) {
-                    // TODO: Implement chunk generation here
-                }
-
+                // Don't generate over a chunk which is only unreadable right now
+                this.logger.error( "Failed to load chunk " + x + ":" + z, e );
                 return null;
             }
         }
@@ -166,34 +171,46 @@ public final class AnvilWorldAdapter extends WorldAdapter {
         return chunk;
     }
 
+    @Override
+    protected boolean isChunkStored( int x, int z ) {
+        try {
+            return this.regionFiles.isChunkStored( x, z );
+        } catch ( IOException e ) {
+            // Better not generate over something we can't read
+            this.logger.error( "Failed to look up chunk " + x + ":" + z, e );
+            return true;
+        }
+    }
+
+    @Override
+    protected ChunkAdapter createChunk( int x, int z ) {
+        return new AnvilChunk( this, x, z );
+    }
+
     @Override
     protected void saveChunk( ChunkAdapter chunk ) {
         if ( chunk == null ) {
             return;
         }
 
-        int chunkX = chunk.getX();
-        int chunkZ = chunk.getZ();
-        int regionX = CoordinateUtils.fromChunkToRegion( chunkX );
-        int regionZ = CoordinateUtils.fromChunkToRegion( chunkZ );
+        int regionX = CoordinateUtils.fromChunkToRegion( chunk.getX() );
+        int regionZ = CoordinateUtils.fromChunkToRegion( chunk.getZ() );
 
         try {
-            RegionFile regionFile = null;
-            if ( this.regionFileRead != null && this.regionXRead == regionX && this.regionZRead == regionZ ) {
-                regionFile = this.regionFileRead;
-            }
-
-            if ( regionFile == null ) {
-                this.regionFileRead = new RegionFile( this, new File( this.worldDir, String.format( "region%sr.%d.%d.mca", File.separator, regionX, regionZ ) ) );
-                this.regionXRead = regionX;
-                this.regionZRead = regionZ;
-                regionFile = this.regionFileRead;
+            RegionFile regionFile = this.regionFiles.acquire( regionX, regionZ );
+            try {
+                regionFile.saveChunk( (AnvilChunk) chunk, true );
+            } finally {
+                this.regionFiles.release( regionX, regionZ );
             }
-
-            regionFile.saveChunk( (AnvilChunk) chunk, true );
         } catch ( IOException e ) {
             this.logger.error( "Failed to save chunk to region file", e );
         }
     }
 
-}
\ No newline at end of file
+    @Override
+    protected void closeStorage() {
+        this.regionFiles.close();
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.anvil;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Offline tool which rewrites the region files of an anvil world without any free sectors. The server must not
+ * run on the world while it is compacted.
+ * <p>
+ * Usage: {@code java -cp gomint.jar io.gomint.server.world.anvil.RegionCompactor <worldDirectory>}
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public final class RegionCompactor {
+
+    private static final int CHUNKS = 1024;
+
+    private RegionCompactor() {
+        throw new AssertionError( "Cannot instantiate RegionCompactor!" );
+    }
+
+    /**
+     * Compact all region files of the world given as first argument
+     *
+     * @param args The command-line arguments, the first one is the directory of the world
+     */
+    public static void main( String[] args ) {
+        if ( args.length != 1 ) {
+            System.out.println( "Usage: RegionCompactor <worldDirectory>" );
+            System.exit( -1 );
+        }
+
+        File regionDirectory = new File( args[0], "region" );
+        File[] files = regionDirectory.listFiles( new FileFilter() {
+            @Override
+            public boolean accept( File file ) {
+                return file.isFile() && file.getName().endsWith( ".mca" );
+            }
+        } );
+
+        if ( files == null ) {
+            System.out.println( "No region directory found in " + args[0] );
+            System.exit( -1 );
+        }
+
+        long before = 0;
+        long after = 0;
+        for ( File file : files ) {
+            try {
+                long length = file.length();
+                long saved = compact( file );
+
+                before += length;
+                after += length - saved;
+                System.out.println( "Compacted " + file.getName() + ": " + ( saved >> 10 ) + " KiB freed" );
+            } catch ( IOException e ) {
+                System.out.println( "Could not compact " + file.getName() + ": " + e.getMessage() );
+            }
+        }
+
+        System.out.println( "Compacted " + files.length + " region files from " + ( before >> 10 ) + " KiB to " + ( after >> 10 ) + " KiB" );
+    }
+
+    /**
+     * Rewrite the given region file so all chunks are stored back to back. The new file is written next to the
+     * old one and moved over it once it is complete.
+     *
+     * @param file The region file which should be compacted
+     * @return amount of bytes which have been freed
+     * @throws IOException Thrown in case the file could not be read or written
+     */
+    public static long compact( File file ) throws IOException {
+        File compacted = new File( file.getParentFile(), file.getName() + ".compact" );
+        if ( compacted.exists() && !compacted.delete() ) {
+            throw new IOException( "Could not delete old temporary file " + compacted );
+        }
+
+        RegionFile source = new RegionFile( null, file );
+        RegionFile target = new RegionFile( null, compacted );
+        try {
+            for ( int i = 0; i < CHUNKS; i++ ) {
+                byte[] data = source.readChunkData( i );
+                if ( data != null ) {
+                    target.writeChunkData( i, data, data.length, source.getTimestamp( i ) );
+                }
+            }
+        } finally {
+            source.close();
+            target.close();
+        }
+
+        long saved = file.length() - compacted.length();
+
+        try {
+            Files.move( compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch ( AtomicMoveNotSupportedException e ) {
+            Files.move( compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING );
+        }
+
+        return saved;
+    }
+
+}
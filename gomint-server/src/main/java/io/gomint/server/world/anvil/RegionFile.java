@@ -11,23 +11,47 @@ import io.gomint.taglib.NBTStream;
 
 import java.io.*;
 import java.nio.ByteOrder;
+import java.util.BitSet;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.InflaterInputStream;
 
 /**
+ * A single .mca file holding 32x32 chunks. The location table is kept in memory together with a bitmap of
+ * all used sectors, so a saved chunk is moved into the first free run of sectors which is large enough
+ * instead of always being appended. The live sectors of a chunk are never overwritten.
+ * <p>
+ * All methods are synchronized, the region file is its own lock.
+ *
  * @author BlackyPaw
  * @version 1.0
  */
 class RegionFile {
 
+    static final int SECTOR_SIZE = 4096;
+    static final int HEADER_SECTORS = 2;
+    private static final int SECTOR_SHIFT = 12;
+    private static final int MAX_SECTORS_PER_CHUNK = 255;
+    private static final int CHUNKS = 1024;
+
+    private static final byte COMPRESSION_GZIP = 1;
+    private static final byte COMPRESSION_ZLIB = 2;
+
     private final AnvilWorldAdapter world;
     private final RandomAccessFile file;
 
+    // Location table (sector offset << 8 | sector count) and timestamps, indexed by chunk
+    private final int[] locations = new int[CHUNKS];
+    private final int[] timestamps = new int[CHUNKS];
+
+    // Sectors in use by the header or a chunk
+    private final BitSet usedSectors = new BitSet();
+    private int sectorCount;
+
     /**
      * Constructs a new region file that will load from the specified file.
      *
-     * @param world The world the region file belongs to
+     * @param world The world the region file belongs to, may be null when no chunks get loaded
      * @param file  The file to load
      * @throws IOException Thrown in case the file was not found / could not be opened
      */
@@ -35,13 +59,49 @@ class RegionFile {
         this.world = world;
         this.file = new RandomAccessFile( file, "rw" );
 
-        if ( this.file.length() < 8192 ) {
+        if ( this.file.length() < HEADER_SECTORS * SECTOR_SIZE ) {
             // Add the region file metadata table / header:
-            System.out.println( "Creating region file " + file.getName() );
-            byte[] header = new byte[8192];
+            byte[] header = new byte[HEADER_SECTORS * SECTOR_SIZE];
             this.file.seek( 0L );
             this.file.write( header );
         }
+
+        // Files which have been cut off get padded up to the next sector
+        long length = this.file.length();
+        if ( ( length & ( SECTOR_SIZE - 1 ) ) != 0 ) {
+            length = ( length | ( SECTOR_SIZE - 1 ) ) + 1;
+            this.file.setLength( length );
+        }
+
+        this.sectorCount = (int) ( length >> SECTOR_SHIFT );
+        this.usedSectors.set( 0, HEADER_SECTORS );
+
+        // Read the header and mark all sectors which are referenced as used
+        this.file.seek( 0L );
+        for ( int i = 0; i < CHUNKS; i++ ) {
+            this.locations[i] = this.file.readInt();
+        }
+
+        for ( int i = 0; i < CHUNKS; i++ ) {
+            this.timestamps[i] = this.file.readInt();
+        }
+
+        for ( int i = 0; i < CHUNKS; i++ ) {
+            int location = this.locations[i];
+            if ( location == 0 ) {
+                continue;
+            }
+
+            int sectorOffset = location >>> 8;
+            int sectors = location & 0xFF;
+            if ( sectorOffset < HEADER_SECTORS || sectors == 0 || sectorOffset + sectors > this.sectorCount ) {
+                // Broken entry, the chunk is treated as missing and its space gets reused
+                this.locations[i] = 0;
+                continue;
+            }
+
+            this.usedSectors.set( sectorOffset, sectorOffset + sectors );
+        }
     }
 
     /**
@@ -53,44 +113,24 @@ class RegionFile {
      * @throws IOException Thrown in case an I/O error occurs or the chunk was not found
      */
     AnvilChunk loadChunk( int x, int z ) throws IOException {
-        long fileOffset = ( ( x & 31 ) + ( ( z & 31 ) << 5 ) ) << 2;
-
-        // Navigate to entry in location table:
-        this.file.seek( fileOffset );
-
-        byte[] buffer = new byte[4];
-        this.file.read( buffer, 0, 3 );
-
-        int offset = ( ( (int) buffer[0] << 16 & 0xFF0000 ) | ( (int) buffer[1] << 8 & 0xFF00 ) | ( (int) buffer[2] & 0xFF ) );
-
-        int length = this.file.read();
-        if ( offset == 0 || length == 0 ) {
+        // Only reading needs the lock, parsing is done outside of it
+        byte[] data = this.readChunkData( getIndex( x, z ) );
+        if ( data == null ) {
             throw new IOException( "Chunk not found inside region" );
         }
 
-        fileOffset = (long) offset << 12;
-
-        // Seek chunk data:
-        this.file.seek( fileOffset );
-        this.file.read( buffer, 0, 4 );
-
-        int exactLength = ( ( (int) buffer[0] << 24 & 0xFF000000 ) | ( (int) buffer[1] << 16 & 0xFF0000 ) | ( (int) buffer[2] << 8 & 0xFF00 ) | ( (int) buffer[3] & 0xFF ) );
-        int compressionScheme = this.file.read();
-        byte[] nbtBuffer = new byte[exactLength];
-        this.file.read( nbtBuffer );
-
         InputStream input;
-        switch ( compressionScheme ) {
-            case 1:
-                input = new GZIPInputStream( new ByteArrayInputStream( nbtBuffer ) );
+        switch ( data[0] ) {
+            case COMPRESSION_GZIP:
+                input = new GZIPInputStream( new ByteArrayInputStream( data, 1, data.length - 1 ) );
                 break;
 
-            case 2:
-                input = new InflaterInputStream( new ByteArrayInputStream( nbtBuffer ) );
+            case COMPRESSION_ZLIB:
+                input = new InflaterInputStream( new ByteArrayInputStream( data, 1, data.length - 1 ) );
                 break;
 
             default:
-                throw new IOException( "Unsupported compression scheme for chunk data (" + compressionScheme + ")" );
+                throw new IOException( "Unsupported compression scheme for chunk data (" + data[0] + ")" );
         }
 
         NBTStream nbtStream = new NBTStream( new BufferedInputStream( input ), ByteOrder.BIG_ENDIAN );
@@ -110,71 +150,171 @@ class RegionFile {
      * @throws IOException A exception which get thrown when a I/O error occurred
      */
     void saveChunk( AnvilChunk chunk, boolean writeTimestamp ) throws IOException {
-        int x = chunk.getX();
-        int z = chunk.getZ();
+        // Compress outside of the lock, the compression scheme is the first byte of the data
+        ByteArrayOutputStream bout = new ByteArrayOutputStream( 8192 );
+        bout.write( COMPRESSION_ZLIB );
+        try ( DeflaterOutputStream dout = new DeflaterOutputStream( bout ) ) {
+            chunk.saveToNBT( dout );
+        }
 
-        long fileOffset = ( ( x & 31 ) + ( ( z & 31 ) << 5 ) ) << 2;
+        byte[] data = bout.toByteArray();
+        int index = getIndex( chunk.getX(), chunk.getZ() );
 
-        // Navigate to entry in location table:
-        this.file.seek( fileOffset );
+        synchronized ( this ) {
+            int timestamp = writeTimestamp ? (int) ( System.currentTimeMillis() / 1000 ) : this.timestamps[index];
+            this.writeChunkData( index, data, data.length, timestamp );
+        }
+    }
 
-        byte[] buffer = new byte[4];
-        this.file.read( buffer, 0, 3 );
+    /**
+     * Read the raw data of a chunk. The first byte is the compression scheme, the rest is the compressed NBT.
+     *
+     * @param index The index of the chunk inside of this region
+     * @return the data or null when the chunk is not stored in this region
+     * @throws IOException Thrown in case an I/O error occurs or the data is corrupted
+     */
+    synchronized byte[] readChunkData( int index ) throws IOException {
+        int location = this.locations[index];
+        if ( location == 0 ) {
+            return null;
+        }
 
-        int sectorOffset = ( ( (int) buffer[0] << 16 & 0xFF0000 ) | ( (int) buffer[1] << 8 & 0xFF00 ) | ( (int) buffer[2] & 0xFF ) );
-        int sectorLength = this.file.read();
+        int sectorOffset = location >>> 8;
+        int sectors = location & 0xFF;
 
-        long byteOffset;
-        long byteLength;
+        this.file.seek( (long) sectorOffset << SECTOR_SHIFT );
+        int length = this.file.readInt();
+        if ( length <= 1 || length > sectors * SECTOR_SIZE ) {
+            throw new IOException( "Invalid chunk length " + length + " for " + sectors + " sectors" );
+        }
 
-        // Create compressed NBT data in order to know actual byteLength:
-        ByteArrayOutputStream bout = new ByteArrayOutputStream();
-        DeflaterOutputStream dout = new DeflaterOutputStream( bout );
-        chunk.saveToNBT( dout );
+        // Chunks written by older versions stored a length which was 4 bytes too long, the inflater does
+        // not care about the missing padding
+        byte[] data = new byte[Math.min( length, sectors * SECTOR_SIZE - 4 )];
+        this.file.readFully( data );
+        return data;
+    }
+
+    /**
+     * Write the raw data of a chunk. The data always goes into a free run of sectors, the first one which is large
+     * enough or appended to the file, and the old sectors of the chunk are only given back once the header points
+     * to the new ones. A crash while writing therefore leaves the old version of the chunk intact.
+     *
+     * @param index     The index of the chunk inside of this region
+     * @param data      The data to write, starting with the compression scheme
+     * @param length    The amount of bytes of data which should be written
+     * @param timestamp The timestamp which should be stored for this chunk
+     * @throws IOException Thrown in case an I/O error occurs or the chunk is too big
+     */
+    synchronized void writeChunkData( int index, byte[] data, int length, int timestamp ) throws IOException {
+        int sectorsNeeded = ( length + 4 + SECTOR_SIZE - 1 ) >> SECTOR_SHIFT;
+        if ( sectorsNeeded > MAX_SECTORS_PER_CHUNK ) {
+            throw new IOException( "Failed to save chunk: " + length + " bytes exceed the maximum chunk size" );
+        }
 
-        byte[] nbtData = bout.toByteArray();
-        byteLength = (long) nbtData.length + 5;
+        // The old sectors are still marked as used, so the new run never overlaps them
+        int oldLocation = this.locations[index];
+        int sectorOffset = this.allocate( sectorsNeeded );
 
-        // Determine accurate byte offset and make sure chunk fits into its allocated sector(s):
-        if ( sectorOffset == 0 || sectorLength == 0 || ( ( byteLength + 4095 ) >> 12 ) > sectorLength ) {
-            byteOffset = this.file.length();
-            if ( ( byteOffset & 4095 ) != 0 ) {
-                throw new IOException( "Failed to save chunk: Misaligned region file" );
-            }
+        // Write the data, padded to the sector boundary
+        this.file.seek( (long) sectorOffset << SECTOR_SHIFT );
+        this.file.writeInt( length );
+        this.file.write( data, 0, length );
 
-            sectorOffset = (int) ( byteOffset >> 12 );
-            sectorLength = (int) ( ( byteLength + 4095 ) >> 12 );
-        } else {
-            byteOffset = sectorOffset << 12;
+        int padding = ( sectorsNeeded << SECTOR_SHIFT ) - length - 4;
+        if ( padding > 0 ) {
+            this.file.write( new byte[padding] );
         }
 
-        // Write Metadata:
-        this.file.seek( fileOffset );
-        buffer[0] = (byte) ( ( sectorOffset >> 16 ) & 0xFF );
-        buffer[1] = (byte) ( ( sectorOffset >> 8 ) & 0xFF );
-        buffer[2] = (byte) ( sectorOffset & 0xFF );
-        buffer[3] = (byte) sectorLength;
+        // Update the header after the data so a crash never leaves it pointing at unwritten sectors
+        this.locations[index] = sectorOffset << 8 | sectorsNeeded;
+        this.timestamps[index] = timestamp;
 
-        this.file.write( buffer );
+        this.file.seek( (long) index << 2 );
+        this.file.writeInt( this.locations[index] );
+        this.file.seek( SECTOR_SIZE + ( (long) index << 2 ) );
+        this.file.writeInt( timestamp );
 
-        // Adjust timestamp:
-        if ( writeTimestamp ) {
-            int timestamp = (int) ( System.currentTimeMillis() / 1000 );
-            this.file.skipBytes( 4092 );
-            this.file.writeInt( timestamp );
+        // Only now the old version may be overwritten by other chunks
+        if ( oldLocation != 0 ) {
+            int oldOffset = oldLocation >>> 8;
+            this.usedSectors.clear( oldOffset, oldOffset + ( oldLocation & 0xFF ) );
         }
+    }
+
+    /**
+     * Check if a chunk is stored in this region
+     *
+     * @param index The index of the chunk inside of this region
+     * @return true when the chunk is stored
+     */
+    synchronized boolean hasChunk( int index ) {
+        return this.locations[index] != 0;
+    }
+
+    /**
+     * Get the timestamp at which the chunk has been saved
+     *
+     * @param index The index of the chunk inside of this region
+     * @return timestamp in seconds or 0 when the chunk has never been saved
+     */
+    synchronized int getTimestamp( int index ) {
+        return this.timestamps[index];
+    }
+
+    /**
+     * Get the amount of sectors this file consists of, including free ones
+     *
+     * @return amount of sectors
+     */
+    synchronized int getSectorCount() {
+        return this.sectorCount;
+    }
+
+    /**
+     * Get the amount of sectors which are referenced by the header or a chunk
+     *
+     * @return amount of used sectors
+     */
+    synchronized int getUsedSectorCount() {
+        return this.usedSectors.cardinality();
+    }
 
-        // Finally write out the actual chunk data:
-        this.file.seek( byteOffset );
-        this.file.writeInt( (int) byteLength );
-        this.file.writeByte( 0x02 );
-        this.file.write( nbtData );
+    /**
+     * Close the underlying file
+     *
+     * @throws IOException Thrown in case the file could not be closed
+     */
+    synchronized void close() throws IOException {
+        this.file.close();
+    }
 
-        // Finish up by padding chunk data to 4KiB boundary:
-        if ( ( byteLength & 4095 ) != 0 ) {
-            byte[] zeroPad = new byte[4096 - (int) ( byteLength & 4095 )];
-            this.file.write( zeroPad );
+    /**
+     * Get the index of the chunk inside of its region
+     *
+     * @param x The x-coordinate of the chunk
+     * @param z The z-coordinate of the chunk
+     * @return index into the location table
+     */
+    static int getIndex( int x, int z ) {
+        return ( x & 31 ) + ( ( z & 31 ) << 5 );
+    }
+
+    private int allocate( int sectorsNeeded ) {
+        // First fit, a free run at the end of the file can be extended
+        int start = this.usedSectors.nextClearBit( HEADER_SECTORS );
+        while ( start < this.sectorCount ) {
+            int end = this.usedSectors.nextSetBit( start );
+            if ( end == -1 || end - start >= sectorsNeeded ) {
+                break;
+            }
+
+            start = this.usedSectors.nextClearBit( end );
         }
+
+        this.usedSectors.set( start, start + sectorsNeeded );
+        this.sectorCount = Math.max( this.sectorCount, start + sectorsNeeded );
+        return start;
     }
 
 }
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.anvil;
+
+import io.gomint.server.world.CoordinateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of open region files, the least recently used file gets closed when too many are open.
+ * Files which are in use have to be acquired and released again, they are never closed while acquired.
+ * When all open files are in use the cache may grow beyond its bound until some of them are released.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+class RegionFileCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger( RegionFileCache.class );
+
+    private final AnvilWorldAdapter world;
+    private final File regionDirectory;
+    private final int maxOpenFiles;
+
+    // Open files in access order, guarded by this
+    private final LinkedHashMap<Long, Handle> handles = new LinkedHashMap<>( 16, 0.75f, true );
+
+    private long opens;
+    private long evictions;
+
+    /**
+     * Create a new cache for the region files of a world
+     *
+     * @param world           The world the region files belong to
+     * @param regionDirectory The directory which holds the region files
+     * @param maxOpenFiles    Amount of files which may be kept open
+     */
+    RegionFileCache( AnvilWorldAdapter world, File regionDirectory, int maxOpenFiles ) {
+        this.world = world;
+        this.regionDirectory = regionDirectory;
+        this.maxOpenFiles = Math.max( 1, maxOpenFiles );
+    }
+
+    /**
+     * Get the region file for the given region and open it when needed. The file stays open until it has been
+     * given back with {@link #release(int, int)}.
+     *
+     * @param regionX The x coordinate of the region
+     * @param regionZ The z coordinate of the region
+     * @return the opened region file
+     * @throws IOException Thrown in case the file could not be opened
+     */
+    synchronized RegionFile acquire( int regionX, int regionZ ) throws IOException {
+        long regionHash = CoordinateUtils.toLong( regionX, regionZ );
+
+        Handle handle = this.handles.get( regionHash );
+        if ( handle == null ) {
+            if ( !this.regionDirectory.exists() && !this.regionDirectory.mkdirs() ) {
+                throw new IOException( "Could not create region directory " + this.regionDirectory );
+            }
+
+            handle = new Handle( regionHash, new RegionFile( this.world, new File( this.regionDirectory, getFileName( regionX, regionZ ) ) ) );
+            this.handles.put( regionHash, handle );
+            this.opens++;
+        }
+
+        handle.users++;
+        this.evict();
+        return handle.regionFile;
+    }
+
+    /**
+     * Give back a region file which has been acquired
+     *
+     * @param regionX The x coordinate of the region
+     * @param regionZ The z coordinate of the region
+     */
+    synchronized void release( int regionX, int regionZ ) {
+        Handle handle = this.handles.get( CoordinateUtils.toLong( regionX, regionZ ) );
+        if ( handle != null && handle.users > 0 ) {
+            handle.users--;
+        }
+
+        this.evict();
+    }
+
+    /**
+     * Check if a chunk is stored in its region file. Regions which have no file are not created by this.
+     *
+     * @param chunkX The x coordinate of the chunk
+     * @param chunkZ The z coordinate of the chunk
+     * @return true when the chunk is stored
+     * @throws IOException Thrown in case the region file could not be opened
+     */
+    boolean isChunkStored( int chunkX, int chunkZ ) throws IOException {
+        int regionX = CoordinateUtils.fromChunkToRegion( chunkX );
+        int regionZ = CoordinateUtils.fromChunkToRegion( chunkZ );
+
+        synchronized ( this ) {
+            if ( !this.handles.containsKey( CoordinateUtils.toLong( regionX, regionZ ) ) &&
+                    !new File( this.regionDirectory, getFileName( regionX, regionZ ) ).exists() ) {
+                return false;
+            }
+        }
+
+        RegionFile regionFile = this.acquire( regionX, regionZ );
+        try {
+            return regionFile.hasChunk( RegionFile.getIndex( chunkX, chunkZ ) );
+        } finally {
+            this.release( regionX, regionZ );
+        }
+    }
+
+    /**
+     * Close all files which are not in use
+     */
+    synchronized void close() {
+        Iterator<Handle> iterator = this.handles.values().iterator();
+        while ( iterator.hasNext() ) {
+            Handle handle = iterator.next();
+            if ( handle.users == 0 ) {
+                iterator.remove();
+                this.closeQuietly( handle );
+            }
+        }
+    }
+
+    /**
+     * Get the amount of files which are open right now
+     *
+     * @return amount of open files
+     */
+    synchronized int getOpenFiles() {
+        return this.handles.size();
+    }
+
+    /**
+     * Get the amount of times a file had to be opened
+     *
+     * @return amount of opened files
+     */
+    synchronized long getOpens() {
+        return this.opens;
+    }
+
+    /**
+     * Get the amount of files which have been closed because the cache was full
+     *
+     * @return amount of evicted files
+     */
+    synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Get the name of the file for the given region
+     *
+     * @param regionX The x coordinate of the region
+     * @param regionZ The z coordinate of the region
+     * @return name of the region file
+     */
+    static String getFileName( int regionX, int regionZ ) {
+        return "r." + regionX + "." + regionZ + ".mca";
+    }
+
+    private void evict() {
+        if ( this.handles.size() <= this.maxOpenFiles ) {
+            return;
+        }
+
+        // Eldest first
+        Iterator<Map.Entry<Long, Handle>> iterator = this.handles.entrySet().iterator();
+        while ( this.handles.size() > this.maxOpenFiles && iterator.hasNext() ) {
+            Handle handle = iterator.next().getValue();
+            if ( handle.users == 0 ) {
+                iterator.remove();
+                this.closeQuietly( handle );
+                this.evictions++;
+            }
+        }
+    }
+
+    private void closeQuietly( Handle handle ) {
+        try {
+            handle.regionFile.close();
+        } catch ( IOException e ) {
+            LOGGER.warn( "Could not close region file " + handle.regionHash, e );
+        }
+    }
+
+    private static final class Handle {
+
+        private final long regionHash;
+        private final RegionFile regionFile;
+        private int users;
+
+        private Handle( long regionHash, RegionFile regionFile ) {
+            this.regionHash = regionHash;
+            this.regionFile = regionFile;
+        }
+
+    }
+
+}
@@ -16,4 +16,14 @@ public class AcaciaLeaves extends Block {
         return true;
     }
 
+    @Override
+    public int getLightFilter() {
+        return 1;
+    }
+
+    @Override
+    public boolean isRandomTicking() {
+        return true;
+    }
+
 }
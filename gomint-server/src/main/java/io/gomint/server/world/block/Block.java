@@ -15,7 +15,7 @@ import lombok.Setter;
  * @author geNAZt
  * @version 1.0
  */
-public abstract class Block implements io.gomint.world.block.Block {
+public abstract class Block implements io.gomint.world.block.Block, Cloneable {
 
     // CHECKSTYLE:OFF
     @Setter protected WorldAdapter world;
@@ -60,6 +60,34 @@ public abstract class Block implements io.gomint.world.block.Block {
         return true;
     }
 
+    /**
+     * Get the light level this block emits
+     *
+     * @return light level between 0 and 15
+     */
+    public int getLightEmission() {
+        return 0;
+    }
+
+    /**
+     * Get the amount of light which gets lost when passing through this block. Sky light which passes
+     * straight down through a block without any filter does not lose any level.
+     *
+     * @return 0 for blocks which let light pass through up to 15 for blocks which block it completely
+     */
+    public int getLightFilter() {
+        return this.isTransparent() || !this.isSolid() ? 0 : 15;
+    }
+
+    /**
+     * Does this block get updated by random ticks?
+     *
+     * @return true when random ticks should call {@link #update(UpdateReason, long, float)}
+     */
+    public boolean isRandomTicking() {
+        return false;
+    }
+
     /**
      * Does this block need a tile entity on placement?
      *
@@ -91,12 +119,25 @@ public abstract class Block implements io.gomint.world.block.Block {
         Block instance = Blocks.get( blockType );
         if ( instance != null ) {
             WorldAdapter worldAdapter = (WorldAdapter) this.location.getWorld();
+
+            // Changes outside of the currently ticked shard have to wait for the post phase
+            if ( worldAdapter.isForeignBlockWrite( (int) pos.getX(), (int) pos.getZ() ) ) {
+                final Location location = this.location;
+                worldAdapter.deferBlockWrite( new Runnable() {
+                    @Override
+                    public void run() {
+                        worldAdapter.getBlockAt( location ).setType( blockType );
+                    }
+                } );
+
+                return worldAdapter.getBlockAt( pos );
+            }
+
             worldAdapter.setBlockId( pos, instance.getBlockId() );
             worldAdapter.setBlockData( pos, (byte) 0 );
 
-            // Update light
+            instance.setWorld( worldAdapter );
             instance.setLocation( this.location );
-            WorldAdapter.getBlockLightCalculator().calculate( worldAdapter, instance );
 
             // Check if new block needs tile entity
             if ( instance.needsTileentity() ) {
@@ -150,6 +191,19 @@ public abstract class Block implements io.gomint.world.block.Block {
         return false;
     }
 
+    /**
+     * Create a new instance of this block with the same state and position
+     *
+     * @return the copy of this block
+     */
+    Block copy() {
+        try {
+            return (Block) super.clone();
+        } catch ( CloneNotSupportedException e ) {
+            throw new AssertionError( "Failed to clone Block!" );
+        }
+    }
+
     @Override
     public boolean equals( Object obj ) {
         if ( obj instanceof Block ) {
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.block;
+
+import io.gomint.math.AxisAlignedBB;
+import lombok.Getter;
+
+/**
+ * Immutable properties of a block id and data combination. There is only one state per combination which
+ * gets created when {@link Blocks} is loaded, so states can be compared by identity and read from any
+ * thread. Code which only needs to know what kind of block is somewhere should use these instead of block
+ * instances, which have to be created for every lookup.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+@Getter
+public final class BlockState {
+
+    private final int blockId;
+    private final byte blockData;
+    private final boolean solid;
+    private final boolean transparent;
+    private final boolean passThrough;
+    private final boolean randomTicking;
+    private final int lightEmission;
+    private final int lightFilter;
+    private final float frictionFactor;
+
+    // Bounding box relative to the lowest corner of the block
+    private final float minX;
+    private final float minY;
+    private final float minZ;
+    private final float maxX;
+    private final float maxY;
+    private final float maxZ;
+
+    /**
+     * Take over the properties of a block which has been put at 0, 0, 0
+     *
+     * @param block The block from which the properties should be read
+     */
+    BlockState( Block block ) {
+        this.blockId = block.getBlockId();
+        this.blockData = block.getBlockData();
+        this.solid = block.isSolid();
+        this.transparent = block.isTransparent();
+        this.passThrough = block.canPassThrough();
+        this.randomTicking = block.isRandomTicking();
+        this.lightEmission = block.getLightEmission();
+        this.lightFilter = block.getLightFilter();
+        this.frictionFactor = block.getFrictionFactor();
+
+        AxisAlignedBB boundingBox = block.getBoundingBox();
+        this.minX = boundingBox.getMinX();
+        this.minY = boundingBox.getMinY();
+        this.minZ = boundingBox.getMinZ();
+        this.maxX = boundingBox.getMaxX();
+        this.maxY = boundingBox.getMaxY();
+        this.maxZ = boundingBox.getMaxZ();
+    }
+
+    /**
+     * Create the state of a block id for which no implementation exists. It acts like a full solid block.
+     *
+     * @param blockId   The id of the block
+     * @param blockData The data of the block
+     */
+    BlockState( int blockId, byte blockData ) {
+        this.blockId = blockId;
+        this.blockData = blockData;
+        this.solid = true;
+        this.transparent = false;
+        this.passThrough = false;
+        this.randomTicking = false;
+        this.lightEmission = 0;
+        this.lightFilter = 15;
+        this.frictionFactor = 0.6f;
+
+        this.minX = 0;
+        this.minY = 0;
+        this.minZ = 0;
+        this.maxX = 1;
+        this.maxY = 1;
+        this.maxZ = 1;
+    }
+
+    /**
+     * Check if the bounding box of this state intersects with the given one when the block is at the given
+     * position. This does the same as {@link AxisAlignedBB#intersectsWith(AxisAlignedBB)} without creating a
+     * bounding box for the block.
+     *
+     * @param x  The x coordinate of the block
+     * @param y  The y coordinate of the block
+     * @param z  The z coordinate of the block
+     * @param bb The bounding box to check against
+     * @return true when they intersect
+     */
+    public boolean intersects( int x, int y, int z, AxisAlignedBB bb ) {
+        return bb.getMaxX() > x + this.minX && bb.getMinX() < x + this.maxX &&
+                bb.getMaxY() > y + this.minY && bb.getMinY() < y + this.maxY &&
+                bb.getMaxZ() > z + this.minZ && bb.getMinZ() < z + this.maxZ;
+    }
+
+    /**
+     * Create the bounding box of this state for a block at the given position
+     *
+     * @param x The x coordinate of the block
+     * @param y The y coordinate of the block
+     * @param z The z coordinate of the block
+     * @return a new bounding box
+     */
+    public AxisAlignedBB createBoundingBox( int x, int y, int z ) {
+        return new AxisAlignedBB( x + this.minX, y + this.minY, z + this.minZ, x + this.maxX, y + this.maxY, z + this.maxZ );
+    }
+
+    @Override
+    public String toString() {
+        return "BlockState{id=" + this.blockId + ", data=" + this.blockData + "}";
+    }
+
+}
@@ -15,6 +15,9 @@ public class Blocks {
     private static final Block[] KNOWN_BLOCKS = new Block[256];
     private static final ObjObjMap<Class<?>, Block> KNOWN_API_INTERFACES = HashObjObjMaps.newMutableMap();
 
+    // One state per block id and data, indexed by id << 4 | data
+    private static final BlockState[] STATES = new BlockState[256 << 4];
+
     public static final Air AIR = createBlock( 0, Air.class );
     public static final Stone STONE = createBlock( 1, Stone.class );
     public static final GrassBlock GRASS_BLOCK = createBlock( 2, GrassBlock.class );
@@ -228,6 +231,24 @@ public class Blocks {
     public static final Chalkboard CHALKBOARD = createBlock( 230, Chalkboard.class );
     public static final Camera CAMERA = createBlock( 242, Camera.class );
 
+    static {
+        // States are read from copies which stand at the origin, the known instances never get changed
+        Location origin = new Location( null, 0, 0, 0 );
+        for ( int blockId = 0; blockId < 256; blockId++ ) {
+            for ( int blockData = 0; blockData < 16; blockData++ ) {
+                Block block = KNOWN_BLOCKS[blockId];
+                if ( block == null ) {
+                    STATES[blockId << 4 | blockData] = new BlockState( blockId, (byte) blockData );
+                } else {
+                    Block copy = block.copy();
+                    copy.setBlockData( (byte) blockData );
+                    copy.setLocation( origin );
+                    STATES[blockId << 4 | blockData] = new BlockState( copy );
+                }
+            }
+        }
+    }
+
     private static <T extends Block> T createBlock( int blockId, Class<T> blockClass ) {
         try {
             T instance = blockClass.newInstance();
@@ -247,10 +268,25 @@ public class Blocks {
         return null;
     }
 
+    /**
+     * Create a block instance for the given position. Every call creates a new instance, so the returned block
+     * can be kept and used from any thread. Use {@link #getState(int, int)} when only the properties of a block
+     * are needed.
+     *
+     * @param blockId         The id of the block
+     * @param blockData       The data of the block
+     * @param skyLightLevel   The sky light at the block
+     * @param blockLightLevel The block light at the block
+     * @param tileEntity      The tile entity of the block, may be null
+     * @param location        The position of the block
+     * @param <T>             The type of the block
+     * @return the new block instance or null when the block id is unknown
+     */
     public static <T extends Block> T get( int blockId, byte blockData, byte skyLightLevel, byte blockLightLevel,
                                            TileEntity tileEntity, Location location ) {
-        Block instance = KNOWN_BLOCKS[blockId];
-        if ( instance != null ) {
+        Block known = KNOWN_BLOCKS[blockId];
+        if ( known != null ) {
+            Block instance = known.copy();
             instance.setBlockData( blockData );
             instance.setTileEntity( tileEntity );
             instance.setWorld( (WorldAdapter) location.getWorld() );
@@ -266,10 +302,41 @@ public class Blocks {
     public static <T extends Block> T get( Class<?> apiInterface ) {
         Block instance = KNOWN_API_INTERFACES.get( apiInterface );
         if ( instance != null ) {
-            return (T) instance;
+            return (T) instance.copy();
         }
 
         return null;
     }
 
+    /**
+     * Get the shared state of a block id and data combination
+     *
+     * @param blockId   The id of the block
+     * @param blockData The data of the block
+     * @return the state, never null
+     */
+    public static BlockState getState( int blockId, int blockData ) {
+        return STATES[( blockId & 0xFF ) << 4 | ( blockData & 0xF )];
+    }
+
+    /**
+     * Get the light level a block emits without creating an instance of it
+     *
+     * @param blockId The id of the block
+     * @return light level between 0 and 15
+     */
+    public static int getLightEmission( int blockId ) {
+        return STATES[blockId << 4].getLightEmission();
+    }
+
+    /**
+     * Get the amount of light a block takes away from light passing through it without creating an instance of it
+     *
+     * @param blockId The id of the block
+     * @return 0 for air up to 15 for blocks which don't let light through
+     */
+    public static int getLightFilter( int blockId ) {
+        return STATES[blockId << 4].getLightFilter();
+    }
+
 }
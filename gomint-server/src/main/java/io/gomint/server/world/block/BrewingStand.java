@@ -21,4 +21,9 @@ public class BrewingStand extends Block {
         return true;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 1;
+    }
+
 }
@@ -11,4 +11,9 @@ public class BrownMushroom extends Block {
         return 99;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 1;
+    }
+
 }
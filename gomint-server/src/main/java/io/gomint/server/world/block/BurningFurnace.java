@@ -21,4 +21,9 @@ public class BurningFurnace extends Block {
         return true;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 13;
+    }
+
 }
@@ -26,4 +26,9 @@ public class Cobweb extends Block {
         return false;
     }
 
+    @Override
+    public int getLightFilter() {
+        return 1;
+    }
+
 }
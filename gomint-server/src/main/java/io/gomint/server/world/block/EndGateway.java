@@ -21,4 +21,9 @@ public class EndGateway extends Block {
         return false;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 15;
+    }
+
 }
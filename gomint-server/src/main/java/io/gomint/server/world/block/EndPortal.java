@@ -26,4 +26,9 @@ public class EndPortal extends Block {
         return false;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 15;
+    }
+
 }
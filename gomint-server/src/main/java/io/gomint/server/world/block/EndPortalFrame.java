@@ -21,4 +21,9 @@ public class EndPortalFrame extends Block {
         return true;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 1;
+    }
+
 }
@@ -11,4 +11,9 @@ public class EndRod extends Block {
         return 208;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 14;
+    }
+
 }
@@ -21,4 +21,9 @@ public class EnderChest extends Block {
         return true;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 7;
+    }
+
 }
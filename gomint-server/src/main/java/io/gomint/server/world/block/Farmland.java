@@ -21,4 +21,9 @@ public class Farmland extends Block {
         return true;
     }
 
+    @Override
+    public boolean isRandomTicking() {
+        return true;
+    }
+
 }
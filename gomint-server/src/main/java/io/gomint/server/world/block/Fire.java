@@ -26,4 +26,9 @@ public class Fire extends Block {
         return true;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 15;
+    }
+
 }
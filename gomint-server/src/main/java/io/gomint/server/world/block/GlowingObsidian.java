@@ -11,4 +11,9 @@ public class GlowingObsidian extends Block {
         return 246;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 12;
+    }
+
 }
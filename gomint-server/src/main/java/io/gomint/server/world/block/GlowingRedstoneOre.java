@@ -21,4 +21,9 @@ public class GlowingRedstoneOre extends Block {
         return true;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 9;
+    }
+
 }
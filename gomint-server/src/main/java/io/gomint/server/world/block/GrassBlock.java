@@ -30,4 +30,9 @@ public class GrassBlock extends Block {
         return 900;
     }
 
+    @Override
+    public boolean isRandomTicking() {
+        return true;
+    }
+
 }
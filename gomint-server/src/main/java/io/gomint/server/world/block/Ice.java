@@ -21,4 +21,14 @@ public class Ice extends Block {
         return true;
     }
 
+    @Override
+    public int getLightFilter() {
+        return 3;
+    }
+
+    @Override
+    public boolean isRandomTicking() {
+        return true;
+    }
+
 }
@@ -21,4 +21,14 @@ public class Leaves extends Block {
         return true;
     }
 
+    @Override
+    public int getLightFilter() {
+        return 1;
+    }
+
+    @Override
+    public boolean isRandomTicking() {
+        return true;
+    }
+
 }
@@ -16,4 +16,9 @@ public class Mycelium extends Block {
         return 900;
     }
 
+    @Override
+    public boolean isRandomTicking() {
+        return true;
+    }
+
 }
@@ -16,4 +16,9 @@ public class Portal extends Block {
         return -1;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 11;
+    }
+
 }
@@ -21,4 +21,9 @@ public class RedstoneTorchActive extends Block {
         return false;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 7;
+    }
+
 }
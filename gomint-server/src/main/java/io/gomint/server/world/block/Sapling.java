@@ -21,4 +21,9 @@ public class Sapling extends Block {
         return false;
     }
 
+    @Override
+    public boolean isRandomTicking() {
+        return true;
+    }
+
 }
@@ -21,4 +21,9 @@ public class SeaLantern extends Block {
         return true;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 15;
+    }
+
 }
@@ -26,4 +26,14 @@ public class StationaryLava extends Block {
         return false;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 15;
+    }
+
+    @Override
+    public boolean isRandomTicking() {
+        return true;
+    }
+
 }
@@ -26,4 +26,9 @@ public class StationaryWater extends Block {
         return false;
     }
 
+    @Override
+    public int getLightFilter() {
+        return 3;
+    }
+
 }
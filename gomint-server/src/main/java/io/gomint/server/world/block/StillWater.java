@@ -11,4 +11,9 @@ public class StillWater extends Block {
         return 9;
     }
 
+    @Override
+    public int getLightFilter() {
+        return 3;
+    }
+
 }
@@ -21,4 +21,9 @@ public class TopSnow extends Block {
         return true;
     }
 
+    @Override
+    public boolean isRandomTicking() {
+        return true;
+    }
+
 }
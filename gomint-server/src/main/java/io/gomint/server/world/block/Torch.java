@@ -21,4 +21,9 @@ public class Torch extends Block {
         return false;
     }
 
+    @Override
+    public int getLightEmission() {
+        return 14;
+    }
+
 }
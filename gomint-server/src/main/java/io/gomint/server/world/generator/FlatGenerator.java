@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.generator;
+
+import io.gomint.server.world.block.Blocks;
+import io.gomint.world.Biome;
+import io.gomint.world.generator.ChunkGenerator;
+import io.gomint.world.generator.GeneratorChunk;
+import io.gomint.world.generator.GeneratorRegion;
+
+/**
+ * Generates a flat world: bedrock, two layers of dirt and grass on top
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class FlatGenerator implements ChunkGenerator {
+
+    private static final int[] LAYERS = new int[]{
+            Blocks.BEDROCK.getBlockId(),
+            Blocks.DIRT.getBlockId(),
+            Blocks.DIRT.getBlockId(),
+            Blocks.GRASS_BLOCK.getBlockId()
+    };
+
+    @Override
+    public void generateNoise( GeneratorChunk chunk ) {
+        for ( int x = 0; x < 16; x++ ) {
+            for ( int z = 0; z < 16; z++ ) {
+                for ( int y = 0; y < LAYERS.length; y++ ) {
+                    chunk.setBlock( x, y, z, LAYERS[y], (byte) 0 );
+                }
+            }
+        }
+    }
+
+    @Override
+    public void generateSurface( GeneratorChunk chunk ) {
+        for ( int x = 0; x < 16; x++ ) {
+            for ( int z = 0; z < 16; z++ ) {
+                chunk.setBiome( x, z, Biome.PLAINS );
+            }
+        }
+    }
+
+    @Override
+    public void decorate( GeneratorRegion region, int chunkX, int chunkZ ) {
+        // Nothing grows on a flat world
+    }
+
+}
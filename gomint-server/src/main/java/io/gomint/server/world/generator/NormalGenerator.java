@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.generator;
+
+import io.gomint.server.world.block.Blocks;
+import io.gomint.world.Biome;
+import io.gomint.world.generator.ChunkGenerator;
+import io.gomint.world.generator.GeneratorChunk;
+import io.gomint.world.generator.GeneratorRegion;
+
+import java.util.Random;
+
+/**
+ * Generates an overworld out of noise: hills and oceans, beaches, deserts, plains and forests with trees
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class NormalGenerator implements ChunkGenerator {
+
+    private static final int SEA_LEVEL = 62;
+
+    private static final int AIR = Blocks.AIR.getBlockId();
+    private static final int STONE = Blocks.STONE.getBlockId();
+    private static final int GRASS = Blocks.GRASS_BLOCK.getBlockId();
+    private static final int DIRT = Blocks.DIRT.getBlockId();
+    private static final int BEDROCK = Blocks.BEDROCK.getBlockId();
+    private static final int WATER = Blocks.STATIONARY_WATER.getBlockId();
+    private static final int SAND = Blocks.SAND.getBlockId();
+    private static final int GRAVEL = Blocks.GRAVEL.getBlockId();
+    private static final int SANDSTONE = Blocks.SANDSTONE.getBlockId();
+    private static final int WOOD = Blocks.WOOD.getBlockId();
+    private static final int LEAVES = Blocks.LEAVES.getBlockId();
+    private static final int TALL_GRASS = Blocks.TALL_GRASS.getBlockId();
+    private static final int CACTUS = Blocks.CACTUS.getBlockId();
+
+    private final long seed;
+    private final PerlinNoise heightNoise;
+    private final PerlinNoise detailNoise;
+    private final PerlinNoise temperatureNoise;
+    private final PerlinNoise vegetationNoise;
+
+    /**
+     * Create a new generator for the given seed
+     *
+     * @param seed The seed of the world
+     */
+    public NormalGenerator( long seed ) {
+        this.seed = seed;
+
+        Random random = new Random( seed );
+        this.heightNoise = new PerlinNoise( random, 6, 0.5 );
+        this.detailNoise = new PerlinNoise( random, 3, 0.5 );
+        this.temperatureNoise = new PerlinNoise( random, 2, 0.5 );
+        this.vegetationNoise = new PerlinNoise( random, 2, 0.5 );
+    }
+
+    @Override
+    public void generateNoise( GeneratorChunk chunk ) {
+        int baseX = chunk.getX() << 4;
+        int baseZ = chunk.getZ() << 4;
+
+        for ( int x = 0; x < 16; x++ ) {
+            for ( int z = 0; z < 16; z++ ) {
+                int height = this.getHeight( baseX + x, baseZ + z );
+
+                chunk.setBlock( x, 0, z, BEDROCK, (byte) 0 );
+                for ( int y = 1; y <= height; y++ ) {
+                    chunk.setBlock( x, y, z, STONE, (byte) 0 );
+                }
+
+                for ( int y = height + 1; y <= SEA_LEVEL; y++ ) {
+                    chunk.setBlock( x, y, z, WATER, (byte) 0 );
+                }
+            }
+        }
+    }
+
+    @Override
+    public void generateSurface( GeneratorChunk chunk ) {
+        int baseX = chunk.getX() << 4;
+        int baseZ = chunk.getZ() << 4;
+
+        for ( int x = 0; x < 16; x++ ) {
+            for ( int z = 0; z < 16; z++ ) {
+                int height = this.getHeight( baseX + x, baseZ + z );
+                Biome biome = this.getBiome( baseX + x, baseZ + z, height );
+                chunk.setBiome( x, z, biome );
+
+                int top;
+                int filler;
+                switch ( biome ) {
+                    case OCEAN:
+                        top = GRAVEL;
+                        filler = GRAVEL;
+                        break;
+
+                    case BEACH:
+                        top = SAND;
+                        filler = SAND;
+                        break;
+
+                    case DESERT:
+                        top = SAND;
+                        filler = SANDSTONE;
+                        break;
+
+                    default:
+                        top = height < SEA_LEVEL ? DIRT : GRASS;
+                        filler = DIRT;
+                        break;
+                }
+
+                chunk.setBlock( x, height, z, top, (byte) 0 );
+                for ( int y = Math.max( 1, height - 3 ); y < height; y++ ) {
+                    chunk.setBlock( x, y, z, filler, (byte) 0 );
+                }
+            }
+        }
+    }
+
+    @Override
+    public void decorate( GeneratorRegion region, int chunkX, int chunkZ ) {
+        // Same chunk, same features, no matter in which order chunks get decorated
+        Random random = new Random( this.seed ^ ( chunkX * 341873128712L + chunkZ * 132897987541L ) );
+
+        int baseX = chunkX << 4;
+        int baseZ = chunkZ << 4;
+        int centerX = baseX + 8;
+        int centerZ = baseZ + 8;
+
+        Biome biome = this.getBiome( centerX, centerZ, this.getHeight( centerX, centerZ ) );
+        int trees;
+        int grass;
+        int cacti = 0;
+        switch ( biome ) {
+            case FOREST:
+                trees = 5 + random.nextInt( 4 );
+                grass = 8;
+                break;
+
+            case PLAINS:
+                trees = random.nextInt( 8 ) == 0 ? 1 : 0;
+                grass = 24;
+                break;
+
+            case DESERT:
+                trees = 0;
+                grass = 0;
+                cacti = random.nextInt( 3 );
+                break;
+
+            default:
+                trees = 0;
+                grass = 0;
+                break;
+        }
+
+        for ( int i = 0; i < trees; i++ ) {
+            int x = baseX + random.nextInt( 16 );
+            int z = baseZ + random.nextInt( 16 );
+            int y = region.getHighestBlockY( x, z );
+            if ( y > 0 && region.getBlockId( x, y, z ) == GRASS ) {
+                this.placeTree( region, random, x, y + 1, z );
+            }
+        }
+
+        for ( int i = 0; i < grass; i++ ) {
+            int x = baseX + random.nextInt( 16 );
+            int z = baseZ + random.nextInt( 16 );
+            int y = region.getHighestBlockY( x, z );
+            if ( y > 0 && y < 255 && region.getBlockId( x, y, z ) == GRASS ) {
+                region.setBlock( x, y + 1, z, TALL_GRASS, (byte) 1 );
+            }
+        }
+
+        for ( int i = 0; i < cacti; i++ ) {
+            int x = baseX + random.nextInt( 16 );
+            int z = baseZ + random.nextInt( 16 );
+            int y = region.getHighestBlockY( x, z );
+            if ( y > 0 && region.getBlockId( x, y, z ) == SAND ) {
+                int height = 1 + random.nextInt( 3 );
+                for ( int j = 1; j <= height && y + j < 256; j++ ) {
+                    region.setBlock( x, y + j, z, CACTUS, (byte) 0 );
+                }
+            }
+        }
+    }
+
+    private void placeTree( GeneratorRegion region, Random random, int x, int y, int z ) {
+        int trunkHeight = 4 + random.nextInt( 3 );
+        int top = y + trunkHeight;
+        if ( top + 1 >= 256 ) {
+            return;
+        }
+
+        // Two wide layers of leaves below two small ones, the leaves reach up to two blocks into the neighbours
+        for ( int leafY = top - 3; leafY <= top; leafY++ ) {
+            int radius = leafY >= top - 1 ? 1 : 2;
+            for ( int leafX = x - radius; leafX <= x + radius; leafX++ ) {
+                for ( int leafZ = z - radius; leafZ <= z + radius; leafZ++ ) {
+                    boolean corner = Math.abs( leafX - x ) == radius && Math.abs( leafZ - z ) == radius;
+                    if ( corner && ( leafY == top || random.nextBoolean() ) ) {
+                        continue;
+                    }
+
+                    if ( region.getBlockId( leafX, leafY, leafZ ) == AIR ) {
+                        region.setBlock( leafX, leafY, leafZ, LEAVES, (byte) 0 );
+                    }
+                }
+            }
+        }
+
+        for ( int trunkY = y; trunkY < top; trunkY++ ) {
+            region.setBlock( x, trunkY, z, WOOD, (byte) 0 );
+        }
+
+        region.setBlock( x, y - 1, z, DIRT, (byte) 0 );
+    }
+
+    private int getHeight( int x, int z ) {
+        double height = SEA_LEVEL + 2 + this.heightNoise.getValue( x, z, 256 ) * 40 + this.detailNoise.getValue( x, z, 32 ) * 4;
+        return Math.max( 1, Math.min( 200, (int) height ) );
+    }
+
+    private Biome getBiome( int x, int z, int height ) {
+        if ( height < SEA_LEVEL - 4 ) {
+            return Biome.OCEAN;
+        }
+
+        if ( height <= SEA_LEVEL + 1 ) {
+            return Biome.BEACH;
+        }
+
+        if ( this.temperatureNoise.getValue( x, z, 512 ) > 0.3 ) {
+            return Biome.DESERT;
+        }
+
+        return this.vegetationNoise.getValue( x, z, 256 ) > 0.1 ? Biome.FOREST : Biome.PLAINS;
+    }
+
+}
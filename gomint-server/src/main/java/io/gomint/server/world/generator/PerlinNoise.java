@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.generator;
+
+import java.util.Random;
+
+/**
+ * Two dimensional gradient noise with multiple octaves. Instances are immutable once created and may be used
+ * by multiple threads.
+ *
+ * @author geNAZt
+ * @version 1.0
+ */
+public class PerlinNoise {
+
+    private static final double[][] GRADIENTS = new double[][]{
+            { 1, 1 }, { -1, 1 }, { 1, -1 }, { -1, -1 },
+            { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 }
+    };
+
+    private final int[] permutation = new int[512];
+    private final int octaves;
+    private final double persistence;
+    private final double offsetX;
+    private final double offsetZ;
+
+    /**
+     * Create a new noise function
+     *
+     * @param random      The random which seeds the permutation
+     * @param octaves     Amount of octaves which are added up
+     * @param persistence Factor by which the amplitude of every following octave shrinks
+     */
+    public PerlinNoise( Random random, int octaves, double persistence ) {
+        this.octaves = octaves;
+        this.persistence = persistence;
+        this.offsetX = random.nextDouble() * 256;
+        this.offsetZ = random.nextDouble() * 256;
+
+        for ( int i = 0; i < 256; i++ ) {
+            this.permutation[i] = i;
+        }
+
+        for ( int i = 255; i > 0; i-- ) {
+            int j = random.nextInt( i + 1 );
+            int tmp = this.permutation[i];
+            this.permutation[i] = this.permutation[j];
+            this.permutation[j] = tmp;
+        }
+
+        System.arraycopy( this.permutation, 0, this.permutation, 256, 256 );
+    }
+
+    /**
+     * Get the noise value at the given position
+     *
+     * @param x     The x coordinate
+     * @param z     The z coordinate
+     * @param scale The size of the first octave in blocks
+     * @return noise value roughly between -1 and 1
+     */
+    public double getValue( double x, double z, double scale ) {
+        double value = 0;
+        double amplitude = 1;
+        double maxAmplitude = 0;
+        double frequency = 1 / scale;
+
+        for ( int i = 0; i < this.octaves; i++ ) {
+            value += this.noise( x * frequency + this.offsetX, z * frequency + this.offsetZ ) * amplitude;
+            maxAmplitude += amplitude;
+            amplitude *= this.persistence;
+            frequency *= 2;
+        }
+
+        return value / maxAmplitude;
+    }
+
+    private double noise( double x, double z ) {
+        int floorX = (int) Math.floor( x );
+        int floorZ = (int) Math.floor( z );
+        double relX = x - floorX;
+        double relZ = z - floorZ;
+        int cellX = floorX & 255;
+        int cellZ = floorZ & 255;
+
+        double n00 = this.gradient( this.permutation[cellX + this.permutation[cellZ]], relX, relZ );
+        double n01 = this.gradient( this.permutation[cellX + this.permutation[cellZ + 1]], relX, relZ - 1 );
+        double n10 = this.gradient( this.permutation[cellX + 1 + this.permutation[cellZ]], relX - 1, relZ );
+        double n11 = this.gradient( this.permutation[cellX + 1 + this.permutation[cellZ + 1]], relX - 1, relZ - 1 );
+
+        double fadeX = fade( relX );
+        double fadeZ = fade( relZ );
+        return lerp( fadeX, lerp( fadeZ, n00, n01 ), lerp( fadeZ, n10, n11 ) );
+    }
+
+    private double gradient( int hash, double x, double z ) {
+        double[] gradient = GRADIENTS[hash & 7];
+        return gradient[0] * x + gradient[1] * z;
+    }
+
+    private static double fade( double t ) {
+        return t * t * t * ( t * ( t * 6 - 15 ) + 10 );
+    }
+
+    private static double lerp( double t, double a, double b ) {
+        return a + t * ( b - a );
+    }
+
+}
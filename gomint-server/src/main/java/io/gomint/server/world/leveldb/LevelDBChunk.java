@@ -7,16 +7,22 @@
 
 package io.gomint.server.world.leveldb;
 
+import io.gomint.server.entity.tileentity.TileEntity;
 import io.gomint.server.world.ChunkAdapter;
-import io.gomint.server.world.NibbleArray;
 import io.gomint.server.world.WorldAdapter;
 import io.gomint.taglib.NBTTagCompound;
 import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.impl.DbImpl;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author geNAZt
@@ -24,6 +30,23 @@ import java.nio.ByteOrder;
  */
 public class LevelDBChunk extends ChunkAdapter {
 
+    // Keys of the records a chunk consists of
+    static final byte KEY_DATA_2D = 0x2d;
+    static final byte KEY_SUB_CHUNK = 0x2f;
+    static final byte KEY_TILE_ENTITIES = 0x31;
+    static final byte KEY_ENTITIES = 0x32;
+    static final byte KEY_VERSION = 0x76;
+
+    static final byte CHUNK_VERSION = 3;
+    private static final byte SUB_CHUNK_VERSION = 0;
+
+    // Records we can't interpret yet, they are written back as they were loaded
+    private final List<NBTTagCompound> unknownTileEntities = new ArrayList<>();
+    private byte[] entityData;
+
+    // Set when a record could not be read, the chunk may not be saved then
+    private boolean readFailed;
+
     LevelDBChunk( WorldAdapter worldAdapter, int x, int z ) {
         this.world = worldAdapter;
         this.x = x;
@@ -32,98 +55,226 @@ public class LevelDBChunk extends ChunkAdapter {
     }
 
     /**
-     * Calculates the needed data to be saved back to the database
+     * Build the key of a chunk record
      *
-     * @return The data which will be saved in the database for this chunk
+     * @param chunkX   The x coordinate of the chunk
+     * @param chunkZ   The z coordinate of the chunk
+     * @param dataType The type of the record
+     * @return key of the record
      */
-    byte[] getSaveData() {
-       /* ByteBuffer byteBuffer = ByteBuffer.allocate( this.blocks.length +
-                this.data.raw().length +
-                this.skyLight.raw().length +
-                this.blockLight.raw().length +
-                this.height.length() +
-                256 );
-
-        byteBuffer.put( this.blocks );
-        byteBuffer.put( this.data.raw() );
-        byteBuffer.put( this.skyLight.raw() );
-        byteBuffer.put( this.blockLight.raw() );
-        byteBuffer.put( this.height.toByteArray() );
+    static byte[] getKey( int chunkX, int chunkZ, byte dataType ) {
+        return new byte[]{
+                (byte) ( chunkX & 0xFF ),
+                (byte) ( ( chunkX >>> 8 ) & 0xFF ),
+                (byte) ( ( chunkX >>> 16 ) & 0xFF ),
+                (byte) ( ( chunkX >>> 24 ) & 0xFF ),
+                (byte) ( chunkZ & 0xFF ),
+                (byte) ( ( chunkZ >>> 8 ) & 0xFF ),
+                (byte) ( ( chunkZ >>> 16 ) & 0xFF ),
+                (byte) ( ( chunkZ >>> 24 ) & 0xFF ),
+                dataType
+        };
+    }
 
-        for ( int i = 0; i < 256; i++ ) {
-            byteBuffer.putInt( ( this.biomes[i] << 24 ) );
+    /**
+     * Build the key of a sub chunk record
+     *
+     * @param chunkX   The x coordinate of the chunk
+     * @param chunkZ   The z coordinate of the chunk
+     * @param subChunk The y coordinate of the sub chunk
+     * @return key of the sub chunk
+     */
+    static byte[] getKeySubChunk( int chunkX, int chunkZ, byte subChunk ) {
+        byte[] key = Arrays.copyOf( getKey( chunkX, chunkZ, KEY_SUB_CHUNK ), 10 );
+        key[9] = subChunk;
+        return key;
+    }
+
+    /**
+     * Read all records of this chunk from the database. When a record could not be read or is stored in a format we
+     * don't support the chunk is incomplete and must never be saved, otherwise it would overwrite the stored data.
+     *
+     * @param db The database from which the chunk should be read
+     * @throws IOException Thrown in case a record could not be read
+     */
+    void load( DB db ) throws IOException {
+        this.lastSavedTimestamp = System.currentTimeMillis();
+        this.loadedTime = this.lastSavedTimestamp;
+
+        try {
+            byte[] version = db.get( getKey( this.x, this.z, KEY_VERSION ) );
+            if ( version == null || version.length < 1 || version[0] != CHUNK_VERSION ) {
+                throw new IOException( "Unsupported version " + ( version == null || version.length < 1 ? "none" : version[0] ) +
+                        " of chunk " + this.x + ":" + this.z );
+            }
+
+            for ( int sectionY = 0; sectionY < 16; sectionY++ ) {
+                byte[] chunkData = db.get( getKeySubChunk( this.x, this.z, (byte) sectionY ) );
+                if ( chunkData != null ) {
+                    this.loadSection( sectionY, chunkData );
+                } else {
+                    break;
+                }
+            }
+
+            byte[] data2D = db.get( getKey( this.x, this.z, KEY_DATA_2D ) );
+            if ( data2D != null ) {
+                this.loadData2D( data2D );
+            } else {
+                this.calculateHeightmap();
+            }
+
+            byte[] tileEntityData = db.get( getKey( this.x, this.z, KEY_TILE_ENTITIES ) );
+            if ( tileEntityData != null ) {
+                this.loadTileEntities( tileEntityData );
+            }
+
+            this.entityData = db.get( getKey( this.x, this.z, KEY_ENTITIES ) );
+        } catch ( DbImpl.BackgroundProcessingException e ) {
+            this.readFailed = true;
+            throw new IOException( "Could not read chunk " + this.x + ":" + this.z + " from the database", e );
+        } catch ( IOException e ) {
+            this.readFailed = true;
+            throw e;
         }
-*/
-        return new byte[]{};
+
+        // Nothing has been changed yet
+        this.dirty = false;
+        this.modified = false;
     }
 
-    void loadSection( int sectionY, byte[] chunkData ) {
-        ByteBuffer buf = ByteBuffer.wrap( chunkData );
+    /**
+     * Check if a record of this chunk could not be read. Such chunks are kept in memory so nothing gets generated
+     * in their place, but they are never saved.
+     *
+     * @return true when the chunk has not been read completely
+     */
+    boolean isReadFailed() {
+        return this.readFailed;
+    }
 
-        // First byte is chunk section version
-        buf.get();
+    /**
+     * Put all records of this chunk into the given batch. Sub chunks above the highest one which contains
+     * blocks get deleted.
+     *
+     * @param batch The batch which should write the chunk
+     */
+    void save( WriteBatch batch ) {
+        batch.put( getKey( this.x, this.z, KEY_VERSION ), new byte[]{ CHUNK_VERSION } );
 
-        // Next 4096 bytes are block data
-        byte[] blockData = new byte[4096];
-        buf.get( blockData );
+        // Sub chunks are read until the first one is missing, so only air on top may be left out
+        boolean foundTop = false;
+        for ( int sectionY = 15; sectionY >= 0; sectionY-- ) {
+            byte[] key = getKeySubChunk( this.x, this.z, (byte) sectionY );
+            byte[] section = this.saveSection( sectionY );
+            if ( !foundTop && isAir( section ) ) {
+                batch.delete( key );
+                continue;
+            }
 
-        // Next 2048 bytes are metadata
-        byte[] metaData = new byte[2048];
-        buf.get( metaData );
-        NibbleArray meta = new NibbleArray( metaData );
+            foundTop = true;
+            batch.put( key, section );
+        }
 
-        // Next 2048 bytes are sky light
-        byte[] skyLight = new byte[2048];
-        buf.get( skyLight );
-        NibbleArray sky = new NibbleArray( skyLight );
+        batch.put( getKey( this.x, this.z, KEY_DATA_2D ), this.saveData2D() );
 
-        // Final 2048 bytes are block light
-        byte[] blockLight = new byte[2048];
-        buf.get( blockLight );
-        NibbleArray block = new NibbleArray( blockLight );
+        byte[] tileEntityData = this.saveTileEntities();
+        if ( tileEntityData.length > 0 ) {
+            batch.put( getKey( this.x, this.z, KEY_TILE_ENTITIES ), tileEntityData );
+        } else {
+            batch.delete( getKey( this.x, this.z, KEY_TILE_ENTITIES ) );
+        }
 
-        for ( int j = 0; j < 16; ++j ) {
-            for ( int i = 0; i < 16; ++i ) {
-                for ( int k = 0; k < 16; ++k ) {
-                    int y = ( sectionY << 4 ) + j;
-                    int blockIndex = k << 8 | i << 4 | j; // j k i - k j i - i k j -
+        if ( this.entityData != null ) {
+            batch.put( getKey( this.x, this.z, KEY_ENTITIES ), this.entityData );
+        }
+    }
 
+    void loadSection( int sectionY, byte[] chunkData ) throws IOException {
+        // First byte is the sub chunk version, only the first one is supported for now
+        if ( chunkData.length < 1 + 4096 + 3 * 2048 || chunkData[0] != SUB_CHUNK_VERSION ) {
+            throw new IOException( "Unsupported sub chunk " + sectionY + " of chunk " + this.x + ":" + this.z +
+                    " (version " + ( chunkData.length > 0 ? chunkData[0] : "none" ) + ", " + chunkData.length + " bytes)" );
+        }
 
-                    this.setBlock( k, y, i, blockData[blockIndex] );
+        // 4096 bytes block ids, then 2048 bytes each of data, sky light and block light. They are stored in
+        // the same order as our sections, so they can be taken over as a whole
+        this.setSection( sectionY,
+                Arrays.copyOfRange( chunkData, 1, 4097 ),
+                Arrays.copyOfRange( chunkData, 4097, 6145 ),
+                Arrays.copyOfRange( chunkData, 6145, 8193 ),
+                Arrays.copyOfRange( chunkData, 8193, 10241 ) );
+    }
 
-                    if ( meta.get( blockIndex ) != 0 ) {
-                        this.setData( k, y, i, meta.get( blockIndex ) );
-                    }
+    private byte[] saveSection( int sectionY ) {
+        byte[] chunkData = new byte[1 + 4096 + 3 * 2048];
+        chunkData[0] = SUB_CHUNK_VERSION;
+        this.getSection( sectionY, chunkData, 1 );
+        return chunkData;
+    }
 
-                    this.setSkyLight( k, y, i, sky.get( blockIndex ) );
-                    this.setBlockLight( k, y, i, block.get( blockIndex ) );
-                }
+    private static boolean isAir( byte[] chunkData ) {
+        for ( int i = 1; i < 4097; i++ ) {
+            if ( chunkData[i] != 0 ) {
+                return false;
             }
         }
+
+        return true;
     }
 
-    void loadTileEntities( byte[] tileEntityData ) {
+    private void loadData2D( byte[] data2D ) throws IOException {
+        // 256 little endian shorts of height followed by 256 biome ids
+        if ( data2D.length < 768 ) {
+            throw new IOException( "Height map and biomes of chunk " + this.x + ":" + this.z + " are too short (" + data2D.length + " bytes)" );
+        }
+
+        for ( int i = 0; i < 256; i++ ) {
+            this.height[i] = data2D[i << 1];
+        }
+
+        System.arraycopy( data2D, 512, this.biomes, 0, 256 );
+    }
+
+    private byte[] saveData2D() {
+        byte[] data2D = new byte[768];
+        for ( int i = 0; i < 256; i++ ) {
+            data2D[i << 1] = this.height[i];
+        }
+
+        System.arraycopy( this.biomes, 0, data2D, 512, 256 );
+        return data2D;
+    }
+
+    void loadTileEntities( byte[] tileEntityData ) throws IOException {
         ByteArrayInputStream bais = new ByteArrayInputStream( tileEntityData );
         while ( bais.available() > 0 ) {
-            try {
-                NBTTagCompound nbtTagCompound = NBTTagCompound.readFrom( bais, false, ByteOrder.LITTLE_ENDIAN );
-                // DumpUtil.dumpNBTCompund( nbtTagCompound );
-            } catch ( IOException e ) {
-                e.printStackTrace();
+            NBTTagCompound nbtTagCompound = NBTTagCompound.readFrom( bais, false, ByteOrder.LITTLE_ENDIAN );
+            if ( !this.addTileEntity( nbtTagCompound ) ) {
+                this.unknownTileEntities.add( nbtTagCompound );
             }
         }
     }
 
-    void loadEntities( byte[] entityData ) {
-        ByteArrayInputStream bais = new ByteArrayInputStream( entityData );
-        while ( bais.available() > 0 ) {
-            try {
-                NBTTagCompound nbtTagCompound = NBTTagCompound.readFrom( bais, false, ByteOrder.LITTLE_ENDIAN );
-                // DumpUtil.dumpNBTCompund( nbtTagCompound );
-            } catch ( IOException e ) {
-                e.printStackTrace();
+    private byte[] saveTileEntities() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        try {
+            for ( TileEntity tileEntity : this.getTileEntities() ) {
+                NBTTagCompound compound = new NBTTagCompound( "" );
+                tileEntity.toCompound( compound );
+                compound.writeTo( baos, false, ByteOrder.LITTLE_ENDIAN );
             }
+
+            for ( NBTTagCompound compound : this.unknownTileEntities ) {
+                compound.writeTo( baos, false, ByteOrder.LITTLE_ENDIAN );
+            }
+        } catch ( IOException e ) {
+            // Can't happen, we write into memory
+            e.printStackTrace();
         }
+
+        return baos.toByteArray();
     }
 
-}
\ No newline at end of file
+}
@@ -7,20 +7,24 @@
 
 package io.gomint.server.world.leveldb;
 
-import io.gomint.jraknet.PacketBuffer;
 import io.gomint.math.Location;
 import io.gomint.math.Vector;
 import io.gomint.server.GoMintServer;
 import io.gomint.server.world.ChunkAdapter;
 import io.gomint.server.world.ChunkCache;
+import io.gomint.server.world.CoordinateUtils;
 import io.gomint.server.world.WorldAdapter;
 import io.gomint.server.world.block.Blocks;
+import io.gomint.server.world.generator.FlatGenerator;
+import io.gomint.server.world.generator.NormalGenerator;
 import io.gomint.taglib.NBTStream;
 import io.gomint.taglib.NBTStreamListener;
+import net.openhft.koloboke.collect.set.LongSet;
+import net.openhft.koloboke.collect.set.hash.HashLongSets;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.Options;
 import org.iq80.leveldb.WriteBatch;
-import org.iq80.leveldb.impl.DbImpl;
+import org.iq80.leveldb.WriteOptions;
 import org.iq80.leveldb.impl.Iq80DBFactory;
 
 import java.io.File;
@@ -34,8 +38,24 @@ import java.nio.ByteOrder;
  */
 public class LevelDBWorldAdapter extends WorldAdapter {
 
+    // Values of the Generator field in level.dat
+    private static final int GENERATOR_OLD = 0;
+    private static final int GENERATOR_INFINITE = 1;
+    private static final int GENERATOR_FLAT = 2;
+
     private DB db;
 
+    // Saved chunks which have not been written yet, guarded by batchLock
+    private final Object batchLock = new Object();
+    private final LongSet batchedChunks = HashLongSets.newMutableSet();
+    private final int maxChunksPerBatch;
+    private final WriteOptions writeOptions;
+    private WriteBatch batch;
+
+    // Generation, old worlds are limited to the chunks they have
+    private long seed;
+    private int generatorType = GENERATOR_INFINITE;
+
     /**
      * Construct and init a new levedb based World
      *
@@ -45,11 +65,21 @@ public class LevelDBWorldAdapter extends WorldAdapter {
     LevelDBWorldAdapter( GoMintServer server, File worldDir ) {
         super( server, worldDir );
         this.chunkCache = new ChunkCache( this );
+        this.maxChunksPerBatch = Math.max( 1, server.getServerConfig().getLevelDBChunksPerBatch() );
+        this.writeOptions = new WriteOptions().sync( server.getServerConfig().isLevelDBSyncWrites() );
 
         // CHECKSTYLE:OFF
         try {
             this.loadLevelDat();
+            this.seedRandomTicks( this.seed );
             this.db = Iq80DBFactory.factory.open( new File( this.worldDir, "db" ), new Options().createIfMissing( true ) );
+
+            if ( this.generatorType == GENERATOR_FLAT ) {
+                this.setGenerator( new FlatGenerator() );
+            } else if ( this.generatorType != GENERATOR_OLD ) {
+                this.setGenerator( new NormalGenerator( this.seed ) );
+            }
+
             this.prepareSpawnRegion();
 
             // This is needed due to the fact that only the y coordinate is sometimes 32k+
@@ -82,29 +112,6 @@ public class LevelDBWorldAdapter extends WorldAdapter {
         return new LevelDBWorldAdapter( server, pathToWorld );
     }
 
-    private byte[] getKey( int chunkX, int chunkZ, byte dataType ) {
-        return new byte[]{
-                (byte) ( chunkX & 0xFF ),
-                (byte) ( ( chunkX >>> 8 ) & 0xFF ),
-                (byte) ( ( chunkX >>> 16 ) & 0xFF ),
-                (byte) ( ( chunkX >>> 24 ) & 0xFF ),
-                (byte) ( chunkZ & 0xFF ),
-                (byte) ( ( chunkZ >>> 8 ) & 0xFF ),
-                (byte) ( ( chunkZ >>> 16 ) & 0xFF ),
-                (byte) ( ( chunkZ >>> 24 ) & 0xFF ),
-                dataType
-        };
-    }
-
-    private byte[] getKeySubChunk( int chunkX, int chunkZ, byte dataType, byte subChunk ) {
-        PacketBuffer packetBuffer = new PacketBuffer( 10 );
-        packetBuffer.writeLInt( chunkX );
-        packetBuffer.writeLInt( chunkZ );
-        packetBuffer.writeByte( dataType );
-        packetBuffer.writeByte( subChunk );
-        return packetBuffer.getBuffer();
-    }
-
     private void loadLevelDat() throws Exception {
         File levelDat = new File( this.worldDir, "level.dat" );
         if ( !levelDat.exists() || !levelDat.isFile() ) {
@@ -126,6 +133,12 @@ public class LevelDBWorldAdapter extends WorldAdapter {
                     System.out.println( path + " -> " + value + "(" + value.getClass() + ")" );
 
                     switch ( path ) {
+                        case ".RandomSeed":
+                            LevelDBWorldAdapter.this.seed = (long) value;
+                            break;
+                        case ".Generator":
+                            LevelDBWorldAdapter.this.generatorType = (int) value;
+                            break;
                         case ".LevelName":
                             LevelDBWorldAdapter.this.levelName = (String) value;
                             break;
@@ -149,74 +162,51 @@ public class LevelDBWorldAdapter extends WorldAdapter {
 
     @Override
     protected ChunkAdapter loadChunk( int x, int z, boolean generate ) {
-        ChunkAdapter chunk = this.chunkCache.getChunk( x, z );
+        ChunkAdapter chunk = this.getCachedChunk( x, z );
         if ( chunk == null ) {
-            // Get version bit
-            byte[] version = this.db.get( this.getKey( x, z, (byte) 0x76 ) );
-            if ( version == null ) {
-                // TODO: Generator
-                return null;
-            }
-
-            LevelDBChunk loadingChunk = new LevelDBChunk( this, x, z );
-
-            if ( version[0] == 3 ) {        // 1.0+ version
-                for ( int sectionY = 0; sectionY < 16; sectionY++ ) {
-                    try {
-                        byte[] chunkData = this.db.get( this.getKeySubChunk( x, z, (byte) 0x2f, (byte) sectionY ) );
-                        if ( chunkData != null ) {
-                            loadingChunk.loadSection( sectionY, chunkData );
-                        } else {
-                            break;
-                        }
-                    } catch ( DbImpl.BackgroundProcessingException ignored ) {
-                        break;
-                    }
+            // A save of this chunk may still wait in the batch
+            synchronized ( this.batchLock ) {
+                if ( this.batchedChunks.contains( CoordinateUtils.toLong( x, z ) ) ) {
+                    this.flushSaves();
                 }
             }
 
-            try {
-                byte[] tileEntityData = this.db.get( this.getKey( x, z, (byte) 0x31 ) );
-                if ( tileEntityData != null ) {
-                    loadingChunk.loadTileEntities( tileEntityData );
-                }
-            } catch ( DbImpl.BackgroundProcessingException ignored ) {
-                // TODO: Implement proper error handling here
+            // Get version bit
+            byte[] version = this.db.get( LevelDBChunk.getKey( x, z, LevelDBChunk.KEY_VERSION ) );
+            if ( version == null ) {
+                return generate ? this.generateChunk( x, z ) : null;
             }
 
+            // Chunks which could not be read or have an unsupported format stay in memory so nothing gets generated
+            // in their place, but they are never saved
+            LevelDBChunk loadingChunk = new LevelDBChunk( this, x, z );
             try {
-                byte[] entityData = this.db.get( this.getKey( x, z, (byte) 0x32 ) );
-                if ( entityData != null ) {
-                    loadingChunk.loadEntities( entityData );
-                }
-            } catch ( DbImpl.BackgroundProcessingException ignored ) {
-                // TODO: Implement proper error handling here
+                loadingChunk.load( this.db );
+            } catch ( IOException e ) {
+                this.logger.error( "Failed to load chunk " + x + ":" + z + ", it will not be saved until the server restarts", e );
             }
 
             this.chunkCache.putChunk( loadingChunk );
             return loadingChunk;
+        }
 
-            /*
-                       byte[] extraData = null;
-            try {
-                extraData = this.db.get( this.getKey( x, z, (byte) 0x34 ) );
-            } catch ( DbImpl.BackgroundProcessingException ignored ) {
-                // TODO: Implement proper error handling here
-            }
+        return chunk;
+    }
 
-            if ( extraData != null ) {
-                DumpUtil.dumpByteArray( extraData );
+    @Override
+    protected boolean isChunkStored( int x, int z ) {
+        synchronized ( this.batchLock ) {
+            if ( this.batchedChunks.contains( CoordinateUtils.toLong( x, z ) ) ) {
+                return true;
             }
-
-            if ( chunkData != null ) {
-                chunk = new LevelDBChunk( this, x, z, chunkData, tileEntityData, entityData );
-                this.chunkCache.putChunk( chunk );
-            } else if ( generate ) {
-                // TODO: Implement chunk generation here
-            }*/
         }
 
-        return chunk;
+        return this.db.get( LevelDBChunk.getKey( x, z, LevelDBChunk.KEY_VERSION ) ) != null;
+    }
+
+    @Override
+    protected ChunkAdapter createChunk( int x, int z ) {
+        return new LevelDBChunk( this, x, z );
     }
 
     @Override
@@ -225,12 +215,63 @@ public class LevelDBWorldAdapter extends WorldAdapter {
             return;
         }
 
-        int chunkX = chunk.getX();
-        int chunkZ = chunk.getZ();
+        // Chunks which could not be read completely would overwrite the stored data
+        if ( ( (LevelDBChunk) chunk ).isReadFailed() ) {
+            this.logger.warn( "Not saving chunk " + chunk.getX() + ":" + chunk.getZ() + " since it could not be loaded" );
+            return;
+        }
+
+        synchronized ( this.batchLock ) {
+            // Every chunk is put into the batch as a whole so it is always written atomically
+            if ( this.batch == null ) {
+                this.batch = this.db.createWriteBatch();
+            }
+
+            ( (LevelDBChunk) chunk ).save( this.batch );
+            this.batchedChunks.add( CoordinateUtils.toLong( chunk.getX(), chunk.getZ() ) );
+
+            if ( this.batchedChunks.size() >= this.maxChunksPerBatch ) {
+                this.flushSaves();
+            }
+        }
+    }
 
-        WriteBatch writeBatch = this.db.createWriteBatch();
-        writeBatch.put( this.getKey( chunkX, chunkZ, (byte) 0x30 ), ( (LevelDBChunk) chunk ).getSaveData() );
-        this.db.write( writeBatch );
+    @Override
+    protected void flushSaves() {
+        synchronized ( this.batchLock ) {
+            if ( this.batch == null ) {
+                return;
+            }
+
+            try {
+                this.db.write( this.batch, this.writeOptions );
+            } finally {
+                try {
+                    this.batch.close();
+                } catch ( IOException e ) {
+                    this.logger.warn( "Could not close leveldb write batch", e );
+                }
+
+                this.batch = null;
+                this.batchedChunks.clear();
+            }
+        }
+    }
+
+    @Override
+    protected void closeStorage() {
+        if ( this.db == null ) {
+            return;
+        }
+
+        // The workers flush after their last save, this only catches saves which came in afterwards
+        this.flushSaves();
+
+        try {
+            this.db.close();
+        } catch ( IOException e ) {
+            this.logger.warn( "Could not close leveldb database", e );
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+import io.gomint.jraknet.PacketBuffer;
+import io.gomint.server.network.BatchDecoder;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * @author geNAZt
+ */
+public class TestBatchDecoder {
+
+    private static byte[] createBatch( int packets, int packetSize ) {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        for ( int i = 0; i < packets; i++ ) {
+            bout.write( packetSize );
+            for ( int j = 0; j < packetSize; j++ ) {
+                bout.write( i + j );
+            }
+        }
+
+        byte[] raw = bout.toByteArray();
+        Deflater deflater = new Deflater();
+        deflater.setInput( raw );
+        deflater.finish();
+
+        byte[] compressed = new byte[raw.length + 64];
+        int length = deflater.deflate( compressed );
+        deflater.end();
+
+        byte[] result = new byte[length];
+        System.arraycopy( compressed, 0, result, 0, length );
+        return result;
+    }
+
+    @Test
+    public void testSlices() {
+        BatchDecoder decoder = new BatchDecoder();
+        byte[] batch = createBatch( 3, 10 );
+
+        Assert.assertTrue( decoder.decode( batch, 0, batch.length ) );
+
+        PacketBuffer payload = decoder.getPayload();
+        for ( int i = 0; i < 3; i++ ) {
+            int length = payload.readUnsignedVarInt();
+            Assert.assertEquals( 10, length );
+
+            PacketBuffer packet = decoder.slicePacket( payload, length );
+            Assert.assertEquals( 10, packet.getRemaining() );
+            Assert.assertEquals( (byte) i, packet.readByte() );
+            Assert.assertEquals( 9, packet.getRemaining() );
+        }
+
+        Assert.assertEquals( 0, payload.getRemaining() );
+        decoder.close();
+    }
+
+    @Test
+    public void testNoAllocationsAfterWarmup() {
+        BatchDecoder decoder = new BatchDecoder();
+        byte[] batch = createBatch( 100, 40 );
+
+        // First batch grows the buffer to the needed size
+        Assert.assertTrue( decoder.decode( batch, 0, batch.length ) );
+        long allocations = decoder.getBufferAllocations();
+
+        for ( int i = 0; i < 1000; i++ ) {
+            Assert.assertTrue( decoder.decode( batch, 0, batch.length ) );
+
+            PacketBuffer payload = decoder.getPayload();
+            while ( payload.getRemaining() > 0 ) {
+                decoder.slicePacket( payload, payload.readUnsignedVarInt() );
+            }
+        }
+
+        Assert.assertEquals( allocations, decoder.getBufferAllocations() );
+        Assert.assertEquals( 100000, decoder.getDecodedPackets() );
+        Assert.assertTrue( decoder.getAllocationsPerPacket() < 0.001 );
+        decoder.close();
+    }
+
+    @Test
+    public void testSlicesAreReused() {
+        BatchDecoder decoder = new BatchDecoder();
+        byte[] batch = createBatch( 2, 10 );
+        Assert.assertTrue( decoder.decode( batch, 0, batch.length ) );
+
+        PacketBuffer payload = decoder.getPayload();
+        PacketBuffer first = decoder.slicePacket( payload, payload.readUnsignedVarInt() );
+        Assert.assertEquals( (byte) 0, first.readByte() );
+
+        PacketBuffer second = decoder.slicePacket( payload, payload.readUnsignedVarInt() );
+        Assert.assertSame( first, second );
+        Assert.assertEquals( 10, second.getRemaining() );
+        Assert.assertEquals( (byte) 1, second.readByte() );
+
+        Assert.assertTrue( decoder.decode( batch, 0, batch.length ) );
+        Assert.assertSame( payload, decoder.getPayload() );
+        Assert.assertEquals( 22, payload.getRemaining() );
+        decoder.close();
+    }
+
+    @Test
+    public void testBufferShrinksAfterLargeBatch() {
+        BatchDecoder decoder = new BatchDecoder();
+        byte[] large = createBatch( 200, 100 );
+        byte[] small = createBatch( 3, 10 );
+
+        Assert.assertTrue( decoder.decode( large, 0, large.length ) );
+        Assert.assertTrue( decoder.getBufferSize() > 16384 );
+
+        // Grow past the retained size, the next batch gives the memory back
+        for ( int i = 0; i < 4; i++ ) {
+            large = createBatch( 200 * ( 2 << i ), 100 );
+            Assert.assertTrue( decoder.decode( large, 0, large.length ) );
+        }
+
+        Assert.assertTrue( decoder.getBufferSize() > 65536 );
+
+        Assert.assertTrue( decoder.decode( small, 0, small.length ) );
+        Assert.assertTrue( decoder.getBufferSize() <= 65536 );
+
+        PacketBuffer payload = decoder.getPayload();
+        Assert.assertEquals( 10, payload.readUnsignedVarInt() );
+        decoder.close();
+    }
+
+    @Test
+    public void testCorruptedData() {
+        BatchDecoder decoder = new BatchDecoder();
+        byte[] batch = createBatch( 10, 10 );
+
+        // Cut the stream in half
+        Assert.assertFalse( decoder.decode( batch, 0, batch.length / 2 ) );
+
+        // The decoder can still be used afterwards
+        Assert.assertTrue( decoder.decode( batch, 0, batch.length ) );
+        decoder.close();
+    }
+
+}
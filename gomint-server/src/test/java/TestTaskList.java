@@ -6,9 +6,16 @@
  */
 
 import io.gomint.server.scheduler.TaskList;
+import io.gomint.server.util.TimingWheel;
 import junit.framework.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
 
 /**
  * @author geNAZt
@@ -57,4 +64,119 @@ public class TestTaskList {
         Assert.assertEquals( taskList.checkNextKey( 4 ), true );
         Assert.assertEquals( taskList.getNextElement(), "c" );
     }
+
+    @Test
+    public void testSameKeyKeepsInsertionOrder() {
+        TaskList<Integer> taskList = new TaskList<>();
+        for ( int i = 0; i < 1000; i++ ) {
+            taskList.add( 5000 + ( i % 3 ), i );
+        }
+
+        for ( int key = 5000; key < 5003; key++ ) {
+            for ( int i = key - 5000; i < 1000; i += 3 ) {
+                Assert.assertEquals( key, taskList.getNextTaskTime() );
+                Assert.assertEquals( Integer.valueOf( i ), taskList.getNextElement() );
+            }
+        }
+
+        Assert.assertNull( taskList.getNextElement() );
+        Assert.assertEquals( Long.MAX_VALUE, taskList.getNextTaskTime() );
+    }
+
+    @Test
+    public void testFarKeysAreSorted() {
+        TaskList<Long> taskList = new TaskList<>();
+        Random random = new Random( 42 );
+        List<Long> keys = new ArrayList<>();
+        long now = 1500000000000L;
+
+        // Spread over every level of the wheel including keys which don't fit into it
+        for ( int i = 0; i < 10000; i++ ) {
+            long key = now + ( random.nextLong() >>> ( 1 + random.nextInt( 62 ) ) );
+            keys.add( key );
+            taskList.add( key, key );
+        }
+
+        Collections.sort( keys );
+        for ( Long key : keys ) {
+            Assert.assertEquals( key.longValue(), taskList.getNextTaskTime() );
+            Assert.assertEquals( key, taskList.getNextElement() );
+        }
+    }
+
+    @Test
+    public void testDrainUntil() {
+        TaskList<String> taskList = new TaskList<>();
+        taskList.add( 1000, "a" );
+        taskList.add( 1255, "b" );
+        taskList.add( 1256, "c" );
+        taskList.add( 70000, "d" );
+
+        List<String> due = new ArrayList<>();
+        taskList.drainUntil( 1256, due );
+        Assert.assertEquals( 2, due.size() );
+        Assert.assertEquals( "a", due.get( 0 ) );
+        Assert.assertEquals( "b", due.get( 1 ) );
+
+        // Elements which are added for a time which has already been drained are due right away
+        taskList.add( 10, "e" );
+        due.clear();
+        taskList.drainUntil( 1257, due );
+        Assert.assertEquals( 2, due.size() );
+        Assert.assertEquals( "e", due.get( 0 ) );
+        Assert.assertEquals( "c", due.get( 1 ) );
+
+        due.clear();
+        taskList.drainUntil( 70000, due );
+        Assert.assertEquals( 0, due.size() );
+        Assert.assertEquals( 70000, taskList.getNextTaskTime() );
+    }
+
+    @Test
+    public void testCancelNode() {
+        TaskList<String> taskList = new TaskList<>();
+        taskList.add( 1, "a" );
+        TimingWheel.Node<String> node = taskList.add( 2, "b" );
+        taskList.add( 100000, "c" ).cancel();
+        taskList.add( 3, "d" );
+        node.cancel();
+
+        Assert.assertEquals( "a", taskList.getNextElement() );
+        Assert.assertEquals( 3, taskList.getNextTaskTime() );
+        Assert.assertEquals( "d", taskList.getNextElement() );
+        Assert.assertNull( taskList.getNextElement() );
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        final TaskList<Integer> taskList = new TaskList<>();
+        final CountDownLatch latch = new CountDownLatch( 4 );
+        for ( int t = 0; t < 4; t++ ) {
+            final int thread = t;
+            new Thread( new Runnable() {
+                @Override
+                public void run() {
+                    for ( int i = 0; i < 10000; i++ ) {
+                        taskList.add( i, thread * 10000 + i );
+                    }
+
+                    latch.countDown();
+                }
+            } ).start();
+        }
+
+        latch.await();
+
+        // Every key has one element of every thread and the elements of one thread keep their order
+        int[] last = new int[]{ -1, -1, -1, -1 };
+        for ( int i = 0; i < 40000; i++ ) {
+            long key = taskList.getNextTaskTime();
+            Integer element = taskList.getNextElement();
+            Assert.assertEquals( key, element % 10000 );
+            Assert.assertTrue( element > last[element / 10000] );
+            last[element / 10000] = element;
+        }
+
+        Assert.assertNull( taskList.getNextElement() );
+    }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.entity.pathfinding;
+
+import io.gomint.server.util.IntTriple;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author geNAZt
+ */
+public class TestPathSearch {
+
+    private byte[] slice;
+    private PathfindingSnapshot snapshot;
+    private PathSearch search;
+
+    @Before
+    public void setup() {
+        // One slice of 16x16x16 blocks with a solid floor at y = 0
+        this.slice = new byte[4096];
+        Arrays.fill( this.slice, Passability.PASSABLE );
+        for ( int x = 0; x < 16; x++ ) {
+            for ( int z = 0; z < 16; z++ ) {
+                this.set( x, 0, z, Passability.SOLID );
+            }
+        }
+
+        this.snapshot = new PathfindingSnapshot( null, 0, 0, 1, 1, 0, 1 );
+        this.snapshot.setSlice( 0, 0, 0, this.slice );
+        this.search = new PathSearch();
+    }
+
+    @Test
+    public void testStraightPath() {
+        List<IntTriple> path = this.search.search( this.snapshot, 0, 1, 0, 5, 1, 0, PathRequest.MAXIMUM_NODES_TO_EXPLORE );
+
+        Assert.assertNotNull( path );
+        Assert.assertEquals( 6, path.size() );
+        Assert.assertEquals( new IntTriple( 0, 1, 0 ), path.get( 0 ) );
+        Assert.assertEquals( new IntTriple( 5, 1, 0 ), path.get( 5 ) );
+    }
+
+    @Test
+    public void testWalksThroughGap() {
+        for ( int z = 0; z < 16; z++ ) {
+            if ( z != 10 ) {
+                this.set( 3, 1, z, Passability.SOLID );
+            }
+        }
+
+        List<IntTriple> path = this.search.search( this.snapshot, 0, 1, 0, 6, 1, 0, PathRequest.MAXIMUM_NODES_TO_EXPLORE );
+
+        Assert.assertNotNull( path );
+        Assert.assertTrue( path.contains( new IntTriple( 3, 1, 10 ) ) );
+        Assert.assertEquals( new IntTriple( 6, 1, 0 ), path.get( path.size() - 1 ) );
+    }
+
+    @Test
+    public void testStepsOntoLowBlocks() {
+        for ( int z = 0; z < 16; z++ ) {
+            for ( int x = 3; x < 16; x++ ) {
+                this.set( x, 1, z, Passability.STEP );
+            }
+        }
+
+        List<IntTriple> path = this.search.search( this.snapshot, 0, 1, 0, 5, 2, 0, PathRequest.MAXIMUM_NODES_TO_EXPLORE );
+
+        Assert.assertNotNull( path );
+        Assert.assertEquals( new IntTriple( 3, 2, 0 ), path.get( 3 ) );
+    }
+
+    @Test
+    public void testUnreachableGoal() {
+        // Wall around the goal
+        for ( int x = 9; x <= 11; x++ ) {
+            for ( int z = 9; z <= 11; z++ ) {
+                if ( x != 10 || z != 10 ) {
+                    this.set( x, 1, z, Passability.SOLID );
+                }
+            }
+        }
+
+        Assert.assertNull( this.search.search( this.snapshot, 0, 1, 0, 10, 1, 10, PathRequest.MAXIMUM_NODES_TO_EXPLORE ) );
+
+        // The search may not leave the snapshot, so it runs out of nodes before it hits the limit
+        Assert.assertTrue( this.search.getExploredNodes() < 256 );
+    }
+
+    @Test
+    public void testSearchIsReusable() {
+        List<IntTriple> first = this.search.search( this.snapshot, 0, 1, 0, 15, 1, 15, PathRequest.MAXIMUM_NODES_TO_EXPLORE );
+        this.search.search( this.snapshot, 15, 1, 0, 0, 1, 15, PathRequest.MAXIMUM_NODES_TO_EXPLORE );
+        List<IntTriple> second = this.search.search( this.snapshot, 0, 1, 0, 15, 1, 15, PathRequest.MAXIMUM_NODES_TO_EXPLORE );
+
+        Assert.assertEquals( first, second );
+    }
+
+    private void set( int x, int y, int z, byte passability ) {
+        this.slice[( x << 8 ) + ( z << 4 ) + y] = passability;
+    }
+
+}
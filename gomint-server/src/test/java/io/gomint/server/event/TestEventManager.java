@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.event;
+
+import io.gomint.event.CancellableEvent;
+import io.gomint.event.Event;
+import io.gomint.event.EventHandler;
+import io.gomint.event.EventListener;
+import io.gomint.event.EventPriority;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author geNAZt
+ */
+public class TestEventManager {
+
+    private EventManager eventManager;
+    private List<String> calls;
+
+    @Before
+    public void setup() {
+        this.eventManager = new EventManager();
+        this.calls = new ArrayList<>();
+    }
+
+    @Test
+    public void testPriorityOrder() {
+        this.eventManager.registerListener( new PriorityListener( this.calls ) );
+        this.eventManager.triggerEvent( new TestEvent() );
+
+        Assert.assertEquals( 3, this.calls.size() );
+        Assert.assertEquals( "lowest", this.calls.get( 0 ) );
+        Assert.assertEquals( "normal", this.calls.get( 1 ) );
+        Assert.assertEquals( "highest", this.calls.get( 2 ) );
+    }
+
+    @Test
+    public void testSuperClassHandlers() {
+        // Trigger once before registering so the list for the event class has to be rebuilt
+        this.eventManager.triggerEvent( new TestEvent() );
+        this.eventManager.registerListener( new SuperClassListener( this.calls ) );
+        this.eventManager.triggerEvent( new TestEvent() );
+        this.eventManager.triggerEvent( new OtherEvent() );
+
+        Assert.assertEquals( 3, this.calls.size() );
+        Assert.assertEquals( "event", this.calls.get( 0 ) );
+        Assert.assertEquals( "test", this.calls.get( 1 ) );
+        Assert.assertEquals( "event", this.calls.get( 2 ) );
+    }
+
+    @Test
+    public void testCancelled() {
+        this.eventManager.registerListener( new CancellingListener( this.calls ) );
+        this.eventManager.triggerEvent( new TestEvent() );
+
+        Assert.assertEquals( 2, this.calls.size() );
+        Assert.assertEquals( "cancel", this.calls.get( 0 ) );
+        Assert.assertEquals( "cancelled", this.calls.get( 1 ) );
+    }
+
+    @Test
+    public void testUnregister() {
+        PriorityListener listener = new PriorityListener( this.calls );
+        this.eventManager.registerListener( listener );
+        this.eventManager.registerListener( new SuperClassListener( this.calls ) );
+        this.eventManager.unregisterListener( listener );
+        this.eventManager.triggerEvent( new TestEvent() );
+
+        Assert.assertEquals( 2, this.calls.size() );
+        Assert.assertEquals( "event", this.calls.get( 0 ) );
+        Assert.assertEquals( "test", this.calls.get( 1 ) );
+    }
+
+    @Test
+    public void testQueuedEvents() {
+        this.eventManager.registerListener( new SuperClassListener( this.calls ) );
+        this.eventManager.queueEvent( new OtherEvent() );
+        Assert.assertEquals( 0, this.calls.size() );
+
+        this.eventManager.flush();
+        Assert.assertEquals( 1, this.calls.size() );
+    }
+
+    public static class TestEvent extends CancellableEvent {
+
+    }
+
+    public static class OtherEvent extends Event {
+
+    }
+
+    private static class PriorityListener implements EventListener {
+
+        private final List<String> calls;
+
+        private PriorityListener( List<String> calls ) {
+            this.calls = calls;
+        }
+
+        @EventHandler( priority = EventPriority.HIGHEST )
+        public void onHighest( TestEvent event ) {
+            this.calls.add( "highest" );
+        }
+
+        @EventHandler( priority = EventPriority.LOWEST )
+        private void onLowest( TestEvent event ) {
+            this.calls.add( "lowest" );
+        }
+
+        @EventHandler
+        public void onNormal( TestEvent event ) {
+            this.calls.add( "normal" );
+        }
+
+    }
+
+    private static class SuperClassListener implements EventListener {
+
+        private final List<String> calls;
+
+        private SuperClassListener( List<String> calls ) {
+            this.calls = calls;
+        }
+
+        @EventHandler( priority = EventPriority.LOW )
+        public void onEvent( Event event ) {
+            this.calls.add( "event" );
+        }
+
+        @EventHandler
+        public void onTest( TestEvent event ) {
+            this.calls.add( "test" );
+        }
+
+    }
+
+    private static class CancellingListener implements EventListener {
+
+        private final List<String> calls;
+
+        private CancellingListener( List<String> calls ) {
+            this.calls = calls;
+        }
+
+        @EventHandler( priority = EventPriority.LOW )
+        public void onCancel( TestEvent event ) {
+            event.setCancelled( true );
+            this.calls.add( "cancel" );
+        }
+
+        @EventHandler( ignoreCancelled = true )
+        public void onIgnoreCancelled( TestEvent event ) {
+            this.calls.add( "ignored" );
+        }
+
+        @EventHandler( priority = EventPriority.HIGH )
+        public void onCancelled( TestEvent event ) {
+            this.calls.add( "cancelled" );
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.jraknet.PacketBuffer;
+import io.gomint.server.network.packet.PacketEntityMovement;
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * @author geNAZt
+ */
+public class TestBatchEncoder {
+
+    private BatchEncoder encoder;
+    private BatchDecoder decoder;
+
+    @Before
+    public void setup() {
+        this.encoder = new BatchEncoder();
+        this.decoder = new BatchDecoder();
+    }
+
+    @After
+    public void tearDown() {
+        this.encoder.close();
+        this.decoder.close();
+    }
+
+    @Test
+    public void testLevelsDecodeToSamePayload() {
+        byte[] stored = this.encode( 200, 0 );
+        byte[] compressed = this.encode( 200, 9 );
+
+        Assert.assertTrue( compressed.length < stored.length );
+        Assert.assertTrue( Arrays.equals( this.decode( stored ), this.decode( compressed ) ) );
+    }
+
+    @Test
+    public void testPacketsSurviveRoundTrip() {
+        byte[] batch = this.encode( 50, 6 );
+        Assert.assertTrue( this.decoder.decode( batch, 0, batch.length ) );
+
+        PacketBuffer payload = this.decoder.getPayload();
+        int packets = 0;
+        while ( payload.getRemaining() > 0 ) {
+            PacketBuffer packetBuffer = this.decoder.slicePacket( payload, payload.readUnsignedVarInt() );
+            Assert.assertEquals( new PacketEntityMovement().getId(), packetBuffer.readByte() );
+            Assert.assertEquals( packets + 1, packetBuffer.readUnsignedVarLong() );
+            Assert.assertEquals( (float) packets, packetBuffer.readLFloat(), 0.0001F );
+            packets++;
+        }
+
+        Assert.assertEquals( 50, packets );
+    }
+
+    @Test
+    public void testBuffersAreReused() {
+        this.encode( 100, 6 );
+        long allocations = this.encoder.getBufferAllocations();
+
+        this.encode( 100, 6 );
+        Assert.assertEquals( allocations, this.encoder.getBufferAllocations() );
+    }
+
+    private byte[] encode( int packets, int level ) {
+        this.encoder.reset();
+        for ( int i = 0; i < packets; i++ ) {
+            PacketEntityMovement movement = new PacketEntityMovement();
+            movement.setEntityId( i + 1 );
+            movement.setX( i );
+            movement.setY( 4 );
+            movement.setZ( -i );
+            this.encoder.add( movement );
+        }
+
+        int length = this.encoder.compress( level );
+        return Arrays.copyOf( this.encoder.getOutput(), length );
+    }
+
+    private byte[] decode( byte[] batch ) {
+        Assert.assertTrue( this.decoder.decode( batch, 0, batch.length ) );
+        PacketBuffer payload = this.decoder.getPayload();
+        byte[] data = new byte[payload.getRemaining()];
+        payload.readBytes( data );
+        return data;
+    }
+
+}
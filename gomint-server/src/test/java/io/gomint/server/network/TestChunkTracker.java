@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.jraknet.PacketReliability;
+import io.gomint.math.Location;
+import io.gomint.server.GoMintServer;
+import io.gomint.server.config.ServerConfig;
+import io.gomint.server.entity.EntityPlayer;
+import io.gomint.server.network.packet.Packet;
+import io.gomint.server.network.packet.PacketBatch;
+import io.gomint.server.world.ChunkAdapter;
+import io.gomint.server.world.ChunkCache;
+import io.gomint.server.world.CoordinateUtils;
+import io.gomint.server.world.WorldAdapter;
+import junit.framework.Assert;
+import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @author geNAZt
+ */
+public class TestChunkTracker {
+
+    private static final int VIEW_DISTANCE = new ServerConfig().getViewDistance();
+
+    private RequestWorld world;
+    private EntityPlayer player;
+    private ChunkTracker tracker;
+
+    @Before
+    public void setup() {
+        this.world = new RequestWorld();
+        this.player = new EntityPlayer( this.world, new HeadlessConnection( new NetworkManager( this.world.getServer() ) ), "Tracker", UUID.nameUUIDFromBytes( "Tracker".getBytes() ) );
+        this.player.getConnection().setEntity( this.player );
+        this.tracker = new ChunkTracker( this.player.getConnection(), 4, Integer.MAX_VALUE, 1024, 1 );
+
+        // Just west and north of the origin, truncating the position would put the player into chunk 0, 0
+        this.player.setPosition( -0.5f, 64, -0.5f );
+        this.player.setYaw( 0 );
+    }
+
+    @After
+    public void close() {
+        this.world.getChunkIO().close();
+        this.world.getPathfindingScheduler().close();
+    }
+
+    @Test
+    public void testRequestsNearestFirst() {
+        Assert.assertTrue( this.tracker.update( this.player ) );
+        this.requestAll();
+
+        List<Long> requests = this.world.requests;
+        Assert.assertEquals( CoordinateUtils.toLong( -1, -1 ), (long) requests.get( 0 ) );
+        Assert.assertEquals( this.chunksInViewDistance(), requests.size() );
+        Assert.assertEquals( requests.size(), new HashSet<>( requests ).size() );
+
+        // Chunks next to the player come before the ones at the edge of the view distance
+        int lastNear = -1;
+        int firstFar = Integer.MAX_VALUE;
+        for ( int i = 0; i < requests.size(); i++ ) {
+            double distance = this.distance( requests.get( i ), -1, -1 );
+            Assert.assertTrue( distance <= VIEW_DISTANCE );
+            if ( distance <= 1 ) {
+                lastNear = i;
+            } else if ( distance >= 4 ) {
+                firstFar = Math.min( firstFar, i );
+            }
+        }
+
+        Assert.assertTrue( lastNear < firstFar );
+
+        // With a yaw of 0 the player looks along z, the chunk in front of him counts as nearer than the one behind
+        Assert.assertTrue( requests.indexOf( CoordinateUtils.toLong( -1, 0 ) ) < requests.indexOf( CoordinateUtils.toLong( -1, -2 ) ) );
+    }
+
+    @Test
+    public void testForgetsOutOfRange() {
+        this.tracker.update( this.player );
+        this.requestAll();
+        for ( long hash : new ArrayList<>( this.world.requests ) ) {
+            this.deliver( hash );
+        }
+
+        this.requestAll();
+        Assert.assertTrue( this.tracker.isLoaded( -1, -1 ) );
+        Assert.assertTrue( this.tracker.isLoaded( -1 - VIEW_DISTANCE, -1 ) );
+        Assert.assertEquals( 0, this.tracker.getMissingChunks() );
+
+        // Walk ten chunks east, everything further west than the view distance is gone
+        this.player.setPosition( -0.5f + 10 * 16, 64, -0.5f );
+        Assert.assertTrue( this.tracker.update( this.player ) );
+        Assert.assertFalse( this.tracker.isLoaded( -1, -1 ) );
+        Assert.assertFalse( this.tracker.isLoaded( -1 - VIEW_DISTANCE, -1 ) );
+        Assert.assertTrue( this.tracker.isLoaded( -1 + VIEW_DISTANCE, -1 ) );
+        Assert.assertTrue( this.tracker.getForgottenChunks() > 0 );
+
+        // A chunk which arrives after the player left its range is not sent
+        this.world.requests.clear();
+        this.deliver( CoordinateUtils.toLong( -1, -1 ) );
+        Assert.assertFalse( this.tracker.isLoaded( -1, -1 ) );
+
+        this.requestAll();
+        Assert.assertEquals( CoordinateUtils.toLong( 9, -1 ), (long) this.world.requests.get( 0 ) );
+        Assert.assertFalse( this.world.requests.contains( CoordinateUtils.toLong( -1 + VIEW_DISTANCE, -1 ) ) );
+
+        // Coming back requests the forgotten chunks again
+        this.player.setPosition( -0.5f, 64, -0.5f );
+        this.tracker.update( this.player );
+        this.world.requests.clear();
+        this.requestAll();
+        Assert.assertEquals( CoordinateUtils.toLong( -1, -1 ), (long) this.world.requests.get( 0 ) );
+    }
+
+    private void requestAll() {
+        int requested;
+        do {
+            requested = this.world.requests.size();
+            this.tracker.tick( this.player, 0 );
+        } while ( this.world.requests.size() != requested );
+    }
+
+    private void deliver( long hash ) {
+        ChunkAdapter chunk = this.world.createChunk( (int) ( hash >> 32 ), (int) hash + Integer.MIN_VALUE );
+        PacketBatch batch = new PacketBatch();
+        batch.setPayload( new byte[16] );
+
+        this.tracker.onChunkReady( chunk, batch );
+        this.tracker.tick( this.player, 0 );
+    }
+
+    private int chunksInViewDistance() {
+        int chunks = 0;
+        for ( int x = -VIEW_DISTANCE; x <= VIEW_DISTANCE; x++ ) {
+            for ( int z = -VIEW_DISTANCE; z <= VIEW_DISTANCE; z++ ) {
+                if ( x * x + z * z <= VIEW_DISTANCE * VIEW_DISTANCE ) {
+                    chunks++;
+                }
+            }
+        }
+
+        return chunks;
+    }
+
+    private double distance( long hash, int x, int z ) {
+        int distanceX = (int) ( hash >> 32 ) - x;
+        int distanceZ = (int) hash + Integer.MIN_VALUE - z;
+        return Math.sqrt( distanceX * distanceX + distanceZ * distanceZ );
+    }
+
+    /**
+     * World which only records the chunks which have been requested
+     */
+    private static final class RequestWorld extends WorldAdapter {
+
+        private final List<Long> requests = new ArrayList<>();
+
+        private RequestWorld() {
+            super( new GoMintServer( new ServerConfig() ), new File( "test" ) );
+            this.chunkCache = new ChunkCache( this );
+            this.levelName = "test";
+            this.spawn = new Location( this, 0, 64, 0 );
+        }
+
+        @Override
+        public void sendChunk( int x, int z, EntityPlayer player, int priority ) {
+            this.requests.add( CoordinateUtils.toLong( x, z ) );
+        }
+
+        @Override
+        protected ChunkAdapter loadChunk( int x, int z, boolean generate ) {
+            return null;
+        }
+
+        @Override
+        protected void saveChunk( ChunkAdapter chunk ) {
+            // Nothing gets saved
+        }
+
+        @Override
+        protected boolean isChunkStored( int x, int z ) {
+            return false;
+        }
+
+        @Override
+        protected ChunkAdapter createChunk( int x, int z ) {
+            // The fields of the chunk would shadow the parameters inside of the initializer
+            final int chunkX = x;
+            final int chunkZ = z;
+            return new ChunkAdapter() {
+                {
+                    this.world = RequestWorld.this;
+                    this.x = chunkX;
+                    this.z = chunkZ;
+                    this.entities = HashLongObjMaps.newMutableMap();
+                    this.loadedTime = System.currentTimeMillis();
+                }
+            };
+        }
+
+    }
+
+    /**
+     * Connection which drops everything that would go over the wire
+     */
+    private static final class HeadlessConnection extends PlayerConnection {
+
+        private HeadlessConnection( NetworkManager networkManager ) {
+            super( networkManager, null, PlayerConnectionState.PLAYING );
+        }
+
+        @Override
+        public void send( Packet packet ) {
+            // There is no client
+        }
+
+        @Override
+        public void send( PacketReliability reliability, int orderingChannel, Packet packet ) {
+            // There is no client
+        }
+
+        @Override
+        public void sendSharedBatch( PacketBatch batch ) {
+            // There is no client
+        }
+
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.server.network.cipher.CipherBackend;
+import junit.framework.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author geNAZt
+ */
+public class TestEncryptionHandler {
+
+    private final Random random = new Random( 7 );
+    private byte[] key;
+
+    @Before
+    public void setup() {
+        this.key = new byte[32];
+        this.random.nextBytes( this.key );
+    }
+
+    @Test
+    public void testBackendsProduceSameBatches() {
+        Assume.assumeTrue( CipherBackend.JDK.isAvailable() );
+
+        EncryptionHandler jdk = this.createHandler( CipherBackend.JDK );
+        EncryptionHandler bouncyCastle = this.createHandler( CipherBackend.BOUNCY_CASTLE );
+
+        for ( int i = 0; i < 20; i++ ) {
+            byte[] payload = new byte[this.random.nextInt( 5000 )];
+            this.random.nextBytes( payload );
+
+            // Checksums include a counter, so every batch checks that the counters stay in step as well
+            Assert.assertTrue( Arrays.equals( jdk.encryptInputForClient( payload ), bouncyCastle.encryptInputForClient( payload ) ) );
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for ( CipherBackend backend : CipherBackend.values() ) {
+            if ( !backend.isAvailable() ) {
+                continue;
+            }
+
+            // The client uses the same key for its direction, so a second handler can act as client
+            EncryptionHandler server = this.createHandler( backend );
+            EncryptionHandler client = this.createHandler( backend );
+
+            for ( int i = 0; i < 10; i++ ) {
+                byte[] payload = new byte[1 + this.random.nextInt( 2000 )];
+                this.random.nextBytes( payload );
+
+                byte[] decrypted = client.decryptInputFromClient( server.encryptInputForClient( payload ) );
+                Assert.assertTrue( backend + " did not decrypt batch " + i, Arrays.equals( payload, decrypted ) );
+            }
+        }
+    }
+
+    @Test
+    public void testCorruptedChecksum() {
+        EncryptionHandler server = this.createHandler( CipherBackend.BOUNCY_CASTLE );
+        EncryptionHandler client = this.createHandler( CipherBackend.BOUNCY_CASTLE );
+
+        byte[] encrypted = server.encryptInputForClient( new byte[100] );
+        encrypted[encrypted.length - 1] ^= 1;
+        Assert.assertNull( client.decryptInputFromClient( encrypted ) );
+    }
+
+    private EncryptionHandler createHandler( CipherBackend backend ) {
+        EncryptionHandler handler = new EncryptionHandler( null, backend );
+        Assert.assertTrue( handler.initializeCiphers( this.key.clone() ) );
+        return handler;
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network;
+
+import io.gomint.jraknet.PacketReliability;
+import io.gomint.math.Location;
+import io.gomint.server.GoMintServer;
+import io.gomint.server.config.ServerConfig;
+import io.gomint.server.entity.EntityPlayer;
+import io.gomint.server.network.packet.Packet;
+import io.gomint.server.network.packet.PacketBatch;
+import io.gomint.server.world.ChunkAdapter;
+import io.gomint.server.world.ChunkCache;
+import io.gomint.server.world.CoordinateUtils;
+import io.gomint.server.world.LightEngine;
+import io.gomint.server.world.WorldAdapter;
+import junit.framework.Assert;
+import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author geNAZt
+ */
+public class TestJoinChunkLoading {
+
+    @Test
+    public void testJoinDoesNotReadOnTickThread() throws InterruptedException {
+        StoredWorld world = new StoredWorld( Thread.currentThread() );
+
+        EntityPlayer player = new EntityPlayer( world, new HeadlessConnection( new NetworkManager( world.getServer() ) ), "Join", UUID.nameUUIDFromBytes( "Join".getBytes() ) );
+        PlayerConnection connection = player.getConnection();
+        connection.setEntity( player );
+
+        // Join like a player whose login has been verified, then tick the world and the network until he is spawned
+        connection.sendWorldInitialization();
+        player.fullyInit();
+        world.addPlayer( player );
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( 30 );
+        while ( connection.getState() == PlayerConnectionState.LOGIN && System.currentTimeMillis() < deadline ) {
+            world.update( System.currentTimeMillis(), 0.05f );
+            connection.getChunkTracker().tick( player, 0 );
+            Thread.sleep( 5 );
+        }
+
+        world.getChunkIO().close();
+        world.getPathfindingScheduler().close();
+
+        Assert.assertEquals( PlayerConnectionState.PLAYING, connection.getState() );
+        Assert.assertTrue( world.reads.get() > 0 );
+        Assert.assertEquals( 0, world.tickThreadReads.get() );
+
+        // The player has been added to the chunk under him once the workers loaded it
+        ChunkAdapter chunk = world.getChunk( CoordinateUtils.fromBlockToChunk( (int) player.getPositionX() ),
+                CoordinateUtils.fromBlockToChunk( (int) player.getPositionZ() ) );
+        Assert.assertNotNull( chunk );
+        Assert.assertTrue( chunk.knowsEntity( player ) );
+        Assert.assertSame( player, world.findEntity( player.getEntityId() ) );
+        Assert.assertSame( chunk, world.getPlayers0().get( player ) );
+    }
+
+    /**
+     * World whose chunks are all stored, every load counts as a read of the disk
+     */
+    private static final class StoredWorld extends WorldAdapter {
+
+        private final Thread tickThread;
+        private final AtomicInteger reads = new AtomicInteger();
+        private final AtomicInteger tickThreadReads = new AtomicInteger();
+
+        private StoredWorld( Thread tickThread ) {
+            super( new GoMintServer( new ServerConfig() ), new File( "test" ) );
+            this.tickThread = tickThread;
+            this.chunkCache = new ChunkCache( this );
+            this.levelName = "test";
+            this.spawn = new Location( this, 0, 4, 0 );
+        }
+
+        @Override
+        protected ChunkAdapter loadChunk( int x, int z, boolean generate ) {
+            ChunkAdapter chunk = this.getCachedChunk( x, z );
+            if ( chunk != null ) {
+                return chunk;
+            }
+
+            if ( Thread.currentThread() == this.tickThread ) {
+                this.tickThreadReads.incrementAndGet();
+            }
+
+            this.reads.incrementAndGet();
+
+            // Simulate the disk
+            try {
+                Thread.sleep( 1 );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+
+            chunk = this.createChunk( x, z );
+            chunk.calculateHeightmap();
+            LightEngine.relightChunk( chunk );
+
+            this.chunkCache.putChunk( chunk );
+            return chunk;
+        }
+
+        @Override
+        protected void saveChunk( ChunkAdapter chunk ) {
+            // Nothing gets saved
+        }
+
+        @Override
+        protected boolean isChunkStored( int x, int z ) {
+            return true;
+        }
+
+        @Override
+        protected ChunkAdapter createChunk( int x, int z ) {
+            // The fields of the chunk would shadow the parameters inside of the initializer
+            final int chunkX = x;
+            final int chunkZ = z;
+            return new ChunkAdapter() {
+                {
+                    this.world = StoredWorld.this;
+                    this.x = chunkX;
+                    this.z = chunkZ;
+                    this.entities = HashLongObjMaps.newMutableMap();
+                    this.loadedTime = System.currentTimeMillis();
+                }
+            };
+        }
+
+    }
+
+    /**
+     * Connection which drops everything that would go over the wire
+     */
+    private static final class HeadlessConnection extends PlayerConnection {
+
+        private HeadlessConnection( NetworkManager networkManager ) {
+            super( networkManager, null, PlayerConnectionState.LOGIN );
+        }
+
+        @Override
+        public void send( Packet packet ) {
+            // There is no client
+        }
+
+        @Override
+        public void send( PacketReliability reliability, int orderingChannel, Packet packet ) {
+            // There is no client
+        }
+
+        @Override
+        public void sendSharedBatch( PacketBatch batch ) {
+            // There is no client
+        }
+
+    }
+
+}
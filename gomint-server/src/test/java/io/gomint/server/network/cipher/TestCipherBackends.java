@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.network.cipher;
+
+import junit.framework.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Both backends have to produce exactly the same stream, otherwise clients of one server would see garbage
+ * depending on the JRE the server runs on.
+ *
+ * @author geNAZt
+ */
+public class TestCipherBackends {
+
+    private final Random random = new Random( 42 );
+    private byte[] key;
+    private byte[] iv;
+
+    @Before
+    public void setup() {
+        Assume.assumeTrue( CipherBackend.JDK.isAvailable() );
+
+        this.key = new byte[32];
+        this.random.nextBytes( this.key );
+        this.iv = Arrays.copyOf( this.key, 16 );
+    }
+
+    @Test
+    public void testEncryptionIsIdentical() throws GeneralSecurityException {
+        PacketCipher jdk = CipherBackend.JDK.createCipher( true, this.key, this.iv );
+        PacketCipher bouncyCastle = CipherBackend.BOUNCY_CASTLE.createCipher( true, this.key, this.iv );
+
+        // The stream has to continue across calls of all sizes, including empty ones
+        for ( int length : new int[]{ 0, 1, 7, 15, 16, 17, 255, 4096, 65537 } ) {
+            byte[] input = new byte[length];
+            this.random.nextBytes( input );
+
+            byte[] jdkOutput = new byte[length + 3];
+            byte[] bouncyCastleOutput = new byte[length + 3];
+            Assert.assertEquals( length, jdk.process( input, 0, length, jdkOutput, 3 ) );
+            Assert.assertEquals( length, bouncyCastle.process( input, 0, length, bouncyCastleOutput, 3 ) );
+            Assert.assertTrue( "Output differs for " + length + " bytes", Arrays.equals( jdkOutput, bouncyCastleOutput ) );
+        }
+    }
+
+    @Test
+    public void testInPlaceDecryption() throws GeneralSecurityException {
+        byte[] plain = new byte[10000];
+        this.random.nextBytes( plain );
+
+        byte[] encrypted = new byte[plain.length];
+        CipherBackend.BOUNCY_CASTLE.createCipher( true, this.key, this.iv ).process( plain, 0, plain.length, encrypted, 0 );
+
+        for ( CipherBackend backend : CipherBackend.values() ) {
+            PacketCipher decryptor = backend.createCipher( false, this.key, this.iv );
+            byte[] data = encrypted.clone();
+
+            // Decrypt in uneven pieces like packets would arrive
+            int offset = 0;
+            while ( offset < data.length ) {
+                int length = Math.min( data.length - offset, 1 + this.random.nextInt( 1500 ) );
+                Assert.assertEquals( length, decryptor.process( data, offset, length, data, offset ) );
+                offset += length;
+            }
+
+            Assert.assertTrue( backend + " did not decrypt in place", Arrays.equals( plain, data ) );
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.performance;
+
+import io.gomint.server.performance.protocol.Packet;
+import io.gomint.server.performance.protocol.PerformanceProtocol;
+import io.gomint.server.performance.protocol.TickPacket;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * @author geNAZt
+ */
+public class TestPeformanceReport {
+
+    @Test
+    public void testDisabledRecordsNothing() {
+        PeformanceReport report = new PeformanceReport( false, 4 );
+        report.startTick( 0 );
+        long start = report.begin();
+        Assert.assertEquals( 0, start );
+        report.end( Section.ENTITIES, start );
+        Assert.assertEquals( -1, report.registerWorld( "world" ) );
+        report.endTick();
+
+        Assert.assertEquals( 0, report.getBuffer().getWritten() );
+        Assert.assertFalse( report.getBuffer().read( 0, new TickPacket() ) );
+    }
+
+    @Test
+    public void testSpansAreRecordedPerTick() {
+        PeformanceReport report = new PeformanceReport( true, 4 );
+        Assert.assertTrue( report.getSpanCostNanos() > 0 );
+
+        int slot = report.registerWorld( "world" );
+        Assert.assertEquals( 0, slot );
+
+        report.startTick( 0 );
+        long worldStart = report.begin();
+        report.end( Section.ENTITIES, report.begin() );
+        report.end( Section.ENTITIES, report.begin() );
+        report.endWorld( slot, worldStart );
+        report.endTick();
+
+        // The counters start from zero for the next tick
+        report.startTick( 0 );
+        report.endTick();
+
+        TickPacket packet = new TickPacket();
+        Assert.assertTrue( report.getBuffer().read( 0, packet ) );
+        Assert.assertEquals( 0, packet.getTick() );
+        Assert.assertEquals( 2, packet.getSectionCalls()[Section.ENTITIES.ordinal()] );
+        Assert.assertTrue( packet.getWorldNanos()[slot] > 0 );
+        Assert.assertEquals( 4 * report.getSpanCostNanos(), packet.getOverheadNanos() );
+
+        Assert.assertTrue( report.getBuffer().read( 1, packet ) );
+        Assert.assertEquals( 1, packet.getTick() );
+        Assert.assertEquals( 0, packet.getSectionCalls()[Section.ENTITIES.ordinal()] );
+        Assert.assertEquals( 0, packet.getWorldNanos()[slot] );
+    }
+
+    @Test
+    public void testSectionsAreSampled() {
+        PeformanceReport report = new PeformanceReport( true, 4, 2 );
+        int slot = report.registerWorld( "world" );
+
+        for ( int i = 0; i < 3; i++ ) {
+            report.startTick( 0 );
+            long worldStart = report.begin();
+            report.end( Section.ENTITIES, report.begin() );
+            report.endWorld( slot, worldStart );
+            report.endTick();
+        }
+
+        TickPacket packet = new TickPacket();
+        for ( int i = 0; i < 3; i++ ) {
+            Assert.assertTrue( report.getBuffer().read( i, packet ) );
+            Assert.assertTrue( packet.getDurationNanos() > 0 );
+
+            // Only every second tick gets its sections timed, the others only pay for their own span
+            boolean sampled = i % 2 == 0;
+            Assert.assertEquals( sampled, packet.isSampled() );
+            Assert.assertEquals( sampled ? 1 : 0, packet.getSectionCalls()[Section.ENTITIES.ordinal()] );
+            Assert.assertEquals( sampled, packet.getWorldNanos()[slot] > 0 );
+            Assert.assertEquals( ( sampled ? 3 : 1 ) * report.getSpanCostNanos(), packet.getOverheadNanos() );
+        }
+    }
+
+    @Test
+    public void testChainedSpans() {
+        PeformanceReport report = new PeformanceReport( true, 4 );
+        report.startTick( 0 );
+        long start = report.begin();
+        start = report.end( Section.RANDOM_TICKS, start );
+        Assert.assertTrue( start > 0 );
+        start = report.end( Section.BLOCK_UPDATES, start );
+        report.end( Section.BLOCK_UPDATES, start );
+        report.endTick();
+
+        TickPacket packet = new TickPacket();
+        Assert.assertTrue( report.getBuffer().read( 0, packet ) );
+        Assert.assertEquals( 1, packet.getSectionCalls()[Section.RANDOM_TICKS.ordinal()] );
+        Assert.assertEquals( 2, packet.getSectionCalls()[Section.BLOCK_UPDATES.ordinal()] );
+        Assert.assertTrue( packet.getSectionNanos()[Section.BLOCK_UPDATES.ordinal()] >= 0 );
+    }
+
+    @Test
+    public void testOverwrittenRecordsCanNotBeRead() {
+        PeformanceReport report = new PeformanceReport( true, 4 );
+        for ( int i = 0; i < 6; i++ ) {
+            report.startTick( 0 );
+            report.endTick();
+        }
+
+        TickRecordBuffer buffer = report.getBuffer();
+        Assert.assertEquals( 6, buffer.getWritten() );
+        Assert.assertEquals( 2, buffer.getOldest() );
+
+        TickPacket packet = new TickPacket();
+        Assert.assertFalse( buffer.read( 1, packet ) );
+        Assert.assertTrue( buffer.read( 2, packet ) );
+        Assert.assertEquals( 2, packet.getTick() );
+        Assert.assertTrue( buffer.read( 5, packet ) );
+        Assert.assertEquals( 5, packet.getTick() );
+        Assert.assertFalse( buffer.read( 6, packet ) );
+    }
+
+    @Test
+    public void testTickPacketRoundTrip() throws IOException {
+        TickPacket packet = new TickPacket();
+        packet.ensureCapacity( 3, 2 );
+        packet.setTick( 42 );
+        packet.setStartNanos( 123456789L );
+        packet.setDurationNanos( 50000000L );
+        packet.setOverheadNanos( 1234 );
+        packet.setSampled( true );
+        packet.getSectionNanos()[1] = 777;
+        packet.getSectionCalls()[1] = 7;
+        packet.getWorldNanos()[1] = 999;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PerformanceProtocol.writePacket( new DataOutputStream( bytes ), packet );
+
+        Packet read = PerformanceProtocol.readPacket( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+        Assert.assertTrue( read instanceof TickPacket );
+        Assert.assertEquals( packet, read );
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.async.Future;
+import io.gomint.world.generator.ChunkGenerator;
+import io.gomint.world.generator.GeneratorChunk;
+import io.gomint.world.generator.GeneratorRegion;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author geNAZt
+ */
+public class TestChunkGenerationScheduler {
+
+    private static final int SIZE = 8;
+
+    private static final int NOISE = 1;
+    private static final int SURFACE = 2;
+    private static final int MARKER = 3;
+
+    // Chunks which exist already, a wall through the generated area
+    private static boolean isExisting( int x, int z ) {
+        return x == 3 && z < 5;
+    }
+
+    @Test
+    public void testDecorationCrossesBordersSafely() throws InterruptedException, ExecutionException, TimeoutException {
+        final Map<Long, Integer> stages = new ConcurrentHashMap<>();
+        final Map<Long, AtomicInteger> created = new ConcurrentHashMap<>();
+        final Map<Long, Integer> markersWhenDone = new ConcurrentHashMap<>();
+        final List<long[]> runningDecorations = new ArrayList<>();
+        final AtomicInteger violations = new AtomicInteger();
+
+        ChunkGenerationScheduler.Backend backend = new ChunkGenerationScheduler.Backend() {
+            @Override
+            public boolean chunkExists( int x, int z ) {
+                return isExisting( x, z );
+            }
+
+            @Override
+            public boolean isChunkLoaded( int x, int z ) {
+                return false;
+            }
+
+            @Override
+            public ChunkAdapter createChunk( int x, int z ) {
+                AtomicInteger count = new AtomicInteger();
+                AtomicInteger old = created.putIfAbsent( CoordinateUtils.toLong( x, z ), count );
+                ( old != null ? old : count ).incrementAndGet();
+
+                // The fields of the chunk would shadow the parameters inside of the initializer
+                final int chunkX = x;
+                final int chunkZ = z;
+                return new ChunkAdapter() {
+                    {
+                        this.x = chunkX;
+                        this.z = chunkZ;
+                    }
+                };
+            }
+
+            @Override
+            public void chunkGenerated( ChunkAdapter chunk ) {
+                Integer old = markersWhenDone.put( CoordinateUtils.toLong( chunk.getX(), chunk.getZ() ), countMarkers( chunk ) );
+                if ( old != null ) {
+                    violations.incrementAndGet();
+                }
+            }
+        };
+
+        ChunkGenerator generator = new ChunkGenerator() {
+            @Override
+            public void generateNoise( GeneratorChunk chunk ) {
+                if ( stages.put( CoordinateUtils.toLong( chunk.getX(), chunk.getZ() ), NOISE ) != null ) {
+                    violations.incrementAndGet();
+                }
+
+                for ( int x = 0; x < 16; x++ ) {
+                    for ( int z = 0; z < 16; z++ ) {
+                        chunk.setBlock( x, 0, z, NOISE, (byte) 0 );
+                    }
+                }
+            }
+
+            @Override
+            public void generateSurface( GeneratorChunk chunk ) {
+                Integer previous = stages.put( CoordinateUtils.toLong( chunk.getX(), chunk.getZ() ), SURFACE );
+                if ( previous == null || previous != NOISE ) {
+                    violations.incrementAndGet();
+                }
+
+                for ( int x = 0; x < 16; x++ ) {
+                    for ( int z = 0; z < 16; z++ ) {
+                        chunk.setBlock( x, 1, z, SURFACE, (byte) 0 );
+                    }
+                }
+            }
+
+            @Override
+            public void decorate( GeneratorRegion region, int chunkX, int chunkZ ) {
+                long[] self = new long[]{ chunkX, chunkZ };
+                synchronized ( runningDecorations ) {
+                    for ( long[] other : runningDecorations ) {
+                        if ( Math.max( Math.abs( other[0] - chunkX ), Math.abs( other[1] - chunkZ ) ) < 3 ) {
+                            violations.incrementAndGet();
+                        }
+                    }
+
+                    runningDecorations.add( self );
+                }
+
+                // Every neighbour has its surface and gets a marker which points back to this chunk
+                for ( int dx = -1; dx <= 1; dx++ ) {
+                    for ( int dz = -1; dz <= 1; dz++ ) {
+                        int blockX = ( ( chunkX + dx ) << 4 ) + 4 - dx;
+                        int blockZ = ( ( chunkZ + dz ) << 4 ) + 4 - dz;
+                        boolean existing = isExisting( chunkX + dx, chunkZ + dz );
+                        if ( !existing && region.getBlockId( blockX, 1, blockZ ) != SURFACE ) {
+                            violations.incrementAndGet();
+                        }
+
+                        region.setBlock( blockX, 2, blockZ, MARKER, (byte) 0 );
+                    }
+                }
+
+                try {
+                    Thread.sleep( 1 );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+
+                synchronized ( runningDecorations ) {
+                    runningDecorations.remove( self );
+                }
+            }
+        };
+
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        ChunkGenerationScheduler scheduler = new ChunkGenerationScheduler( "test", backend, generator, executorService, 4 );
+
+        Map<Long, Future<ChunkAdapter>> futures = new ConcurrentHashMap<>();
+        for ( int x = 0; x < SIZE; x++ ) {
+            for ( int z = 0; z < SIZE; z++ ) {
+                if ( !isExisting( x, z ) ) {
+                    futures.put( CoordinateUtils.toLong( x, z ), scheduler.generate( x, z, x + z ) );
+                }
+            }
+        }
+
+        for ( int x = 0; x < SIZE; x++ ) {
+            for ( int z = 0; z < SIZE; z++ ) {
+                if ( isExisting( x, z ) ) {
+                    continue;
+                }
+
+                long chunkHash = CoordinateUtils.toLong( x, z );
+                ChunkAdapter chunk = futures.get( chunkHash ).get( 30, TimeUnit.SECONDS );
+                Assert.assertNotNull( chunk );
+                Assert.assertEquals( x, chunk.getX() );
+                Assert.assertEquals( z, chunk.getZ() );
+
+                // A marker from itself and every neighbour which has been generated, nothing after it was done
+                int expected = 0;
+                for ( int dx = -1; dx <= 1; dx++ ) {
+                    for ( int dz = -1; dz <= 1; dz++ ) {
+                        if ( !isExisting( x + dx, z + dz ) ) {
+                            expected++;
+                            Assert.assertEquals( MARKER, chunk.getBlock( 4 + dx, 2, 4 + dz ) );
+                        }
+                    }
+                }
+
+                Assert.assertEquals( expected, countMarkers( chunk ) );
+                Assert.assertEquals( expected, (int) markersWhenDone.get( chunkHash ) );
+                Assert.assertEquals( 15, chunk.getSkyLight( 0, 3, 0 ) );
+            }
+        }
+
+        scheduler.close();
+        executorService.shutdown();
+
+        Assert.assertEquals( 0, violations.get() );
+        Assert.assertEquals( futures.size(), scheduler.getGeneratedChunks() );
+
+        // Every chunk has been generated once, existing ones never
+        for ( Map.Entry<Long, AtomicInteger> entry : created.entrySet() ) {
+            int x = (int) ( entry.getKey() >> 32 );
+            int z = (int) ( entry.getKey().longValue() ) + Integer.MIN_VALUE;
+            Assert.assertFalse( isExisting( x, z ) );
+            Assert.assertEquals( 1, entry.getValue().get() );
+        }
+    }
+
+    private static int countMarkers( ChunkAdapter chunk ) {
+        int markers = 0;
+        for ( int x = 0; x < 16; x++ ) {
+            for ( int z = 0; z < 16; z++ ) {
+                if ( chunk.getBlock( x, 2, z ) == MARKER ) {
+                    markers++;
+                }
+            }
+        }
+
+        return markers;
+    }
+
+}
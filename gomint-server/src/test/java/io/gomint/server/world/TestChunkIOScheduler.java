@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.async.Delegate;
+import io.gomint.server.async.Future;
+import io.gomint.server.async.FutureListener;
+import io.gomint.server.network.packet.PacketBatch;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author geNAZt
+ */
+public class TestChunkIOScheduler {
+
+    private static final int PLAYERS = 20;
+    private static final int VIEW_RADIUS = 3;
+
+    @Test
+    public void testNoDiskReadOnMainThreadDuringJoinStorm() throws InterruptedException {
+        final Thread mainThread = Thread.currentThread();
+        final Map<Long, ChunkAdapter> loaded = new ConcurrentHashMap<>();
+        final AtomicInteger diskReads = new AtomicInteger();
+        final AtomicInteger mainThreadReads = new AtomicInteger();
+        final AtomicInteger mainThreadPackages = new AtomicInteger();
+
+        ChunkIOScheduler.Backend backend = new ChunkIOScheduler.Backend() {
+            @Override
+            public ChunkAdapter getCachedChunk( int x, int z ) {
+                return loaded.get( CoordinateUtils.toLong( x, z ) );
+            }
+
+            @Override
+            public ChunkAdapter loadChunk( int x, int z ) {
+                if ( Thread.currentThread() == mainThread ) {
+                    mainThreadReads.incrementAndGet();
+                }
+
+                diskReads.incrementAndGet();
+
+                // Simulate the disk
+                try {
+                    Thread.sleep( 1 );
+                } catch ( InterruptedException e ) {
+                    Thread.currentThread().interrupt();
+                }
+
+                // The fields of the chunk would shadow the parameters inside of the initializer
+                final int chunkX = x;
+                final int chunkZ = z;
+                ChunkAdapter chunk = new ChunkAdapter() {
+                    {
+                        this.x = chunkX;
+                        this.z = chunkZ;
+                    }
+                };
+
+                loaded.put( CoordinateUtils.toLong( x, z ), chunk );
+                return chunk;
+            }
+
+            @Override
+            public Future<ChunkAdapter> generateChunk( int x, int z, int priority ) {
+                return null;
+            }
+
+            @Override
+            public void saveChunk( ChunkAdapter chunk ) {
+
+            }
+
+            @Override
+            public void flush() {
+
+            }
+
+            @Override
+            public void packageChunk( ChunkAdapter chunk ) {
+                if ( Thread.currentThread() == mainThread ) {
+                    mainThreadPackages.incrementAndGet();
+                }
+
+                chunk.setCachedPacket( new PacketBatch() );
+            }
+        };
+
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        ChunkIOScheduler scheduler = new ChunkIOScheduler( "test", backend, executorService, 2 );
+
+        // Every player requests all chunks in its view, the views overlap with their neighbours
+        final AtomicInteger sent = new AtomicInteger();
+        final AtomicInteger resolvedOffMainThread = new AtomicInteger();
+        final AtomicInteger moved = new AtomicInteger();
+        final AtomicInteger movedOffMainThread = new AtomicInteger();
+        List<Future<ChunkAdapter>> futures = new ArrayList<>();
+        for ( int player = 0; player < PLAYERS; player++ ) {
+            int centerX = player * 2;
+            int centerZ = player % 4;
+
+            // The player gets moved into its chunk like the world does, this mutates state of the world thread
+            scheduler.load( centerX, centerZ, true, 0, new Delegate<ChunkAdapter>() {
+                @Override
+                public void invoke( ChunkAdapter chunk ) {
+                    if ( Thread.currentThread() != mainThread ) {
+                        movedOffMainThread.incrementAndGet();
+                    }
+
+                    moved.incrementAndGet();
+                }
+            } );
+
+            for ( int x = centerX - VIEW_RADIUS; x <= centerX + VIEW_RADIUS; x++ ) {
+                for ( int z = centerZ - VIEW_RADIUS; z <= centerZ + VIEW_RADIUS; z++ ) {
+                    int priority = Math.max( Math.abs( x - centerX ), Math.abs( z - centerZ ) );
+                    Future<ChunkAdapter> future = scheduler.requestPackagedChunk( x, z, true, priority );
+                    future.addFutureListener( new FutureListener<Future<ChunkAdapter>>() {
+                        @Override
+                        public void onFutureResolved( Future<ChunkAdapter> future ) {
+                            if ( Thread.currentThread() != mainThread ) {
+                                resolvedOffMainThread.incrementAndGet();
+                            }
+
+                            sent.incrementAndGet();
+                        }
+                    } );
+
+                    futures.add( future );
+                }
+            }
+        }
+
+        // Tick until everything has been sent
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( 30 );
+        while ( ( sent.get() < futures.size() || moved.get() < PLAYERS ) && System.currentTimeMillis() < deadline ) {
+            scheduler.resolveCompletedRequests();
+            Thread.sleep( 5 );
+        }
+
+        scheduler.close();
+        executorService.shutdown();
+
+        Assert.assertEquals( futures.size(), sent.get() );
+        Assert.assertEquals( 0, mainThreadReads.get() );
+        Assert.assertEquals( 0, mainThreadPackages.get() );
+        Assert.assertEquals( 0, resolvedOffMainThread.get() );
+        Assert.assertEquals( PLAYERS, moved.get() );
+        Assert.assertEquals( 0, movedOffMainThread.get() );
+
+        // Overlapping requests have been coalesced, every chunk has been read once
+        Assert.assertEquals( loaded.size(), diskReads.get() );
+
+        for ( Future<ChunkAdapter> future : futures ) {
+            ChunkAdapter chunk = future.tryGet();
+            Assert.assertNotNull( chunk );
+            Assert.assertTrue( chunk.isPackaged() );
+        }
+    }
+
+}
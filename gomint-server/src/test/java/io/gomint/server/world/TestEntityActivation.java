@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.config.EntityActivationConfig;
+import io.gomint.server.entity.ActivationCategory;
+import junit.framework.Assert;
+import org.junit.Test;
+
+/**
+ * @author geNAZt
+ */
+public class TestEntityActivation {
+
+    @Test
+    public void testRanges() {
+        EntityActivation activation = new EntityActivation( new EntityActivationConfig( 16, 32, 32, 16, 20 ) );
+        activation.addPlayer( 8, 8 );
+
+        Assert.assertTrue( activation.isActive( ActivationCategory.ITEM, 20, 8 ) );
+        Assert.assertTrue( activation.isActive( ActivationCategory.ANIMAL, 40, 8 ) );
+        Assert.assertFalse( activation.isActive( ActivationCategory.ITEM, 40, 8 ) );
+        Assert.assertFalse( activation.isActive( ActivationCategory.MONSTER, 200, 8 ) );
+        Assert.assertFalse( activation.isActive( ActivationCategory.MISC, -40, -40 ) );
+
+        // Players are never slowed down
+        Assert.assertTrue( activation.isActive( ActivationCategory.PLAYER, 200, 200 ) );
+
+        // Nothing is active without players
+        activation.clear();
+        Assert.assertFalse( activation.isActive( ActivationCategory.ANIMAL, 8, 8 ) );
+    }
+
+    @Test
+    public void testNearestPlayer() {
+        EntityActivation activation = new EntityActivation( new EntityActivationConfig( 16, 32, 32, 16, 20 ) );
+        activation.addPlayer( 8, 8 );
+        activation.addPlayer( 200, 8 );
+
+        Assert.assertTrue( activation.isActive( ActivationCategory.ITEM, 190, 8 ) );
+        Assert.assertFalse( activation.isActive( ActivationCategory.ITEM, 100, 8 ) );
+    }
+
+    @Test
+    public void testInactiveTicks() {
+        EntityActivation activation = new EntityActivation( new EntityActivationConfig( 16, 32, 32, 16, 20 ) );
+
+        int ticks = 0;
+        for ( long tick = 0; tick < 100; tick++ ) {
+            if ( activation.isInactiveTick( 7, tick ) ) {
+                ticks++;
+            }
+        }
+
+        Assert.assertEquals( 5, ticks );
+    }
+
+    @Test
+    public void testIntervalOfOne() {
+        EntityActivation activation = new EntityActivation( new EntityActivationConfig( 16, 32, 32, 16, 1 ) );
+        Assert.assertTrue( activation.isActive( ActivationCategory.ITEM, 1000, 1000 ) );
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.inventory.ItemStack;
+import io.gomint.inventory.Material;
+import io.gomint.math.Location;
+import io.gomint.math.Vector;
+import io.gomint.server.GoMintServer;
+import io.gomint.server.config.ServerConfig;
+import io.gomint.server.entity.Entity;
+import io.gomint.server.entity.passive.EntityItem;
+import io.gomint.server.world.block.Blocks;
+import io.gomint.server.world.generator.FlatGenerator;
+import junit.framework.Assert;
+import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author geNAZt
+ */
+public class TestEntitySleep {
+
+    private static final int GROUND = 4;
+    private static final float DELTA = 0.05f;
+    private static final int MAX_TICKS = 100;
+
+    private FlatWorld world;
+    private long tick;
+
+    @Before
+    public void setup() {
+        this.world = new FlatWorld();
+        for ( int x = -1; x <= 1; x++ ) {
+            for ( int z = -1; z <= 1; z++ ) {
+                this.world.loadChunk( x, z, true );
+            }
+        }
+    }
+
+    private EntityItem drop( Material material, float x, float y, float z ) {
+        EntityItem item = new EntityItem( new ItemStack( material ), this.world );
+        item.lock();
+        this.world.spawnEntityAt( item, x, y, z );
+        return item;
+    }
+
+    private void tick() {
+        long currentTimeMS = ++this.tick * 50;
+        List<Entity> movedEntities = new ArrayList<>();
+        List<Entity> deadEntities = new ArrayList<>();
+
+        // Without players every entity is out of range, so tick them like active ones
+        EntityManager entityManager = this.world.getEntityManager();
+        entityManager.startTick();
+        for ( Entity entity : entityManager.getEntities() ) {
+            entity.update( currentTimeMS, DELTA );
+            if ( entity.getTransform().isDirty() ) {
+                movedEntities.add( entity );
+            }
+        }
+
+        entityManager.finishTick( movedEntities, deadEntities );
+    }
+
+    private void tickUntilSleeping( Entity entity ) {
+        for ( int i = 0; i < MAX_TICKS && !entity.isSleeping(); i++ ) {
+            this.tick();
+        }
+
+        Assert.assertTrue( entity.isSleeping() );
+    }
+
+    @Test
+    public void testFallsAsleepOnGround() {
+        EntityItem item = this.drop( Material.BRICK, 8.5f, GROUND + 2, 8.5f );
+        Assert.assertFalse( item.isSleeping() );
+
+        this.tickUntilSleeping( item );
+        Assert.assertEquals( GROUND, item.getPositionY(), 0.01f );
+
+        // Nothing touches it, so it keeps sleeping
+        for ( int i = 0; i < 20; i++ ) {
+            this.tick();
+            Assert.assertTrue( item.isSleeping() );
+        }
+    }
+
+    @Test
+    public void testWakesOnVelocity() {
+        EntityItem item = this.drop( Material.BRICK, 8.5f, GROUND, 8.5f );
+        this.tickUntilSleeping( item );
+
+        item.setVelocity( new Vector( 0, 0.4f, 0 ) );
+        Assert.assertFalse( item.isSleeping() );
+
+        // The push is applied before it may rest again
+        this.tick();
+        Assert.assertTrue( item.getPositionY() > GROUND );
+        this.tickUntilSleeping( item );
+    }
+
+    @Test
+    public void testWakesOnBlockChange() {
+        EntityItem item = this.drop( Material.BRICK, 8.5f, GROUND, 8.5f );
+        this.tickUntilSleeping( item );
+
+        // Blocks which are not next to it don't matter
+        this.world.setBlockId( new Vector( 14, GROUND, 14 ), Blocks.STONE.getBlockId() );
+        Assert.assertTrue( item.isSleeping() );
+
+        this.world.setBlockId( new Vector( 9, GROUND, 8 ), Blocks.STONE.getBlockId() );
+        Assert.assertFalse( item.isSleeping() );
+
+        this.tickUntilSleeping( item );
+        this.world.setBlockData( new Vector( 8, GROUND - 1, 8 ), (byte) 1 );
+        Assert.assertFalse( item.isSleeping() );
+    }
+
+    @Test
+    public void testWakesWhenTouched() {
+        EntityItem resting = this.drop( Material.BRICK, 8.5f, GROUND, 8.5f );
+        EntityItem other = this.drop( Material.CLAY_BALL, 9.75f, GROUND, 8.5f );
+        this.tickUntilSleeping( resting );
+        this.tickUntilSleeping( other );
+
+        // Entities next to it which don't move don't wake it up
+        for ( int i = 0; i < 20; i++ ) {
+            this.tick();
+            Assert.assertTrue( resting.isSleeping() );
+        }
+
+        // It wakes up in the tick the other one slides into it and falls asleep again in the next one
+        other.setVelocity( new Vector( -0.5f, 0, 0 ) );
+        boolean woken = false;
+        for ( int i = 0; i < MAX_TICKS && !woken; i++ ) {
+            this.tick();
+            woken = !resting.isSleeping();
+        }
+
+        Assert.assertTrue( woken );
+    }
+
+    /**
+     * Flat world which only lives in memory
+     */
+    private static final class FlatWorld extends WorldAdapter {
+
+        private static final FlatGenerator GENERATOR = new FlatGenerator();
+
+        private FlatWorld() {
+            super( new GoMintServer( new ServerConfig() ), new File( "test" ) );
+            this.chunkCache = new ChunkCache( this );
+            this.levelName = "test";
+            this.spawn = new Location( this, 0, GROUND, 0 );
+        }
+
+        @Override
+        protected ChunkAdapter loadChunk( int x, int z, boolean generate ) {
+            ChunkAdapter chunk = this.getCachedChunk( x, z );
+            if ( chunk == null && generate ) {
+                chunk = this.createChunk( x, z );
+
+                GeneratedChunk generatedChunk = new GeneratedChunk( chunk );
+                GENERATOR.generateNoise( generatedChunk );
+                GENERATOR.generateSurface( generatedChunk );
+                chunk.calculateHeightmap();
+                LightEngine.relightChunk( chunk );
+
+                this.chunkCache.putChunk( chunk );
+            }
+
+            return chunk;
+        }
+
+        @Override
+        protected void saveChunk( ChunkAdapter chunk ) {
+            // Nothing gets saved
+        }
+
+        @Override
+        protected boolean isChunkStored( int x, int z ) {
+            return false;
+        }
+
+        @Override
+        protected ChunkAdapter createChunk( int x, int z ) {
+            // The fields of the chunk would shadow the parameters inside of the initializer
+            final int chunkX = x;
+            final int chunkZ = z;
+            return new ChunkAdapter() {
+                {
+                    this.world = FlatWorld.this;
+                    this.x = chunkX;
+                    this.z = chunkZ;
+                    this.entities = HashLongObjMaps.newMutableMap();
+                    this.loadedTime = System.currentTimeMillis();
+                }
+            };
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.inventory.ItemStack;
+import io.gomint.inventory.Material;
+import io.gomint.server.config.ItemMergeConfig;
+import io.gomint.server.entity.Entity;
+import io.gomint.server.entity.passive.EntityItem;
+import junit.framework.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * @author geNAZt
+ */
+public class TestItemMerger {
+
+    private final EntitySpatialIndex spatialIndex = new EntitySpatialIndex();
+    private final List<Entity> entities = new ArrayList<>();
+    private final Set<EntityItem> grown = new HashSet<>();
+
+    private EntityItem drop( ItemStack itemStack, float x, float y, float z ) {
+        EntityItem item = new EntityItem( itemStack, null );
+        item.setPosition( x, y, z );
+        item.getBoundingBox().setBounds( x - 0.125f, y, z - 0.125f, x + 0.125f, y + 0.25f, z + 0.125f );
+
+        this.spatialIndex.update( item );
+        this.entities.add( item );
+        return item;
+    }
+
+    private List<EntityItem> merge( ItemMerger merger ) {
+        List<EntityItem> removed = new ArrayList<>();
+        this.grown.clear();
+        merger.mergeItems( this.entities, removed, this.grown );
+
+        for ( EntityItem item : removed ) {
+            this.spatialIndex.remove( item );
+            this.entities.remove( item );
+        }
+
+        return removed;
+    }
+
+    @Test
+    public void testMergeUpToStackSize() {
+        ItemMerger merger = new ItemMerger( new ItemMergeConfig(), this.spatialIndex );
+        for ( int i = 0; i < 100; i++ ) {
+            this.drop( new ItemStack( Material.BRICK ), 8 + ( i % 10 ) * 0.1f, 64, 8 );
+        }
+
+        List<EntityItem> removed = this.merge( merger );
+        Assert.assertEquals( 98, removed.size() );
+        Assert.assertEquals( 2, this.entities.size() );
+
+        int amount = 0;
+        for ( Entity entity : this.entities ) {
+            EntityItem item = (EntityItem) entity;
+            Assert.assertFalse( item.isDead() );
+            Assert.assertTrue( item.getAmount() <= Material.BRICK.getMaximumAmount() );
+            amount += item.getAmount();
+        }
+
+        Assert.assertEquals( 100, amount );
+
+        for ( EntityItem item : removed ) {
+            Assert.assertTrue( item.isDead() );
+        }
+    }
+
+    @Test
+    public void testOnlyCompatibleStacksMerge() {
+        ItemMerger merger = new ItemMerger( new ItemMergeConfig(), this.spatialIndex );
+        EntityItem brick = this.drop( new ItemStack( Material.BRICK, 3 ), 8, 64, 8 );
+        EntityItem otherData = this.drop( new ItemStack( Material.BRICK, (short) 1, 3 ), 8, 64, 8 );
+        EntityItem otherMaterial = this.drop( new ItemStack( Material.CLAY_BALL, 3 ), 8, 64, 8 );
+        EntityItem tooFar = this.drop( new ItemStack( Material.BRICK, 3 ), 8, 64, 16 );
+
+        EntityItem locked = this.drop( new ItemStack( Material.BRICK, 3 ), 8, 64, 8 );
+        locked.lock();
+
+        Assert.assertEquals( 0, this.merge( merger ).size() );
+        Assert.assertEquals( 5, this.entities.size() );
+
+        // The bigger stack takes the items of the smaller one
+        EntityItem bigger = this.drop( new ItemStack( Material.BRICK, 10 ), 9, 64, 8 );
+        List<EntityItem> removed = this.merge( merger );
+        Assert.assertEquals( 1, removed.size() );
+        Assert.assertSame( brick, removed.get( 0 ) );
+        Assert.assertEquals( 13, bigger.getAmount() );
+        Assert.assertEquals( 1, this.grown.size() );
+        Assert.assertTrue( this.grown.contains( bigger ) );
+
+        Assert.assertEquals( 3, otherData.getAmount() );
+        Assert.assertEquals( 3, otherMaterial.getAmount() );
+        Assert.assertEquals( 3, tooFar.getAmount() );
+        Assert.assertEquals( 3, locked.getAmount() );
+    }
+
+    @Test
+    public void testItemLimitPerChunk() {
+        ItemMerger merger = new ItemMerger( new ItemMergeConfig( 2.5, 20, 4 ), this.spatialIndex );
+        List<EntityItem> removed = new ArrayList<>();
+
+        EntityItem oldest = null;
+        EntityItem last = null;
+        for ( int i = 0; i < 4; i++ ) {
+            last = this.drop( new ItemStack( Material.BRICK, (short) i, 1 ), 2 + i * 3, 64, 8 );
+            merger.limitItems( last, removed, this.grown );
+
+            if ( oldest == null ) {
+                oldest = last;
+            }
+        }
+
+        Assert.assertEquals( 0, removed.size() );
+        Assert.assertEquals( 0, this.grown.size() );
+
+        // A drop which fits into another one of the chunk is merged into it
+        EntityItem fitting = this.drop( new ItemStack( Material.BRICK, (short) 3, 1 ), 2, 64, 2 );
+        merger.limitItems( fitting, removed, this.grown );
+        Assert.assertEquals( 1, removed.size() );
+        Assert.assertSame( fitting, removed.get( 0 ) );
+        Assert.assertTrue( this.grown.contains( last ) );
+        Assert.assertEquals( 2, last.getAmount() );
+        this.spatialIndex.remove( fitting );
+
+        // Otherwise the oldest drop has to go
+        removed.clear();
+        this.grown.clear();
+        EntityItem other = this.drop( new ItemStack( Material.CLAY_BALL ), 2, 64, 2 );
+        merger.limitItems( other, removed, this.grown );
+        Assert.assertEquals( 1, removed.size() );
+        Assert.assertSame( oldest, removed.get( 0 ) );
+        Assert.assertFalse( other.isDead() );
+        Assert.assertEquals( 0, this.grown.size() );
+    }
+
+    @Test
+    public void testItemLimitUsesFlooredChunk() {
+        ItemMerger merger = new ItemMerger( new ItemMergeConfig( 2.5, 20, 1 ), this.spatialIndex );
+        List<EntityItem> removed = new ArrayList<>();
+
+        // -0.5 lies in chunk -1, truncating it would look into chunk 0
+        EntityItem first = this.drop( new ItemStack( Material.BRICK, (short) 1, 1 ), -0.5f, 64, -0.5f );
+        merger.limitItems( first, removed, this.grown );
+        EntityItem second = this.drop( new ItemStack( Material.BRICK, (short) 2, 1 ), -0.5f, 64, -0.5f );
+        merger.limitItems( second, removed, this.grown );
+
+        Assert.assertEquals( 1, removed.size() );
+        Assert.assertSame( first, removed.get( 0 ) );
+    }
+
+    @Test
+    public void testMergeInterval() {
+        ItemMerger merger = new ItemMerger( new ItemMergeConfig( 2.5, 20, 128 ), this.spatialIndex );
+        Assert.assertTrue( merger.isMergeTick( 40 ) );
+        Assert.assertFalse( merger.isMergeTick( 41 ) );
+
+        ItemMerger disabled = new ItemMerger( new ItemMergeConfig( 2.5, 0, 128 ), this.spatialIndex );
+        Assert.assertFalse( disabled.isMergeTick( 40 ) );
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.server.world.block.Blocks;
+import junit.framework.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author geNAZt
+ */
+public class TestLightEngine {
+
+    private static final int GROUND = 63;
+
+    private final Map<Long, ChunkAdapter> chunks = new HashMap<>();
+    private LightEngine engine;
+
+    @Before
+    public void setUp() {
+        this.chunks.clear();
+        for ( int x = -1; x <= 1; x++ ) {
+            for ( int z = -1; z <= 1; z++ ) {
+                ChunkAdapter chunk = createFlatChunk( x, z );
+                LightEngine.relightChunk( chunk );
+                this.chunks.put( CoordinateUtils.toLong( x, z ), chunk );
+            }
+        }
+
+        this.engine = new LightEngine( new LightEngine.ChunkSource() {
+            @Override
+            public ChunkAdapter getChunk( int x, int z ) {
+                return chunks.get( CoordinateUtils.toLong( x, z ) );
+            }
+        } );
+    }
+
+    @Test
+    public void testRelightFlatChunk() {
+        Assert.assertEquals( 15, this.getSkyLight( 3, GROUND + 1, 3 ) );
+        Assert.assertEquals( 15, this.getSkyLight( 3, 200, 3 ) );
+        Assert.assertEquals( 0, this.getSkyLight( 3, GROUND, 3 ) );
+        Assert.assertEquals( 0, this.getBlockLight( 3, GROUND + 1, 3 ) );
+        Assert.assertEquals( GROUND, this.chunks.get( CoordinateUtils.toLong( 0, 0 ) ).getHeight( 3, 3 ) );
+    }
+
+    @Test
+    public void testPlaceAndRemoveTorchAcrossChunks() {
+        this.setBlock( 14, GROUND + 1, 8, Blocks.TORCH.getBlockId() );
+        this.engine.processUpdates();
+
+        Assert.assertEquals( 14, this.getBlockLight( 14, GROUND + 1, 8 ) );
+        Assert.assertEquals( 11, this.getBlockLight( 14, GROUND + 4, 8 ) );
+        Assert.assertEquals( 9, this.getBlockLight( 19, GROUND + 1, 8 ) );
+        Assert.assertEquals( 7, this.getBlockLight( 17, GROUND + 1, 12 ) );
+        Assert.assertEquals( 0, this.getBlockLight( 14, GROUND, 8 ) );
+
+        this.setBlock( 14, GROUND + 1, 8, 0 );
+        this.engine.processUpdates();
+
+        for ( int x = 0; x < 32; x++ ) {
+            for ( int y = GROUND; y < GROUND + 16; y++ ) {
+                Assert.assertEquals( 0, this.getBlockLight( x, y, 8 ) );
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveOneOfTwoTorches() {
+        this.setBlock( 0, GROUND + 1, 0, Blocks.TORCH.getBlockId() );
+        this.setBlock( 6, GROUND + 1, 0, Blocks.TORCH.getBlockId() );
+        this.engine.processUpdates();
+
+        Assert.assertEquals( 11, this.getBlockLight( 3, GROUND + 1, 0 ) );
+
+        this.setBlock( 0, GROUND + 1, 0, 0 );
+        this.engine.processUpdates();
+
+        Assert.assertEquals( 8, this.getBlockLight( 0, GROUND + 1, 0 ) );
+        Assert.assertEquals( 11, this.getBlockLight( 3, GROUND + 1, 0 ) );
+        Assert.assertEquals( 14, this.getBlockLight( 6, GROUND + 1, 0 ) );
+    }
+
+    @Test
+    public void testSkyLightFollowsBrokenAndPlacedBlocks() {
+        // Dig a shaft, the sky shines straight down
+        for ( int y = GROUND; y > GROUND - 5; y-- ) {
+            this.setBlock( 8, y, 8, 0 );
+        }
+
+        this.engine.processUpdates();
+        Assert.assertEquals( 15, this.getSkyLight( 8, GROUND - 4, 8 ) );
+
+        // Close it with a roof, no light reaches the bottom anymore
+        this.setBlock( 8, GROUND + 1, 8, Blocks.STONE.getBlockId() );
+        this.engine.processUpdates();
+        Assert.assertEquals( 0, this.getSkyLight( 8, GROUND - 4, 8 ) );
+        Assert.assertEquals( 0, this.getSkyLight( 8, GROUND, 8 ) );
+
+        // Leaves only dim it
+        this.setBlock( 8, GROUND + 1, 8, Blocks.LEAVES.getBlockId() );
+        this.engine.processUpdates();
+        Assert.assertEquals( 14, this.getSkyLight( 8, GROUND + 1, 8 ) );
+        Assert.assertEquals( 9, this.getSkyLight( 8, GROUND - 4, 8 ) );
+    }
+
+    @Test
+    public void testLightCrossesBordersOfAddedChunks() {
+        // A torch at the east border and a roof over the whole chunk east of it, both lit on their own
+        ChunkAdapter torch = createFlatChunk( 0, 0 );
+        torch.setBlock( 15, GROUND + 1, 8, Blocks.TORCH.getBlockId() );
+        LightEngine.relightChunk( torch );
+        this.chunks.put( CoordinateUtils.toLong( 0, 0 ), torch );
+
+        ChunkAdapter roofed = createFlatChunk( 1, 0 );
+        for ( int i = 0; i < 16; i++ ) {
+            for ( int k = 0; k < 16; k++ ) {
+                roofed.setBlock( i, GROUND + 4, k, Blocks.STONE.getBlockId() );
+            }
+        }
+
+        LightEngine.relightChunk( roofed );
+        this.chunks.put( CoordinateUtils.toLong( 1, 0 ), roofed );
+
+        Assert.assertEquals( 0, this.getBlockLight( 16, GROUND + 1, 8 ) );
+        Assert.assertEquals( 0, this.getSkyLight( 16, GROUND + 1, 3 ) );
+
+        this.engine.chunkAdded( 0, 0 );
+        this.engine.chunkAdded( 1, 0 );
+        this.engine.processUpdates();
+
+        Assert.assertEquals( 13, this.getBlockLight( 16, GROUND + 1, 8 ) );
+        Assert.assertEquals( 10, this.getBlockLight( 19, GROUND + 1, 8 ) );
+        Assert.assertEquals( 14, this.getSkyLight( 16, GROUND + 1, 3 ) );
+        Assert.assertEquals( 12, this.getSkyLight( 18, GROUND + 3, 3 ) );
+        Assert.assertEquals( 0, this.getSkyLight( 16, GROUND, 3 ) );
+    }
+
+    private void setBlock( int x, int y, int z, int blockId ) {
+        this.chunks.get( CoordinateUtils.toLong( x >> 4, z >> 4 ) ).setBlock( x & 0xF, y, z & 0xF, blockId );
+        this.engine.blockChanged( x, y, z );
+    }
+
+    private int getBlockLight( int x, int y, int z ) {
+        return this.chunks.get( CoordinateUtils.toLong( x >> 4, z >> 4 ) ).getBlockLight( x & 0xF, y, z & 0xF );
+    }
+
+    private int getSkyLight( int x, int y, int z ) {
+        return this.chunks.get( CoordinateUtils.toLong( x >> 4, z >> 4 ) ).getSkyLight( x & 0xF, y, z & 0xF );
+    }
+
+    static ChunkAdapter createFlatChunk( int x, int z ) {
+        // The fields of the chunk would shadow the parameters inside of the initializer
+        final int chunkX = x;
+        final int chunkZ = z;
+        ChunkAdapter chunk = new ChunkAdapter() {
+            {
+                this.x = chunkX;
+                this.z = chunkZ;
+            }
+        };
+
+        for ( int i = 0; i < 16; i++ ) {
+            for ( int k = 0; k < 16; k++ ) {
+                for ( int y = 0; y <= GROUND; y++ ) {
+                    chunk.setBlock( i, y, k, Blocks.STONE.getBlockId() );
+                }
+            }
+        }
+
+        return chunk;
+    }
+
+}
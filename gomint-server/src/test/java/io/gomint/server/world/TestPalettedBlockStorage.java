@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import junit.framework.Assert;
+import org.junit.Test;
+
+/**
+ * @author geNAZt
+ */
+public class TestPalettedBlockStorage {
+
+    @Test
+    public void testUniformStorage() {
+        PalettedBlockStorage storage = new PalettedBlockStorage( 0 );
+        Assert.assertTrue( storage.isAllAir() );
+        Assert.assertEquals( 0, storage.getBitsPerEntry() );
+
+        // Writing the id which is already stored must not allocate indexes
+        storage.set( 1234, 0 );
+        Assert.assertEquals( 0, storage.getBitsPerEntry() );
+        Assert.assertEquals( 0, storage.get( 1234 ) );
+    }
+
+    @Test
+    public void testGrowKeepsBlocks() {
+        PalettedBlockStorage storage = new PalettedBlockStorage( 0 );
+        int[] expectedBits = new int[]{ 1, 2, 2, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 8 };
+
+        for ( int id = 1; id <= 200; id++ ) {
+            storage.set( id * 17, id );
+            if ( id <= expectedBits.length ) {
+                Assert.assertEquals( expectedBits[id - 1], storage.getBitsPerEntry() );
+            }
+        }
+
+        Assert.assertFalse( storage.isAllAir() );
+        for ( int i = 0; i < 4096; i++ ) {
+            int expected = i % 17 == 0 && i > 0 && i / 17 <= 200 ? i / 17 : 0;
+            Assert.assertEquals( expected, storage.get( i ) );
+        }
+    }
+
+    @Test
+    public void testByteRoundTrip() {
+        byte[] blocks = new byte[4096];
+        for ( int i = 0; i < blocks.length; i++ ) {
+            blocks[i] = (byte) ( i % 3 == 0 ? 1 : ( i % 5 == 0 ? 255 : 0 ) );
+        }
+
+        PalettedBlockStorage storage = PalettedBlockStorage.fromBytes( blocks );
+        Assert.assertEquals( 2, storage.getBitsPerEntry() );
+
+        byte[] copy = new byte[4096 + 16];
+        storage.toBytes( copy, 16 );
+        for ( int i = 0; i < blocks.length; i++ ) {
+            Assert.assertEquals( blocks[i], copy[i + 16] );
+        }
+
+        Assert.assertTrue( PalettedBlockStorage.fromBytes( new byte[4096] ).isAllAir() );
+    }
+
+    @Test
+    public void testSharedLightIsNotChanged() {
+        ChunkAdapter chunk = TestLightEngine.createFlatChunk( 0, 0 );
+        ChunkSlice first = new ChunkSlice( chunk, 0 );
+        ChunkSlice second = new ChunkSlice( chunk, 1 );
+
+        first.setSkyLight( 10, 3 );
+        first.setBlockLight( 10, 7 );
+
+        Assert.assertEquals( 3, first.getSkyLight( 10 ) );
+        Assert.assertEquals( 7, first.getBlockLight( 10 ) );
+        Assert.assertEquals( 15, second.getSkyLight( 10 ) );
+        Assert.assertEquals( 0, second.getBlockLight( 10 ) );
+
+        first.resetLight( false );
+        Assert.assertEquals( 0, first.getSkyLight( 10 ) );
+        Assert.assertEquals( 15, second.getSkyLight( 10 ) );
+    }
+
+}
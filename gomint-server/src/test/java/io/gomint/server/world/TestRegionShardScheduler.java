@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world;
+
+import io.gomint.math.Location;
+import io.gomint.math.Vector;
+import io.gomint.server.GoMintServer;
+import io.gomint.server.config.ServerConfig;
+import io.gomint.server.util.LongList;
+import io.gomint.server.world.generator.FlatGenerator;
+import junit.framework.Assert;
+import net.openhft.koloboke.collect.map.hash.HashLongObjMaps;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author geNAZt
+ */
+public class TestRegionShardScheduler {
+
+    private static final int SURFACE = 3;
+    private static final int CHUNK_RADIUS = 16;
+    private static final long SEED = 0x5DEECE66DL;
+    private static final int TICKS = 40;
+    private static final int[] START = new int[]{ -129, -128, -1, 0, 127, 128 };
+
+    @Test
+    public void testParallelTickMatchesSingleThread() {
+        long start = System.currentTimeMillis();
+        WalkerWorld single = this.run( 1, start );
+        WalkerWorld parallel = this.run( 4, start );
+
+        // The walkers have to cross shard borders and the parallel run really has to use several threads
+        Assert.assertTrue( single.foreignWrites.get() > 0 );
+        Assert.assertEquals( single.foreignWrites.get(), parallel.foreignWrites.get() );
+        Assert.assertTrue( parallel.threads.size() > 1 );
+
+        // Block state of the whole area
+        for ( int chunkX = -CHUNK_RADIUS; chunkX < CHUNK_RADIUS; chunkX++ ) {
+            for ( int chunkZ = -CHUNK_RADIUS; chunkZ < CHUNK_RADIUS; chunkZ++ ) {
+                ChunkAdapter expected = single.getChunk( chunkX, chunkZ );
+                ChunkAdapter actual = parallel.getChunk( chunkX, chunkZ );
+                for ( int x = 0; x < 16; x++ ) {
+                    for ( int z = 0; z < 16; z++ ) {
+                        for ( int y = 0; y <= SURFACE + 1; y++ ) {
+                            String position = ( ( chunkX << 4 ) + x ) + ":" + y + ":" + ( ( chunkZ << 4 ) + z );
+                            Assert.assertEquals( position, expected.getBlock( x, y, z ), actual.getBlock( x, y, z ) );
+                            Assert.assertEquals( position, expected.getData( x, y, z ), actual.getData( x, y, z ) );
+                        }
+                    }
+                }
+            }
+        }
+
+        // The tick queue holds the same updates in the same order
+        Assert.assertEquals( single.getTickQueue().getNextTaskTime(), parallel.getTickQueue().getNextTaskTime() );
+        Assert.assertEquals( drain( single.getTickQueue() ), drain( parallel.getTickQueue() ) );
+    }
+
+    private WalkerWorld run( final int shardThreads, long start ) {
+        WalkerWorld world = new WalkerWorld( new ServerConfig() {
+            @Override
+            public int getRegionShardThreads() {
+                return shardThreads;
+            }
+        } );
+
+        for ( int x = -CHUNK_RADIUS; x < CHUNK_RADIUS; x++ ) {
+            for ( int z = -CHUNK_RADIUS; z < CHUNK_RADIUS; z++ ) {
+                world.loadChunk( x, z, true );
+            }
+        }
+
+        // Start walkers on both sides of the shard borders
+        for ( int x : START ) {
+            for ( int z : START ) {
+                world.scheduleBlockUpdate( start, CoordinateUtils.toLong( x, SURFACE, z ) );
+            }
+        }
+
+        for ( int i = 0; i < TICKS; i++ ) {
+            world.update( start + i * 50, 0.05f );
+        }
+
+        world.getChunkIO().close();
+        world.getPathfindingScheduler().close();
+        world.getServer().getWorldManager().close();
+        return world;
+    }
+
+    private static List<Long> drain( TickList tickList ) {
+        LongList elements = new LongList();
+        tickList.drainUntil( Long.MAX_VALUE, elements );
+
+        List<Long> result = new ArrayList<>( elements.size() );
+        for ( int i = 0; i < elements.size(); i++ ) {
+            result.add( elements.get( i ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * Flat world in which every scheduled update is a walker. It mixes its own block into a neighbour, which may
+     * be in another shard, and moves there in the next tick.
+     */
+    private static final class WalkerWorld extends WorldAdapter {
+
+        private static final FlatGenerator GENERATOR = new FlatGenerator();
+
+        private final AtomicInteger foreignWrites = new AtomicInteger();
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        private WalkerWorld( ServerConfig config ) {
+            super( new GoMintServer( config ), new File( "test" ) );
+            this.chunkCache = new ChunkCache( this );
+            this.levelName = "test";
+            this.spawn = new Location( this, 0, SURFACE + 1, 0 );
+            this.seedRandomTicks( SEED );
+        }
+
+        @Override
+        void tickScheduledBlock( long blockToUpdate, long currentTimeMS, float dT ) {
+            this.threads.add( Thread.currentThread() );
+
+            Vector position = CoordinateUtils.fromLong( blockToUpdate );
+            int x = (int) position.getX();
+            int z = (int) position.getZ();
+
+            // Pick the neighbour from the seed, the position and the time only
+            long hash = ( SEED ^ blockToUpdate ^ currentTimeMS ) * 0x9E3779B97F4A7C15L;
+            int direction = (int) ( hash >>> 62 );
+            int targetX = x + ( direction == 0 ? 1 : direction == 1 ? -1 : 0 );
+            int targetZ = z + ( direction == 2 ? 1 : direction == 3 ? -1 : 0 );
+
+            int own = this.blockIdAt( x, z );
+            int target = this.blockIdAt( targetX, targetZ );
+
+            if ( this.isForeignBlockWrite( targetX, targetZ ) ) {
+                this.foreignWrites.incrementAndGet();
+            }
+
+            Vector targetPosition = new Vector( targetX, SURFACE, targetZ );
+            this.setBlockId( targetPosition, 1 + ( own + target ) % 4 );
+            this.setBlockData( targetPosition, (byte) ( ( own * 3 + target ) & 0xF ) );
+            this.scheduleBlockUpdate( currentTimeMS + 50, CoordinateUtils.toLong( targetX, SURFACE, targetZ ) );
+        }
+
+        private int blockIdAt( int x, int z ) {
+            ChunkAdapter chunk = this.getChunk( CoordinateUtils.fromBlockToChunk( x ), CoordinateUtils.fromBlockToChunk( z ) );
+            return chunk.getBlock( x & 0xF, SURFACE, z & 0xF ) & 0xFF;
+        }
+
+        @Override
+        protected ChunkAdapter loadChunk( int x, int z, boolean generate ) {
+            ChunkAdapter chunk = this.getCachedChunk( x, z );
+            if ( chunk == null && generate ) {
+                chunk = this.createChunk( x, z );
+
+                GeneratedChunk generatedChunk = new GeneratedChunk( chunk );
+                GENERATOR.generateNoise( generatedChunk );
+                GENERATOR.generateSurface( generatedChunk );
+                chunk.calculateHeightmap();
+                LightEngine.relightChunk( chunk );
+
+                this.chunkCache.putChunk( chunk );
+            }
+
+            return chunk;
+        }
+
+        @Override
+        protected void saveChunk( ChunkAdapter chunk ) {
+            // Nothing gets saved
+        }
+
+        @Override
+        protected boolean isChunkStored( int x, int z ) {
+            return false;
+        }
+
+        @Override
+        protected ChunkAdapter createChunk( int x, int z ) {
+            // The fields of the chunk would shadow the parameters inside of the initializer
+            final int chunkX = x;
+            final int chunkZ = z;
+            return new ChunkAdapter() {
+                {
+                    this.world = WalkerWorld.this;
+                    this.x = chunkX;
+                    this.z = chunkZ;
+                    this.entities = HashLongObjMaps.newMutableMap();
+                    this.loadedTime = System.currentTimeMillis();
+                }
+            };
+        }
+
+    }
+
+}
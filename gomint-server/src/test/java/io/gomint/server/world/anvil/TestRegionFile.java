@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.anvil;
+
+import junit.framework.Assert;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * @author geNAZt
+ */
+public class TestRegionFile {
+
+    private static final int MAX_SECTORS = 6;
+
+    private File directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        this.directory = Files.createTempDirectory( "gomint-region" ).toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        File[] files = this.directory.listFiles();
+        if ( files != null ) {
+            for ( File file : files ) {
+                file.delete();
+            }
+        }
+
+        this.directory.delete();
+    }
+
+    private static byte[] createData( Random random, int sectors ) {
+        // Leave room for the length field and fill the last sector partially
+        byte[] data = new byte[( sectors - 1 ) * RegionFile.SECTOR_SIZE + 1 + random.nextInt( RegionFile.SECTOR_SIZE - 8 )];
+        random.nextBytes( data );
+        data[0] = 2;
+        return data;
+    }
+
+    @Test
+    public void testRepeatedSaveStaysBounded() throws IOException {
+        File file = new File( this.directory, "r.0.0.mca" );
+        RegionFile regionFile = new RegionFile( null, file );
+
+        Random random = new Random( 42 );
+        byte[] last = null;
+        for ( int i = 0; i < 1000; i++ ) {
+            last = createData( random, 1 + random.nextInt( MAX_SECTORS ) );
+            regionFile.writeChunkData( 0, last, last.length, i );
+        }
+
+        regionFile.close();
+
+        // A single chunk always finds its freed sectors again. The new version is written next to the live one, so
+        // the free space in front of it may be too small once and the chunk is moved behind it
+        Assert.assertTrue( file.length() <= ( RegionFile.HEADER_SECTORS + 3 * MAX_SECTORS ) * (long) RegionFile.SECTOR_SIZE );
+
+        regionFile = new RegionFile( null, file );
+        Assert.assertTrue( Arrays.equals( last, regionFile.readChunkData( 0 ) ) );
+        Assert.assertEquals( 999, regionFile.getTimestamp( 0 ) );
+        regionFile.close();
+    }
+
+    @Test
+    public void testLiveSectorsAreNotOverwritten() throws IOException {
+        File file = new File( this.directory, "r.0.0.mca" );
+        RegionFile regionFile = new RegionFile( null, file );
+
+        Random random = new Random( 5 );
+        byte[] first = createData( random, 2 );
+        regionFile.writeChunkData( 0, first, first.length, 0 );
+        int firstSectors = regionFile.getUsedSectorCount();
+
+        // Same size and a different size both need to go into another run while the old one is live
+        byte[] second = createData( random, 2 );
+        regionFile.writeChunkData( 0, second, second.length, 1 );
+        Assert.assertEquals( firstSectors, regionFile.getUsedSectorCount() );
+        Assert.assertEquals( RegionFile.HEADER_SECTORS + 4, regionFile.getSectorCount() );
+
+        byte[] third = createData( random, 3 );
+        regionFile.writeChunkData( 0, third, third.length, 2 );
+        Assert.assertEquals( RegionFile.HEADER_SECTORS + 7, regionFile.getSectorCount() );
+        Assert.assertTrue( Arrays.equals( third, regionFile.readChunkData( 0 ) ) );
+
+        regionFile.close();
+    }
+
+    @Test
+    public void testManyChunksStayBounded() throws IOException {
+        File file = new File( this.directory, "r.0.0.mca" );
+        RegionFile regionFile = new RegionFile( null, file );
+
+        int chunks = 32;
+        Random random = new Random( 1337 );
+        byte[][] latest = new byte[chunks][];
+        for ( int i = 0; i < 100 * chunks; i++ ) {
+            int index = random.nextInt( chunks );
+            latest[index] = createData( random, 1 + random.nextInt( MAX_SECTORS ) );
+            regionFile.writeChunkData( index, latest[index], latest[index].length, i );
+        }
+
+        // Without reuse this would grow to roughly 3200 * 3.5 sectors
+        int bound = RegionFile.HEADER_SECTORS + 2 * chunks * MAX_SECTORS;
+        Assert.assertTrue( regionFile.getSectorCount() <= bound );
+        Assert.assertEquals( regionFile.getSectorCount() * (long) RegionFile.SECTOR_SIZE, file.length() );
+        regionFile.close();
+
+        // Reopening rebuilds the sector bitmap, new writes must not overwrite other chunks
+        regionFile = new RegionFile( null, file );
+        byte[] grown = createData( random, MAX_SECTORS );
+        regionFile.writeChunkData( 0, grown, grown.length, 0 );
+        latest[0] = grown;
+
+        for ( int i = 0; i < chunks; i++ ) {
+            if ( latest[i] != null ) {
+                Assert.assertTrue( Arrays.equals( latest[i], regionFile.readChunkData( i ) ) );
+            }
+        }
+
+        regionFile.close();
+    }
+
+    @Test
+    public void testCompaction() throws IOException {
+        File file = new File( this.directory, "r.0.0.mca" );
+        RegionFile regionFile = new RegionFile( null, file );
+
+        // Let every chunk grow once and shrink again, this leaves holes
+        Random random = new Random( 7 );
+        byte[][] latest = new byte[16][];
+        for ( int i = 0; i < latest.length; i++ ) {
+            byte[] big = createData( random, MAX_SECTORS );
+            regionFile.writeChunkData( i, big, big.length, i );
+        }
+
+        int usedSectors = RegionFile.HEADER_SECTORS;
+        for ( int i = 0; i < latest.length; i += 2 ) {
+            latest[i] = createData( random, 1 );
+            regionFile.writeChunkData( i, latest[i], latest[i].length, i );
+        }
+
+        for ( int i = 0; i < latest.length; i++ ) {
+            if ( latest[i] == null ) {
+                latest[i] = regionFile.readChunkData( i );
+            }
+
+            usedSectors += ( latest[i].length + 4 + RegionFile.SECTOR_SIZE - 1 ) / RegionFile.SECTOR_SIZE;
+        }
+
+        regionFile.close();
+
+        long saved = RegionCompactor.compact( file );
+        Assert.assertTrue( saved > 0 );
+        Assert.assertEquals( usedSectors * (long) RegionFile.SECTOR_SIZE, file.length() );
+
+        regionFile = new RegionFile( null, file );
+        for ( int i = 0; i < latest.length; i++ ) {
+            Assert.assertTrue( Arrays.equals( latest[i], regionFile.readChunkData( i ) ) );
+            Assert.assertEquals( i, regionFile.getTimestamp( i ) );
+        }
+
+        regionFile.close();
+    }
+
+    @Test
+    public void testHandleCacheIsBounded() throws IOException {
+        RegionFileCache cache = new RegionFileCache( null, this.directory, 2 );
+
+        for ( int i = 0; i < 8; i++ ) {
+            cache.acquire( i, 0 );
+            cache.release( i, 0 );
+        }
+
+        Assert.assertEquals( 2, cache.getOpenFiles() );
+        Assert.assertEquals( 8, cache.getOpens() );
+        Assert.assertEquals( 6, cache.getEvictions() );
+
+        // Recently used files stay open
+        cache.acquire( 7, 0 );
+        cache.release( 7, 0 );
+        Assert.assertEquals( 8, cache.getOpens() );
+
+        // Files in use are never closed
+        RegionFile first = cache.acquire( 0, 0 );
+        RegionFile second = cache.acquire( 1, 0 );
+        RegionFile third = cache.acquire( 2, 0 );
+        Assert.assertEquals( 3, cache.getOpenFiles() );
+
+        byte[] data = createData( new Random( 3 ), 1 );
+        first.writeChunkData( 0, data, data.length, 0 );
+        Assert.assertTrue( Arrays.equals( data, first.readChunkData( 0 ) ) );
+
+        cache.release( 0, 0 );
+        cache.release( 1, 0 );
+        cache.release( 2, 0 );
+        Assert.assertEquals( 2, cache.getOpenFiles() );
+        Assert.assertNotSame( second, third );
+
+        cache.close();
+        Assert.assertEquals( 0, cache.getOpenFiles() );
+    }
+
+}
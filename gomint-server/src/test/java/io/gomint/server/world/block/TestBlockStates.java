@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.block;
+
+import io.gomint.math.AxisAlignedBB;
+import io.gomint.math.Location;
+import junit.framework.Assert;
+import org.junit.Test;
+
+/**
+ * @author geNAZt
+ */
+public class TestBlockStates {
+
+    @Test
+    public void testStatesAreInterned() {
+        BlockState state = Blocks.getState( Blocks.STONE.getBlockId(), 0 );
+        Assert.assertSame( state, Blocks.getState( Blocks.STONE.getBlockId(), 0 ) );
+        Assert.assertNotSame( state, Blocks.getState( Blocks.STONE.getBlockId(), 1 ) );
+        Assert.assertEquals( 1, Blocks.getState( Blocks.STONE.getBlockId(), 1 ).getBlockData() );
+    }
+
+    @Test
+    public void testStateProperties() {
+        BlockState air = Blocks.getState( 0, 0 );
+        Assert.assertTrue( air.isPassThrough() );
+        Assert.assertFalse( air.isSolid() );
+
+        Assert.assertTrue( Blocks.getState( Blocks.GRASS_BLOCK.getBlockId(), 0 ).isRandomTicking() );
+        Assert.assertFalse( Blocks.getState( Blocks.STONE.getBlockId(), 0 ).isRandomTicking() );
+        Assert.assertEquals( 14, Blocks.getState( Blocks.TORCH.getBlockId(), 0 ).getLightEmission() );
+
+        BlockState slab = Blocks.getState( Blocks.STONE_SLAB.getBlockId(), 0 );
+        Assert.assertEquals( 0.5f, slab.getMaxY() );
+        Assert.assertTrue( slab.intersects( 10, 64, 10, new AxisAlignedBB( 10.2f, 64.4f, 10.2f, 10.8f, 66f, 10.8f ) ) );
+        Assert.assertFalse( slab.intersects( 10, 64, 10, new AxisAlignedBB( 10.2f, 64.5f, 10.2f, 10.8f, 66f, 10.8f ) ) );
+    }
+
+    @Test
+    public void testBlockInstancesAreNotShared() {
+        Block first = Blocks.get( Blocks.STONE.getBlockId(), (byte) 1, (byte) 15, (byte) 0, null, new Location( null, 1, 2, 3 ) );
+        Block second = Blocks.get( Blocks.STONE.getBlockId(), (byte) 2, (byte) 15, (byte) 0, null, new Location( null, 4, 5, 6 ) );
+
+        Assert.assertNotSame( first, second );
+        Assert.assertEquals( 1, first.getBlockData() );
+        Assert.assertEquals( 1f, first.getLocation().getX() );
+        Assert.assertEquals( 2, second.getBlockData() );
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017, GoMint, BlackyPaw and geNAZt
+ *
+ * This code is licensed under the BSD license found in the
+ * LICENSE file in the root directory of this source tree.
+ */
+
+package io.gomint.server.world.leveldb;
+
+import io.gomint.server.entity.tileentity.TileEntity;
+import io.gomint.taglib.NBTTagCompound;
+import junit.framework.Assert;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+import org.iq80.leveldb.impl.Iq80DBFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * @author geNAZt
+ */
+public class TestLevelDBChunk {
+
+    private static final int SECTIONS = 4;
+
+    private File directory;
+    private DB db;
+
+    @Before
+    public void openDatabase() throws IOException {
+        this.directory = Files.createTempDirectory( "gomint-leveldb" ).toFile();
+        this.db = Iq80DBFactory.factory.open( this.directory, new Options().createIfMissing( true ) );
+    }
+
+    @After
+    public void closeDatabase() throws IOException {
+        this.db.close();
+        Iq80DBFactory.factory.destroy( this.directory, new Options() );
+        this.directory.delete();
+    }
+
+    private void generateChunk( int chunkX, int chunkZ, Random random ) throws IOException {
+        WriteBatch batch = this.db.createWriteBatch();
+        batch.put( LevelDBChunk.getKey( chunkX, chunkZ, LevelDBChunk.KEY_VERSION ), new byte[]{ LevelDBChunk.CHUNK_VERSION } );
+
+        // Random terrain in the lower sections, all records are in the format the client writes
+        for ( int sectionY = 0; sectionY < SECTIONS; sectionY++ ) {
+            byte[] section = new byte[1 + 4096 + 3 * 2048];
+            for ( int i = 1; i < section.length; i++ ) {
+                section[i] = (byte) random.nextInt( i < 4097 ? 8 : 256 );
+            }
+
+            batch.put( LevelDBChunk.getKeySubChunk( chunkX, chunkZ, (byte) sectionY ), section );
+        }
+
+        ByteArrayOutputStream tileEntities = new ByteArrayOutputStream();
+        NBTTagCompound sign = new NBTTagCompound( "" );
+        sign.addValue( "id", "Sign" );
+        sign.addValue( "x", chunkX * 16 + 3 );
+        sign.addValue( "y", 20 );
+        sign.addValue( "z", chunkZ * 16 + 5 );
+        sign.addValue( "Text1", "GoMint" );
+        sign.addValue( "Text2", "" );
+        sign.addValue( "Text3", "" );
+        sign.addValue( "Text4", "" );
+        sign.writeTo( tileEntities, false, ByteOrder.LITTLE_ENDIAN );
+
+        NBTTagCompound unknown = new NBTTagCompound( "" );
+        unknown.addValue( "id", "SomethingNew" );
+        unknown.addValue( "x", chunkX * 16 );
+        unknown.addValue( "y", 10 );
+        unknown.addValue( "z", chunkZ * 16 );
+        unknown.writeTo( tileEntities, false, ByteOrder.LITTLE_ENDIAN );
+
+        batch.put( LevelDBChunk.getKey( chunkX, chunkZ, LevelDBChunk.KEY_TILE_ENTITIES ), tileEntities.toByteArray() );
+        batch.put( LevelDBChunk.getKey( chunkX, chunkZ, LevelDBChunk.KEY_ENTITIES ), new byte[]{ 10, 0, 0, 0 } );
+
+        this.db.write( batch );
+        batch.close();
+    }
+
+    private LevelDBChunk load( int chunkX, int chunkZ ) throws IOException {
+        LevelDBChunk chunk = new LevelDBChunk( null, chunkX, chunkZ );
+        chunk.load( this.db );
+        return chunk;
+    }
+
+    private void save( LevelDBChunk... chunks ) throws IOException {
+        WriteBatch batch = this.db.createWriteBatch();
+        for ( LevelDBChunk chunk : chunks ) {
+            chunk.save( batch );
+        }
+
+        this.db.write( batch );
+        batch.close();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Random random = new Random( 1234 );
+        for ( int x = -1; x <= 1; x++ ) {
+            for ( int z = -1; z <= 1; z++ ) {
+                this.generateChunk( x, z, random );
+            }
+        }
+
+        // Keep the records of an untouched chunk to compare them after saving it
+        byte[] originalSection = this.db.get( LevelDBChunk.getKeySubChunk( 0, 0, (byte) 1 ) );
+        byte[] originalEntities = this.db.get( LevelDBChunk.getKey( 0, 0, LevelDBChunk.KEY_ENTITIES ) );
+
+        LevelDBChunk untouched = this.load( 0, 0 );
+        Assert.assertEquals( 1, untouched.getTileEntities().size() );
+
+        // Mutate another chunk, build above the generated sections and clear a block
+        LevelDBChunk mutated = this.load( 1, -1 );
+        mutated.setBlock( 4, 100, 7, 1 );
+        mutated.setData( 4, 100, 7, (byte) 3 );
+        mutated.setBlock( 0, 0, 0, 0 );
+        mutated.calculateHeightmap();
+
+        this.save( untouched, mutated );
+
+        // Saving without changes writes the same records back
+        Assert.assertTrue( Arrays.equals( originalSection, this.db.get( LevelDBChunk.getKeySubChunk( 0, 0, (byte) 1 ) ) ) );
+        Assert.assertTrue( Arrays.equals( originalEntities, this.db.get( LevelDBChunk.getKey( 0, 0, LevelDBChunk.KEY_ENTITIES ) ) ) );
+
+        LevelDBChunk reloaded = this.load( 1, -1 );
+        Assert.assertEquals( 1, reloaded.getBlock( 4, 100, 7 ) );
+        Assert.assertEquals( 3, reloaded.getData( 4, 100, 7 ) );
+        Assert.assertEquals( 0, reloaded.getBlock( 0, 0, 0 ) );
+        Assert.assertEquals( 100, reloaded.getHeight( 4, 7 ) );
+
+        for ( int y = 0; y < SECTIONS * 16; y++ ) {
+            for ( int x = 0; x < 16; x++ ) {
+                for ( int z = 0; z < 16; z++ ) {
+                    if ( x == 0 && y == 0 && z == 0 ) {
+                        continue;
+                    }
+
+                    Assert.assertEquals( mutated.getBlock( x, y, z ), reloaded.getBlock( x, y, z ) );
+                    Assert.assertEquals( mutated.getData( x, y, z ), reloaded.getData( x, y, z ) );
+                    Assert.assertEquals( mutated.getSkyLight( x, y, z ), reloaded.getSkyLight( x, y, z ) );
+                    Assert.assertEquals( mutated.getBlockLight( x, y, z ), reloaded.getBlockLight( x, y, z ) );
+                }
+            }
+        }
+
+        // Tile entities survive, unknown ones are written back untouched
+        Collection<TileEntity> tileEntities = reloaded.getTileEntities();
+        Assert.assertEquals( 1, tileEntities.size() );
+
+        NBTTagCompound sign = new NBTTagCompound( "" );
+        tileEntities.iterator().next().toCompound( sign );
+        Assert.assertEquals( "GoMint", sign.getString( "Text1", null ) );
+        Assert.assertEquals( 1 * 16 + 3, (int) sign.getInteger( "x", 0 ) );
+
+        byte[] tileEntityData = this.db.get( LevelDBChunk.getKey( 1, -1, LevelDBChunk.KEY_TILE_ENTITIES ) );
+        Assert.assertTrue( new String( tileEntityData, "UTF-8" ).contains( "SomethingNew" ) );
+    }
+
+    @Test
+    public void testEmptySectionsGetDeleted() throws IOException {
+        this.generateChunk( 5, 5, new Random( 1 ) );
+
+        LevelDBChunk chunk = this.load( 5, 5 );
+        for ( int y = 16; y < SECTIONS * 16; y++ ) {
+            for ( int x = 0; x < 16; x++ ) {
+                for ( int z = 0; z < 16; z++ ) {
+                    chunk.setBlock( x, y, z, 0 );
+                }
+            }
+        }
+
+        this.save( chunk );
+
+        Assert.assertNotNull( this.db.get( LevelDBChunk.getKeySubChunk( 5, 5, (byte) 0 ) ) );
+        for ( int sectionY = 1; sectionY < SECTIONS; sectionY++ ) {
+            Assert.assertNull( this.db.get( LevelDBChunk.getKeySubChunk( 5, 5, (byte) sectionY ) ) );
+        }
+    }
+
+    private void assertLoadFails( int chunkX, int chunkZ ) {
+        LevelDBChunk chunk = new LevelDBChunk( null, chunkX, chunkZ );
+        try {
+            chunk.load( this.db );
+            Assert.fail( "Chunk " + chunkX + ":" + chunkZ + " should not have been loaded" );
+        } catch ( IOException e ) {
+            Assert.assertTrue( chunk.isReadFailed() );
+        }
+    }
+
+    @Test
+    public void testUnsupportedRecordsFailTheLoad() throws IOException {
+        Random random = new Random( 42 );
+
+        // Paletted sub chunks of newer clients
+        this.generateChunk( 0, 0, random );
+        byte[] paletted = this.db.get( LevelDBChunk.getKeySubChunk( 0, 0, (byte) 1 ) );
+        paletted[0] = 8;
+        this.db.put( LevelDBChunk.getKeySubChunk( 0, 0, (byte) 1 ), paletted );
+        this.assertLoadFails( 0, 0 );
+
+        // Sub chunks which are cut off
+        this.generateChunk( 1, 0, random );
+        this.db.put( LevelDBChunk.getKeySubChunk( 1, 0, (byte) 2 ), new byte[]{ 0, 1, 2, 3 } );
+        this.assertLoadFails( 1, 0 );
+
+        // Chunks of another version
+        this.generateChunk( 2, 0, random );
+        this.db.put( LevelDBChunk.getKey( 2, 0, LevelDBChunk.KEY_VERSION ), new byte[]{ 2 } );
+        this.assertLoadFails( 2, 0 );
+
+        // Height map and biomes which are cut off
+        this.generateChunk( 3, 0, random );
+        this.db.put( LevelDBChunk.getKey( 3, 0, LevelDBChunk.KEY_DATA_2D ), new byte[10] );
+        this.assertLoadFails( 3, 0 );
+
+        // The stored records are left alone
+        Assert.assertEquals( 8, this.db.get( LevelDBChunk.getKeySubChunk( 0, 0, (byte) 1 ) )[0] );
+        Assert.assertEquals( 2, this.db.get( LevelDBChunk.getKey( 2, 0, LevelDBChunk.KEY_VERSION ) )[0] );
+    }
+
+    @Test
+    public void testLoadedChunkIsNotModified() throws IOException {
+        this.generateChunk( 0, 0, new Random( 7 ) );
+
+        long before = System.currentTimeMillis();
+        LevelDBChunk chunk = this.load( 0, 0 );
+        Assert.assertFalse( chunk.isReadFailed() );
+        Assert.assertFalse( chunk.isModified() );
+        Assert.assertTrue( chunk.getLastSavedTimestamp() >= before );
+
+        chunk.setBlock( 1, 2, 3, 1 );
+        Assert.assertTrue( chunk.isModified() );
+
+        chunk.setLastSavedTimestamp( System.currentTimeMillis() );
+        Assert.assertFalse( chunk.isModified() );
+    }
+
+}